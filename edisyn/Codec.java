@@ -0,0 +1,223 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.util.*;
+
+/****
+     Parses sysex into Models, and emits Models as sysex, for a given kind of synthesizer, without
+     an editor window.  This is suitable for batch tools such as bulk conversion, indexing, and
+     verification, and works on a headless JVM (java.awt.headless=true).
+
+     <p>A Codec does its work with a throwaway Synth which it builds the first time it is needed.
+     Synths whose tabs are built lazily (see Synth.addTab(String, TabBuilder)) don't build those
+     tabs at all in a throwaway, so after the first one of a given kind has been built, later ones
+     are fairly cheap.
+
+     <p>A Codec is not threadsafe.  To work in parallel, give each thread its own Codec, or
+     call Codec.get(...), which keeps one Codec per synthesizer per thread.
+
+     @author Sean Luke
+*/
+
+public class Codec
+    {
+    // Building a Synth builds its Swing widgets, which we do one at a time to be on the safe side
+    static final Object instantiateLock = new Object();
+
+    static ThreadLocal<HashMap<String, Codec>> codecs = new ThreadLocal<HashMap<String, Codec>>()
+        {
+        protected HashMap<String, Codec> initialValue() { return new HashMap<String, Codec>(); }
+        };
+
+    /** Returns this thread's Codec for the given synthesizer class name. */
+    public static Codec get(String synthClassName)
+        {
+        HashMap<String, Codec> map = codecs.get();
+        Codec codec = map.get(synthClassName);
+        if (codec == null)
+            {
+            codec = new Codec(synthClassName);
+            map.put(synthClassName, codec);
+            }
+        return codec;
+        }
+
+    String synthClassName;
+    Synth synth;
+    Model initial;
+    int lastResult = Synth.PARSE_FAILED;
+
+    /** Creates a Codec for the given synthesizer class name. */
+    public Codec(String synthClassName)
+        {
+        this.synthClassName = synthClassName;
+        }
+
+    /** Returns the class name of the synthesizer. */
+    public String getSynthClassName() { return synthClassName; }
+
+    /** Returns the throwaway Synth which does the work, building it if necessary. */
+    public Synth getSynth()
+        {
+        if (synth == null)
+            {
+            synchronized(instantiateLock)
+                {
+                synth = Synth.instantiate(synthClassName, true, false, null);
+                }
+            if (synth == null)
+                throw new RuntimeException("Could not instantiate " + synthClassName);
+            synth.printRevised = false;
+            synth.setSendMIDI(false);
+            synth.undo.setWillPush(false);
+            synth.getModel().clearListeners();          // otherwise we GC horribly.....
+            initial = synth.getModel().copy();
+            }
+        return synth;
+        }
+
+    /** Returns a new Model with the synthesizer's initial values. */
+    public Model getInitialModel()
+        {
+        getSynth();
+        return initial.copy();
+        }
+
+    /** Parses a single sysex message into a new Model.  See parse(byte[][]). */
+    public Model parse(byte[] data)
+        {
+        return parse(new byte[][] { data });
+        }
+
+    /** Parses a patch made of one or more sysex messages into a new Model, starting from the synthesizer's
+        initial values.  Returns null if the parse failed.  If the messages ran out before the patch was
+        complete, the partially parsed Model is returned, and getLastResult() will return Synth.PARSE_INCOMPLETE. */
+    public Model parse(byte[][] data)
+        {
+        return parse(data, null);
+        }
+
+    /** Parses a patch made of one or more sysex messages into a new Model, as parse(byte[][]) does, but
+        starting from the values in START rather than the synthesizer's initial values, as an editor does
+        when it loads a patch into its own Model.  If START is null, the initial values are used. */
+    public Model parse(byte[][] data, Model start)
+        {
+        Synth synth = getSynth();
+        (start == null ? initial : start).copyValuesTo(synth.model);
+        lastResult = Synth.PARSE_FAILED;
+        for(int i = 0; i < data.length; i++)
+            {
+            lastResult = synth.performParse(data[i], true);
+            if (lastResult != Synth.PARSE_INCOMPLETE) break;
+            }
+        if (lastResult == Synth.PARSE_SUCCEEDED || lastResult == Synth.PARSE_SUCCEEDED_UNTITLED || lastResult == Synth.PARSE_INCOMPLETE)
+            {
+            Model model = synth.getModel().copy();
+            model.clearListeners();
+            return model;
+            }
+        else return null;
+        }
+
+    /** Returns the result of the synthesizer's parse(...) method the last time parse(...) was called. */
+    public int getLastResult() { return lastResult; }
+
+    /** Emits the given model as the sysex that would be written to a file. */
+    public byte[] emit(Model model)
+        {
+        Synth synth = getSynth();
+        model.copyValuesTo(synth.model);
+        return synth.flatten(synth.emitAll(synth.model, false, true));
+        }
+
+    /** Returns the patch name stored in the given model, or null if the synthesizer has no patch names. */
+    public String getPatchName(Model model)
+        {
+        return getSynth().getPatchName(model);
+        }
+
+    /** Returns the patch location stored in the given model, or null if the synthesizer has none. */
+    public String getPatchLocationName(Model model)
+        {
+        return getSynth().getPatchLocationName(model);
+        }
+
+    /** Returns true if the given sysex message is a patch for this synthesizer. */
+    public boolean recognize(byte[] data)
+        {
+        return Synth.recognize(synthClassName, data);
+        }
+
+    /** Returns true if the given sysex message is a bank for this synthesizer. */
+    public boolean recognizeBank(byte[] data)
+        {
+        return Synth.recognizeBank(synthClassName, data);
+        }
+
+    /** Returns the index of the synthesizer which recognizes the given sysex message, or -1 if none does.  
+        Only those synthesizers whose recognizers might handle the message's manufacturer ID are tested.  
+        This does not build any Synths. */
+    public static int recognizeSynth(byte[] data)
+        {
+        return recognizeSynth(data, Midi.classifySysex(data));
+        }
+
+    /** Returns the index of the synthesizer which recognizes the given sysex message, whose header
+        has already been classified by Midi.classifySysex(...), or -1 if none does.  See recognizeSynth(byte[]). */
+    public static int recognizeSynth(byte[] data, long header)
+        {
+        int[] candidates = RecognizerRegistry.getCandidates(header);
+        String[] classNames = Synth.getClassNames();
+        for(int i = 0; i < candidates.length; i++)
+            {
+            if (Synth.recognize(classNames[candidates[i]], data))
+                return candidates[i];
+            }
+        return -1;
+        }
+
+    /** Collects the given sysex messages into Patches, discarding those which do not seem to match 
+        anything Edisyn knows about.  The Patches are not named: use a PatchNamer to do this.
+        This does not build any Synths. */
+    public static Patch[] collectPatches(byte[][] sysex)
+        {
+        String[] classNames = Synth.getClassNames();
+        int pos = 0;
+        ArrayList<Patch> patches = new ArrayList<Patch>();
+                
+        while(pos < sysex.length)
+            {
+            // First, do we have a synth for this thing?
+            int rec = recognizeSynth(sysex[pos]);
+            if (rec >= 0)
+                {
+                // How many sysex messages per patch?
+                int next = Synth.getNextSysexPatchGroup(classNames[rec], sysex, pos);
+                if (next > pos)
+                    {
+                    byte[][] groups = new byte[next - pos][];
+                    for(int i = 0; i < groups.length; i++)
+                        {
+                        groups[i] = sysex[i + pos];
+                        }
+                    patches.add(new Patch(rec, groups, Synth.recognizeBank(classNames[rec], sysex[pos])));
+                    pos = next;
+                    }
+                else
+                    {
+                    pos++;          // I *think* this should work?
+                    }
+                }
+            else
+                {
+                pos++;  // skip this sysex message
+                }
+            }
+
+        return patches.toArray(new Patch[0]);
+        }
+    }
@@ -0,0 +1,269 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.beans.*;
+import java.util.concurrent.*;
+import javax.swing.*;
+
+/****
+     Runs slow codec work -- reading, splitting, naming, and writing sysex, or parsing and emitting
+     it with a Codec -- on a background thread rather than on the Swing Event Thread, so that
+     the user interface doesn't stall while it happens.
+
+     <p>Work is done by subclassing Task.  Its run() method is called on a background thread,
+     and must not touch any editor's Model or widgets: it should only work with data handed to
+     it, and with Codecs.  When it has finished, one of its done(...), failed(...), or cancelled()
+     methods is called on the Swing Event Thread, where it's safe to load the results into an
+     editor.  A long-running Task should check isCancelled() from time to time.
+
+     <p>Tasks may be run in two ways.  submit(...) runs the Task in the background and returns
+     immediately.  runAndWait(...) is for code on the Swing Event Thread which needs the result
+     before it can continue, such as Synth.doOpen(...): it keeps handling Swing events while it
+     waits, and if the Task takes a while, it puts up a progress dialog with a Cancel button.
+     Because events keep being handled, the Synth is told that it's waiting (see Synth.isRunningTask()),
+     so that it can refuse to start another file operation, hold incoming MIDI, and put off closing
+     its window until the Task is done.  Only one Task at a time may be run this way for a Synth.
+
+     @author Sean Luke
+*/
+
+public class CodecExecutor
+    {
+    /** The number of background threads. */
+    public static final int NUM_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** How long runAndWait(...) waits, in milliseconds, before putting up a progress dialog. */
+    public static final int PROGRESS_DELAY = 250;
+
+    static ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory()
+        {
+        int count = 0;
+        public synchronized Thread newThread(Runnable r)
+            {
+            Thread thread = new Thread(r);
+            thread.setName("Edisyn Codec Executor " + (count++));
+            thread.setDaemon(true);
+            return thread;
+            }
+        });
+
+    /** A piece of work to be done in the background. */
+    public static abstract class Task
+        {
+        volatile boolean cancelled = false;
+        volatile boolean finished = false;
+        volatile String progress = null;
+
+        /** Does the work, on a background thread, and returns the result.  Don't touch any editor's
+            Model or widgets here.  Check isCancelled() from time to time if this will take a while. */
+        public abstract Object run() throws Exception;
+
+        /** Called on the Swing Event Thread with the result of run(), if it finished normally and wasn't cancelled. */
+        public void done(Object result) { }
+
+        /** Called on the Swing Event Thread if run() threw an exception.  By default the exception is handled
+            with Synth.handleException(...). */
+        public void failed(Throwable ex) { Synth.handleException(ex); }
+
+        /** Called on the Swing Event Thread if the Task was cancelled. */
+        public void cancelled() { }
+
+        /** Asks the Task to stop.  run() should notice this by checking isCancelled(). */
+        public void cancel() { cancelled = true; }
+
+        /** Returns true if the Task has been asked to stop. */
+        public boolean isCancelled() { return cancelled; }
+
+        /** Returns true if the Task has finished, and its done(...), failed(...), or cancelled() method has been called. */
+        public boolean isFinished() { return finished; }
+
+        /** Sets a short message describing the Task's progress, which is displayed by runAndWait(...).
+            This may be called from run(). */
+        public void setProgress(String progress) { this.progress = progress; }
+        }
+
+    /** Runs the Task on a background thread and returns immediately.  The Task's done(...), failed(...),
+        or cancelled() method will later be called on the Swing Event Thread. */
+    public static void submit(final Task task)
+        {
+        executor.execute(new Runnable()
+            {
+            public void run()
+                {
+                Object result = null;
+                Throwable exception = null;
+                try
+                    {
+                    if (!task.isCancelled())
+                        result = task.run();
+                    }
+                catch (Throwable ex)
+                    {
+                    exception = ex;
+                    }
+                final Object _result = result;
+                final Throwable _exception = exception;
+                SwingUtilities.invokeLater(new Runnable()
+                    {
+                    public void run()
+                        {
+                        try
+                            {
+                            if (task.isCancelled()) task.cancelled();
+                            else if (_exception != null) task.failed(_exception);
+                            else task.done(_result);
+                            }
+                        finally
+                            {
+                            task.finished = true;
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+    /** Runs the Task on a background thread and waits for it to finish, then returns the result of its
+        run() method, or null if it was cancelled or failed (its cancelled() or failed(...) method will
+        have been called).  If called on the Swing Event Thread, Swing events continue to be handled while
+        we wait, and if the Task takes longer than PROGRESS_DELAY, a modal dialog with the given TITLE and
+        MESSAGE, and a Cancel button, is displayed until it is done.  If called on any other thread, the
+        Task is simply run on that thread.  If we're already waiting on a Task for this Synth, the new Task
+        isn't run at all: it is cancelled, and null is returned. */
+    public static Object runAndWait(final Synth synth, final String title, final String message, final Task task)
+        {
+        if (!SwingUtilities.isEventDispatchThread())
+            {
+            Object result = null;
+            try
+                {
+                result = task.run();
+                if (task.isCancelled()) { task.cancelled(); result = null; }
+                else task.done(result);
+                }
+            catch (Throwable ex)
+                {
+                task.failed(ex);
+                result = null;
+                }
+            task.finished = true;
+            return result;
+            }
+
+        if (synth.isRunningTask())
+            {
+            System.err.println("Warning (CodecExecutor): " + "Already waiting on a task for " + synth.getSynthNameLocal());
+            task.cancel();
+            try { task.cancelled(); }
+            finally { task.finished = true; }
+            return null;
+            }
+
+        final Object[] result = new Object[1];
+        final SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+        final JDialog[] dialog = new JDialog[1];
+        final javax.swing.Timer[] timer = new javax.swing.Timer[1];
+
+        submit(new Task()
+            {
+            public Object run() throws Exception { return task.run(); }
+            public void done(Object r) { result[0] = r; try { task.done(r); } finally { finish(); } }
+            public void failed(Throwable ex) { try { task.failed(ex); } finally { finish(); } }
+            public void cancelled() { try { task.cancelled(); } finally { finish(); } }
+            public boolean isCancelled() { return task.isCancelled(); }
+            void finish()
+                {
+                task.finished = true;
+                timer[0].stop();
+                if (dialog[0] != null) dialog[0].dispose();
+                loop.exit();
+                }
+            });
+
+        // Put up the progress dialog if we're taking a while
+        timer[0] = new javax.swing.Timer(PROGRESS_DELAY, new ActionListener()
+            {
+            public void actionPerformed(ActionEvent e)
+                {
+                if (task.isFinished()) return;
+                final JLabel progress = new JLabel(message);
+                JProgressBar bar = new JProgressBar();
+                bar.setIndeterminate(true);
+                final JButton cancel = new JButton("Cancel");
+                
+                // The dialog stays up, saying we're cancelling, until the task has actually stopped and finish() 
+                // disposes of it.  So we don't use JOptionPane.createDialog(...), whose dialog closes as soon as 
+                // a button is pressed.
+                final Runnable doCancel = new Runnable()
+                    {
+                    public void run()
+                        {
+                        task.cancel();
+                        cancel.setEnabled(false);
+                        progress.setText("Cancelling...");
+                        }
+                    };
+                cancel.addActionListener(new ActionListener()
+                    {
+                    public void actionPerformed(ActionEvent e) { doCancel.run(); }
+                    });
+                JOptionPane pane = new JOptionPane(new Object[] { progress, bar }, JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.DEFAULT_OPTION, null, new Object[] { cancel });
+                pane.addPropertyChangeListener(JOptionPane.VALUE_PROPERTY, new PropertyChangeListener()
+                    {
+                    public void propertyChange(PropertyChangeEvent evt)
+                        {
+                        // Escape sets the value
+                        if (evt.getNewValue() != null && evt.getNewValue() != JOptionPane.UNINITIALIZED_VALUE)
+                            doCancel.run();
+                        }
+                    });
+                dialog[0] = new JDialog(SwingUtilities.getWindowAncestor(synth), title, Dialog.ModalityType.APPLICATION_MODAL);
+                dialog[0].setContentPane(pane);
+                dialog[0].setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+                dialog[0].addWindowListener(new WindowAdapter()
+                    {
+                    public void windowClosing(WindowEvent e) { doCancel.run(); }
+                    });
+                dialog[0].setResizable(false);
+                dialog[0].pack();
+                dialog[0].setLocationRelativeTo(synth);
+                
+                // show the task's progress messages
+                javax.swing.Timer update = new javax.swing.Timer(PROGRESS_DELAY, new ActionListener()
+                    {
+                    public void actionPerformed(ActionEvent e)
+                        {
+                        if (task.progress != null && !task.isCancelled())
+                            progress.setText(task.progress);
+                        }
+                    });
+                update.start();
+                dialog[0].setVisible(true);           // blocks until disposed, but keeps handling events
+                update.stop();
+                }
+            });
+        timer[0].setRepeats(false);
+        timer[0].start();
+
+        synth.taskStarted(task);
+        synth.disableMenuBar();
+        try
+            {
+            if (!task.isFinished())
+                loop.enter();           // blocks until loop.exit(), but keeps handling events
+            }
+        finally
+            {
+            synth.enableMenuBar();
+            synth.taskFinished();
+            }
+        return result[0];
+        }
+    }
@@ -0,0 +1,120 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import javax.sound.midi.*;
+import java.util.*;
+
+/****
+      Routes incoming MIDI from controllers (the Key and Key 2 devices) on a dedicated high-priority
+      thread rather than on the Swing Event Thread.  When a Synth's key receiver gets a message, it
+      hands it to the router, which calls Synth.routeFromController(...) on the router thread.
+      There, messages which are simply passed through to the synth (such as notes) are rechanneled and
+      sent right away, so they don't wait behind repaints, patch loads, and dialogs, nor (by way of
+      MidiScheduler.scheduleUrgent(...)) behind parameter changes and dumps waiting to go out.  Everything else,
+      such as CCs which are intercepted to change the Model, is passed on to the Swing Event Thread as
+      before.
+
+      <p>There is a single router shared by all Synths.
+
+      @author Sean Luke
+*/
+
+public class ControllerRouter
+    {
+    /** The maximum number of messages waiting to be routed.  Beyond this, the calling thread
+        blocks until there is room, so as not to grow the queue without bound.  We don't route
+        on the calling thread instead, as that would jump ahead of the messages already waiting
+        (a Note Off might be sent before its Note On). */
+    public static final int MAX_QUEUE_SIZE = 4096;
+
+    static class Entry
+        {
+        Synth synth;
+        MidiMessage message;
+        long timeStamp;
+        boolean key2;
+        long received;                  // System.nanoTime() when the message arrived
+        }
+
+    static ControllerRouter router = null;
+
+    /** Returns the router, building it if necessary. */
+    public static synchronized ControllerRouter getRouter()
+        {
+        if (router == null) router = new ControllerRouter();
+        return router;
+        }
+
+    ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+    Thread thread;
+
+    ControllerRouter()
+        {
+        thread = new Thread(new Runnable()
+            {
+            public void run() { drain(); }
+            });
+        thread.setName("Edisyn Controller Router");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        }
+
+    /** Routes a message from the given Synth's Key (or if KEY2, Key 2) device.  TIMESTAMP is the
+        timestamp provided by the device. */
+    public void route(Synth synth, MidiMessage message, long timeStamp, boolean key2)
+        {
+        Entry entry = new Entry();
+        entry.synth = synth;
+        entry.message = message;
+        entry.timeStamp = timeStamp;
+        entry.key2 = key2;
+        entry.received = System.nanoTime();
+
+        synchronized(this)
+            {
+            while(queue.size() >= MAX_QUEUE_SIZE)
+                {
+                try { wait(); }
+                catch (InterruptedException ex) { return; }         // drop it
+                }
+            queue.addLast(entry);
+            notifyAll();
+            }
+        }
+
+    void route(Entry entry)
+        {
+        try
+            {
+            entry.synth.routeFromController(entry.message, entry.timeStamp, entry.key2, entry.received);
+            }
+        catch (Exception ex)
+            {
+            Synth.handleException(ex);
+            }
+        }
+
+    void drain()
+        {
+        while(true)
+            {
+            Entry entry = null;
+            synchronized(this)
+                {
+                while(queue.isEmpty())
+                    {
+                    try { wait(); }
+                    catch (InterruptedException ex) { return; }
+                    }
+                entry = queue.removeFirst();
+                notifyAll();            // there's room now
+                }
+            route(entry);
+            }
+        }
+    }
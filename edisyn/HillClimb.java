@@ -15,6 +15,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.*;
 
 /***
 
@@ -243,7 +244,7 @@ public class HillClimb extends SynthPanel
                     // and then restore the model.
                     Model backup = synth.model;
                     synth.model = currentModels[_i];
-                    synth.sendAllParameters();
+                    synth.sendChangedParameters();
                     synth.doSendTestNote();
                     synth.model = backup;
                     temporaryPlay = _i;
@@ -363,13 +364,9 @@ public class HillClimb extends SynthPanel
             {
             public void actionPerformed(ActionEvent e)
                 {
-                Model backup = synth.model;
-                synth.model = currentModels[_i];
                 synth.doSaveAs("" + stack.size() + "." + 
                     (_i < NUM_CANDIDATES ? (_i + 1) : ("A" + (_i - NUM_CANDIDATES + 1))) +
-                    "." + synth.getPatchName(synth.getModel()) + ".syx");
-                synth.model = backup;
-                synth.updateTitle();
+                    "." + synth.getPatchName(currentModels[_i]) + ".syx", currentModels[_i]);
                 }
             });
         if (_i == NUM_CANDIDATES + ARCHIVE_SIZE)
@@ -380,14 +377,9 @@ public class HillClimb extends SynthPanel
             {
             public void actionPerformed(ActionEvent e)
                 {
-                Model backup = synth.model;
-                synth.model = currentModels[_i];
-                synth.setShowingLimitedBankSysex(true);
-                synth.doOpen(false);
-                synth.setShowingLimitedBankSysex(false);
-                currentModels[_i] = synth.model;
-                synth.model = backup;
-                synth.updateTitle();
+                // We don't swap currentModels[_i] in as the synth's model while loading, 
+                // because the user can keep editing the synth while the file is read.
+                synth.doOpenDetached(currentModels[_i]);
                 }
             });
         if (_i == NUM_CANDIDATES + ARCHIVE_SIZE)
@@ -987,7 +979,7 @@ public class HillClimb extends SynthPanel
                     plays[temporaryPlay].getButton().setText("<HTML><B>" + titleForButton(temporaryPlay) + "</b></HTML>");
                     backup = synth.model;
                     synth.model = currentModels[temporaryPlay];
-                    synth.sendAllParameters();
+                    synth.sendChangedParameters();
                     temporaryPlay = -1;
                     }
                 else
@@ -1003,7 +995,7 @@ public class HillClimb extends SynthPanel
                     // and then restore the model.
                     backup = synth.model;
                     synth.model = currentModels[currentPlay];
-                    synth.sendAllParameters();
+                    synth.sendChangedParameters();
                     }
                 }
             }
@@ -1079,7 +1071,7 @@ public class HillClimb extends SynthPanel
                 synth.doRepeatCurrentPatch();
                 }
             // restore patch
-            synth.sendAllParameters();
+            synth.sendChangedParameters();
             }
         startedUp = false;
         }
@@ -1277,7 +1269,7 @@ public class HillClimb extends SynthPanel
         stack.clear();
         this.operation = operation;
         Random random = synth.random;
-        String[] keys = synth.getMutationKeys();
+        final String[] keys = synth.getMutationKeys();
         
         switch(operation)
             {
@@ -1285,18 +1277,21 @@ public class HillClimb extends SynthPanel
                 // Fall Thru
             case OPERATION_SEED_FROM_MORPH:
                 {
-                Model newSeed = seed.copy();                
-                double weight = blank.getModel().get("hillclimbrate", 0) / 100.0;
-                weight = weight * weight * weight;  // make more sensitive at low end
-                int numMutations = 1;
+                final Model newSeed = seed.copy();                
+                double w = blank.getModel().get("hillclimbrate", 0) / 100.0;
+                final double weight = w * w * w;  // make more sensitive at low end
                 
-                for(int i = 0; i < NUM_CANDIDATES; i++)
+                generate(random, 0, NUM_CANDIDATES, new Candidate()
                     {
-                    currentModels[i] = newSeed.copy();
-                    for(int j = 0; j < numMutations; j++)
-                        currentModels[i] = currentModels[i].mutate(random, keys, weight);
-                    if (i % 4 == 3) numMutations++;
-                    }
+                    public Model build(Random random, int index)
+                        {
+                        int numMutations = index / 4 + 1;
+                        Model model = newSeed.copy();
+                        for(int j = 0; j < numMutations; j++)
+                            model = model.mutate(random, keys, weight);
+                        return model;
+                        }
+                    });
 
                 for(int i = 0; i < selected.length; i++)
                     selected[i].setSelected(true);
@@ -1304,67 +1299,78 @@ public class HillClimb extends SynthPanel
             break;
             case OPERATION_SEED_FROM_NUDGE:
                 {
-                double weight = blank.getModel().get("constrictrate", 0) / 100.0;
+                final double weight = blank.getModel().get("constrictrate", 0) / 100.0;
                 for(int i = 0; i < 4; i++)
                     currentModels[i] = (Model)(synth.nudge[i].clone());
-                int m = 4;
-                for(int i = 0; i < 4; i++)
-                    for(int j = 0; j < 4; j++)
+                generate(random, 4, 16, new Candidate()
+                    {
+                    public Model build(Random random, int index)
                         {
-                        if (j == i) continue;
-                        currentModels[m++] = currentModels[i].copy().crossover(random, currentModels[j], keys, weight);
+                        // the parents are the (index - 4)th pair i != j, in order
+                        int[] pair = crossoverPair(index - 4, 4);
+                        return currentModels[pair[0]].copy().crossover(random, currentModels[pair[1]], keys, weight);
                         }
+                    });
                 // fill the next 16
-                for(int i = 16; i < 32; i++)
+                generate(random, 16, 32, new Candidate()
                     {
-                    // pick two parents, try to make them different from one another
-                    int p1 = random.nextInt(16);
-                    int p2 = 0;
-                    for(int j = 0; j < 100; j++)
+                    public Model build(Random random, int index)
                         {
-                        p2 = random.nextInt(16);
-                        if (p2 != p1) break;
+                        // pick two parents, try to make them different from one another
+                        int p1 = random.nextInt(16);
+                        int p2 = 0;
+                        for(int j = 0; j < 100; j++)
+                            {
+                            p2 = random.nextInt(16);
+                            if (p2 != p1) break;
+                            }
+                        return currentModels[p1].copy().crossover(random, currentModels[p1], keys, weight);
                         }
-                    currentModels[i] = currentModels[p1].copy().crossover(random, currentModels[p1], keys, weight);
-                    }
+                    });
                 }
             break;
             case OPERATION_SEED_FROM_FOUR:
                 {
-                double weight = blank.getModel().get("constrictrate", 0) / 100.0;
-                int m = 4;
-                for(int i = 0; i < 4; i++)
-                    for(int j = 0; j < 4; j++)
+                final double weight = blank.getModel().get("constrictrate", 0) / 100.0;
+                generate(random, 4, 16, new Candidate()
+                    {
+                    public Model build(Random random, int index)
                         {
-                        if (j == i) continue;
-                        currentModels[m++] = currentModels[i].copy().crossover(random, currentModels[j], keys, weight);
+                        // the parents are the (index - 4)th pair i != j, in order
+                        int[] pair = crossoverPair(index - 4, 4);
+                        return currentModels[pair[0]].copy().crossover(random, currentModels[pair[1]], keys, weight);
                         }
+                    });
                 // fill the next 16
-                for(int i = 16; i < 32; i++)
+                generate(random, 16, 32, new Candidate()
                     {
-                    // pick two parents, try to make them different from one another
-                    int p1 = random.nextInt(16);
-                    int p2 = 0;
-                    for(int j = 0; j < 100; j++)
+                    public Model build(Random random, int index)
                         {
-                        p2 = random.nextInt(16);
-                        if (p2 != p1) break;
+                        // pick two parents, try to make them different from one another
+                        int p1 = random.nextInt(16);
+                        int p2 = 0;
+                        for(int j = 0; j < 100; j++)
+                            {
+                            p2 = random.nextInt(16);
+                            if (p2 != p1) break;
+                            }
+                        return currentModels[p1].copy().crossover(random, currentModels[p1], keys, weight);
                         }
-                    currentModels[i] = currentModels[p1].copy().crossover(random, currentModels[p1], keys, weight);
-                    }
+                    });
                 }
             break;
             case OPERATION_SEED_FROM_SIX:
                 {
-                double weight = blank.getModel().get("constrictrate", 0) / 100.0;
-                int m = 6;
-                for(int i = 0; i < 6; i++)
-                    for(int j = 0; j < 6; j++)
+                final double weight = blank.getModel().get("constrictrate", 0) / 100.0;
+                generate(random, 6, 32, new Candidate()
+                    {
+                    public Model build(Random random, int index)
                         {
-                        if (j == i) continue;
-                        if (m >= 32) break;
-                        currentModels[m++] = currentModels[i].copy().crossover(random, currentModels[j], keys, weight);
+                        // the parents are the (index - 6)th pair i != j, in order
+                        int[] pair = crossoverPair(index - 6, 6);
+                        return currentModels[pair[0]].copy().crossover(random, currentModels[pair[1]], keys, weight);
                         }
+                    });
                 }
             break;
             }
@@ -1377,6 +1383,63 @@ public class HillClimb extends SynthPanel
         repaint();
         }
 
+    /** Builds a single candidate for generate(...), using the given Random. */
+    interface Candidate
+        {
+        public Model build(Random random, int index);
+        }
+
+    /** Builds candidates START through END-1 in parallel on the common ForkJoinPool and stores them in
+        currentModels.  Each candidate gets its own Random, seeded in order from a SplittableRandom which
+        is itself seeded from the given RANDOM, so the results are the same regardless of how the work is
+        scheduled.  currentModels is only modified once all the candidates have been built.  */
+    void generate(Random random, int start, int end, final Candidate candidate)
+        {
+        SplittableRandom seeds = new SplittableRandom(random.nextLong());
+        ArrayList<Callable<Model>> tasks = new ArrayList<Callable<Model>>();
+        for(int i = start; i < end; i++)
+            {
+            final int index = i;
+            final Random rand = new Random(seeds.nextLong());
+            tasks.add(new Callable<Model>()
+                {
+                public Model call() { return candidate.build(rand, index); }
+                });
+            }
+
+        Model[] results = new Model[end - start];
+        java.util.List<Future<Model>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+        for(int i = 0; i < results.length; i++)
+            {
+            try
+                {
+                results[i] = futures.get(i).get();
+                }
+            catch (InterruptedException ex)
+                {
+                Thread.currentThread().interrupt();
+                return;
+                }
+            catch (ExecutionException ex)
+                {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                else if (cause instanceof Error) throw (Error)cause;
+                else throw new RuntimeException(cause);
+                }
+            }
+        System.arraycopy(results, 0, currentModels, start, results.length);
+        }
+
+    /** Returns the Kth pair {i, j}, i != j, of N parents, in the order i = 0...N-1, then j = 0...N-1. */
+    static int[] crossoverPair(int k, int n)
+        {
+        int i = k / (n - 1);
+        int j = k % (n - 1);
+        if (j >= i) j++;
+        return new int[] { i, j };
+        }
+
     void shuffle(Random random, Model[] array, int start, int len)
         {
         for (int i = len - 1; i > 0; i--)
@@ -1410,6 +1473,13 @@ public class HillClimb extends SynthPanel
 
         }
 
+    /** Decodes all the candidates' latent vectors in a single pass through the network. */
+    void decodeNN(double[][] vectors)
+        {
+        Model[] models = ((ProvidesNN)synth).decode(vectors);
+        System.arraycopy(models, 0, currentModels, 0, models.length);
+        }
+
     void produceNN(Random random, String[] keys, double weight, Model a)
         {
         //System.out.println(weight);
@@ -1417,10 +1487,12 @@ public class HillClimb extends SynthPanel
             {
             a.latentVector = ((ProvidesNN)synth).encode(a);
             }
+        double[][] vectors = new double[NUM_CANDIDATES][];
         for(int i = 0; i < NUM_CANDIDATES; i++)
             {
-            currentModels[i] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
+            vectors[i] = shiftVectorGaussian(a.latentVector, random, weight*5);
             }
+        decodeNN(vectors);
         shuffle(random, currentModels, 0, NUM_CANDIDATES);
         }
 
@@ -1459,21 +1531,23 @@ public class HillClimb extends SynthPanel
             b.latentVector = ((ProvidesNN)synth).encode(b);
             }
                 
+        double[][] vectors = new double[NUM_CANDIDATES][];
         for(int j = 0; j < numStages; j++)
             {
             for(int i = 0; i < STAGE_SIZE/2; i++)
                 {
-                currentModels[j*STAGE_SIZE + i] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
+                vectors[j*STAGE_SIZE + i] = shiftVectorGaussian(a.latentVector, random, weight*5);
                 }
             for(int i = STAGE_SIZE/2; i < 3*STAGE_SIZE/4; i++)
                 {
-                currentModels[j*STAGE_SIZE + i] = ((ProvidesNN)synth).decode(shiftVectorGaussian(b.latentVector, random, weight*5));
+                vectors[j*STAGE_SIZE + i] = shiftVectorGaussian(b.latentVector, random, weight*5);
                 }
             for(int i = 3*STAGE_SIZE/4; i < STAGE_SIZE; i++)
                 {
-                currentModels[j*STAGE_SIZE + i] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5));
+                vectors[j*STAGE_SIZE + i] = shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5);
                 }
             }
+        decodeNN(vectors);
         shuffle(random, currentModels, 0, STAGE_SIZE);
         shuffle(random, currentModels, STAGE_SIZE, STAGE_SIZE);
         
@@ -1497,25 +1571,27 @@ public class HillClimb extends SynthPanel
             c.latentVector = ((ProvidesNN)synth).encode(c);
             }
                 
+        double[][] vectors = new double[NUM_CANDIDATES][];
         for(int j = 0; j < numStages; j++)
             {
-            currentModels[j*STAGE_SIZE + 0] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 1] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 2] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 3] = ((ProvidesNN)synth).decode(shiftVectorGaussian(a.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 4] = ((ProvidesNN)synth).decode(shiftVectorGaussian(b.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 5] = ((ProvidesNN)synth).decode(shiftVectorGaussian(b.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 6] = ((ProvidesNN)synth).decode(shiftVectorGaussian(b.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 7] = ((ProvidesNN)synth).decode(shiftVectorGaussian(c.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 8] = ((ProvidesNN)synth).decode(shiftVectorGaussian(c.latentVector, random, weight*5));
-            currentModels[j*STAGE_SIZE + 9] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 10] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 11] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, c.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 12] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, c.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 13] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(b.latentVector, c.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 14] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(b.latentVector, c.latentVector), random, weight*5));
-            currentModels[j*STAGE_SIZE + 15] = ((ProvidesNN)synth).decode(shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector, c.latentVector), random, weight*5));
-            }
+            vectors[j*STAGE_SIZE + 0] = shiftVectorGaussian(a.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 1] = shiftVectorGaussian(a.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 2] = shiftVectorGaussian(a.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 3] = shiftVectorGaussian(a.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 4] = shiftVectorGaussian(b.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 5] = shiftVectorGaussian(b.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 6] = shiftVectorGaussian(b.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 7] = shiftVectorGaussian(c.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 8] = shiftVectorGaussian(c.latentVector, random, weight*5);
+            vectors[j*STAGE_SIZE + 9] = shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 10] = shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 11] = shiftVectorGaussian(meanVectors(a.latentVector, c.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 12] = shiftVectorGaussian(meanVectors(a.latentVector, c.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 13] = shiftVectorGaussian(meanVectors(b.latentVector, c.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 14] = shiftVectorGaussian(meanVectors(b.latentVector, c.latentVector), random, weight*5);
+            vectors[j*STAGE_SIZE + 15] = shiftVectorGaussian(meanVectors(a.latentVector, b.latentVector, c.latentVector), random, weight*5);
+            }
+        decodeNN(vectors);
         shuffle(random, currentModels, 0, STAGE_SIZE);
         shuffle(random, currentModels, STAGE_SIZE, STAGE_SIZE);
         
@@ -1524,155 +1600,164 @@ public class HillClimb extends SynthPanel
 
     public static final double MUTATION_WEIGHT = 1.0;
     
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model c, Model oldA)
+    void produce(Random random, final String[] keys, final double recombination, final double weight, final Model a, final Model b, final Model c, final Model oldA)
         {
-        int numStages = NUM_CANDIDATES / STAGE_SIZE;
-        
-        for(int i = 0; i < numStages; i++)
+        generate(random, 0, NUM_CANDIDATES, new Candidate()
             {
-            produce(random, keys, recombination, weight, a, b, c, oldA, i * STAGE_SIZE);
-            }
+            public Model build(Random random, int index)
+                {
+                return produce(random, keys, recombination, weight, a, b, c, oldA, index);
+                }
+            });
 
         shuffle(random, currentModels, 0, STAGE_SIZE);
         shuffle(random, currentModels, STAGE_SIZE, STAGE_SIZE);
         }
         
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model c, Model oldA, int stage)
+    Model produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model c, Model oldA, int index)
         {
-        double mutationWeight = (stage/STAGE_SIZE + 1) * MUTATION_WEIGHT * weight;
-        
-        // A + B
-        currentModels[stage + 0] = a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight);
-        // A + C
-        currentModels[stage + 1] = a.copy().recombine(random, c, keys, recombination).mutate(random, keys, mutationWeight);
-        // A + (B + C)
-        currentModels[stage + 2] = a.copy().recombine(random, b.copy().recombine(random, c, keys, recombination), keys, recombination).mutate(random, keys, mutationWeight);
-        // A - B
-        currentModels[stage + 3] = a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        // A - C
-        currentModels[stage + 4] = a.copy().opposite(random, c, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        // A
-        currentModels[stage + 5] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        // B
-        currentModels[stage + 6] = b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        // C
-        currentModels[stage + 7] = c.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-
-        if ((stage + 8) < currentModels.length)
-            {
+        int stage = index / STAGE_SIZE;
+        double mutationWeight = (stage + 1) * MUTATION_WEIGHT * weight;
+        
+        switch(index % STAGE_SIZE)
+            {
+            // A + B
+            case 0: return a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight);
+            // A + C
+            case 1: return a.copy().recombine(random, c, keys, recombination).mutate(random, keys, mutationWeight);
+            // A + (B + C)
+            case 2: return a.copy().recombine(random, b.copy().recombine(random, c, keys, recombination), keys, recombination).mutate(random, keys, mutationWeight);
+            // A - B
+            case 3: return a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // A - C
+            case 4: return a.copy().opposite(random, c, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // A
+            case 5: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // B
+            case 6: return b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // C
+            case 7: return c.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+
             // A - Z
-            currentModels[stage + 8] = a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            case 8: return a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
             // B - A
-            currentModels[stage + 9] = b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 9: return b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
             // C - A
-            currentModels[stage + 10] = c.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 10: return c.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
             // B - C
-            currentModels[stage + 11] = b.copy().opposite(random, c, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 11: return b.copy().opposite(random, c, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
             // C - B
-            currentModels[stage + 12] = c.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 12: return c.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
             // B - Z
-            currentModels[stage + 13] = b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            case 13: return b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
             // C - Z
-            currentModels[stage + 14] = c.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            case 14: return c.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
             // B + C
-            currentModels[stage + 15] = b.copy().recombine(random, c, keys, recombination).mutate(random, keys, mutationWeight);
+            case 15: return b.copy().recombine(random, c, keys, recombination).mutate(random, keys, mutationWeight);
+            default: return null;
             }
         }
         
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model oldA)
+    void produce(Random random, final String[] keys, final double recombination, final double weight, final Model a, final Model b, final Model oldA)
         {
-        int numStages = NUM_CANDIDATES / STAGE_SIZE;
-        
-        for(int i = 0; i < numStages; i++)
+        generate(random, 0, NUM_CANDIDATES, new Candidate()
             {
-            produce(random, keys, recombination, weight, a, b, oldA, i * STAGE_SIZE);
-            }
-        
+            public Model build(Random random, int index)
+                {
+                return produce(random, keys, recombination, weight, a, b, oldA, index);
+                }
+            });
+
         shuffle(random, currentModels, 0, STAGE_SIZE);
         shuffle(random, currentModels, STAGE_SIZE, STAGE_SIZE);
         }
         
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model oldA, int stage)
+    Model produce(Random random, String[] keys, double recombination, double weight, Model a, Model b, Model oldA, int index)
         {
-        double mutationWeight = (stage/STAGE_SIZE + 1) * MUTATION_WEIGHT * weight;
+        int stage = index / STAGE_SIZE;
+        double mutationWeight = (stage + 1) * MUTATION_WEIGHT * weight;
         
-        // A + B
-        currentModels[stage + 0] = a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight);
-        currentModels[stage + 1] = a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 2] = a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+        switch(index % STAGE_SIZE)
+            {
+            // A + B
+            case 0: return a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight);
+            case 1: return a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 2: return a.copy().recombine(random, b, keys, recombination).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
         
-        // A - B
-        currentModels[stage + 3] = a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 4] = a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // A - B
+            case 3: return a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 4: return a.copy().opposite(random, b, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
         
-        // B - A
-        currentModels[stage + 5] = b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 6] = b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            // B - A
+            case 5: return b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 6: return b.copy().opposite(random, a, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
         
-        // A - Z
-        currentModels[stage + 7] = a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            // A - Z
+            case 7: return a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
 
-        if ((stage + 8) < currentModels.length)
-            {
-            currentModels[stage + 8] = a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        
+            case 8: return a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+    
             // B - Z
-            currentModels[stage + 9] = b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
-            currentModels[stage + 10] = b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 9: return b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            case 10: return b.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
 
             // (A - Z) + (B - Z)
-            currentModels[stage + 11] = a.copy().opposite(random, oldA, keys, recombination, false).recombine(random, 
+            case 11: return a.copy().opposite(random, oldA, keys, recombination, false).recombine(random, 
                 b.copy().opposite(random, oldA, keys, recombination, false), keys, recombination).mutate(random, keys, mutationWeight);
 
             // A
-            currentModels[stage + 12] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 13] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        
+            case 12: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 13: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+    
             // B
-            currentModels[stage + 14] = b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 15] = b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 14: return b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 15: return b.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            default: return null;
             }
         }
                 
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model oldA)
+    void produce(Random random, final String[] keys, final double recombination, final double weight, final Model a, final Model oldA)
         {
-        int numStages = NUM_CANDIDATES / STAGE_SIZE;
-        
-        for(int i = 0; i < numStages; i++)
+        generate(random, 0, NUM_CANDIDATES, new Candidate()
             {
-            produce(random, keys, recombination, weight, a, oldA, i * STAGE_SIZE);
-            }
+            public Model build(Random random, int index)
+                {
+                return produce(random, keys, recombination, weight, a, oldA, index);
+                }
+            });
 
         shuffle(random, currentModels, 0, STAGE_SIZE);
         shuffle(random, currentModels, STAGE_SIZE, STAGE_SIZE);
         }
         
-    void produce(Random random, String[] keys, double recombination, double weight, Model a, Model oldA, int stage)
+    Model produce(Random random, String[] keys, double recombination, double weight, Model a, Model oldA, int index)
         {
-        double mutationWeight = (stage/STAGE_SIZE + 1) * MUTATION_WEIGHT * weight;
-        
-        // A
-        currentModels[stage + 0] = a.copy().mutate(random, keys, mutationWeight);
-        currentModels[stage + 1] = a.copy().mutate(random, keys, mutationWeight);
-        currentModels[stage + 2] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 3] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 4] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 5] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 6] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        currentModels[stage + 7] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-        
-        if ((stage + 8) < currentModels.length)
-            {
-            currentModels[stage + 8] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 9] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 10] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 11] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 12] = a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+        int stage = index / STAGE_SIZE;
+        double mutationWeight = (stage + 1) * MUTATION_WEIGHT * weight;
         
+        switch(index % STAGE_SIZE)
+            {
+            // A
+            case 0: return a.copy().mutate(random, keys, mutationWeight);
+            case 1: return a.copy().mutate(random, keys, mutationWeight);
+            case 2: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 3: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 4: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 5: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 6: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 7: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+        
+            case 8: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 9: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 10: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 11: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 12: return a.copy().mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+    
             // A - Z
-            currentModels[stage + 13] = a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
-            currentModels[stage + 14] = a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
-            currentModels[stage + 15] = a.copy().opposite(random, oldA, keys, recombination, false).opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 13: return a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight);
+            case 14: return a.copy().opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            case 15: return a.copy().opposite(random, oldA, keys, recombination, false).opposite(random, oldA, keys, recombination, false).mutate(random, keys, mutationWeight).mutate(random, keys, mutationWeight);
+            default: return null;
             }
         }
     
@@ -1681,10 +1766,10 @@ public class HillClimb extends SynthPanel
         {
         int poolSize= (bigger.isSelected() ? NUM_CANDIDATES : STAGE_SIZE);  // that is, 32 vs 16
         Random random = synth.random;
-        String[] keys = synth.getMutationKeys();
-        double weight = blank.getModel().get("constrictrate", 0) / 100.0;
+        final String[] keys = synth.getMutationKeys();
+        double w = blank.getModel().get("constrictrate", 0) / 100.0;
                 
-        weight = weight * weight * weight;  // make more sensitive at low end
+        final double weight = w * w * w;  // make more sensitive at low end
 
         // Identify the individuals to replace and the ones to keep
         int numToReplace = 0;
@@ -1692,8 +1777,8 @@ public class HillClimb extends SynthPanel
             {
             if (!selected[i].isSelected()) numToReplace++;
             }
-        int[] replace = new int[numToReplace];
-        int[] keep = new int[poolSize - numToReplace];
+        final int[] replace = new int[numToReplace];
+        final int[] keep = new int[poolSize - numToReplace];
 
         if (replace.length == 0 || keep.length == 0) return;
 
@@ -1710,36 +1795,37 @@ public class HillClimb extends SynthPanel
         pushStack(new int[] { -1, -1, -1 }, new Model[] { currentModels[NUM_CANDIDATES - 1], null, null }, getSelectedResults(), currentModels);
         operation = OPERATION_CONSTRICT;
                 
-        // Now replace the individuals
-        for(int i = 0; i < replace.length; i++)
+        // Now build the replacements, bred only from the keepers, and place them at the beginning
+        final Model[] old = (Model[])(currentModels.clone());
+        final boolean recombine = (method.getSelectedIndex() == 1);
+        generate(random, 0, replace.length, new Candidate()
             {
-            // pick two parents, try to make them different from one another
-            int p1 = random.nextInt(keep.length);
-            int p2 = 0;
-            for(int j = 0; j < 100; j++)
-                {
-                p2 = random.nextInt(keep.length);
-                if (p2 != p1) break;
-                }
-                
-            if (method.getSelectedIndex() == 1)
+            public Model build(Random random, int index)
                 {
-                // our recombination works as follows: 50% of the time we'll do crossover with a 1/2 rate.  Otherwise we'll do it with a 3/4 rate.
-                double rate = CONSTRICT_RECOMBINATION_RATE;
-                // recombine
-                if (random.nextBoolean())
-                    rate = 0.5;
-                currentModels[replace[i]] = currentModels[keep[p1]].copy().recombine(random, currentModels[keep[p2]], keys, rate).mutate(random, keys, weight);
+                // pick two parents, try to make them different from one another
+                int p1 = random.nextInt(keep.length);
+                int p2 = 0;
+                for(int j = 0; j < 100; j++)
+                    {
+                    p2 = random.nextInt(keep.length);
+                    if (p2 != p1) break;
+                    }
+                        
+                if (recombine)
+                    {
+                    // our recombination works as follows: 50% of the time we'll do crossover with a 1/2 rate.  Otherwise we'll do it with a 3/4 rate.
+                    double rate = CONSTRICT_RECOMBINATION_RATE;
+                    // recombine
+                    if (random.nextBoolean())
+                        rate = 0.5;
+                    return old[keep[p1]].copy().recombine(random, old[keep[p2]], keys, rate).mutate(random, keys, weight);
+                    }
+                else return old[replace[index]];
                 }
-            }
+            });
                 
-        // Move the new ones to the beginning
-        Model[] old = (Model[])(currentModels.clone());
-        int count = 0;
-        for(int i = 0; i < replace.length; i++)
-            {
-            currentModels[count++] = old[replace[i]];
-            }
+        // The new ones are now at the beginning.  Move the keepers after them
+        int count = replace.length;
         for(int i = 0; i < keep.length; i++)
             {
             currentModels[count++] = old[keep[i]];
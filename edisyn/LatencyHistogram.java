@@ -0,0 +1,103 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+/****
+     A threadsafe histogram of latencies.  Latencies are added in nanoseconds and sorted into
+     buckets by powers of two microseconds: bucket 0 holds latencies under 1 microsecond, bucket 1
+     those under 2 microseconds, bucket 2 those under 4, and so on up to the last bucket, which holds
+     everything else.  Percentiles are thus only approximate: they are the upper bound of the bucket
+     in which the percentile falls.
+
+     @author Sean Luke
+*/
+
+public class LatencyHistogram
+    {
+    /** The number of buckets.  The second-to-last bucket holds latencies under about 1 second. */
+    public static final int NUM_BUCKETS = 22;
+
+    long[] buckets = new long[NUM_BUCKETS];
+    long count = 0;
+    long total = 0;
+    long max = 0;
+
+    /** Adds a latency, in nanoseconds. */
+    public synchronized void add(long nanos)
+        {
+        if (nanos < 0) nanos = 0;
+        long micros = nanos / 1000;
+        int bucket = (micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros));
+        if (bucket >= NUM_BUCKETS) bucket = NUM_BUCKETS - 1;
+        buckets[bucket]++;
+        count++;
+        total += nanos;
+        if (nanos > max) max = nanos;
+        }
+
+    /** Clears the histogram. */
+    public synchronized void reset()
+        {
+        buckets = new long[NUM_BUCKETS];
+        count = 0;
+        total = 0;
+        max = 0;
+        }
+
+    /** Returns the number of latencies added. */
+    public synchronized long getCount() { return count; }
+
+    /** Returns the mean latency, in milliseconds. */
+    public synchronized double getMean() { return count == 0 ? 0.0 : total / (double)count / 1000000.0; }
+
+    /** Returns the maximum latency, in milliseconds. */
+    public synchronized double getMax() { return max / 1000000.0; }
+
+    /** Returns the number of latencies in the given bucket. */
+    public synchronized long getBucketCount(int bucket) { return buckets[bucket]; }
+
+    /** Returns the upper bound of the given bucket, in milliseconds, or infinity for the last bucket. */
+    public static double getBucketLimit(int bucket)
+        {
+        if (bucket >= NUM_BUCKETS - 1) return Double.POSITIVE_INFINITY;
+        return (1L << bucket) / 1000.0;
+        }
+
+    /** Returns the approximate latency, in milliseconds, under which the given fraction (0.0 ... 1.0)
+        of the latencies fall.  This is the upper bound of the bucket in which that fraction is reached,
+        except that it is never more than the maximum latency. */
+    public synchronized double getPercentile(double fraction)
+        {
+        if (count == 0) return 0.0;
+        long target = (long)Math.ceil(fraction * count);
+        if (target < 1) target = 1;
+        long sum = 0;
+        for(int i = 0; i < NUM_BUCKETS; i++)
+            {
+            sum += buckets[i];
+            if (sum >= target)
+                return Math.min(getBucketLimit(i), getMax());
+            }
+        return getMax();
+        }
+
+    /** Returns a table of the histogram, one non-empty bucket per line, preceded by a summary. */
+    public synchronized String toString()
+        {
+        StringBuilder sb = new StringBuilder();
+        sb.append(count + " messages, mean " + String.format("%.3f", getMean()) + " ms, median < " +
+            String.format("%.3f", getPercentile(0.5)) + " ms, 99% < " + String.format("%.3f", getPercentile(0.99)) +
+            " ms, max " + String.format("%.3f", getMax()) + " ms\n");
+        for(int i = 0; i < NUM_BUCKETS; i++)
+            {
+            if (buckets[i] == 0) continue;
+            sb.append(i == NUM_BUCKETS - 1 ? "    >= " + String.format("%.3f", getBucketLimit(i - 1)) + " ms" :
+                "    < " + String.format("%.3f", getBucketLimit(i)) + " ms");
+            sb.append("\t" + buckets[i] + "\n");
+            }
+        return sb.toString();
+        }
+    }
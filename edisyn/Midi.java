@@ -341,6 +341,22 @@ public class Midi
            
         int refcount = 1;
         
+        MidiScheduler scheduler;
+        NRPNTracker nrpnTracker = new NRPNTracker();
+        
+        /** Returns the asynchronous outgoing MIDI scheduler for this tuple, creating it if necessary.
+            Returns null if the tuple has been fully disposed. */
+        public synchronized MidiScheduler getScheduler()
+            {
+            if (refcount < 1) return null;
+            if (scheduler == null) scheduler = new MidiScheduler(nrpnTracker);
+            return scheduler;
+            }
+        
+        /** Returns the NRPN state of the output.  This is new for each tuple, and so
+            starts afresh whenever the output is reconnected. */
+        public NRPNTracker getNRPNTracker() { return nrpnTracker; }
+        
         public Tuple copy(Receiver inReceiver, Receiver keyReceiver, Receiver key2Receiver)
             {
             if (refcount < 1)
@@ -384,6 +400,14 @@ public class Midi
                 key2Receiver = null;
                 in = null;
                 inReceiver = null;
+                
+                synchronized(this)
+                    {
+                    if (scheduler != null)
+                        scheduler.stop();
+                    scheduler = null;
+                    }
+                nrpnTracker.reset();
                 }
             }       
         }
@@ -1192,7 +1216,7 @@ public class Midi
             }
         else if (message instanceof SysexMessage)
             {
-            return "Sysex (" + getManufacturerForSysex(((SysexMessage)message).getData()) + ")";
+            return formatSysex(((SysexMessage)message).getData());
             }
         else // ShortMessage
             {
@@ -1224,14 +1248,164 @@ public class Midi
             }
         }
 
-    static HashMap manufacturers = null;
+    /** Returns a short description of a sysex message, which may or may not begin with F0: its manufacturer,
+        the (hex) header bytes after the manufacturer ID which usually identify the device, model, and command,
+        and its length. */
+    public static String formatSysex(byte[] data)
+        {
+        long header = classifySysex(data);
+        String s = "Sysex (" + getManufacturerForSysex(header);
+        int count = getSysexHeaderBytes(header);
+        if (count > 0)
+            {
+            s += ";";
+            for(int i = 0; i < count; i++)
+                s += " " + String.format("%02X", getSysexHeaderByte(header, i));
+            }
+        return s + ")" + (data == null ? "" : (" " + data.length + " bytes"));
+        }
+
+    //// SYSEX HEADERS
+    ////
+    //// Sysex messages start with F0, then a manufacturer ID of one byte, or of three bytes starting 
+    //// with 00, then (usually) a few bytes saying which device, model, and command the message is 
+    //// for.  classifySysex(...) pulls all of these out at once and packs them into a long, so that
+    //// code which needs to look at them several times (recognizers, format(...), the open dialogs) 
+    //// doesn't have to keep reparsing them, and so that nothing needs to be allocated.  The manufacturer 
+    //// ID is turned into a single int key, and the key into a dense index, so that tables by 
+    //// manufacturer (names, recognizers) can be plain arrays rather than hash tables.
+    
+    /** Returned by classifySysex(...) for messages too short or malformed to have a manufacturer ID. */
+    public static final long NO_SYSEX_HEADER = -1L;
+    
+    /** Returned by getSysexManufacturer(...) and getManufacturerKey(...) when there is no manufacturer ID. */
+    public static final int NO_MANUFACTURER = -1;
     
-    static HashMap getManufacturers()
+    /** The number of distinct manufacturer indices.  See getManufacturerIndex(...). */
+    public static final int NUM_MANUFACTURER_INDICES = 128 + 128 * 128;
+    
+    /** Classifies the header of a sysex message, which may or may not begin with F0.  Returns
+        NO_SYSEX_HEADER if the message is too short to have a manufacturer ID, or if its manufacturer 
+        ID isn't valid.  Otherwise returns a long from which getSysexManufacturer(...), getSysexHeaderLength(...),
+        getSysexDevice(...), getSysexModel(...), and getSysexCommand(...) can extract information. */
+    public static long classifySysex(byte[] data)
+        {
+        if (data == null) return NO_SYSEX_HEADER;
+        int pos = 0;
+        if (pos < data.length && data[pos] == (byte)0xF0)
+            pos++;
+        if (pos >= data.length || data[pos] < 0)
+            return NO_SYSEX_HEADER;
+            
+        int key;
+        if (data[pos] != 0x00)
+            {
+            key = data[pos];
+            pos += 1;
+            }
+        else if (pos + 2 < data.length && data[pos + 1] >= 0 && data[pos + 2] >= 0)
+            {
+            key = 0x10000 | (data[pos + 1] << 8) | data[pos + 2];
+            pos += 3;
+            }
+        else return NO_SYSEX_HEADER;
+        
+        // bits 32...48 are the manufacturer key, 27...28 the number of header bytes available (up to 3),
+        // 24...26 the header length, and 0...23 the header bytes (device, model, command)
+        int count = Math.min(3, data.length - pos);
+        long header = (((long)key) << 32) | (count << 27) | (pos << 24);
+        for(int i = 0; i < count; i++)
+            header |= ((data[pos + i] & 0xFF) << (8 * i));
+        return header;
+        }
+        
+    /** Returns the manufacturer key of a sysex header classified by classifySysex(...), or NO_MANUFACTURER.  
+        See getManufacturerKey(...). */
+    public static int getSysexManufacturer(long header)
+        {
+        if (header == NO_SYSEX_HEADER) return NO_MANUFACTURER;
+        return (int)(header >>> 32);
+        }
+        
+    /** Returns the position of the first byte after the manufacturer ID of a sysex header classified by 
+        classifySysex(...), or -1. */
+    public static int getSysexHeaderLength(long header)
+        {
+        if (header == NO_SYSEX_HEADER) return -1;
+        return (int)((header >>> 24) & 7);
+        }
+        
+    /** Returns the number of bytes, up to 3, which the message has after its manufacturer ID, as classified
+        by classifySysex(...), or 0.  Note that the last of these may be the terminating F7. */
+    public static int getSysexHeaderBytes(long header)
+        {
+        if (header == NO_SYSEX_HEADER) return 0;
+        return (int)((header >>> 27) & 3);
+        }
+        
+    // Returns byte number WHICH after the manufacturer ID, or -1 if there is none 
+    static int getSysexHeaderByte(long header, int which)
+        {
+        if (getSysexHeaderBytes(header) <= which) return -1;
+        return (int)((header >>> (8 * which)) & 0xFF);
+        }
+        
+    /** Returns the byte immediately after the manufacturer ID of a sysex header classified by 
+        classifySysex(...), or -1 if there is none.  This is usually the device ID (or for
+        some manufacturers, such as Yamaha and Korg, the device ID combined with the channel
+        or a command), but it varies from manufacturer to manufacturer. */
+    public static int getSysexDevice(long header) { return getSysexHeaderByte(header, 0); }
+
+    /** Returns the second byte after the manufacturer ID of a sysex header classified by 
+        classifySysex(...), or -1 if there is none.  This is usually the model ID, but it
+        varies from manufacturer to manufacturer. */
+    public static int getSysexModel(long header) { return getSysexHeaderByte(header, 1); }
+
+    /** Returns the third byte after the manufacturer ID of a sysex header classified by 
+        classifySysex(...), or -1 if there is none.  This is usually the command, but it
+        varies from manufacturer to manufacturer. */
+    public static int getSysexCommand(long header) { return getSysexHeaderByte(header, 2); }
+
+    /** Returns a key for the manufacturer ID of the given sysex message, which may or may not begin
+        with F0.  One-byte manufacturer IDs are returned as themselves (0x01 ... 0x7F), and three-byte 
+        IDs starting with 0x00 are returned as 0x10000 plus the remaining two bytes.  Returns 
+        NO_MANUFACTURER if the message is too short to have a manufacturer ID, or if it isn't valid. 
+        This is the same as getSysexManufacturer(classifySysex(data)). */
+    public static int getSysexManufacturerKey(byte[] data)
+        {
+        return getSysexManufacturer(classifySysex(data));
+        }
+
+    /** Returns a key for a bare manufacturer ID of one byte, or of three bytes starting with 0x00.  
+        One-byte IDs are returned as themselves (0x01 ... 0x7F), and three-byte IDs are returned
+        as 0x10000 plus the remaining two bytes.  Returns NO_MANUFACTURER if the ID is not one of these. */
+    public static int getManufacturerKey(byte[] id)
+        {
+        if (id == null) return NO_MANUFACTURER;
+        if (id.length == 1 && id[0] > 0x00) return id[0];
+        if (id.length == 3 && id[0] == 0x00 && id[1] >= 0 && id[2] >= 0) return 0x10000 | (id[1] << 8) | id[2];
+        return NO_MANUFACTURER;
+        }
+        
+    /** Returns a dense index, from 0 to NUM_MANUFACTURER_INDICES - 1, for the given manufacturer key, 
+        or -1 if the key is NO_MANUFACTURER or otherwise invalid.  Tables indexed by manufacturer can
+        use this rather than hashing the key. */
+    public static int getManufacturerIndex(int key)
+        {
+        if (key > 0x00 && key < 0x80) return key;
+        if ((key & ~0x7F7F) == 0x10000) return 128 + (((key >>> 8) & 0x7F) << 7) + (key & 0x7F);
+        return -1;
+        }
+        
+    static String[] manufacturers = null;
+    
+    // Loads the manufacturer names, indexed by getManufacturerIndex(...)
+    static synchronized String[] getManufacturers()
         {
         if (manufacturers != null)
             return manufacturers;
                         
-        manufacturers = new HashMap();
+        String[] names = new String[NUM_MANUFACTURER_INDICES];
         Scanner scan = new Scanner(Midi.class.getResourceAsStream("Manufacturers.txt"));
         while(scan.hasNextLine())
             {
@@ -1239,271 +1413,193 @@ public class Midi
             if (nextLine.equals("")) continue;
             if (nextLine.startsWith("#")) continue;
                         
-            int id = 0;
+            int key = 0;
             Scanner scan2 = new Scanner(nextLine);
             int one = scan2.nextInt(16);  // in hex
             if (one == 0x00)  // there are two more to read
                 {
-                id = id + (scan2.nextInt(16) << 8) + (scan2.nextInt(16) << 16);
+                key = 0x10000 | (scan2.nextInt(16) << 8) | scan2.nextInt(16);
                 }
             else
                 {
-                id = one;
+                key = one;
                 }
-            manufacturers.put(new Integer(id), scan.nextLine().trim());
+            String name = scan.nextLine().trim();
+            int index = getManufacturerIndex(key);
+            if (index >= 0) names[index] = name;
             }
+        manufacturers = names;
         return manufacturers;
         }
 
+    /** Returns the name of the manufacturer with the given key (see getManufacturerKey(...)), or null if unknown. */
+    public static String getManufacturer(int key)
+        {
+        int index = getManufacturerIndex(key);
+        if (index < 0) return null;
+        return getManufacturers()[index];
+        }
+
     /** This works with or without F0 as the first data byte */
     public static String getManufacturerForSysex(byte[] data)
         {
-        int offset = 0;
-        if (data[0] == (byte)0xF0)
-            offset = 1;
-        HashMap map = getManufacturers();
-        if (data[0 + offset] == (byte)0x7D)             // educational use
+        return getManufacturerForSysex(classifySysex(data));
+        }
+    
+    /** Returns the name of the manufacturer of a sysex header classified by classifySysex(...), or null if unknown. */
+    public static String getManufacturerForSysex(long header)
+        {
+        int key = getSysexManufacturer(header);
+        String name = getManufacturer(key);
+        if (key == 0x7D && name != null)             // educational use
             {
-            return (String)(map.get(new Integer(data[0 + offset]))) + 
+            return name + 
                 "\n\nNote that unregistered manufacturers or developers typically\n use this system exclusive region.";
             }
-        else if (data[0 + offset] == (byte)0x00)
-            {
-            return (String)(map.get(new Integer(
-                        0x00 + 
-                        ((data[1 + offset] < 0 ? data[1 + offset] + 256 : data[1 + offset]) << 8) + 
-                        ((data[2 + offset] < 0 ? data[2 + offset] + 256 : data[2 + offset]) << 16))));
-            }
         else
             {
-            return (String)(map.get(new Integer(data[0 + offset])));
+            return name;
             }
         }
     
     
-    byte[] inSysex = null;
-    byte[] keySysex = null;
-    byte[] key2Sysex = null;
+    /** The default maximum size of a reassembled incoming sysex message (16MB). */
+    public static final int DEFAULT_MAX_SYSEX_SIZE = 16 * 1024 * 1024;
+
+    /** Reassembles incoming sysex messages which arrive in fragments: a fragment starting with 0xF0 followed
+        by zero or more continuation fragments starting with 0xF7, the last of which ends in 0xF7.  The fragments
+        are appended to a buffer which is kept and reused from message to message, and which grows by doubling,
+        so reassembly takes time linear in the size of the message.  If a message grows beyond the maximum
+        size it is discarded.
+
+        <p>Each of the In, Key, and Key 2 ports has its own SysexAssembler.  Note that before SysexAssemblers,
+        gatherKeySysexData(...) and gatherKey2SysexData(...) compared the (signed) first byte against 0xF0 and
+        0xF7 as ints, so they never recognized a message, and never returned one.  Now they do, just as
+        gatherInSysexData(...) always has.  See edisyn.test.SysexCheck. */
+    public static class SysexAssembler
+        {
+        byte[] buffer = new byte[1024];
+        int length = 0;
+        boolean active = false;
+        int maxSize = DEFAULT_MAX_SYSEX_SIZE;
+        long bytesReassembled = 0;
+        long messagesCompleted = 0;
+        long messagesDiscarded = 0;
+
+        /** Sets the maximum size of a reassembled message.  Larger messages are discarded. */
+        public synchronized void setMaxSize(int val) { maxSize = val; }
+        public synchronized int getMaxSize() { return maxSize; }
+
+        /** Returns the total number of bytes appended to messages so far. */
+        public synchronized long getBytesReassembled() { return bytesReassembled; }
+
+        /** Returns the number of messages which have been completely reassembled so far. */
+        public synchronized long getMessagesCompleted() { return messagesCompleted; }
+
+        /** Returns the number of messages discarded because they exceeded the maximum size. */
+        public synchronized long getMessagesDiscarded() { return messagesDiscarded; }
+
+        /** Discards any partially reassembled message. */
+        public synchronized void reset()
+            {
+            length = 0;
+            active = false;
+            }
+
+        /** Adds the first LEN bytes of DATA, which must start with 0xF0 or 0xF7.  If this completes
+            a message, returns the message, else returns null. */
+        public synchronized byte[] add(byte[] data, int len)
+            {
+            if (len <= 0 || data.length == 0) // uh...
+                return null;
+            if (len > data.length) len = data.length;
+            
+            if (data[0] == (byte)0xF0)  // it's a new message
+                {
+                length = 0;
+                active = true;
+                append(data, 0, len);
+                }
+            else if (data[0] == (byte)0xF7)  // it's a continuation of a message
+                {
+                if (!active) // uh...
+                    return null;
+                append(data, 1, len - 1);        // skip the 0xF7
+                }
+            else return null;
+
+            if (active && length != 0 && buffer[length - 1] == (byte)0xF7)  // completed
+                {
+                byte[] result = Arrays.copyOf(buffer, length);
+                messagesCompleted++;
+                reset();
+                return result;
+                }
+            else return null;
+            }
+
+        void append(byte[] data, int from, int len)
+            {
+            if (len <= 0) return;
+            if (length + len > maxSize)
+                {
+                messagesDiscarded++;
+                reset();
+                return;
+                }
+            if (length + len > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.min(maxSize, Math.max(buffer.length * 2, length + len)));
+            System.arraycopy(data, from, buffer, length, len);
+            length += len;
+            bytesReassembled += len;
+            }
+        }
+    
+    /** Reassembles sysex arriving from the In port. */
+    public SysexAssembler inSysex = new SysexAssembler();
+    /** Reassembles sysex arriving from the Key (Controller) port. */
+    public SysexAssembler keySysex = new SysexAssembler();
+    /** Reassembles sysex arriving from the Key 2 (Controller 2) port. */
+    public SysexAssembler key2Sysex = new SysexAssembler();
     
     public void resetInSysexData()
         {
-        inSysex = null;
+        inSysex.reset();
         }
         
     public void resetKeySysexData()
         {
-        keySysex = null;
+        keySysex.reset();
         }
         
     public void resetKey2SysexData()
         {
-        key2Sysex = null;
+        key2Sysex.reset();
         }
         
     public byte[] gatherInSysexData(byte[] data, int messageLen)
         {
-        if (messageLen == 0) // uh...
-            {
-            return null;
-            }
-                
-        if (data.length == 0) // uh...
-            {
-            return null;
-            }
-                                
-        if (data[0] == (byte)0xF0)  // it's a new message
-            {
-            //System.err.println("0xF0");
-            inSysex = new byte[messageLen];
-            System.arraycopy(data, 0, inSysex, 0, messageLen);
-            }
-        else if (data[0] == (byte)0xF7)  // it's a continuation of a message
-            {
-            //System.err.println("0xF7");
-            if (inSysex == null) // uh...
-                return null;
-            byte[] temp = new byte[inSysex.length + messageLen - 1];
-                
-            // yeah yeah, O(n^2), I could obviously do much, much better, maybe later
-            System.arraycopy(inSysex, 0, temp, 0, inSysex.length);
-            System.arraycopy(data, 1, temp, inSysex.length, messageLen - 1);        // skip the 0xF7
-            inSysex = temp;
-            }
-        /*
-          else                // May be missing the 0xF7?
-          {
-          if (inSysex == null) // uh...
-          return null;
-          byte[] temp = new byte[inSysex.length + messageLen];
-          // yeah yeah, O(n^2), I could obviously do much better, maybe later
-          System.arraycopy(inSysex, 0, temp, 0, inSysex.length);
-          System.arraycopy(data, 0, temp, inSysex.length, messageLen);
-          }
-        */
-        /*
-          for(int i = 0; i < inSysex.length; i++)
-          System.err.print(" " + inSysex[i]);
-          System.err.println();
-        */
-        if (inSysex != null && inSysex.length != 0 && inSysex[inSysex.length - 1] == (byte)0xF7)  // completed
-            {
-            //System.err.println("0xF7 END");
-            byte[] temp = inSysex;
-            inSysex = null;
-            return temp;
-            }
-        else return null;
+        return inSysex.add(data, messageLen);
         }
 
-
-
     public byte[] gatherInSysexData(SysexMessage message)
         {
-        int messageLen = message.getLength();
-        
-        if (messageLen == 0) // uh...
-            {
-            return null;
-            }
-                
-        byte[] data = message.getMessage();
-
-        if (data.length == 0) // uh...
-            {
-            return null;
-            }
-                                
-        if (data[0] == (byte)0xF0)  // it's a new message
-            {
-            inSysex = new byte[messageLen];
-            System.arraycopy(data, 0, inSysex, 0, inSysex.length);
-            }
-        else if (data[0] == (byte)0xF7)  // it's a continuation of a message
-            {
-            if (inSysex == null) // uh...
-                return null;
-            byte[] temp = new byte[inSysex.length + messageLen - 1];
-                
-            // yeah yeah, O(n^2), I could obviously do much, much better, maybe later
-            System.arraycopy(inSysex, 0, temp, 0, inSysex.length);
-            System.arraycopy(data, 1, temp, inSysex.length, messageLen - 1);        // skip the 0xF7
-            inSysex = temp;
-            }
-        /*
-          else                // May be missing the 0xF7?
-          {
-          if (inSysex == null) // uh...
-          return null;
-          byte[] temp = new byte[inSysex.length + messageLen];
-          // yeah yeah, O(n^2), I could obviously do much better, maybe later
-          System.arraycopy(inSysex, 0, temp, 0, inSysex.length);
-          System.arraycopy(data, 0, temp, inSysex.length, messageLen);
-          }
-        */
-
-        if (inSysex != null && inSysex.length != 0 && inSysex[inSysex.length - 1] == (byte)0xF7)  // completed
-            {
-            byte[] temp = inSysex;
-            inSysex = null;
-            return temp;
-            }
-        else return null;
+        return inSysex.add(message.getMessage(), message.getLength());
         }
 
+    /** Adds a sysex message, or a fragment of one, from the Key port, and returns the complete message
+        if this completes it, else null.  Until SysexAssembler was introduced this always returned null, even
+        for complete messages, because it compared bytes against 0xF0 and 0xF7 incorrectly. */
     public byte[] gatherKeySysexData(SysexMessage message)
         {
-        int messageLen = message.getLength();
-
-        if (messageLen == 0) // uh...
-            return null;
-        
-        byte[] data = message.getMessage();
-
-        if (data.length == 0) // uh...
-            return null;
-                
-        if (data[0] == 0xF0)  // it's a new message
-            {
-            keySysex = new byte[messageLen];
-            System.arraycopy(data, 0, keySysex, 0, keySysex.length);
-            }
-        else if (data[0] == 0xF7)  // it's a continuation of a message
-            {
-            if (keySysex == null) // uh...
-                return null;
-            byte[] temp = new byte[keySysex.length + messageLen - 1];
-                
-            // yeah yeah, O(n^2), I could obviously do much, much better, maybe later
-            System.arraycopy(keySysex, 0, temp, 0, keySysex.length);
-            System.arraycopy(data, 1, temp, keySysex.length, messageLen - 1);       // skip the 0xF7
-            }
-        /*
-          else                // May be missing the 0xF7?
-          {
-          if (keySysex == null) // uh...
-          return null;
-          byte[] temp = new byte[keySysex.length + messageLen];
-          // yeah yeah, O(n^2), I could obviously do much better, maybe later
-          System.arraycopy(keySysex, 0, temp, 0, keySysex.length);
-          System.arraycopy(data, 0, temp, keySysex.length, messageLen);
-          }
-        */
-
-        if (keySysex != null && keySysex.length != 0 && keySysex[keySysex.length - 1] == 0xF7)  // completed
-            {
-            byte[] temp = keySysex;
-            keySysex = null;
-            return temp;
-            }
-        else return null;
+        return keySysex.add(message.getMessage(), message.getLength());
         }
 
+    /** Adds a sysex message, or a fragment of one, from the Key 2 port, and returns the complete message
+        if this completes it, else null.  Until SysexAssembler was introduced this always returned null, even
+        for complete messages, because it compared bytes against 0xF0 and 0xF7 incorrectly. */
     public byte[] gatherKey2SysexData(SysexMessage message)
         {
-        int messageLen = message.getLength();
-
-        if (messageLen == 0) // uh...
-            return null;
-        
-        byte[] data = message.getMessage();
-
-        if (data.length == 0) // uh...
-            return null;
-                
-        if (data[0] == 0xF0)  // it's a new message
-            {
-            key2Sysex = new byte[messageLen];
-            System.arraycopy(data, 0, key2Sysex, 0, key2Sysex.length);
-            }
-        else if (data[0] == 0xF7)  // it's a continuation of a message
-            {
-            if (key2Sysex == null) // uh...
-                return null;
-            byte[] temp = new byte[key2Sysex.length + messageLen - 1];
-                
-            // yeah yeah, O(n^2), I could obviously do much, much better, maybe later
-            System.arraycopy(key2Sysex, 0, temp, 0, key2Sysex.length);
-            System.arraycopy(data, 1, temp, key2Sysex.length, messageLen - 1);      // skip the 0xF7
-            }
-        /*
-          else                // May be missing the 0xF7?
-          {
-          if (key2Sysex == null) // uh...
-          return null;
-          byte[] temp = new byte[key2Sysex.length + messageLen];
-          // yeah yeah, O(n^2), I could obviously do much better, maybe later
-          System.arraycopy(key2Sysex, 0, temp, 0, key2Sysex.length);
-          System.arraycopy(data, 0, temp, key2Sysex.length, messageLen);
-          }
-        */
-
-        if (key2Sysex != null && key2Sysex.length != 0 && key2Sysex[key2Sysex.length - 1] == 0xF7)  // completed
-            {
-            byte[] temp = key2Sysex;
-            key2Sysex = null;
-            return temp;
-            }
-        else return null;
+        return key2Sysex.add(message.getMessage(), message.getLength());
         }
     }
@@ -0,0 +1,512 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import javax.sound.midi.*;
+import javax.swing.*;
+import java.util.*;
+
+/****
+      An asynchronous outgoing MIDI queue.  Each Midi.Tuple owns at most one MidiScheduler,
+      which is shared among all the Synths using that Tuple.  Rather than sleeping on the
+      calling thread (usually the Swing Event Thread) to pace MIDI, Synth places its outgoing
+      messages and pauses in this queue, stamped with the time they were scheduled, and
+      a single daemon thread drains the queue in order, performing the pauses itself.
+
+      <p>Each message carries a <i>gap</i>: the minimum time, in nanoseconds, which must have
+      transpired since the previous message was sent (this is getNanoPauseBetweenMIDISends()).
+      Pauses (from simplePause(), getPauseAfterSendOneParameter(), getPauseBetweenSysexFragments(),
+      Integer entries in emitted arrays, and so on) are queued as entries of their own and
+      are performed in order between the messages around them.
+
+      <p>Messages and pauses scheduled between beginGroup(...) and endGroup() are gathered into a
+      single <i>group</i> tagged with a synth and a parameter key.  If a group with the same
+      tag is still waiting in the queue (it hasn't begun transmission yet), the stale group is
+      dropped.  If the stale group is at the end of the queue, the new group simply replaces its
+      contents in place.  Otherwise something else (such as a program change or a patch dump) was
+      scheduled after it, and the new group must go out after that something, so the stale group
+      is marked as dropped and the new group is added to the end of the queue.  This way when the
+      user sweeps a dial on a slow synth, stale intermediate values are dropped rather than
+      taking seconds to drain, but a value never jumps ahead of anything scheduled before it.
+
+      <p>Messages passed through from a controller (such as notes played by the user) are scheduled
+      with scheduleUrgent(...) instead.  They go in a separate lane which is sent ahead of everything
+      else waiting in the queue, and which interrupts pauses, so a Note On doesn't wait for a backlog
+      of parameter changes or a patch dump to drain.  Urgent messages are sent in order among themselves,
+      and are never sent in the middle of a group or a divided sysex message, which might corrupt it.
+
+      <p>The scheduler also keeps some simple statistics: the current and maximum queue depth,
+      the number of messages sent, the number of messages dropped because they were superseded, 
+      and the average and maximum latency between the time a message was scheduled and the time 
+      it was actually sent.
+
+      <p>If the scheduler was given an NRPNTracker, each message is run through it just
+      before it is sent, and redundant NRPN messages are dropped then.  This is done at send
+      time rather than schedule time because groups may be replaced before they are sent.
+
+      @author Sean Luke
+*/
+
+public class MidiScheduler
+    {
+    /** The maximum number of entries in the queue.  If a caller tries to schedule beyond this,
+        it will block until the queue has drained somewhat.  This keeps a runaway sender from
+        growing the queue without bound. */
+    public static final int MAX_QUEUE_SIZE = 16384;
+
+    /** The largest gap between MIDI messages we'll honor, in nanoseconds (100ms), as was
+        the case in Synth.midiPause(). */
+    public static final long MAX_GAP = 100000000L;
+
+    static class Entry
+        {
+        Synth synth;
+        Receiver receiver;
+        MidiMessage message;            // if null, this is a pause
+        long gap;                       // nanoseconds since the last send, or for pauses, the length of the pause
+        long scheduled;                 // System.nanoTime() when we were scheduled
+        Object tag;                     // for groups, the (synth, key) tag
+        ArrayList<Entry> group;         // if non-null, this is a group of entries
+        boolean dropped;                // if true, this group was superseded and should be skipped
+        LatencyHistogram histogram;     // if non-null, the latency of this message is added to it when it is sent
+        }
+
+    ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+    ArrayDeque<Entry> urgent = new ArrayDeque<Entry>();
+    Thread thread;
+    boolean running = true;
+    boolean sending = false;
+    long lastSend = 0;
+    HashMap<Thread, Entry> openGroups = new HashMap<Thread, Entry>();
+    HashMap<Object, Entry> pendingGroups = new HashMap<Object, Entry>();
+    NRPNTracker nrpnTracker;
+
+    // Statistics
+    int maxQueueDepth = 0;
+    long messagesSent = 0;
+    long messagesDropped = 0;
+    long totalLatency = 0;
+    long maxLatency = 0;
+
+    public MidiScheduler()
+        {
+        this(null);
+        }
+
+    /** Builds a scheduler which drops redundant NRPN messages as determined by the given
+        tracker, which may be null. */
+    public MidiScheduler(NRPNTracker nrpnTracker)
+        {
+        this.nrpnTracker = nrpnTracker;
+        thread = new Thread(new Runnable()
+            {
+            public void run() { drain(); }
+            });
+        thread.setName("Edisyn MIDI Scheduler");
+        thread.setDaemon(true);
+        thread.start();
+        }
+
+    /** Schedules a MIDI message to be sent to the given receiver once at least GAP nanoseconds
+        have transpired since the previous message was sent. */
+    public synchronized void schedule(Synth synth, Receiver receiver, MidiMessage message, long gap)
+        {
+        add(synth, receiver, message, gap);
+        }
+
+    /** Schedules a group of MIDI messages (such as sysex fragments) to be sent contiguously.
+        The first message is sent after GAP nanoseconds have transpired since the previous message;
+        each subsequent message is sent after a pause of PAUSE milliseconds.  Urgent messages are
+        not sent in-between them. */
+    public synchronized void schedule(Synth synth, Receiver receiver, MidiMessage[] messages, long gap, int pause)
+        {
+        // Gather the messages into an untagged group unless we're already in a group
+        boolean grouped = (messages.length > 1 && !openGroups.containsKey(Thread.currentThread()));
+        Entry group = null;
+        if (grouped)
+            {
+            group = new Entry();
+            group.synth = synth;
+            group.group = new ArrayList<Entry>();
+            openGroups.put(Thread.currentThread(), group);
+            }
+        else waitForRoom(messages.length * 2);
+        
+        for(int i = 0; i < messages.length; i++)
+            {
+            if (i > 0 && pause > 0) addPause(pause * 1000000L);
+            add(synth, receiver, messages[i], i == 0 ? gap : 0);
+            }
+            
+        if (grouped)
+            {
+            openGroups.remove(Thread.currentThread());
+            if (!running) return;
+            group.scheduled = System.nanoTime();
+            waitForRoom(1);
+            push(group);
+            }
+        }
+
+    /** Schedules a MIDI message to be sent to the given receiver ahead of everything else waiting in the
+        queue, once at least GAP nanoseconds have transpired since the previous message was sent.  Urgent 
+        messages are sent in the order in which they were scheduled.  RECEIVED is the time, per System.nanoTime(), 
+        at which the message originally arrived.  When it is finally sent, the time since then is added
+        to HISTOGRAM, which may be null. */
+    public synchronized void scheduleUrgent(Synth synth, Receiver receiver, MidiMessage message, long gap, long received, LatencyHistogram histogram)
+        {
+        // We don't block the scheduler thread itself, which can never free up room while waiting
+        while(running && urgent.size() >= MAX_QUEUE_SIZE && Thread.currentThread() != thread)
+            {
+            try { wait(); }
+            catch (InterruptedException e) { return; }
+            }
+        if (!running) return;
+        Entry entry = new Entry();
+        entry.synth = synth;
+        entry.receiver = receiver;
+        entry.message = message;
+        entry.gap = (gap < 0 ? 0 : (gap > MAX_GAP ? MAX_GAP : gap));
+        entry.scheduled = received;
+        entry.histogram = histogram;
+        urgent.addLast(entry);
+        notifyAll();
+        }
+
+    /** Schedules a pause of the given number of milliseconds to occur after all currently scheduled messages. */
+    public synchronized void schedulePause(int ms)
+        {
+        if (ms <= 0) return;
+        waitForRoom(1);
+        addPause(ms * 1000000L);
+        }
+
+    /** Begins gathering messages and pauses scheduled by this thread into a group tagged
+        with the given synth and parameter key.  The group is placed in the queue when endGroup() is called. */
+    public synchronized void beginGroup(Synth synth, String key)
+        {
+        Entry group = new Entry();
+        group.synth = synth;
+        group.tag = Arrays.asList(new Object[] { synth, key });
+        group.group = new ArrayList<Entry>();
+        openGroups.put(Thread.currentThread(), group);
+        }
+        
+    /** Finishes the group begun by this thread.  If a group with the same tag is still waiting at the
+        end of the queue, its contents are replaced with this one's.  Otherwise any such waiting group
+        is dropped and this group is added to the end of the queue. */
+    public synchronized void endGroup()
+        {
+        Entry group = openGroups.remove(Thread.currentThread());
+        if (group == null || group.group.isEmpty() || !running) return;
+        
+        group.scheduled = System.nanoTime();
+        Entry pending = pendingGroups.get(group.tag);
+        if (pending != null && queue.peekLast() == pending)
+            {
+            // Nothing was scheduled after the stale group, so we can replace it in place
+            messagesDropped += countMessages(pending.group);
+            pending.group = group.group;
+            pending.scheduled = group.scheduled;
+            }
+        else
+            {
+            if (pending != null)
+                {
+                // Something was scheduled after the stale group, so we can't send our group
+                // in its place.  Drop it and go to the end of the queue instead.
+                messagesDropped += countMessages(pending.group);
+                pending.dropped = true;
+                pendingGroups.remove(group.tag);
+                }
+            waitForRoom(1);
+            pendingGroups.put(group.tag, group);
+            push(group);
+            }
+        }
+
+    /** Returns the number of messages and pauses presently waiting in the queue, including urgent messages. */
+    public synchronized int getQueueDepth() { return queue.size() + urgent.size(); }
+
+    /** Returns the maximum number of messages and pauses which have ever been waiting in the queue. */
+    public synchronized int getMaxQueueDepth() { return maxQueueDepth; }
+
+    /** Returns the number of messages sent so far. */
+    public synchronized long getMessagesSent() { return messagesSent; }
+
+    /** Returns the number of messages dropped because they were superseded by newer messages for the same parameter. */
+    public synchronized long getMessagesDropped() { return messagesDropped; }
+
+    /** Returns the average time, in milliseconds, between when a message was scheduled and when it was sent. */
+    public synchronized double getAverageLatency() { return messagesSent == 0 ? 0.0 : totalLatency / (double)messagesSent / 1000000.0; }
+
+    /** Returns the maximum time, in milliseconds, between when a message was scheduled and when it was sent. */
+    public synchronized double getMaxLatency() { return maxLatency / 1000000.0; }
+
+    /** Returns true if there is nothing in the queue and nothing presently being sent or paused. */
+    public synchronized boolean isIdle() { return queue.isEmpty() && urgent.isEmpty() && !sending; }
+
+    /** Blocks until the queue has been fully drained or until the given number of milliseconds has passed.
+        Returns true if the queue was drained. */
+    public synchronized boolean waitUntilIdle(long ms)
+        {
+        long end = System.currentTimeMillis() + ms;
+        while(running && !isIdle())
+            {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            try { wait(remaining); }
+            catch (InterruptedException e) { return false; }
+            }
+        return true;
+        }
+
+    /** Removes all pending messages and pauses. */
+    public synchronized void clear()
+        {
+        queue.clear();
+        urgent.clear();
+        pendingGroups.clear();
+        notifyAll();
+        }
+
+    /** Stops the scheduler thread and discards anything still pending. */
+    public synchronized void stop()
+        {
+        running = false;
+        queue.clear();
+        urgent.clear();
+        pendingGroups.clear();
+        openGroups.clear();
+        notifyAll();
+        }
+
+
+    //// INTERNALS.  All of the following, save drain(), must be called while synchronized.
+
+    void waitForRoom(int size)
+        {
+        // We don't block the scheduler thread itself, which can never free up room while waiting
+        if (Thread.currentThread() == thread) return;
+        while(running && queue.size() + size > MAX_QUEUE_SIZE && queue.size() > 0)
+            {
+            try { wait(); }
+            catch (InterruptedException e) { return; }
+            }
+        }
+
+    void add(Synth synth, Receiver receiver, MidiMessage message, long gap)
+        {
+        Entry group = openGroups.get(Thread.currentThread());
+        if (group == null) waitForRoom(1);
+        if (!running) return;
+        Entry entry = new Entry();
+        entry.synth = synth;
+        entry.receiver = receiver;
+        entry.message = message;
+        entry.gap = (gap < 0 ? 0 : (gap > MAX_GAP ? MAX_GAP : gap));
+        entry.scheduled = System.nanoTime();
+        if (group != null) group.group.add(entry);
+        else push(entry);
+        }
+
+    void addPause(long nanos)
+        {
+        if (!running) return;
+        Entry entry = new Entry();
+        entry.gap = nanos;
+        entry.scheduled = System.nanoTime();
+        Entry group = openGroups.get(Thread.currentThread());
+        if (group != null) group.group.add(entry);
+        else push(entry);
+        }
+
+    int countMessages(ArrayList<Entry> group)
+        {
+        int count = 0;
+        for(int i = 0; i < group.size(); i++)
+            if (group.get(i).message != null) count++;
+        return count;
+        }
+
+    void push(Entry entry)
+        {
+        queue.addLast(entry);
+        if (queue.size() > maxQueueDepth) maxQueueDepth = queue.size();
+        notifyAll();
+        }
+
+    void drain()
+        {
+        while(true)
+            {
+            Entry entry = null;
+            boolean isUrgent = false;
+            synchronized(this)
+                {
+                sending = false;
+                notifyAll();                    // let waitUntilIdle() and waitForRoom() know
+                while(running && queue.isEmpty() && urgent.isEmpty())
+                    {
+                    try { wait(); }
+                    catch (InterruptedException e) { }
+                    }
+                if (!running) return;
+                isUrgent = !urgent.isEmpty();
+                if (isUrgent)
+                    entry = urgent.removeFirst();
+                else
+                    entry = queue.removeFirst();
+                if (entry.dropped) continue;
+                if (entry.group != null && pendingGroups.get(entry.tag) == entry)
+                    pendingGroups.remove(entry.tag);            // it can no longer be replaced
+                sending = true;
+                notifyAll();
+                }
+
+            if (entry.group != null)
+                {
+                // urgent messages wait until the group is done
+                for(int i = 0; i < entry.group.size(); i++)
+                    perform(entry.group.get(i), false);
+                }
+            else perform(entry, !isUrgent);
+            }
+        }
+
+    // Performs the entry.  If SERVICE_URGENT is true, then urgent messages which arrive while we're
+    // pausing are sent in the meantime.
+    void perform(Entry entry, boolean serviceUrgent)
+        {
+        if (entry.message == null)  // it's a pause
+            {
+            sleep(entry.gap, serviceUrgent);
+            }
+        else
+            {
+            // If urgent messages may be sent while we wait, we wait first so the NRPN tracker knows about them
+            if (serviceUrgent) waitForGap(entry.gap, true);
+            if (nrpnTracker != null && 
+                !nrpnTracker.filter(entry.message, entry.synth == null || entry.synth.getCompressesNRPN()))
+                return;             // it's redundant, drop it
+            if (!serviceUrgent) waitForGap(entry.gap, false);
+            send(entry);
+            }
+        }
+        
+    // Waits until at least GAP nanoseconds have transpired since the last message was sent.
+    void waitForGap(long gap, boolean serviceUrgent)
+        {
+        // An urgent message may have been sent while we were waiting, so check again after each wait
+        while(true)
+            {
+            long pauseSoFar = System.nanoTime() - lastSend;
+            if (pauseSoFar < 0 || pauseSoFar >= gap) return;
+            sleep(gap - pauseSoFar, serviceUrgent);
+            }
+        }
+        
+    // Sends all the urgent messages presently waiting
+    void performUrgent()
+        {
+        while(true)
+            {
+            Entry entry = null;
+            synchronized(this)
+                {
+                if (!running || urgent.isEmpty()) return;
+                entry = urgent.removeFirst();
+                notifyAll();                    // let scheduleUrgent() know there's room
+                }
+            perform(entry, false);
+            }
+        }
+
+    void send(final Entry entry)
+        {
+        try
+            {
+            entry.receiver.send(entry.message, -1);
+            }
+        catch (IllegalStateException e)
+            {
+            // This happens when the device has closed itself and we're still trying to send to it.
+            // For example if the user rips the USB cord for his device out of the laptop.  In this
+            // case we'll drop everything else going to that receiver and also disconnect
+            if (nrpnTracker != null) nrpnTracker.reset();
+            synchronized(this)
+                {
+                Iterator<Entry> i = queue.iterator();
+                while(i.hasNext())
+                    {
+                    Entry e2 = i.next();
+                    if (e2.receiver == entry.receiver || (e2.group != null && e2.synth == entry.synth))
+                        {
+                        i.remove();
+                        if (e2.group != null && e2.tag != null) pendingGroups.remove(e2.tag);
+                        }
+                    }
+                i = urgent.iterator();
+                while(i.hasNext())
+                    {
+                    if (i.next().receiver == entry.receiver)
+                        i.remove();
+                    }
+                }
+            if (entry.synth != null)
+                {
+                SwingUtilities.invokeLater(new Runnable()
+                    {
+                    public void run() { entry.synth.doDisconnectMIDI(); }
+                    });
+                }
+            return;
+            }
+        catch (Exception e)
+            {
+            if (nrpnTracker != null) nrpnTracker.reset();           // who knows what got out the door
+            Synth.handleException(e);
+            return;
+            }
+
+        lastSend = System.nanoTime();
+        long latency = lastSend - entry.scheduled;
+        if (entry.histogram != null) entry.histogram.add(latency);
+        synchronized(this)
+            {
+            messagesSent++;
+            totalLatency += latency;
+            if (latency > maxLatency) maxLatency = latency;
+            }
+        }
+
+    // Sleeps for the given number of nanoseconds.  If SERVICE_URGENT is true, urgent messages which
+    // arrive in the meantime are sent right away, without extending the sleep.
+    void sleep(long nanos, boolean serviceUrgent)
+        {
+        if (nanos <= 0) return;
+        if (!serviceUrgent)
+            {
+            try { Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L)); }
+            catch (InterruptedException e) { }
+            return;
+            }
+            
+        long end = System.nanoTime() + nanos;
+        while(true)
+            {
+            performUrgent();
+            synchronized(this)
+                {
+                long remaining = end - System.nanoTime();
+                if (remaining <= 0 || !running) return;
+                if (!urgent.isEmpty()) continue;
+                try { wait(remaining / 1000000L, (int)(remaining % 1000000L)); }
+                catch (InterruptedException e) { }
+                }
+            }
+        }
+    }
@@ -35,8 +35,20 @@ public class Model implements Cloneable
     public static final int STATUS_RESTRICTED = 3;                      // The parameter cannot be mutated and shouldn't appear in getKeys()
     public static final String ALL_KEYS = "ALL_KEYS";                           // The "key" which registers a listener with all keys
 
-    // The actual value storage.  It's a linked hash map so data iterates in a rational format (basically the order in which it was added originally)
-    LinkedHashMap<String, Node> storage = new LinkedHashMap<String, Node>();
+    static final int INITIAL_CAPACITY = 16;
+
+    // The parameter schema: the keys in the order in which they were added, and their bounds and statuses.
+    // The schema is shared among a model and its copies and clones, and is copied if modified while shared.
+    Schema schema = new Schema();
+    
+    // The actual value storage, indexed by the schema.  If stringValues[i] == null, then parameter i is
+    // an INTEGER VALUE stored in intValues[i], else it is a STRING VALUE.
+    int[] intValues = new int[INITIAL_CAPACITY];
+    String[] stringValues = new String[INITIAL_CAPACITY];
+    
+    // The per-key listeners, indexed by the schema.  The array is null if no key has listeners, and
+    // a key's slot is null if it has no listeners, to save a tiny bit o space
+    ArrayList<Updatable>[] listeners = null;
 
     // The last key which was set
     String lastKey = null;
@@ -55,114 +67,235 @@ public class Model implements Cloneable
     // Listeners should be updated when a key is modified
     boolean updateListeners = true;
 
-    class Node
-        {
-        ArrayList<Updatable> listeners = null;          // when listeners is empty, we set it to null to save a tiny bit o space
-        String stringValue = null;                      // if stringValue == null, this is an INTEGER VALUE, else it is a STRING VALUE
-        int intValue;
-        int status = STATUS_UNSET;                                              // If STATUS_UNSET, then if we're a string, we are IMMUTABLE, else we are FREE
-        int min;
-        int max;
-        int metricMin;
-        int metricMax;
-        boolean hasMin = false;
-        boolean hasMax = false;
-        boolean hasMetricMin = false;
-        boolean hasMetricMax = false;
+    // How deeply nested we are in beginBatch()...endBatch() calls.  While > 0, listener updates are deferred.
+    int batchDepth = 0;
+    // The indices of keys whose listener updates have been deferred, in the order they were first set,
+    // and a flag for each index so we only record it once.  Both are null until we first batch.
+    int[] dirtyIndices = null;
+    boolean[] dirty = null;
+    int numDirty = 0;
+
+    // The indices of keys whose values have been written since the Undo last looked, in the order they
+    // were first written, and a flag for each index so we only record it once.  Both are null until we
+    // first write.  This lets the Undo find what changed without scanning the whole model.
+    int[] changedIndices = null;
+    boolean[] changed = null;
+    int numChanged = 0;
+
+    /** The shape of a Model: its keys, in the order in which they were added, and the bounds and 
+        status of each key, all indexed by the key's position.  A Schema is shared by a Model and all 
+        of its copies and clones.  If one of them needs to change it (by adding a key, or changing
+        a bound or a status) while it is shared, that Model first makes its own copy of the Schema.  
+        Thus once shared, a Schema is never modified.  Because keys are only ever appended, a key has 
+        the same index in a Model and in all of its copies and clones. */
+    public static class Schema
+        {
+        HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        String[] keys = new String[INITIAL_CAPACITY];
+        int[] status = new int[INITIAL_CAPACITY];             // If STATUS_UNSET, then if we're a string, we are IMMUTABLE, else we are FREE
+        int[] min = new int[INITIAL_CAPACITY];
+        int[] max = new int[INITIAL_CAPACITY];
+        int[] metricMin = new int[INITIAL_CAPACITY];
+        int[] metricMax = new int[INITIAL_CAPACITY];
+        boolean[] hasMin = new boolean[INITIAL_CAPACITY];
+        boolean[] hasMax = new boolean[INITIAL_CAPACITY];
+        boolean[] hasMetricMin = new boolean[INITIAL_CAPACITY];
+        boolean[] hasMetricMax = new boolean[INITIAL_CAPACITY];
+        int size = 0;
+        boolean shared = false;
+        String[] unrestrictedKeys = null;       // cache for getKeys()
+        
+        /** Returns the number of keys. */
+        public int size() { return size; }
         
-        String listenersToString()
+        /** Returns the index of the given key, or -1 if there is no such key. */
+        public int indexOf(String key)
             {
-            String s = "";
-            if (listeners != null)
-                for(int i = 0; i < listeners.size(); i++)
-                    {
-                    s += " " + listeners.get(i);
-                    }
-            return s;
-            }
-                
-        public String toString()
-            {
-            return
-                (stringValue == null ? 
-                "[val: " + intValue +
-                " min: " + (hasMin ? min : "-") +
-                " max: " + (hasMin ? max : "-") +
-                " mmin: " + (hasMetricMin ? metricMin : "-") +
-                " mmax: " + (hasMetricMax ? metricMax : "-") +
-                " stat: " + (status == STATUS_UNSET ? "UNSET" : (status == STATUS_FREE ? "FREE" : (status == STATUS_IMMUTABLE ? "IMMUT" : "RESTR"))) +
-                listenersToString() 
-                : "[val: \"" + stringValue + "\"" + listenersToString()) + "]";
+            Integer index = indices.get(key);
+            return (index == null ? -1 : index.intValue());
             }
         
-        public Node() { }
+        /** Returns the key at the given index. */
+        public String keyAt(int index) { return keys[index]; }
         
-        // copy constructor
-        public Node(Node node, boolean includeListeners)
-            {
-            intValue = node.intValue;
-            stringValue = node.stringValue;
-            min = node.min;
-            max = node.max;
-            metricMin = node.metricMin;
-            metricMax = node.metricMax;
-            hasMin = node.hasMin;
-            hasMax = node.hasMax;
-            hasMetricMin = node.hasMetricMin;
-            hasMetricMax = node.hasMetricMax;
-            status = node.status;
-            if (includeListeners)
+        int add(String key)
+            {
+            if (size == keys.length)
                 {
-                if (node.listeners != null) 
-                    {
-                    listeners = new ArrayList<Updatable>(node.listeners);
-                    }
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                status = Arrays.copyOf(status, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                metricMin = Arrays.copyOf(metricMin, capacity);
+                metricMax = Arrays.copyOf(metricMax, capacity);
+                hasMin = Arrays.copyOf(hasMin, capacity);
+                hasMax = Arrays.copyOf(hasMax, capacity);
+                hasMetricMin = Arrays.copyOf(hasMetricMin, capacity);
+                hasMetricMax = Arrays.copyOf(hasMetricMax, capacity);
                 }
+            keys[size] = key;
+            indices.put(key, Integer.valueOf(size));
+            unrestrictedKeys = null;
+            return size++;
             }
         
-        public boolean equals(Object obj)
+        Schema copy()
             {
-            if (obj == null) return false;
-            if (!(obj instanceof Node)) return false;
-            Node other = (Node) obj;
-                                
-            // check values
-            if (!keyAndBoundsEquals(other)) return false;
-
-            // check status and listeners
-            if (other.status != status) return false;
-            int otherNum = (other.listeners == null ? 0 : other.listeners.size());
-            int num = (listeners == null ? 0 : listeners.size());
-            if (otherNum != num) return false;
-            if (listeners != null && !listeners.equals(other.listeners)) return false;
+            Schema s = new Schema();
+            s.indices = new HashMap<String, Integer>(indices);
+            s.keys = keys.clone();
+            s.status = status.clone();
+            s.min = min.clone();
+            s.max = max.clone();
+            s.metricMin = metricMin.clone();
+            s.metricMax = metricMax.clone();
+            s.hasMin = hasMin.clone();
+            s.hasMax = hasMax.clone();
+            s.hasMetricMin = hasMetricMin.clone();
+            s.hasMetricMax = hasMetricMax.clone();
+            s.size = size;
+            s.unrestrictedKeys = unrestrictedKeys;
+            return s;
+            }
+            
+        boolean boundsEqual(int index, Schema other, int otherIndex)
+            {
+            if (other.hasMin[otherIndex] != hasMin[index]) return false;
+            if (other.hasMax[otherIndex] != hasMax[index]) return false;
+            if (other.hasMetricMin[otherIndex] != hasMetricMin[index]) return false;
+            if (other.hasMetricMax[otherIndex] != hasMetricMax[index]) return false;
+            if (hasMin[index] && (other.min[otherIndex] != min[index])) return false;
+            if (hasMax[index] && (other.max[otherIndex] != max[index])) return false;
+            if (hasMetricMin[index] && (other.metricMin[otherIndex] != metricMin[index])) return false;
+            if (hasMetricMax[index] && (other.metricMax[otherIndex] != metricMax[index])) return false;
             return true;
             }
         
-        public boolean keyAndBoundsEquals(Node other)
-            {
-            if (!keyEquals(other)) return false;
-            if (other.hasMin != hasMin) return false;
-            if (other.hasMax != hasMax) return false;
-            if (other.hasMetricMin != hasMetricMin) return false;
-            if (other.hasMetricMax != hasMetricMax) return false;
-            if (hasMin && (other.min != min)) return false;
-            if (hasMax && (other.max != max)) return false;
-            if (hasMetricMin && (other.metricMin != metricMin)) return false;
-            if (hasMetricMax && (other.metricMax != metricMax)) return false;
-            return true;
+        String[] getUnrestrictedKeys()
+            {
+            if (unrestrictedKeys == null)
+                {
+                int count = 0;
+                for(int i = 0; i < size; i++)
+                    if (status[i] != STATUS_RESTRICTED) count++;
+                String[] k = new String[count];
+                for(int i = 0, j = 0; i < size; i++)
+                    if (status[i] != STATUS_RESTRICTED) k[j++] = keys[i];
+                unrestrictedKeys = k;
+                }
+            return unrestrictedKeys;
             }
+        }
 
-        public boolean keyEquals(Node other)
+    /** Returns the model's schema.  The schema must not be modified.  */
+    public Schema getSchema() { return schema; }
+    
+    /** Returns true if this model and the other share the very same schema, and 
+        so have the same keys, bounds, and statuses, at the same indices.  */
+    public boolean sharesSchemaWith(Model other) { return other != null && other.schema == schema; }
+    
+    // Returns the schema, first copying it if it is shared, so that it may be modified.
+    Schema writableSchema()
+        {
+        if (schema.shared) 
+            schema = schema.copy();
+        schema.unrestrictedKeys = null;
+        return schema;
+        }
+    
+    // Adds a new key, as the integer 0, and returns its index
+    int addKey(String key)
+        {
+        int index = writableSchema().add(key);
+        if (index >= intValues.length)
+            {
+            int capacity = Math.max(index + 1, intValues.length * 2);
+            intValues = Arrays.copyOf(intValues, capacity);
+            stringValues = Arrays.copyOf(stringValues, capacity);
+            if (listeners != null)
+                listeners = Arrays.copyOf(listeners, capacity);
+            }
+        intValues[index] = 0;
+        stringValues[index] = null;
+        markChanged(index);
+        return index;
+        }
+    
+    // Adds every key in OTHER which this model lacks, along with its value, bounds, and status.
+    void addMissingKeys(Model other)
+        {
+        Schema os = other.schema;
+        for(int i = 0; i < os.size; i++)
             {
-            // check for strings
-            if (other.stringValue == null && stringValue != null) return false;
-            if (other.stringValue != null && stringValue == null) return false;
-            if (stringValue != null && !stringValue.equals(other.stringValue)) return false;
+            String key = os.keys[i];
+            if (schema.indexOf(key) >= 0) continue;
+            int index = addKey(key);
+            Schema s = schema;                                      // writable now, see addKey(...)
+            s.status[index] = os.status[i];
+            s.min[index] = os.min[i];
+            s.max[index] = os.max[i];
+            s.metricMin[index] = os.metricMin[i];
+            s.metricMax[index] = os.metricMax[i];
+            s.hasMin[index] = os.hasMin[i];
+            s.hasMax[index] = os.hasMax[i];
+            s.hasMetricMin[index] = os.hasMetricMin[i];
+            s.hasMetricMax[index] = os.hasMetricMax[i];
+            s.unrestrictedKeys = null;
+            intValues[index] = other.intValues[i];
+            stringValues[index] = other.stringValues[i];
+            }
+        }
 
-            // it's not a string, check int
-            if (other.intValue != intValue) return false;
-            return true;            
+    // Gives the key at INDEX the bounds and status of the key at OTHERINDEX in OTHER.  Returns false if they were already the same.
+    boolean copyBoundsAndStatusAt(int index, Model other, int otherIndex)
+        {
+        Schema os = other.schema;
+        if (schema.status[index] == os.status[otherIndex] && schema.boundsEqual(index, os, otherIndex)) return false;
+        Schema s = writableSchema();
+        s.status[index] = os.status[otherIndex];
+        s.min[index] = os.min[otherIndex];
+        s.max[index] = os.max[otherIndex];
+        s.metricMin[index] = os.metricMin[otherIndex];
+        s.metricMax[index] = os.metricMax[otherIndex];
+        s.hasMin[index] = os.hasMin[otherIndex];
+        s.hasMax[index] = os.hasMax[otherIndex];
+        s.hasMetricMin[index] = os.hasMetricMin[otherIndex];
+        s.hasMetricMax[index] = os.hasMetricMax[otherIndex];
+        return true;
+        }
+
+    // Returns the index of the key, adding it, with a warning, if it does not exist.
+    int indexForModifying(String key, String warning)
+        {
+        int index = schema.indexOf(key);
+        if (index < 0) 
+            { 
+            System.err.println("Warning (Model): " + warning + " set for non-existent value " + key);  
+            index = addKey(key); 
             }
+        return index;
+        }
+        
+    String nodeToString(int index)
+        {
+        String s = "";
+        if (listeners != null && listeners[index] != null)
+            for(int i = 0; i < listeners[index].size(); i++)
+                {
+                s += " " + listeners[index].get(i);
+                }
+        Schema sc = schema;
+        return
+            (stringValues[index] == null ? 
+            "[val: " + intValues[index] +
+            " min: " + (sc.hasMin[index] ? sc.min[index] : "-") +
+            " max: " + (sc.hasMax[index] ? sc.max[index] : "-") +
+            " mmin: " + (sc.hasMetricMin[index] ? sc.metricMin[index] : "-") +
+            " mmax: " + (sc.hasMetricMax[index] ? sc.metricMax[index] : "-") +
+            " stat: " + (sc.status[index] == STATUS_UNSET ? "UNSET" : (sc.status[index] == STATUS_FREE ? "FREE" : (sc.status[index] == STATUS_IMMUTABLE ? "IMMUT" : "RESTR"))) +
+            s
+            : "[val: \"" + stringValues[index] + "\"" + s) + "]";
         }
 
     /** Returns the undo listener.  This listener not really a listener: it's an Undo.
@@ -182,6 +315,86 @@ public class Model implements Cloneable
     /** Returns all the ALL_KEYS listeners. */        
     public ArrayList<Updatable> getAllKeysListeners() { return allKeysListeners; }
 
+    /** Begins a batch of changes.  Until the matching endBatch(), setting a key doesn't update its
+        listeners: instead the key is noted, and endBatch() updates the listeners of each noted key 
+        just once, in the order the keys were first set.  Use this when changing many keys at once, such
+        as when loading, randomizing, or morphing a patch, so that widgets are updated (and repainted) 
+        all together rather than once per set(...).  Batches may be nested: only the outermost endBatch() 
+        updates the listeners.  Always call endBatch() in a finally clause.  */
+    public void beginBatch()
+        {
+        batchDepth++;
+        }
+    
+    /** Ends a batch of changes begun with beginBatch(), updating the listeners of every key which was
+        set during the batch, unless we are still within an outer batch.  Returns true if the listeners
+        were updated. */
+    public boolean endBatch()
+        {
+        if (batchDepth == 0) { System.err.println("Warning (Model): " + "endBatch() without beginBatch()"); return false; }
+        if (--batchDepth > 0) return false;
+        
+        // A listener might set further keys, which it's free to do now that we're out of the batch
+        int[] indices = dirtyIndices;
+        int count = numDirty;
+        dirtyIndices = null;
+        dirty = null;
+        numDirty = 0;
+        
+        for(int i = 0; i < count; i++)
+            {
+            updateListenersForKey(indices[i], schema.keys[indices[i]]);
+            }
+        return true;
+        }
+
+    /** Returns true if we are within a batch of changes.  See beginBatch(). */
+    public boolean isBatching() { return batchDepth > 0; }
+
+    // Notes that the listeners for the key at the given index need updating at the end of the batch
+    void markDirty(int index)
+        {
+        if (dirty == null)
+            {
+            dirty = new boolean[Math.max(schema.size, INITIAL_CAPACITY)];
+            dirtyIndices = new int[dirty.length];
+            }
+        else if (index >= dirty.length)
+            {
+            dirty = Arrays.copyOf(dirty, Math.max(dirty.length * 2, index + 1));
+            dirtyIndices = Arrays.copyOf(dirtyIndices, dirty.length);
+            }
+        if (dirty[index]) return;
+        dirty[index] = true;
+        dirtyIndices[numDirty++] = index;
+        }
+
+    // Notes that the value of the key at the given index has been written
+    void markChanged(int index)
+        {
+        if (changed == null)
+            {
+            changed = new boolean[Math.max(schema.size, INITIAL_CAPACITY)];
+            changedIndices = new int[changed.length];
+            }
+        else if (index >= changed.length)
+            {
+            changed = Arrays.copyOf(changed, Math.max(changed.length * 2, index + 1));
+            changedIndices = Arrays.copyOf(changedIndices, changed.length);
+            }
+        if (changed[index]) return;
+        changed[index] = true;
+        changedIndices[numChanged++] = index;
+        }
+    
+    // Forgets the keys noted by markChanged(...)
+    void clearChanged()
+        {
+        for(int i = 0; i < numChanged; i++)
+            changed[changedIndices[i]] = false;
+        numChanged = 0;
+        }
+
 
 
 
@@ -198,22 +411,41 @@ public class Model implements Cloneable
                 System.err.println("Debug (Model): " + "Key " + key + " was NEW");
             }
             
+        int index = schema.indexOf(key);
+        if (index < 0)
+            {
+            // A new key always pushes on the undo stack, unless it's the lastKey
+            if (undoListener != null && !key.equals(lastKey))
+                undoListener.push(this);
+            index = addKey(key);
+            setAt(index, key, value, false);
+            }
+        else setAt(index, key, value, true);
+        }
+
+    /** Changes the key at the given index to the given Integer value.  The index must be valid. */        
+    public void setAt(int index, int value)
+        {
+        setAt(index, schema.keys[index], value, true);
+        }
+        
+    void setAt(int index, String key, int value, boolean checkUndo)
+        {
         // when do we push on the undo stack?
-        if (undoListener != null &&         // when we have an undo listener AND
+        if (checkUndo &&
+            undoListener != null &&         // when we have an undo listener AND
             !key.equals(lastKey) &&         // when the key is not the lastKey AND
-                (!exists(key) ||                        // the key doesn't exist OR
-                !isInteger(key) ||                     // the value isn't an integer OR
-                value != get(key, 0)))         // the value doesn't match the current value 
+                (stringValues[index] != null ||         // the value isn't an integer OR
+                value != intValues[index]))             // the value doesn't match the current value 
             undoListener.push(this);
             
-        Node n = storage.get(key);
-        if (n == null) { n = new Node(); storage.put(key, n); }
-        n.stringValue = null;
-        n.intValue = value;
+        stringValues[index] = null;
+        intValues[index] = value;
+        markChanged(index);
         
         lastKey = key;
         recentlySet = true;
-        updateListenersForKey(key);
+        updateListenersForKey(index, key);
         }
 
     /** Adds a key with the given String value, or changes it to the given value. */        
@@ -226,22 +458,40 @@ public class Model implements Cloneable
                 System.err.println("Debug (Model): " + "Key " + key + " was NEW");
             }
 
+        int index = schema.indexOf(key);
+        if (index < 0)
+            {
+            // A new key always pushes on the undo stack, unless it's the lastKey
+            if (undoListener != null && !key.equals(lastKey))
+                undoListener.push(this);
+            index = addKey(key);
+            setAt(index, key, value, false);
+            }
+        else setAt(index, key, value, true);
+        }
+    
+    /** Changes the key at the given index to the given String value.  The index must be valid. */        
+    public void setAt(int index, String value)
+        {
+        setAt(index, schema.keys[index], value, true);
+        }
+        
+    void setAt(int index, String key, String value, boolean checkUndo)
+        {
         // when do we push on the undo stack?
-        if (
+        if (checkUndo &&
             undoListener != null &&         // when we have an undo listener AND
             !key.equals(lastKey) &&         // when the key is not the lastKey AND
-                (!exists(key) ||                        // the key doesn't exist OR
-                !isString(key) ||                      // the value isn't a string OR
-                !value.equals(get(key, null)))) // the value doesn't match the current value 
+                (stringValues[index] == null ||         // the value isn't a string OR
+                !value.equals(stringValues[index])))    // the value doesn't match the current value 
             undoListener.push(this);
 
-        Node n = storage.get(key);
-        if (n == null) { n = new Node(); storage.put(key, n); }
-        n.stringValue = value;
+        stringValues[index] = value;
+        markChanged(index);
 
         lastKey = key;
         recentlySet = true;
-        updateListenersForKey(key);
+        updateListenersForKey(index, key);
         }
     
     
@@ -293,100 +543,112 @@ public class Model implements Cloneable
     /** Sets the minimum for a given key. */        
     public void setMin(String key, int value)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "min set for non-existent value " + key);  node = new Node(); storage.put(key, node); }
-        node.min = value;
-        node.hasMin = true;
+        int index = indexForModifying(key, "min");
+        if (schema.hasMin[index] && schema.min[index] == value) return;
+        Schema s = writableSchema();
+        s.min[index] = value;
+        s.hasMin[index] = true;
         }
 
     /** Sets the maximum for a given key. */        
     public void setMax(String key, int value)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "max set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.max = value;
-        node.hasMax = true;
+        int index = indexForModifying(key, "max");
+        if (schema.hasMax[index] && schema.max[index] == value) return;
+        Schema s = writableSchema();
+        s.max[index] = value;
+        s.hasMax[index] = true;
         }
         
     /** Sets the minimum and maximum for a given key. */        
     public void setMinMax(String key, int min, int max)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "min and max set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.min = min;
-        node.max = max;
-        node.hasMin = true;
-        node.hasMax = true;
+        int index = indexForModifying(key, "min and max");
+        if (schema.hasMin[index] && schema.min[index] == min &&
+            schema.hasMax[index] && schema.max[index] == max) return;
+        Schema s = writableSchema();
+        s.min[index] = min;
+        s.max[index] = max;
+        s.hasMin[index] = true;
+        s.hasMax[index] = true;
         }
        
     /** Sets the metric minimum for a given key. */        
     public void setMetricMin(String key, int value)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "metric min set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.metricMin = value;
-        node.hasMetricMin = true;
+        int index = indexForModifying(key, "metric min");
+        if (schema.hasMetricMin[index] && schema.metricMin[index] == value) return;
+        Schema s = writableSchema();
+        s.metricMin[index] = value;
+        s.hasMetricMin[index] = true;
         }
                 
     /** Sets the metric maximum for a given key. */        
     public void setMetricMax(String key, int value)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "metric max set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.metricMax = value;
-        node.hasMetricMax = true;
+        int index = indexForModifying(key, "metric max");
+        if (schema.hasMetricMax[index] && schema.metricMax[index] == value) return;
+        Schema s = writableSchema();
+        s.metricMax[index] = value;
+        s.hasMetricMax[index] = true;
         }
     
     /** Sets the metric minimum and maximum for a given key. */        
     public void setMetricMinMax(String key, int min, int max)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "metric min/max set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.metricMin = min;
-        node.metricMax = max;
-        node.hasMetricMin = true;
-        node.hasMetricMax = true;
+        int index = indexForModifying(key, "metric min/max");
+        if (schema.hasMetricMin[index] && schema.metricMin[index] == min &&
+            schema.hasMetricMax[index] && schema.metricMax[index] == max) return;
+        Schema s = writableSchema();
+        s.metricMin[index] = min;
+        s.metricMax[index] = max;
+        s.hasMetricMin[index] = true;
+        s.hasMetricMax[index] = true;
         }
 
     /** Sets the minimum and maximum and metric minimum and maximum for a given key. */        
     public void setMinMaxMetricMinMax(String key, int min, int max, int metricMin, int metricMax)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "min/max and metric min/max set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.min = min;
-        node.max = max;
-        node.metricMin = metricMin;
-        node.metricMax = metricMax;
-        node.hasMin = true;
-        node.hasMax = true;
-        node.hasMetricMin = true;
-        node.hasMetricMax = true;
+        int index = indexForModifying(key, "min/max and metric min/max");
+        Schema s = writableSchema();
+        s.min[index] = min;
+        s.max[index] = max;
+        s.metricMin[index] = metricMin;
+        s.metricMax[index] = metricMax;
+        s.hasMin[index] = true;
+        s.hasMax[index] = true;
+        s.hasMetricMin[index] = true;
+        s.hasMetricMax[index] = true;
         }
             
     /** Sets the status of a key.  The default is STATUS_FREE, except for strings, which are STATUS_IMMUTABLE. */        
     public void setStatus(String key, int val)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "status set for non-existent value " + key); node = new Node(); storage.put(key, node); }
-        node.status = val;
+        int index = indexForModifying(key, "status");
+        if (schema.status[index] == val) return;
+        writableSchema().status[index] = val;
         }
  
     /** Deletes the metric min and max for a key */
     public void removeMinMax(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "min/max removed for non-existent value " + key); return; }
-        node.hasMin = false;
-        node.hasMax = false;
+        int index = schema.indexOf(key);
+        if (index < 0) { System.err.println("Warning (Model): " + "min/max removed for non-existent value " + key); return; }
+        if (!schema.hasMin[index] && !schema.hasMax[index]) return;
+        Schema s = writableSchema();
+        s.hasMin[index] = false;
+        s.hasMax[index] = false;
         }
 
     /** Deletes the metric min and max for a key */
     public void removeMetricMinMax(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "metric min/max removed for non-existent value " + key); return; }
-        node.hasMetricMin = false;
-        node.hasMetricMax = false;
+        int index = schema.indexOf(key);
+        if (index < 0) { System.err.println("Warning (Model): " + "metric min/max removed for non-existent value " + key); return; }
+        if (!schema.hasMetricMin[index] && !schema.hasMetricMax[index]) return;
+        Schema s = writableSchema();
+        s.hasMetricMin[index] = false;
+        s.hasMetricMax[index] = false;
         }
 
                
@@ -397,20 +659,11 @@ public class Model implements Cloneable
 
     
     ///// GETTING
-            
 
     /** Returns all the keys in the model as an array, except the hidden ones. */        
     public String[] getKeys()
         {
-        /*
-          String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
-          ArrayList revisedKeys = new ArrayList<String>();
-          for(int i = 0; i < keyset.length; i++)
-          if (getStatus(keyset[i]) != STATUS_RESTRICTED)
-          revisedKeys.add(keyset[i]);
-          return (String[])(revisedKeys.toArray(new String[0]));
-        */
-        return getDifferentKeys(null);
+        return (String[])(schema.getUnrestrictedKeys().clone());
         }
         
     /** Returns all the keys in the model as an array, except the hidden ones,
@@ -418,13 +671,15 @@ public class Model implements Cloneable
         is null, all keys are returned.  */        
     public String[] getDifferentKeys(Model other)
         {
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
+        if (other == null) return getKeys();
+        
+        Schema s = schema;
         ArrayList revisedKeys = new ArrayList<String>();
-        for(int i = 0; i < keyset.length; i++)
-            if (getStatus(keyset[i]) != STATUS_RESTRICTED)
+        for(int i = 0; i < s.size; i++)
+            if (s.status[i] != STATUS_RESTRICTED)
                 {
-                if (other == null || (!keyEquals(keyset[i], other)))
-                    revisedKeys.add(keyset[i]);
+                if (!keyEquals(i, other))
+                    revisedKeys.add(s.keys[i]);
                 }
         return (String[])(revisedKeys.toArray(new String[0]));
         }
@@ -441,45 +696,59 @@ public class Model implements Cloneable
             return get(key, -1) == other.get(key, -1);
             }
         }
+
+    // Same as keyEquals(key, other) for the key at the given index, but faster if we share a schema
+    boolean keyEquals(int index, Model other)
+        {
+        int otherIndex = (other.schema == schema ? index : other.schema.indexOf(schema.keys[index]));
+        if (stringValues[index] != null)
+            {
+            return stringValues[index].equals(otherIndex < 0 || other.stringValues[otherIndex] == null ? "" : other.stringValues[otherIndex]);
+            }
+        else
+            {
+            return intValues[index] == (otherIndex < 0 || other.stringValues[otherIndex] != null ? -1 : other.intValues[otherIndex]);
+            }
+        }
  
     /** Returns the value associated with this
         (String) key, or ifDoesntExist if there is no such value. */        
     public String get(String key, String ifDoesntExist)
         {
-        Node node = storage.get(key);
-        if (node == null)
+        int index = schema.indexOf(key);
+        if (index < 0)
             {
             if (debug)
                 System.err.println("Debug (Model): " + "Key " + key + " does not exist");
             return ifDoesntExist;
             }
-        else if (node.stringValue == null)
+        else if (stringValues[index] == null)
             {
             if (debug)
                 System.err.println("Debug (Model): " + "Key " + key + " is an integer, not a string");
             return ifDoesntExist;
             }
-        else return node.stringValue;
+        else return stringValues[index];
         }
 
     /** Returns the value associated with this
         (Integer) key, or ifDoesntExist if there is no such value. */        
     public int get(String key, int ifDoesntExist)
         {
-        Node node = storage.get(key);
-        if (node == null)
+        int index = schema.indexOf(key);
+        if (index < 0)
             {
             if (debug)
                 System.err.println("Debug (Model): " + "Key " + key + " does not exist");
             return ifDoesntExist;
             }
-        else if (node.stringValue != null)
+        else if (stringValues[index] != null)
             {
             if (debug)
                 System.err.println("Debug (Model): " + "Key " + key + " is a string, not an integer");
             return ifDoesntExist;
             }
-        else return node.intValue;
+        else return intValues[index];
         }
     
     /** Returns the value associated with this (Integer) key, or -1 if there is no such value. 
@@ -491,120 +760,113 @@ public class Model implements Cloneable
               
     public Object getValue(String key) 
         {
-        Node node = storage.get(key);
-        if (node == null) return null;
-        else if (node.stringValue == null)
-            return Integer.valueOf(node.intValue);
+        int index = schema.indexOf(key);
+        if (index < 0) return null;
+        else if (stringValues[index] == null)
+            return Integer.valueOf(intValues[index]);
         else
-            return node.stringValue;
+            return stringValues[index];
         }
       
     /** Returns whether the key is associated with a String. 
         If there is no key stored in the Model, then FALSE is returned. */        
     public boolean isString(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        else return node.stringValue != null;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        else return stringValues[index] != null;
         }
     
     /** Returns whether the key is associated with an integer. 
         If there is no key stored in the Model, then FALSE is returned. */        
     public boolean isInteger(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        else return node.stringValue == null;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        else return stringValues[index] == null;
         }
 
     /** Returns whether the key is stored in the model. */        
     public boolean exists(String key)
         {
-        return storage.containsKey(key);
+        return schema.indexOf(key) >= 0;
         }
                 
     /** Returns whether a minimum is stored in the model for the key. */        
     public boolean minExists(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        return node.hasMin;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        return schema.hasMin[index];
         }
 
     /** Returns whether a maximum is stored in the model for the key. */        
     public boolean maxExists(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        return node.hasMax;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        return schema.hasMax[index];
         }
 
     /** Returns whether a metric minimum is stored in the model for the key. */        
     public boolean metricMinExists(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        return node.hasMetricMin;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        return schema.hasMetricMin[index];
         }
 
     /** Returns whether a metric maximum is stored in the model for the key. */        
     public boolean metricMaxExists(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) return false;
-        return node.hasMetricMax;
+        int index = schema.indexOf(key);
+        if (index < 0) return false;
+        return schema.hasMetricMax[index];
         }
     
     /** Returns whether a given key is declared immutable.  Strings are ALWAYS immutable by default and numbers are ALWAYS free by default. */        
     public int getStatus(String key)
         {
-        Node node = storage.get(key);
-        if (node == null)
+        int index = schema.indexOf(key);
+        if (index < 0)
             return STATUS_IMMUTABLE;
-        else if (node.status == STATUS_UNSET)
-            {
-            if (node.stringValue != null)
-                return STATUS_IMMUTABLE;
-            else
-                return STATUS_FREE;
-            }
-        else return node.status;
+        else return getStatusAt(index);
         }
                 
     /** Returns the minimum for a given key, or 0 if no minimum is declared. */        
     public int getMin(String key)
         {
-        Node d = storage.get(key);
-        if (d == null) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for min for " + key)); return 0; }
-        if (!d.hasMin) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent min extracted for " + key)); return 0; }
-        else return d.min;
+        int index = schema.indexOf(key);
+        if (index < 0) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for min for " + key)); return 0; }
+        if (!schema.hasMin[index]) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent min extracted for " + key)); return 0; }
+        else return schema.min[index];
         }
                 
     /** Returns the maximum for a given key, or 0 if no maximum is declared. */        
     public int getMax(String key)
         {
-        Node d = storage.get(key);
-        if (d == null) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for max for " + key)); return 0; }
-        if (!d.hasMax) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent max extracted for " + key)); return 0; }
-        else return d.max;
+        int index = schema.indexOf(key);
+        if (index < 0) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for max for " + key)); return 0; }
+        if (!schema.hasMax[index]) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent max extracted for " + key)); return 0; }
+        else return schema.max[index];
         }
 
     /** Returns the metric minimum for a given key, or 0 if no minimum is declared. */        
     public int getMetricMin(String key)
         {
-        Node d = storage.get(key);
-        if (d == null) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for metric min for " + key)); return 0; }
-        if (!d.hasMetricMin) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent metric min extracted for " + key)); return 0; }
-        else return d.metricMin;
+        int index = schema.indexOf(key);
+        if (index < 0) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for metric min for " + key)); return 0; }
+        if (!schema.hasMetricMin[index]) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent metric min extracted for " + key)); return 0; }
+        else return schema.metricMin[index];
         }
                 
     /** Returns the metric maximum for a given key, or 0 if no maximum is declared. */        
     public int getMetricMax(String key)
         {
-        Node d = storage.get(key);
-        if (d == null) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for metric max for " + key)); return 0; }
-        if (!d.hasMetricMax) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent metric max extracted for " + key)); return 0; }
-        else return d.metricMax;
+        int index = schema.indexOf(key);
+        if (index < 0) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent node extracted for metric max for " + key)); return 0; }
+        if (!schema.hasMetricMax[index]) { Synth.handleException(new Throwable("Warning (Model): " + "Nonexistent metric max extracted for " + key)); return 0; }
+        else return schema.metricMax[index];
         }
     
     /** Returns getMax(key) - getMin(key) + 1 */
@@ -617,6 +879,65 @@ public class Model implements Cloneable
         else return 0;
         }
 
+
+
+
+    ///// INDEXED GETTING
+    ///// These are fast versions of the methods above for hot paths, which avoid hashing
+    ///// the key.  Obtain an index with indexOf(key); it is valid for this model and all of
+    ///// its copies and clones.  Indices must be valid: they are not checked.
+    
+    /** Returns the number of keys in the model, including the hidden ones.  Keys are indexed 0 ... size() - 1. */
+    public int size() { return schema.size; }
+    
+    /** Returns the index of the given key, or -1 if the key is not stored in the model. */
+    public int indexOf(String key) { return schema.indexOf(key); }
+    
+    /** Returns the key at the given index. */
+    public String keyAt(int index) { return schema.keys[index]; }
+    
+    /** Returns the Integer value at the given index, or ifString if it is a String. */
+    public int getAt(int index, int ifString) { return (stringValues[index] == null ? intValues[index] : ifString); }
+    
+    /** Returns the String value at the given index, or ifInteger if it is an Integer. */
+    public String getAt(int index, String ifInteger) { return (stringValues[index] == null ? ifInteger : stringValues[index]); }
+    
+    /** Returns whether the value at the given index is a String. */
+    public boolean isStringAt(int index) { return stringValues[index] != null; }
+
+    /** Returns the status of the key at the given index.  Strings are ALWAYS immutable by default and numbers are ALWAYS free by default. */        
+    public int getStatusAt(int index)
+        {
+        int status = schema.status[index];
+        if (status == STATUS_UNSET)
+            return (stringValues[index] != null ? STATUS_IMMUTABLE : STATUS_FREE);
+        else return status;
+        }
+    
+    /** Returns whether a minimum is stored in the model for the key at the given index. */        
+    public boolean minExistsAt(int index) { return schema.hasMin[index]; }
+    
+    /** Returns whether a maximum is stored in the model for the key at the given index. */        
+    public boolean maxExistsAt(int index) { return schema.hasMax[index]; }
+    
+    /** Returns whether a metric minimum is stored in the model for the key at the given index. */        
+    public boolean metricMinExistsAt(int index) { return schema.hasMetricMin[index]; }
+    
+    /** Returns whether a metric maximum is stored in the model for the key at the given index. */        
+    public boolean metricMaxExistsAt(int index) { return schema.hasMetricMax[index]; }
+    
+    /** Returns the minimum for the key at the given index.  Only meaningful if minExistsAt(index). */        
+    public int getMinAt(int index) { return schema.min[index]; }
+    
+    /** Returns the maximum for the key at the given index.  Only meaningful if maxExistsAt(index). */        
+    public int getMaxAt(int index) { return schema.max[index]; }
+    
+    /** Returns the metric minimum for the key at the given index.  Only meaningful if metricMinExistsAt(index). */        
+    public int getMetricMinAt(int index) { return schema.metricMin[index]; }
+    
+    /** Returns the metric maximum for the key at the given index.  Only meaningful if metricMaxExistsAt(index). */        
+    public int getMetricMaxAt(int index) { return schema.metricMax[index]; }
+
  
  
         
@@ -636,15 +957,26 @@ public class Model implements Cloneable
             // do nothing, never happens
             }
         
-        // reload keys
-        m.storage = new LinkedHashMap<String, Node>();
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
-        for(int i = 0; i < keyset.length; i++)
+        // share the schema, duplicate the values
+        schema.shared = true;
+        m.intValues = intValues.clone();
+        m.stringValues = stringValues.clone();
+        if (listeners != null)
             {
-            m.storage.put(keyset[i], new Node(storage.get(keyset[i]), true));
+            m.listeners = new ArrayList[listeners.length];
+            for(int i = 0; i < listeners.length; i++)
+                if (listeners[i] != null)
+                    m.listeners[i] = new ArrayList<Updatable>(listeners[i]);
             }
                         
         m.allKeysListeners = new ArrayList<Updatable>(allKeysListeners);                // make a proper duplicate
+        m.batchDepth = 0;                                                               // clones don't inherit our batch
+        m.dirtyIndices = null;
+        m.dirty = null;
+        m.numDirty = 0;
+        m.changedIndices = null;
+        m.changed = null;
+        m.numChanged = 0;
         return m;
         }
 
@@ -662,19 +994,24 @@ public class Model implements Cloneable
             // do nothing, never happens
             }
 
-        // reload keys
-        m.storage = new LinkedHashMap<String, Node>();
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
-        for(int i = 0; i < keyset.length; i++)
-            {
-            m.storage.put(keyset[i], new Node(storage.get(keyset[i]), false));              // no listeners
-            }
+        // share the schema, duplicate the values
+        schema.shared = true;
+        m.intValues = intValues.clone();
+        m.stringValues = stringValues.clone();
+        m.listeners = null;             // no listeners
 
         // clear                
         m.undoListener = null;
         m.recentlySet = false;
         m.lastKey = null;
         m.allKeysListeners = new ArrayList<Updatable>();
+        m.batchDepth = 0;
+        m.dirtyIndices = null;
+        m.dirty = null;
+        m.numDirty = 0;
+        m.changedIndices = null;
+        m.changed = null;
+        m.numChanged = 0;
         if(latentVector == null){
             m.latentVector = null;
             } else {
@@ -692,21 +1029,29 @@ public class Model implements Cloneable
         lastKey is reset in the model, and the listeners are updated.  */
     public void copyValuesTo(Model model)
         {
-        // load keys
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
-        for(int i = 0; i < keyset.length; i++)
+        model.beginBatch();
+        try
             {
-            if (isString(keyset[i]))
-                {
-                model.set(keyset[i], get(keyset[i], ""));
-                }
-            else
+            // load keys
+            Schema s = schema;
+            for(int i = 0; i < s.size; i++)
                 {
-                model.set(keyset[i], get(keyset[i], 0));
+                if (stringValues[i] != null)
+                    {
+                    model.set(s.keys[i], stringValues[i]);
+                    }
+                else
+                    {
+                    model.set(s.keys[i], intValues[i]);
+                    }
                 }
+            model.lastKey = null;
+            model.updateAllListeners();
+            }
+        finally
+            {
+            model.endBatch();
             }
-        model.lastKey = null;
-        model.updateAllListeners();
         }
         
 
@@ -721,27 +1066,57 @@ public class Model implements Cloneable
         if (other == null || !(other instanceof Model))
             return false;
         Model model = (Model) other;
-        if (!storage.equals(model.storage))
+        if (model.schema.size != schema.size)
             return false;
+        for(int i = 0; i < schema.size; i++)
+            {
+            int j = (model.schema == schema ? i : model.schema.indexOf(schema.keys[i]));
+            if (j < 0) return false;
+            
+            // check values
+            if (!valueEquals(i, model, j)) return false;
+            if (!schema.boundsEqual(i, model.schema, j)) return false;
+            
+            // check status and listeners
+            if (schema.status[i] != model.schema.status[j]) return false;
+            ArrayList<Updatable> l = (listeners == null ? null : listeners[i]);
+            ArrayList<Updatable> l2 = (model.listeners == null ? null : model.listeners[j]);
+            int num = (l == null ? 0 : l.size());
+            int otherNum = (l2 == null ? 0 : l2.size());
+            if (otherNum != num) return false;
+            if (l != null && !l.equals(l2)) return false;
+            }
         // don't care about lastKey
         return true;
         }
 
+    // Returns true if the value at index i is the same as the other model's value at index j
+    boolean valueEquals(int i, Model other, int j)
+        {
+        String s = stringValues[i];
+        String s2 = other.stringValues[j];
+        if (s == null) return (s2 == null && intValues[i] == other.intValues[j]);
+        else return s.equals(s2);
+        }
+    
     public boolean keyEquals(Model other)
         {
         if (other == null)
             return false;
-        if (!storage.keySet().equals(other.storage.keySet()))
+        if (other.schema.size != schema.size)
             return false;
+        boolean same = (other.schema == schema);
+        if (!same)
+            {
+            for(int i = 0; i < schema.size; i++)
+                if (other.schema.indexOf(schema.keys[i]) < 0)
+                    return false;
+            }
                 
-        String[] keys = getKeys();
-        for(int i = 0; i < keys.length; i++)
+        for(int i = 0; i < schema.size; i++)
             {
-            Node n = storage.get(keys[i]);
-            Node n2 = other.storage.get(keys[i]);
-            if (n2 == null)         // I can't be null, just the other one
-                return false;
-            if (!storage.get(keys[i]).keyEquals(other.storage.get(keys[i])))
+            if (schema.status[i] == STATUS_RESTRICTED) continue;
+            if (!valueEquals(i, other, same ? i : other.schema.indexOf(schema.keys[i])))
                 return false;
             }
         return true;
@@ -755,12 +1130,7 @@ public class Model implements Cloneable
     /** Removes all listeners from the model, including the undoListener. */
     public void clearListeners()
         {
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
-        for(int i = 0; i < keyset.length; i++)
-            {
-            Node node = storage.get(keyset[i]);
-            node.listeners = null;
-            }
+        listeners = null;
         undoListener = null;
         }
 
@@ -775,11 +1145,13 @@ public class Model implements Cloneable
             }
         else
             {
-            Node node = storage.get(key);
-            if (node == null) { /* System.err.println("Warning (Model): " + "Listener registered for key without value " + key); */ node = new Node(); storage.put(key, node); }
-            if (node.listeners == null)
-                node.listeners = new ArrayList<Updatable>();
-            node.listeners.add(component);
+            int index = schema.indexOf(key);
+            if (index < 0) { /* System.err.println("Warning (Model): " + "Listener registered for key without value " + key); */ index = addKey(key); }
+            if (listeners == null)
+                listeners = new ArrayList[intValues.length];
+            if (listeners[index] == null)
+                listeners[index] = new ArrayList<Updatable>();
+            listeners[index].add(component);
             }
         }
     
@@ -792,35 +1164,45 @@ public class Model implements Cloneable
             }
         else
             {
-            Node node = storage.get(key);
-            if (node == null) { System.err.println("Warning (Model): " + "Listener unregistered for key without value " + key);  return; }
-            if (node.listeners == null) { System.err.println("Warning (Model): " + "Listener unregistered for key but it wasn't registered " + key);  return; }
-            if (!node.listeners.remove(component)) { System.err.println("Warning (Model): " + "Listener unregistered for key but it wasn't registered " + key);  return; }
-            if (node.listeners.isEmpty())
-                node.listeners = null;          // let GC
+            int index = schema.indexOf(key);
+            if (index < 0) { System.err.println("Warning (Model): " + "Listener unregistered for key without value " + key);  return; }
+            if (listeners == null || listeners[index] == null) { System.err.println("Warning (Model): " + "Listener unregistered for key but it wasn't registered " + key);  return; }
+            if (!listeners[index].remove(component)) { System.err.println("Warning (Model): " + "Listener unregistered for key but it wasn't registered " + key);  return; }
+            if (listeners[index].isEmpty())
+                listeners[index] = null;          // let GC
             }
         }
 
     /** Returns all listeners for the key, but not for ALL_KEYS. */
     public ArrayList getListeners(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) { System.err.println("Warning (Model): " + "Listeners requested for key without value " + key);  return null; }
-        if (node.listeners == null)
-            node.listeners = new ArrayList<Updatable>();
-        return node.listeners;
+        int index = schema.indexOf(key);
+        if (index < 0) { System.err.println("Warning (Model): " + "Listeners requested for key without value " + key);  return null; }
+        if (listeners == null)
+            listeners = new ArrayList[intValues.length];
+        if (listeners[index] == null)
+            listeners[index] = new ArrayList<Updatable>();
+        return listeners[index];
         }
         
     /** Updates all listeners for the key, and for ALL_KEYS, unless updateListeners is true */
     public void updateListenersForKey(String key)
         {
         if (!updateListeners) return;
+        updateListenersForKey(schema.indexOf(key), key);
+        }
+
+    // Updates all listeners for the key at the given index (or only ALL_KEYS if the index is -1)
+    void updateListenersForKey(int index, String key)
+        {
+        if (!updateListeners) return;
+        if (batchDepth > 0 && index >= 0) { markDirty(index); return; }
         
-        Node node = storage.get(key);
-        if (node != null && node.listeners != null)
+        if (index >= 0 && listeners != null && listeners[index] != null)
             {
-            for(int i = 0; i < node.listeners.size(); i++)
-                node.listeners.get(i).update(key, this);
+            ArrayList<Updatable> l = listeners[index];
+            for(int i = 0; i < l.size(); i++)
+                l.get(i).update(key, this);
             }
                         
         for(int i = 0; i < allKeysListeners.size(); i++)
@@ -834,7 +1216,9 @@ public class Model implements Cloneable
         {
         if (!updateListeners) return;
         
-        String[] keyset = (String[])(storage.keySet().toArray(new String[0]));
+        // A listener might add keys, so we grab the keys first, as we used to
+        Schema s = schema;
+        String[] keyset = Arrays.copyOf(s.keys, s.size);
         for(int j = 0; j < keyset.length; j++)
             {
             updateListenersForKey(keyset[j]);
@@ -1321,22 +1705,6 @@ public class Model implements Cloneable
         return true;
         }
     
-    // used by morph to sort the models by weight (strongest first) 
-    class Sort implements Comparable
-        {
-        public Model model;
-        public double weight;
-        public double previousWeight;
-        public Sort(Model model, double weight, double prev) { this.model = model; this.weight = weight; this.previousWeight = prev; }
-        public int compareTo(Object obj)
-            {
-            Sort other = (Sort) obj;
-            if (weight > other.weight) return -1;
-            else if (weight < other.weight) return 1;
-            else return 0;
-            }
-        }
-    
     public static final int CATEGORICAL_STRATEGY_MORPH = -3;
     public static final int CATEGORICAL_STRATEGY_STRONGEST = -2;
     public static final int CATEGORICAL_STRATEGY_DEFAULT = -1;
@@ -1416,90 +1784,176 @@ public class Model implements Cloneable
         To initialize, I'd set the previousWeights to 0.5 each. 
     */
     
+    /** A morph precompiled for a given target model, set of source models, categorical default model,
+        and set of keys, so that it may be performed over and over again, such as whenever the user drags
+        the joystick, without hashing keys or allocating anything.  Each key is classified once as skipped,
+        metric, or categorical, and the source models' values are copied into a flat array.  A plan is
+        only valid for as long as the source models are not modified: if they change, compile a new one.  
+        Build one with compileMorph(...). */
+    public static class MorphPlan
+        {
+        Schema schema;                                  // of the target model
+        Model[] models;
+        Model categoricalDefaultModel;
+        String[] keys;                                  // as originally provided
+        
+        int numKeys;                                    // number of keys which are morphed
+        int[] indices;                                  // index in the target of each morphed key
+        String[] morphKeys;                             // each morphed key
+        boolean[] metric;                               // is each morphed key metric?
+        int[] values;                                   // value of morphed key k in model m is values[k * models.length + m]
+
+        // scratch
+        double[] normalized;
+        int[] order;                                    // model indices, strongest first
+        
+        /** Returns true if this plan was compiled for the given target and arguments.  Models are compared by
+            identity, and keys by equality. */
+        public boolean isFor(Model target, Model[] models, Model categoricalDefaultModel, String[] keys)
+            {
+            if (target == null || target.schema != schema) return false;
+            if (categoricalDefaultModel != this.categoricalDefaultModel) return false;
+            if (models.length != this.models.length) return false;
+            for(int i = 0; i < models.length; i++)
+                if (models[i] != this.models[i]) return false;
+            return (keys == this.keys || Arrays.equals(keys, this.keys));
+            }
+        
+        /** Returns the number of keys which are actually morphed. */
+        public int getNumKeys() { return numKeys; }
+        }
+    
+    /** Compiles a MorphPlan, which may be passed to morph(random, plan, weights, previousWeights, categoricalStrategy)
+        to morph this model, or any other model which shares its schema, among the given models.  The arguments
+        are the same as in morph(random, models, categoricalDefaultModel, keys, weights, previousWeights, categoricalStrategy). */
+    public MorphPlan compileMorph(Model[] models, Model categoricalDefaultModel, String[] keys)
+        {
+        int n = models.length;
+        int[] indices = new int[keys.length];
+        String[] morphKeys = new String[keys.length];
+        boolean[] metric = new boolean[keys.length];
+        int[] values = new int[keys.length * n];
+        int numKeys = 0;
+        
+        for(int i = 0; i < keys.length; i++)
+            {
+            // skip if the key doesn't exist, is immutable, is restricted, or is a string
+            if (!models[0].exists(keys[i])) { continue; }
+            int index = indexOf(keys[i]);
+            if (index < 0) continue;
+            if (getStatus(keys[i]) == STATUS_IMMUTABLE || isString(keys[i]) || getStatus(keys[i]) == STATUS_RESTRICTED) continue;
+            if (minExists(keys[i]) && maxExists(keys[i]) && getMin(keys[i]) >= getMax(keys[i]))  continue;  // no range
+            
+            indices[numKeys] = index;
+            morphKeys[numKeys] = keys[i];
+            // Hybrid parameters are considered metric all the time, see morph(...) 
+            metric[numKeys] = (metricMinExists(keys[i]) && metricMaxExists(keys[i]));
+            for(int m = 0; m < n; m++)
+                values[numKeys * n + m] = models[m].get(keys[i]);
+            numKeys++;
+            }
+            
+        MorphPlan plan = new MorphPlan();
+        plan.schema = schema;
+        plan.models = (Model[])models.clone();
+        plan.categoricalDefaultModel = categoricalDefaultModel;
+        plan.keys = keys;
+        plan.numKeys = numKeys;
+        plan.indices = indices;
+        plan.morphKeys = morphKeys;
+        plan.metric = metric;
+        plan.values = values;
+        plan.normalized = new double[n];
+        plan.order = new int[n];
+        return plan;
+        }
+    
     public Model morph(Random random, Model[] models, Model categoricalDefaultModel, String[] keys, double[] weights, double[] previousWeights, int categoricalStrategy)
         {
-        /*
-        // First ... if none of our weights have changed, there's no reason to do this at all
-        boolean nothingChanged = true;
-        for(int i = 0; i < weights.length; i++)
-        if (weights[i] == previousWeights[i])
-        { nothingChanged = false; break; }
-        if (nothingChanged) return this;
-        */
-        
+        return morph(random, compileMorph(models, categoricalDefaultModel, keys), weights, previousWeights, categoricalStrategy);
+        }
+
+    /** Performs morph(random, models, categoricalDefaultModel, keys, weights, previousWeights, categoricalStrategy)
+        using a MorphPlan previously built with compileMorph(models, categoricalDefaultModel, keys).  
+        This model must share its schema with the model which compiled the plan: if not, an IllegalArgumentException 
+        is thrown, and you should compile a new plan for this model, or check beforehand with plan.isFor(...).  
+        A plan must not be used by more than one thread at a time. */
+    public Model morph(Random random, MorphPlan plan, double[] weights, double[] previousWeights, int categoricalStrategy)
+        {
+        if (plan.schema != schema)
+            throw new IllegalArgumentException("MorphPlan was compiled for a Model with a different schema");
+            
         // prepare undo listener if any (likely it will have been deleted)
         if (undoListener!= null)
             {
             undoListener.push(this);
             undoListener.setWillPush(false);
             }
-                
-        // Sorts array
-        Sort[] sorts = new Sort[weights.length];
-                
-        // Normalized weights
-        double[] normalized = new double[weights.length];
+        
+        int n = plan.models.length;
+        double[] normalized = plan.normalized;
+        int[] order = plan.order;
+        int[] values = plan.values;
 
-        // (1) Build and sort the sorts (strongest first)
+        // (1) Sort the models (strongest first).  This is a stable insertion sort, there are only a few.
         // (2) Normalize weights
         double sum = 0;
-        for(int i = 0; i < normalized.length; i++)
+        for(int i = 0; i < n; i++)
             {
-            sorts[i] = new Sort(models[i], weights[i], previousWeights[i]);
+            int j = i;
+            while(j > 0 && weights[order[j - 1]] < weights[i])
+                {
+                order[j] = order[j - 1];
+                j--;
+                }
+            order[j] = i;
             normalized[i] = weights[i];
             sum += normalized[i];
             }
                         
         if (sum == 0)           // make everyone have the same normalized weight
             {
-            for(int i = 0; i < normalized.length; i++)
+            for(int i = 0; i < n; i++)
                 {
-                normalized[i] = 1.0 / normalized.length;        
+                normalized[i] = 1.0 / n;        
                 }
             }
         else
             {
-            for(int i = 0; i < normalized.length; i++)
+            for(int i = 0; i < n; i++)
                 {
                 normalized[i] /= sum;           
                 }
             }
-        Arrays.sort(sorts);             
+        int strongest = order[0];
                 
         /// FOR EACH KEY
 
-        keys_label : for(int i = 0; i < keys.length; i++)
+        keys_label : for(int k = 0; k < plan.numKeys; k++)
             {
-            // skip if the key doesn't exist, is immutable, is restricted, or is a string
-            if (!models[0].exists(keys[i])) { continue; }
-            if (getStatus(keys[i]) == STATUS_IMMUTABLE || isString(keys[i]) || getStatus(keys[i]) == STATUS_RESTRICTED) continue;
-            if (minExists(keys[i]) && maxExists(keys[i]) && getMin(keys[i]) >= getMax(keys[i]))  continue;  // no range
-
-            // If the key is metric AND we're in the metric region in every one of the models
-            /// EDIT: I've decided to say screw it, let hybrid parameters be considered metric
-            /// all the time, otherwise we get lots of jumps for LFO stuff on the Venom for example.
-            if (metricMinExists(keys[i]) &&
-                metricMaxExists(keys[i]))
-                // &&
-                //allInMetric(models, keys[i])) 
+            int index = plan.indices[k];
+            String key = plan.morphKeys[k];
+            int base = k * n;
+            
+            if (plan.metric[k])
                 {
                 /// TREAT AS METRIC
                 
                 /// Compute weighted value using normalized weights
                 double val = 0;
-                for(int j = 0; j < normalized.length; j++)
+                for(int j = 0; j < n; j++)
                     {
-                    val += normalized[j] * models[j].get(keys[i]);
+                    val += normalized[j] * values[base + j];
                     }
                 
-                // Round towards strongest model, which is sorts[0]
-                if (sorts[0].model.get(keys[i]) > val)
+                // Round towards strongest model
+                if (values[base + strongest] > val)
                     val = (int)Math.ceil(val);
                 else
                     val = (int)Math.floor(val);
 
                 // Revise and set
-                set(keys[i], reviseMutatedValue(keys[i], get(keys[i], 0), (int)val));
+                setAt(index, key, reviseMutatedValue(key, getAt(index, 0), (int)val), true);
                 }
             else 
                 {
@@ -1507,45 +1961,38 @@ public class Model implements Cloneable
                 
                 // Go through the models strongest to weakest and let each of them have a chance to change the parameter
                 // or to lock it so other models can't change it
-                for(int j = 0; j < sorts.length; j++)
+                for(int s = 0; s < n; s++)
                     {
+                    int j = order[s];
                     if (categoricalStrategy == CATEGORICAL_STRATEGY_MORPH)
                         {
+                        double weight = weights[j];
+                        double previousWeight = previousWeights[j];
+                        
                         // If we're moving towards this model rather than away from it (model only gets a chance if we're moving towards it)
-                        if (sorts[j].weight > sorts[j].previousWeight || sorts[j].weight == 1.0)
+                        if (weight > previousWeight || weight == 1.0)
                             {
-                            //System.err.println("Towards " + sorts[j].model.get("name", "--") + " " + sorts[j].weight + " " + sorts[j].previousWeight);
                             // If the model has a different value than our value.  In this case it MIGHT change it.  Otherwise it LOCKS it.
-                            if (sorts[j].model.get(keys[i]) != get(keys[i]))
+                            if (values[base + j] != getAt(index, -1))
                                 {
                                 // Which mutator do we use?  Do a coin toss under the weight squared, so we usually do mutator b when further away 
-                                if (coinToss(random, sorts[j].weight * sorts[j].weight * sorts[j].weight * sorts[j].weight))              // right now we're doing p^4
+                                if (coinToss(random, weight * weight * weight * weight))              // right now we're doing p^4
                                     {
                                     // mutator a -- just mutate with weight probability
-                                    if (coinToss(random, sorts[j].weight))
+                                    if (coinToss(random, weight))
                                         {
-                                        //System.err.println("A Updating " + keys[i] + " to " + j);
-                                        set(keys[i], reviseMutatedValue(keys[i], get(keys[i]), sorts[j].model.get(keys[i])));
+                                        setAt(index, key, reviseMutatedValue(key, getAt(index, -1), values[base + j]), true);
                                         continue keys_label;            // lock down -- nobody else gets a chance to change this
                                         }
-                                    else
-                                        {
-                                        // do nothing, let someone else try
-                                        }
                                     }       
                                 else
                                     {
                                     // mutator b -- mutate by the difference between the weight and previous weight so small moves don't have much effect
-                                    if (coinToss(random, sorts[j].weight - sorts[j].previousWeight))
+                                    if (coinToss(random, weight - previousWeight))
                                         {
-                                        //System.err.println("B Updating " + keys[i]);
-                                        set(keys[i], reviseMutatedValue(keys[i], get(keys[i]), sorts[j].model.get(keys[i])));
+                                        setAt(index, key, reviseMutatedValue(key, getAt(index, -1), values[base + j]), true);
                                         continue keys_label;            // lock down -- nobody else gets a chance to change this
                                         }
-                                    else
-                                        {
-                                        // do nothing, let someone else try
-                                        }
                                     }               
                                 }
                             else
@@ -1554,23 +2001,21 @@ public class Model implements Cloneable
                                 continue keys_label;
                                 }
                             }
-                        else
-                            {
-                            // do nothing, let someone else try
-                            }
                         }
                     // handle other categorical strategies
                     else if (categoricalStrategy == CATEGORICAL_STRATEGY_STRONGEST)
                         {
-                        set(keys[i], reviseMutatedValue(keys[i], get(keys[i]), sorts[0].model.get(keys[i])));
+                        setAt(index, key, reviseMutatedValue(key, getAt(index, -1), values[base + strongest]), true);
                         }
                     else if (categoricalStrategy == CATEGORICAL_STRATEGY_DEFAULT)
                         {
-                        set(keys[i], reviseMutatedValue(keys[i], get(keys[i]), categoricalDefaultModel.get(keys[i])));
+                        Model def = plan.categoricalDefaultModel;
+                        setAt(index, key, reviseMutatedValue(key, getAt(index, -1), 
+                                def.schema == schema ? def.getAt(index, -1) : def.get(key)), true);
                         }
                     else
                         {
-                        set(keys[i], reviseMutatedValue(keys[i], get(keys[i]), models[categoricalStrategy].get(keys[i])));
+                        setAt(index, key, reviseMutatedValue(key, getAt(index, -1), values[base + categoricalStrategy]), true);
                         }
                     }
                 }
@@ -1591,7 +2036,6 @@ public class Model implements Cloneable
         }
 
 
-
     /** Override this method in the model produced by synth.buildModel() to revise mutated values if the mutator sets them to invalid things. */
     public int reviseMutatedValue(String key, int old, int current) { return current; }    
 
@@ -1607,9 +2051,9 @@ public class Model implements Cloneable
 
     public void printNode(String key)
         {
-        Node node = storage.get(key);
-        if (node == null) System.err.println("" + key + " -> [NULL NODE]");
-        else System.err.println("" + key + " -> " + node.toString());
+        int index = schema.indexOf(key);
+        if (index < 0) System.err.println("" + key + " -> [NULL NODE]");
+        else System.err.println("" + key + " -> " + nodeToString(index));
         }
 
 
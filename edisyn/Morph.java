@@ -24,6 +24,7 @@ public class Morph extends SynthPanel
     Model[] sources;
     double[] lastWeights = new double[] { 1.0, 0.0, 0.0, 0.0 };
     Model current;
+    Model.MorphPlan plan;                               // compiled for the current sources, see update(...)
     JPanel top;
     JPanel bottom;
     JPanel topCenter;
@@ -353,7 +354,7 @@ public class Morph extends SynthPanel
                 {
                 Model backup = synth.getModel();
                 synth.model = current;
-                synth.sendAllParameters();
+                synth.sendChangedParameters();
                 synth.model = backup;                   
                 }
             }
@@ -447,11 +448,7 @@ public class Morph extends SynthPanel
             }
         else    // Save to File  -- FIXME, should we copy to the synth.model?
             {
-            Model backup = synth.model;
-            synth.model = current;
-            synth.doSaveAs("morphed." + synth.getPatchName(synth.getModel()) + ".syx");
-            synth.model = backup;
-            synth.updateTitle();
+            synth.doSaveAs("morphed." + synth.getPatchName(current) + ".syx", current);
             }
         }
     
@@ -473,20 +470,16 @@ public class Morph extends SynthPanel
         else if (reset == 2)
             {
             Model cancel = sources[button];         //  the original model, to be restored if we failed
-            Model backup = synth.model;
-            sources[button] = backup.copy();
-            synth.model = sources[button];
-            synth.setShowingLimitedBankSysex(true);
-            boolean result = synth.doOpen(false);
-            synth.setShowingLimitedBankSysex(false);
-            synth.model = backup;           // restore
-            synth.updateTitle();
+            sources[button] = synth.getModel().copy();
+            // We don't swap sources[button] in as the synth's model while loading, because 
+            // the user (and the autopilot) can keep working with the synth while the file is read.
+            boolean result = synth.doOpenDetached(sources[button]);
             if (result)
                 {
                 String name = sources[button].get("name", "");
                 if (name.equals(""))
                     {
-                    File filename = synth.getFile();
+                    File filename = synth.getDetachedFile();
                     if (filename != null)
                         {
                         buttons[button].getButton().setText(filename.getName().trim());
@@ -562,10 +555,16 @@ public class Morph extends SynthPanel
                 count++;
                 }
         
+        // (re)compile the morph plan if the sources, the current model, or the mutation keys have changed
+        Model defaultModel = synth.getModel();
+        String[] keys = synth.getMutationKeys();
+        if (plan == null || !plan.isFor(current, models, defaultModel, keys))
+            plan = current.compileMorph(models, defaultModel, keys);
+            
         // perform morph
         synth.getUndo().setWillPush(false);
         synth.setSendMIDI(false);
-        current = current.morph(synth.random, models, synth.getModel(), synth.getMutationKeys(), w, lw, strategy);
+        current = current.morph(synth.random, plan, w, lw, strategy);
         synth.getUndo().setWillPush(true);
         synth.setSendMIDI(true);
         lastWeights = weights;
@@ -575,7 +574,7 @@ public class Morph extends SynthPanel
             {
             Model backup = synth.getModel();
             synth.model = current;
-            synth.sendAllParameters();
+            synth.sendChangedParameters();
             synth.model = backup;
             }
 //        System.err.println("-updating");
@@ -776,7 +775,7 @@ public class Morph extends SynthPanel
                 synth.doRepeatCurrentPatch();
                 }
             // restore patch
-            synth.sendAllParameters();
+            synth.sendChangedParameters();
             }
         startedUp = false;
         }
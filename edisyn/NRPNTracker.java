@@ -0,0 +1,129 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import javax.sound.midi.*;
+
+/****
+      Tracks the NRPN state of each channel of a MIDI output, so that redundant NRPN messages
+      need not be sent.  An NRPN message (see Synth.buildNRPN(...)) consists of four CCs: the
+      parameter number MSB (99) and LSB (98), then the value MSB (6) and LSB (38).  But a synth
+      remembers the last parameter number it was sent on each channel, and the last value MSB,
+      so when the same parameter is sent again (such as when the user sweeps a dial), or when
+      neighboring parameters are sent in a row (such as in Synth.sendDifferentParameters(...)),
+      many of these CCs are unnecessary.
+
+      <p>filter(...) is called just before each message actually goes out the door, and
+      returns false if the message is redundant and may be dropped.  Specifically:
+
+      <ul>
+      <li>A parameter number MSB or LSB is dropped if it is the same as the last one sent on that channel.
+      <li>A value MSB is dropped if it is the same as the last one sent on that channel since the
+      parameter number last changed.
+      <li>A value LSB is never dropped, since synths commonly apply the new value when it arrives.
+      <li>Data Increment (96) and Data Decrement (97) change the value, so the value MSB is forgotten.
+      <li>Any other CC, including the RPN parameter numbers (101 and 100), resets the channel's state.
+      </ul>
+
+      <p>Each Midi.Tuple has its own NRPNTracker, so the state is reset whenever the output is
+      reconnected.  Synths whose devices misbehave when NRPN messages are shortened can turn this
+      off by overriding Synth.getCompressesNRPN().  Messages are still observed when compression
+      is turned off, so that the state stays correct.
+
+      @author Sean Luke
+*/
+
+public class NRPNTracker
+    {
+    /** Indicates that a value is not presently known. */
+    public static final int UNKNOWN = -1;
+
+    int[] parameterMSB = new int[16];
+    int[] parameterLSB = new int[16];
+    int[] valueMSB = new int[16];
+    long messagesSaved = 0;
+
+    public NRPNTracker()
+        {
+        reset();
+        }
+
+    /** Forgets the state of all channels. */
+    public synchronized void reset()
+        {
+        for(int i = 0; i < 16; i++)
+            reset(i);
+        }
+
+    void reset(int channel)
+        {
+        parameterMSB[channel] = UNKNOWN;
+        parameterLSB[channel] = UNKNOWN;
+        valueMSB[channel] = UNKNOWN;
+        }
+
+    /** Returns the number of messages which have been dropped as redundant. */
+    public synchronized long getMessagesSaved() { return messagesSaved; }
+
+    /** Returns the number of bytes which have been saved by dropping redundant messages.
+        Each CC is counted as three bytes, ignoring any running status the driver may apply. */
+    public synchronized long getBytesSaved() { return messagesSaved * 3; }
+
+    /** Notes that the given message is about to be sent, and returns true if it should be sent,
+        or false if it is redundant and may be dropped.  Messages are only dropped if COMPRESS is true. */
+    public synchronized boolean filter(MidiMessage message, boolean compress)
+        {
+        if (!(message instanceof ShortMessage)) return true;
+        ShortMessage sm = (ShortMessage)message;
+        if (sm.getCommand() != ShortMessage.CONTROL_CHANGE) return true;
+
+        int channel = sm.getChannel();
+        int value = sm.getData2();
+        switch(sm.getData1())
+            {
+            case 99:
+                {
+                if (compress && parameterMSB[channel] == value) { messagesSaved++; return false; }
+                parameterMSB[channel] = value;
+                valueMSB[channel] = UNKNOWN;
+                }
+            break;
+            case 98:
+                {
+                if (compress && parameterLSB[channel] == value) { messagesSaved++; return false; }
+                parameterLSB[channel] = value;
+                valueMSB[channel] = UNKNOWN;
+                }
+            break;
+            case 6:
+                {
+                // Only meaningful if we know we're addressing an NRPN parameter
+                if (compress && valueMSB[channel] == value &&
+                    parameterMSB[channel] != UNKNOWN && parameterLSB[channel] != UNKNOWN)
+                    { messagesSaved++; return false; }
+                valueMSB[channel] = value;
+                }
+            break;
+            case 38:
+                {
+                // always send
+                }
+            break;
+            case 96:
+            case 97:
+                {
+                valueMSB[channel] = UNKNOWN;
+                }
+            break;
+            default:
+                {
+                reset(channel);
+                }
+            break;
+            }
+        return true;
+        }
+    }
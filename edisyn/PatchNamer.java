@@ -0,0 +1,201 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/****
+     Fills in the names and locations of a collection of Patches, such as those gathered from a
+     bulk sysex file.  Bank patches are named immediately.  Other patches must be named by building
+     a throwaway Synth and parsing the patch into it, which is slow: so this is done in the background,
+     in parallel, with each worker thread keeping its own Codec for each kind of synthesizer
+     it encounters.  Call isNamed(...) to determine if a given patch has been named yet, and
+     waitUntilDone() to wait for all of them.
+
+     <p>The results are also stored in a cache keyed by the patch's sysex content, so that if the
+     same patches are seen again, such as when the user reopens the same bank file, they are named
+     immediately without parsing.
+
+     @author Sean Luke
+*/
+
+public class PatchNamer
+    {
+    /** The maximum number of patches whose names are cached. */
+    public static final int MAX_CACHE_SIZE = 16384;
+
+    /** The maximum number of worker threads. */
+    public static final int MAX_WORKERS = 8;
+
+    static class Key
+        {
+        int synth;
+        byte[] data;
+        int hash;
+
+        Key(int synth, byte[] data)
+            {
+            this.synth = synth;
+            this.data = data;
+            hash = Arrays.hashCode(data) * 31 + synth;
+            }
+
+        public int hashCode() { return hash; }
+
+        public boolean equals(Object obj)
+            {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return (other.synth == synth && other.hash == hash && Arrays.equals(other.data, data));
+            }
+        }
+
+    // Maps Keys to String[] { name, location }, least recently used first
+    static LinkedHashMap<Key, String[]> cache = new LinkedHashMap<Key, String[]>(16, 0.75f, true)
+        {
+        protected boolean removeEldestEntry(Map.Entry<Key, String[]> eldest)
+            {
+            return size() > MAX_CACHE_SIZE;
+            }
+        };
+
+    Patch[] patches;
+    Key[] keys;
+    boolean[] named;
+    int remaining;
+    AtomicInteger next = new AtomicInteger(0);
+    volatile boolean cancelled = false;
+    Thread[] workers = new Thread[0];
+
+    /** Begins naming the given patches.  SYNTH is used to flatten the patches' sysex. */
+    public PatchNamer(Synth synth, Patch[] patches)
+        {
+        this.patches = patches;
+        keys = new Key[patches.length];
+        named = new boolean[patches.length];
+
+        HashMap<String, Integer> banks = new HashMap<String, Integer>();
+        for(int i = 0; i < patches.length; i++)
+            {
+            Patch p = patches[i];
+            if (p.bank)
+                {
+                // banks are numbered in order of appearance, so we do them here
+                String classname = Synth.getClassNames()[p.synth];
+                String bankname = Synth.getBankName(classname, synth.flatten(p.sysex));
+                Integer in = banks.get(classname);
+                if (in != null)
+                    {
+                    p.name = "Bank Sysex (" + in + ") " + bankname;
+                    banks.put(classname, Integer.valueOf(in.intValue() + 1));
+                    }
+                else
+                    {
+                    p.name = "Bank Sysex " + bankname;
+                    banks.put(classname, Integer.valueOf(2));
+                    }
+                named[i] = true;
+                }
+            else
+                {
+                keys[i] = new Key(p.synth, synth.flatten(p.sysex));
+                String[] result = null;
+                synchronized(cache) { result = cache.get(keys[i]); }
+                if (result != null)
+                    {
+                    p.name = result[0];
+                    p.location = result[1];
+                    named[i] = true;
+                    }
+                else remaining++;
+                }
+            }
+
+        if (remaining > 0)
+            {
+            workers = new Thread[Math.min(remaining, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()))];
+            for(int i = 0; i < workers.length; i++)
+                {
+                workers[i] = new Thread(new Runnable()
+                    {
+                    public void run() { work(); }
+                    });
+                workers[i].setName("Edisyn Patch Namer " + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+                }
+            }
+        }
+
+    /** Returns true if the patch at the given index has been named. */
+    public synchronized boolean isNamed(int patch) { return named[patch]; }
+
+    /** Returns true if all the patches have been named (or naming was cancelled). */
+    public synchronized boolean isDone() { return remaining == 0 || cancelled; }
+
+    /** Stops naming patches.  Patches not yet named will be left with null names and locations. */
+    public void cancel()
+        {
+        cancelled = true;
+        }
+
+    /** Returns true if naming was cancelled. */
+    public boolean isCancelled() { return cancelled; }
+
+    /** Blocks until all the patches have been named (or naming was cancelled). */
+    public void waitUntilDone()
+        {
+        for(int i = 0; i < workers.length; i++)
+            {
+            try { workers[i].join(); }
+            catch (InterruptedException ex) { return; }
+            }
+        }
+
+    void work()
+        {
+        HashMap<Integer, Codec> codecs = new HashMap<Integer, Codec>();            // one per kind of synth
+        while(!cancelled)
+            {
+            int i = next.getAndIncrement();
+            if (i >= patches.length) break;
+            if (keys[i] == null || isNamed(i)) continue;
+            Patch p = patches[i];
+
+            String name = null;
+            String location = null;
+            try
+                {
+                Codec codec = codecs.get(p.synth);
+                if (codec == null)
+                    {
+                    codec = new Codec(Synth.getClassNames()[p.synth]);
+                    codecs.put(p.synth, codec);
+                    }
+                Model model = codec.parse(keys[i].data);
+                if (model != null)
+                    {
+                    name = codec.getPatchName(model);
+                    location = codec.getPatchLocationName(model);
+                    }
+                synchronized(cache) { cache.put(keys[i], new String[] { name, location }); }
+                }
+            catch (Exception ex)
+                {
+                Synth.handleException(ex);
+                }
+
+            synchronized(this)
+                {
+                p.name = name;
+                p.location = location;
+                named[i] = true;
+                remaining--;
+                }
+            }
+        }
+    }
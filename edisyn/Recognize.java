@@ -47,6 +47,17 @@ public class Recognize
         return "";
         }
         
+    /** Optionally create your own Synth-specific class version of this static method.
+        Return the sysex manufacturer ID (one byte, or three bytes starting with 0x00) which every
+        message you recognize in recognize(...) and recognizeBank(...) begins with, just after the 0xF0.
+        Edisyn will then only ask you to recognize messages with this ID when it is searching for the
+        synthesizer which handles a given message.  If you can recognize messages with more than one
+        ID, or don't require any particular ID, don't implement this method (by default it returns null). */
+    private static byte[] getManufacturerID()
+        {
+        return null;
+        }
+
     /** A few synthesizers, such as the Kawai K4, have mega-bank sysex which consists of different kinds
         of patches, such as single patches and multi patches.  This method is called
         to break these into multiple individual or multiple bank patches that can
@@ -0,0 +1,293 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.lang.invoke.*;
+import java.util.*;
+
+/****
+     A registry of the static recognizer methods found in each synthesizer's <tt>...Rec</tt> class
+     (see Recognize.java).  Previously Synth looked up the recognizer class and its methods by reflection
+     every time it wanted to recognize a single sysex message, which added up when loading large sysex files
+     or when scanning every synthesizer for a match.  Instead, the first time a recognizer is needed, its
+     class is loaded and its methods are resolved once into MethodHandles, which are then cached.
+
+     <p>Additionally, the recognizers for all the synthesizers in Synths.txt are grouped by the sysex manufacturer
+     ID they declare via their optional <tt>getManufacturerID()</tt> method.  When Edisyn needs to find the
+     synthesizer which recognizes a message, it only tests the recognizers whose manufacturer ID matches the
+     message's, plus those which didn't declare an ID at all, in their original Synths.txt order.  Thus the
+     answer is the same as if every recognizer had been tested in order.  The message's manufacturer ID
+     comes from its header as classified by Midi.classifySysex(...), which callers that test a message
+     against several recognizers compute once and pass in.
+
+     @author Sean Luke
+*/
+
+public class RecognizerRegistry
+    {
+    /** Returned by getManufacturerKey(...) for messages too short to have a manufacturer ID. */
+    public static final int NO_MANUFACTURER = Midi.NO_MANUFACTURER;
+
+    static final MethodType RECOGNIZE_TYPE = MethodType.methodType(Boolean.TYPE, byte[].class);
+    static final MethodType NEXT_GROUP_TYPE = MethodType.methodType(Integer.TYPE, byte[][].class, Integer.TYPE);
+    static final MethodType BANK_NAME_TYPE = MethodType.methodType(String.class, byte[].class);
+    static final MethodType MANUFACTURER_TYPE = MethodType.methodType(byte[].class);
+
+    /** The cached methods of a single recognizer class.  Methods which the class doesn't implement are null. */
+    public static class Recognizer
+        {
+        public final String synthClassName;
+        MethodHandle recognize;
+        MethodHandle recognizeBank;
+        MethodHandle getNextSysexPatchGroup;
+        MethodHandle getBankName;
+        int manufacturer = NO_MANUFACTURER;
+
+        Recognizer(String synthClassName, Class recognizer)
+            {
+            this.synthClassName = synthClassName;
+            recognize = find(recognizer, "recognize", RECOGNIZE_TYPE);
+            recognizeBank = find(recognizer, "recognizeBank", RECOGNIZE_TYPE);
+            getNextSysexPatchGroup = find(recognizer, "getNextSysexPatchGroup", NEXT_GROUP_TYPE);
+            getBankName = find(recognizer, "getBankName", BANK_NAME_TYPE);
+            MethodHandle getManufacturerID = find(recognizer, "getManufacturerID", MANUFACTURER_TYPE);
+            if (getManufacturerID != null)
+                {
+                try
+                    {
+                    manufacturer = getManufacturerKey((byte[])getManufacturerID.invokeExact());
+                    }
+                catch (Throwable e)
+                    {
+                    Synth.handleException(e);
+                    }
+                }
+            }
+
+        /** Returns true if the recognizer has a <tt>recognize(...)</tt> method. */
+        public boolean canRecognize() { return recognize != null; }
+
+        /** Returns the manufacturer key declared by the recognizer, or NO_MANUFACTURER if it did not declare one. */
+        public int getManufacturer() { return manufacturer; }
+
+        /** Calls the recognizer's <tt>recognize(...)</tt> method, returning false if there is no such method
+            or if it throws an exception (which is reported).  HEADER is the message's header as classified by
+            Midi.classifySysex(...).  If the recognizer declared a manufacturer ID and the message has a different
+            one, false is returned without calling the method at all. */
+        public boolean recognize(byte[] data, long header)
+            {
+            int key = Midi.getSysexManufacturer(header);
+            if (manufacturer != NO_MANUFACTURER && key != NO_MANUFACTURER && key != manufacturer)
+                return false;
+            return recognize(data);
+            }
+
+        /** Calls the recognizer's <tt>recognize(...)</tt> method, returning false if there is no such method
+            or if it throws an exception (which is reported). */
+        public boolean recognize(byte[] data)
+            {
+            if (recognize == null) 
+                {
+                System.err.println("Synth.recognize(Class, byte[]) ERROR.  No recognize(byte[]) method for " + synthClassName); 
+                return false;
+                }
+            try
+                {
+                return (boolean)recognize.invokeExact(data);
+                }
+            catch (Throwable e)
+                {
+                System.err.println("Synth.recognize(Class, byte[]) ERROR.  Could not invoke method for " + synthClassName); 
+                Synth.handleException(e);
+                return false;
+                }
+            }
+
+        /** Calls the recognizer's <tt>recognizeBank(...)</tt> method, returning false if there is no such method
+            or if it throws an exception. */
+        public boolean recognizeBank(byte[] data)
+            {
+            if (recognizeBank == null) return false;
+            try
+                {
+                return (boolean)recognizeBank.invokeExact(data);
+                }
+            catch (Throwable e)
+                {
+                return false;
+                }
+            }
+
+        /** Calls the recognizer's <tt>getNextSysexPatchGroup(...)</tt> method.  If there is no such method,
+            or if it throws an exception, we assume that the patch is a single message and return start + 1. */
+        public int getNextSysexPatchGroup(byte[][] sysex, int start)
+            {
+            if (getNextSysexPatchGroup == null) return start + 1;
+            try
+                {
+                return (int)getNextSysexPatchGroup.invokeExact(sysex, start);
+                }
+            catch (Throwable e)
+                {
+                return start + 1;
+                }
+            }
+
+        /** Calls the recognizer's <tt>getBankName(...)</tt> method, returning "" if there is no such method
+            or if it throws an exception. */
+        public String getBankName(byte[] data)
+            {
+            if (getBankName == null) return "";
+            try
+                {
+                return (String)getBankName.invokeExact(data);
+                }
+            catch (Throwable e)
+                {
+                return "";
+                }
+            }
+        }
+
+    static MethodHandle find(Class recognizer, String name, MethodType type)
+        {
+        try
+            {
+            return MethodHandles.publicLookup().findStatic(recognizer, name, type);
+            }
+        catch (NoSuchMethodException | IllegalAccessException e)
+            {
+            return null;
+            }
+        }
+
+
+    //// RECOGNIZERS BY CLASS NAME
+
+    static HashMap<String, Recognizer> recognizers = new HashMap<String, Recognizer>();
+
+    /** Returns the Recognizer for the given synth class name, loading the <tt>...Rec</tt> class the
+        first time it is requested.  Returns null if there is no such class. */
+    public static Recognizer get(String synthClassName)
+        {
+        synchronized(recognizers)
+            {
+            if (recognizers.containsKey(synthClassName))
+                return recognizers.get(synthClassName);
+
+            Recognizer rec = null;
+            try
+                {
+                rec = new Recognizer(synthClassName, Class.forName(synthClassName + "Rec"));
+                }
+            catch (ClassNotFoundException ex)
+                {
+                Synth.handleException(ex);
+                }
+            recognizers.put(synthClassName, rec);
+            return rec;
+            }
+        }
+
+
+    //// RECOGNIZERS BY MANUFACTURER
+
+    static Recognizer[] synths;                                         // in Synths.txt order
+    static int[][] buckets;                                             // manufacturer index -> sorted synth indices, including the wildcards
+    static int[] wildcards;                                             // synth indices with no declared manufacturer
+    static int[] all;                                                   // all synth indices
+
+    /** Returns a key for the manufacturer ID of the given sysex message.  One-byte manufacturer IDs are 
+        returned as themselves (0x01 ... 0x7F), and three-byte IDs starting with 0x00 are returned as 
+        0x10000 plus the remaining two bytes.  If the message is too short, returns NO_MANUFACTURER.  
+        See Midi.classifySysex(...). */
+    public static int getSysexManufacturerKey(byte[] data)
+        {
+        return Midi.getSysexManufacturer(Midi.classifySysex(data));
+        }
+
+    /** Returns a key for a bare manufacturer ID of one byte, or of three bytes starting with 0x00.
+        Returns NO_MANUFACTURER if the ID is not one of these.  See Midi.getManufacturerKey(...). */
+    public static int getManufacturerKey(byte[] id)
+        {
+        return Midi.getManufacturerKey(id);
+        }
+
+    static synchronized void buildBuckets()
+        {
+        if (synths != null) return;
+
+        String[] classNames = Synth.getClassNames();
+        Recognizer[] recs = new Recognizer[classNames.length];
+        HashMap<Integer, ArrayList<Integer>> declared = new HashMap<Integer, ArrayList<Integer>>();
+        ArrayList<Integer> undeclared = new ArrayList<Integer>();
+
+        for(int i = 0; i < classNames.length; i++)
+            {
+            recs[i] = get(classNames[i]);
+            int key = (recs[i] == null ? NO_MANUFACTURER : recs[i].manufacturer);
+            if (key == NO_MANUFACTURER)
+                {
+                undeclared.add(i);
+                }
+            else
+                {
+                ArrayList<Integer> list = declared.get(key);
+                if (list == null) { list = new ArrayList<Integer>(); declared.put(key, list); }
+                list.add(i);
+                }
+            }
+
+        wildcards = toArray(undeclared);
+        all = new int[classNames.length];
+        for(int i = 0; i < all.length; i++) all[i] = i;
+        buckets = new int[Midi.NUM_MANUFACTURER_INDICES][];
+        for(Integer key : declared.keySet())
+            {
+            // merge with the wildcards, preserving Synths.txt order
+            ArrayList<Integer> list = declared.get(key);
+            list.addAll(undeclared);
+            Collections.sort(list);
+            buckets[Midi.getManufacturerIndex(key)] = toArray(list);
+            }
+        synths = recs;
+        }
+
+    static int[] toArray(ArrayList<Integer> list)
+        {
+        int[] array = new int[list.size()];
+        for(int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+        }
+
+    /** Returns the indices of the synthesizers (in Synths.txt order) whose recognizers might recognize
+        the given sysex message.  This is every synthesizer whose recognizer declared the message's
+        manufacturer ID or declared no ID at all.  The returned array must not be modified. */
+    public static int[] getCandidates(byte[] data)
+        {
+        return getCandidates(Midi.classifySysex(data));
+        }
+
+    /** Returns the indices of the synthesizers (in Synths.txt order) whose recognizers might recognize
+        a sysex message with the given header, as classified by Midi.classifySysex(...).  See getCandidates(byte[]).
+        The returned array must not be modified. */
+    public static int[] getCandidates(long header)
+        {
+        buildBuckets();
+        int index = Midi.getManufacturerIndex(Midi.getSysexManufacturer(header));
+        if (index < 0) return all;
+        int[] candidates = buckets[index];
+        return (candidates == null ? wildcards : candidates);
+        }
+
+    /** Returns the Recognizer for the synthesizer at the given index in Synths.txt, or null if there is none. */
+    public static Recognizer get(int synth)
+        {
+        buildBuckets();
+        return synths[synth];
+        }
+    }
@@ -55,7 +55,7 @@ public abstract class Synth extends JComponent implements Updatable
     public JTabbedPane tabs = new JTabbedPane();
 
     /** The largest permitted sysex file. */
-    public static final int MAX_FILE_LENGTH = 512 * 1024;        // so we don't go on forever
+    public static final int MAX_FILE_LENGTH = 512 * 1024;        // files larger than this prompt the user before loading
 
     /** Used in emitAll(key...) to indicate that emitAll(...) is being used to send one of a stream of all the parameters. */
     public static final int STATUS_SENDING_ALL_PARAMETERS = 0;
@@ -112,6 +112,8 @@ public abstract class Synth extends JComponent implements Updatable
     public JCheckBoxMenuItem persistentChooserMenu;
     /** The "Switching Menus Sends All Sounds Off" menu */
     public JCheckBoxMenuItem clearNotesMenu;
+    /** The "Drop Superseded Parameter Updates" menu */
+    public JCheckBoxMenuItem coalesceParametersMenu;
     /** The "Launch with Last Editor" menu */
     public JCheckBoxMenuItem launchMenu;
     /** The "Blend" menu */
@@ -128,6 +130,9 @@ public abstract class Synth extends JComponent implements Updatable
     
     public Undo getUndo() { return undo; }
     
+    /** Returns the Synth's private random number generator, for example so that it may be seeded for testing. */
+    public Random getRandom() { return random; }
+    
     // The current copy preamble    
     String copyPreamble;
     public String getCopyPreamble() { return copyPreamble; }
@@ -146,10 +151,23 @@ public abstract class Synth extends JComponent implements Updatable
     /** Returns the model associated with this editor. */
     public Model getModel() { return model; }
     
+    /** Begins a batch of changes to the model, so that widgets are only updated once, at the
+        matching endBatch().  See Model.beginBatch(). */
+    public void beginBatch() { model.beginBatch(); }
+
+    /** Ends a batch of changes to the model begun with beginBatch(), updating the widgets of every
+        changed key, then repainting the editor all at once.  Always call this in a finally clause. */
+    public void endBatch()
+        {
+        if (model.endBatch())
+            repaint();
+        }
+    
     boolean testIncomingControllerMIDI;
     boolean testIncomingSynthMIDI;
     
     static boolean clearNotes;
+    static boolean coalesceParameters;
 
 
     boolean parsingForMerge = false;
@@ -247,6 +265,7 @@ public abstract class Synth extends JComponent implements Updatable
         random = new Random(System.currentTimeMillis());
         
         clearNotes = getLastXAsBoolean("SwitchingSendsAllSoundsOff", null, true, false);        
+        coalesceParameters = getLastXAsBoolean("CoalesceParameters", null, true, false);        
         perChannelCCs = ("" + getLastX("PerChannelCC", getSynthNameLocal(), false)).equalsIgnoreCase("true");                  
         }
         
@@ -281,6 +300,7 @@ public abstract class Synth extends JComponent implements Updatable
         try
             {
             Synth synth = (Synth)(_class.newInstance()); // this will setWillPush(false);
+            synth.recordPrototype();
             if (!throwaway)
                 {
                 synth.sprout();
@@ -988,6 +1008,10 @@ public abstract class Synth extends JComponent implements Updatable
     public double getPauseBetweenMIDISends() { return 0; }
     long getNanoPauseBetweenMIDISends() { return (long)(getPauseBetweenMIDISends() * 1000000.0); }
 
+    /** Override this to return FALSE if MIDI should be sent, and pauses performed, directly on the calling thread
+        rather than being placed in the MIDI tuple's asynchronous MidiScheduler.  By default this is TRUE. */
+    public boolean getSendsMIDIAsynchronously() { return true; }
+
     /** Override this to make sure that the given additional time (in ms) has transpired between MIDI patch changes. */
     public int getPauseAfterChangePatch() { return 0; }
     
@@ -1036,6 +1060,17 @@ public abstract class Synth extends JComponent implements Updatable
         sending multiple separate parameter change requests (FALSE).  By default this is TRUE. */
     public boolean getSendsAllParametersAsDump() { return true; }
 
+    /** Returns whether, when auditioning patches in the Hill-Climber and Morpher, the synth may be sent just the
+        parameters which have changed since the last patch auditioned, rather than all of them.  See sendChangedParameters().
+        Override this to return FALSE if your synth must do something special when sending all its parameters, or
+        if individual parameter changes are unreliable.  By default this is TRUE. */
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return true; }
+
+    /** Returns whether redundant NRPN messages may be dropped when sending to the synth: that is, a parameter number
+        or value MSB which is the same as the last one sent on that channel (see NRPNTracker).  Override this to return 
+        FALSE if your synth misbehaves when it receives shortened NRPN messages.  By default this is TRUE. */
+    public boolean getCompressesNRPN() { return true; }
+
     /** Returns whether the synth sends raw CC or cooked CC (such as for NRPN) to update parameters.  The default is FALSE (cooked or nothing). */
     public boolean getExpectsRawCCFromSynth() { return false; }
 
@@ -1182,6 +1217,7 @@ public abstract class Synth extends JComponent implements Updatable
     public int performParse(byte[] data, boolean fromFile)
         {
         boolean previous = model.getUpdateListeners();
+        beginBatch();
         model.setUpdateListeners(false);
         int val = PARSE_ERROR;
         try
@@ -1192,6 +1228,7 @@ public abstract class Synth extends JComponent implements Updatable
             {
             model.setUpdateListeners(previous);
             model.updateAllListeners();
+            endBatch();
             }
         return val;
         }
@@ -1208,7 +1245,7 @@ public abstract class Synth extends JComponent implements Updatable
     Midi midi = new Midi();
 
     // flag for whether sending MIDI is temporarily turned off or not
-    boolean sendMIDI = true;  // we can send MIDI 
+    volatile boolean sendMIDI = true;  // we can send MIDI.  Volatile because the ControllerRouter reads it too
 
 
 
@@ -1229,8 +1266,10 @@ public abstract class Synth extends JComponent implements Updatable
                     {
                     public void run()
                         {
+                        if (deferUntilTaskFinished(this)) return;
                         if (amActiveSynth())
                             {
+                            forgetSentParameters(message);          // the synth may have changed
                             if (message instanceof SysexMessage)
                                 {
                                 final byte[] data = midi.gatherInSysexData((SysexMessage)message);
@@ -1304,6 +1343,10 @@ public abstract class Synth extends JComponent implements Updatable
                                             }
                                         file = null;
                                         updateBlend();
+                                        
+                                        // If we're batch downloading, move on right away rather than waiting for the timer
+                                        if (incomingPatch && patchTimer != null && getBatchDownloadsOnArrival())
+                                            receiveBatchPatch();
                                         }
 
                                     updateTitle();
@@ -1388,93 +1431,8 @@ public abstract class Synth extends JComponent implements Updatable
                                 
             public void send(final MidiMessage message, final long timeStamp)
                 {
-                // I'm doing this in the Swing event thread because I figure it's multithreaded
-                SwingUtilities.invokeLater(new Runnable()
-                    {
-                    public void run()
-                        {
-                        if (amActiveSynth())
-                            {
-                            if (message instanceof ShortMessage)
-                                {
-                                midi.resetKeySysexData();
-                                ShortMessage shortMessage = (ShortMessage)message;
-                                try
-                                    {
-                                    // we intercept a message if:
-                                    // 1. It's a CC (maybe NRPN)
-                                    // 2. We're not passing through CC
-                                    // 3. It's the right channel OR our key channel is OMNI OR we're doing per-channel CCs
-                                    if (tuple != null &&
-                                        !getPassThroughCC() && 
-                                        shortMessage.getCommand() == ShortMessage.CONTROL_CHANGE &&
-                                        (shortMessage.getChannel() == (tuple.keyChannel - 1) || tuple.keyChannel == tuple.KEYCHANNEL_OMNI || perChannelCCs))
-                                        {
-                                        // we intercept this
-                                        handleKeyRawCC(shortMessage);
-                                        messageFromController(message, true, false);
-                                        }
-                                        
-                                    // We send the message to the synth if:
-                                    // 1. We didn't intercept it
-                                    // 2. We pass through data to the synth
-                                    else if (tuple != null && getPassThroughController())
-                                        {
-                                        // pass it on!
-                                        ShortMessage newMessage = null;
-                                                                                
-                                        // In order to pass on, we have to make a new one.  But 
-                                        // stupidly, ShortMessage has no way of changing its channel, so we have to rebuild
-                                        ShortMessage s = (ShortMessage)message;
-                                        int status = s.getStatus();
-                                        int channel = s.getChannel();
-                                        int data1 = s.getData1();
-                                        int data2 = s.getData2();
-                                        boolean voiceMessage = ( status < 0xF0 );
-
-                                        // should we attempt to reroute to the synth?
-                                        if (channel == (tuple.keyChannel - 1) || tuple.keyChannel == tuple.KEYCHANNEL_OMNI)
-                                            {
-                                            channel = getVoiceMessageRoutedChannel(channel, getChannelOut());
-                                            }
-
-                                        if (voiceMessage)
-                                            {
-                                            newMessage = new ShortMessage(status, channel, data1, data2);
-                                            }
-                                        else
-                                            {
-                                            newMessage = new ShortMessage(status, data1, data2);
-                                            }
-                                                                
-                                        tryToSendMIDI(newMessage);
-                                        messageFromController(newMessage, false, true);
-                                        }
-                                    else
-                                        {
-                                        messageFromController(message, false, false);
-                                        }
-                                    }
-                                catch (InvalidMidiDataException e)
-                                    {
-                                    Synth.handleException(e);
-                                    messageFromController(message, false, false);
-                                    }
-                                }
-                            else if (message instanceof SysexMessage && passThroughController)
-                                {
-                                tryToSendSysex(extractData(message));
-                                messageFromController(message, false, true);
-                                }
-                            }
-                        if (testIncomingControllerMIDI) 
-                            { 
-                            showSimpleMessage("Incoming MIDI from Controller", "A MIDI message has arrived from the Controller:\n" + Midi.format(message) + "\nTime: " + timeStamp); 
-                            testIncomingControllerMIDI = false; 
-                            testIncomingController.setText("Report Next Controller MIDI");
-                            } 
-                        }
-                    });
+                // This is routed on a dedicated thread: see routeFromController(...)
+                ControllerRouter.getRouter().route(Synth.this, message, timeStamp, false);
                 }
             };
         }
@@ -1491,99 +1449,202 @@ public abstract class Synth extends JComponent implements Updatable
                                 
             public void send(final MidiMessage message, final long timeStamp)
                 {
-                // I'm doing this in the Swing event thread because I figure it's multithreaded
-                SwingUtilities.invokeLater(new Runnable()
+                // This is routed on a dedicated thread: see routeFromController(...)
+                ControllerRouter.getRouter().route(Synth.this, message, timeStamp, true);
+                }
+            };
+        }    
+    
+    // The latency between receiving a message from the controller and sending it to the synth
+    LatencyHistogram controllerLatency = new LatencyHistogram();
+    
+    /** Returns the histogram of latencies, from the time a message arrives from the controller 
+        to the time it is actually sent to the synth's receiver, of the messages passed through
+        to the synth. */
+    public LatencyHistogram getControllerLatency() { return controllerLatency; }
+    
+    /** Called by the ControllerRouter, on its own thread, with a message from the Key (or if KEY2, Key 2) 
+        device which arrived at time RECEIVED (per System.nanoTime()).  If the message is simply to be passed 
+        through to the synth, it is rechanneled and sent right here, so it doesn't have to wait for the
+        Swing Event Thread, nor for MIDI already waiting in the MidiScheduler.  Then the message is handed to the Swing Event Thread, which intercepts it 
+        if need be, and lets messageFromController(...) know about it. */
+    void routeFromController(final MidiMessage message, final long timeStamp, final boolean key2, final long received)
+        {
+        ShortMessage routed = null;
+        Midi.Tuple t = tuple;
+        if (t != null && 
+            message instanceof ShortMessage && 
+            getPassThroughController() &&
+            !interceptsFromController((ShortMessage)message, t, key2) && 
+            amActiveSynth())
+            {
+            routed = rechannelFromController((ShortMessage)message, t, key2);
+            if (routed == null || !passThroughToSynth(routed, received))
+                routed = null;             // let the Swing Event Thread try
+            }
+                
+        final ShortMessage _routed = routed;
+        SwingUtilities.invokeLater(new Runnable()
+            {
+            public void run()
+                {
+                if (deferUntilTaskFinished(this)) return;
+                handleFromController(message, timeStamp, key2, _routed, received);
+                }
+            });
+        }
+        
+    // Sends a NON-Sysex MIDI message from the controller, which arrived at time RECEIVED (per System.nanoTime()), 
+    // on to the synth.  We don't use tryToSendMIDI(...) because the Swing Event Thread may have turned off
+    // getSendMIDI() for a moment, and the message would be lost.  Nor do we put the message at the end of
+    // the MidiScheduler's queue, where it would wait behind every parameter change, dump, and pause scheduled
+    // so far: rather it's scheduled in the scheduler's urgent lane, which keeps pass-through messages in order 
+    // among themselves.  The latency is recorded when the message is actually sent.
+    // Returns false if there is no output or an error occurred when sending.
+    boolean passThroughToSynth(MidiMessage message, long received)
+        {
+        Midi.Tuple t = tuple;               // we may be called from the ControllerRouter's thread
+        if (t == null) return false;
+        
+        Receiver receiver = t.out;
+        if (receiver == null) return false;
+        
+        MidiScheduler scheduler = getMIDIScheduler();
+        if (scheduler != null)
+            {
+            forgetSentParameters(message);
+            scheduler.scheduleUrgent(this, receiver, message, noMIDIPause ? 0 : getNanoPauseBetweenMIDISends(), received, controllerLatency);
+            return true;
+            }
+        else if (sendMIDIToSynth(message))
+            {
+            controllerLatency.add(System.nanoTime() - received);
+            return true;
+            }
+        else return false;
+        }
+        
+    // Returns true if the given message from the controller should be intercepted for our own use
+    boolean interceptsFromController(ShortMessage shortMessage, Midi.Tuple t, boolean key2)
+        {
+        // we intercept a message if:
+        // 1. It's a CC (maybe NRPN)
+        // 2. We're not passing through CC
+        // 3. It's the right channel OR our key (or key 2) channel is OMNI OR we're doing per-channel CCs
+        int keyChannel = (key2 ? t.key2Channel : t.keyChannel);
+        return (!getPassThroughCC() && 
+            shortMessage.getCommand() == ShortMessage.CONTROL_CHANGE &&
+            (shortMessage.getChannel() == (keyChannel - 1) || keyChannel == t.KEYCHANNEL_OMNI || perChannelCCs));
+        }
+    
+    // Returns a copy of the given message from the controller, rerouted to the synth's channel if appropriate,
+    // or null if it couldn't be built.
+    ShortMessage rechannelFromController(ShortMessage s, Midi.Tuple t, boolean key2)
+        {
+        // In order to pass on, we have to make a new one.  But 
+        // stupidly, ShortMessage has no way of changing its channel, so we have to rebuild
+        int status = s.getStatus();
+        int channel = s.getChannel();
+        int data1 = s.getData1();
+        int data2 = s.getData2();
+        boolean voiceMessage = ( status < 0xF0 );
+        int keyChannel = (key2 ? t.key2Channel : t.keyChannel);
+
+        // should we attempt to reroute to the synth?
+        if (channel == (keyChannel - 1) || keyChannel == t.KEYCHANNEL_OMNI)
+            {
+            channel = getVoiceMessageRoutedChannel(channel, getChannelOut());
+            }
+
+        try
+            {
+            if (voiceMessage)
+                {
+                return new ShortMessage(status, channel, data1, data2);
+                }
+            else
+                {
+                return new ShortMessage(status, data1, data2);
+                }
+            }
+        catch (InvalidMidiDataException e)
+            {
+            Synth.handleException(e);
+            return null;
+            }
+        }
+        
+    // Finishes handling a message from the Key (or if KEY2, Key 2) device on the Swing Event Thread.
+    // If ROUTED is non-null, it's the rechanneled message which routeFromController(...) already sent to the synth.
+    // RECEIVED is when the message arrived, per System.nanoTime().
+    void handleFromController(MidiMessage message, long timeStamp, boolean key2, ShortMessage routed, long received)
+        {
+        if (amActiveSynth())
+            {
+            if (message instanceof ShortMessage)
+                {
+                if (key2) midi.resetKey2SysexData();
+                else midi.resetKeySysexData();
+                ShortMessage shortMessage = (ShortMessage)message;
+                
+                if (routed != null)
                     {
-                    public void run()
-                        {
-                        if (amActiveSynth())
-                            {
-                            if (message instanceof ShortMessage)
-                                {
-                                midi.resetKey2SysexData();
-                                ShortMessage shortMessage = (ShortMessage)message;
-                                try
-                                    {
-                                    // we intercept a message if:
-                                    // 1. It's a CC (maybe NRPN)
-                                    // 2. We're not passing through CC
-                                    // 3. It's the right channel OR our key 2 channel is OMNI OR we're doing per-channel CCs
-                                    if (tuple != null &&
-                                        !getPassThroughCC() && 
-                                        shortMessage.getCommand() == ShortMessage.CONTROL_CHANGE &&
-                                        (shortMessage.getChannel() == (tuple.key2Channel - 1) || tuple.key2Channel == tuple.KEYCHANNEL_OMNI || perChannelCCs))
-                                        {
-                                        // we intercept this
-                                        handleKeyRawCC(shortMessage);
-                                        messageFromController(message, true, false);
-                                        }
+                    // We passed it on already.  But forget again: a parameter may have been sent
+                    // on this thread while the router was sending.
+                    forgetSentParameters(routed);
+                    messageFromController(routed, false, true);
+                    }
+                else if (tuple != null && interceptsFromController(shortMessage, tuple, key2))
+                    {
+                    // we intercept this
+                    handleKeyRawCC(shortMessage);
+                    messageFromController(message, true, false);
+                    }
                                         
-                                    // We send the message to the synth if:
-                                    // 1. We didn't intercept it
-                                    // 2. We pass through data to the synth
-                                    else if (tuple != null && getPassThroughController())
-                                        {
-                                        // pass it on!
-                                        ShortMessage newMessage = null;
-                                                                                
-                                        // In order to pass on, we have to make a new one.  But 
-                                        // stupidly, ShortMessage has no way of changing its channel, so we have to rebuild
-                                        ShortMessage s = (ShortMessage)message;
-                                        int status = s.getStatus();
-                                        int channel = s.getChannel();
-                                        int data1 = s.getData1();
-                                        int data2 = s.getData2();
-                                        boolean voiceMessage = ( status < 0xF0 );
-
-                                        // should we attempt to reroute to the synth?
-                                        if (channel == (tuple.key2Channel - 1) || tuple.key2Channel == tuple.KEYCHANNEL_OMNI)
-                                            {
-                                            channel = getVoiceMessageRoutedChannel(channel, getChannelOut());
-                                            }
-
-                                        if (voiceMessage)
-                                            {
-                                            newMessage = new ShortMessage(status, channel, data1, data2);
-                                            }
-                                        else
-                                            {
-                                            newMessage = new ShortMessage(status, data1, data2);
-                                            }
-                                                                
-                                        tryToSendMIDI(newMessage);
-                                        messageFromController(newMessage, false, true);
-                                        }
-                                    else
-                                        {
-                                        messageFromController(message, false, false);
-                                        }
-                                    }
-                                catch (InvalidMidiDataException e)
-                                    {
-                                    Synth.handleException(e);
-                                    messageFromController(message, false, false);
-                                    }
-                                }
-                            else if (message instanceof SysexMessage && passThroughController)
-                                {
-                                tryToSendSysex(extractData(message));
-                                messageFromController(message, false, true);
-                                }
-                            }
-                        if (testIncomingControllerMIDI) 
-                            { 
-                            showSimpleMessage("Incoming MIDI from Controller", "A MIDI message has arrived from the Controller:\n" + Midi.format(message) + "\nTime: " + timeStamp); 
-                            testIncomingControllerMIDI = false; 
-                            testIncomingController.setText("Report Next Controller MIDI");
-                            } 
+                // We send the message to the synth if:
+                // 1. We didn't intercept it
+                // 2. We pass through data to the synth
+                // We get here if the router didn't pass it on, perhaps because we weren't the active synth at the time
+                else if (tuple != null && getPassThroughController())
+                    {
+                    // pass it on!
+                    ShortMessage newMessage = rechannelFromController(shortMessage, tuple, key2);
+                    if (newMessage != null)
+                        {
+                        // Like the router, we use the urgent lane, so this doesn't go out after
+                        // pass-through messages which arrived later
+                        passThroughToSynth(newMessage, received);
+                        messageFromController(newMessage, false, true);
                         }
-                    });
+                    else
+                        {
+                        messageFromController(message, false, false);
+                        }
+                    }
+                else
+                    {
+                    messageFromController(message, false, false);
+                    }
                 }
-            };
-        }    
+            else if (message instanceof SysexMessage && passThroughController)
+                {
+                tryToSendSysex(extractData(message));
+                messageFromController(message, false, true);
+                }
+            }
+        if (testIncomingControllerMIDI) 
+            { 
+            showSimpleMessage("Incoming MIDI from Controller", "A MIDI message has arrived from the Controller:\n" + Midi.format(message) + "\nTime: " + timeStamp); 
+            testIncomingControllerMIDI = false; 
+            testIncomingController.setText("Report Next Controller MIDI");
+            } 
+        }
     
     public void messageFromController(MidiMessage message, boolean interceptedForInternalUse, boolean routedToSynth) { return; }
 
+    /** Returns the channel to which a voice message from the controller on INCOMING_CHANNEL should be
+        routed, by default SYNTH_CHANNEL.  This is called on the ControllerRouter's thread, not the Swing
+        Event Thread, so it may read the model but should not change anything. */
     public int getVoiceMessageRoutedChannel(int incomingChannel, int synthChannel) { return synthChannel; }
 
     /** Sets whether sysex parameter changes should be sent in response to changes to the model.
@@ -1650,12 +1711,42 @@ public abstract class Synth extends JComponent implements Updatable
 
     /** Does a basic sleep for the given ms.  You should only call this if you can't
         achieve the same thing by overriding one of the getPause methods, such as
-        getPauseAfterChangePatch()... */
+        getPauseAfterChangePatch()... 
+        
+        <p>If MIDI is being sent asynchronously, this doesn't sleep at all: rather it
+        schedules a pause of the given length before any MIDI sent afterwards.  If pauses
+        have been turned off with setPausesEnabled(false), this does nothing. */
     public void simplePause(int ms)
         {
-        if (ms == 0) return;
-        try { long l = System.currentTimeMillis(); Thread.currentThread().sleep(ms);}
-        catch (Exception e) { Synth.handleException(e); }
+        if (ms <= 0 || !pausesEnabled) return;
+        MidiScheduler scheduler = getMIDIScheduler();
+        if (scheduler != null)
+            scheduler.schedulePause(ms);
+        else
+            {
+            try { long l = System.currentTimeMillis(); Thread.currentThread().sleep(ms);}
+            catch (Exception e) { Synth.handleException(e); }
+            }
+        }
+
+    boolean pausesEnabled = true;
+    
+    /** Sets whether simplePause(...) pauses.  Only turn this off if no MIDI will be sent to
+        the synthesizer at all, such as when benchmarking or testing emit(...). */
+    public void setPausesEnabled(boolean val) { pausesEnabled = val; }
+
+    /** Returns whether simplePause(...) pauses. */
+    public boolean getPausesEnabled() { return pausesEnabled; }
+
+    /** Returns the MidiScheduler to which outgoing MIDI should be sent, or null if
+        MIDI should be sent directly on the calling thread: either because getSendsMIDIAsynchronously()
+        is FALSE or because there is no output device. */
+    public MidiScheduler getMIDIScheduler()
+        {
+        if (!getSendsMIDIAsynchronously()) return null;
+        Midi.Tuple t = tuple;
+        if (t == null || t.out == null) return null;
+        return t.getScheduler();
         }
 
 
@@ -1698,41 +1789,65 @@ public abstract class Synth extends JComponent implements Updatable
             { return false; }
         else if (getSendMIDI())
             {
-            if (tuple == null) return false;
-            
-            Receiver receiver = tuple.out;
-            if (receiver == null) return false;
-            
-            // compute pause
-            try { if (!noMIDIPause) midiPause(getNanoPauseBetweenMIDISends()); }
-            catch (Exception e)
+            return sendMIDIToSynth(message);
+            }
+        else
+            return false;
+        }
+        
+    // Sends a NON-Sysex MIDI message to the synth regardless of getSendMIDI(), which the Swing Event Thread
+    // turns off temporarily while it changes the model.  Used by tryToSendMIDI(...), and by passThroughToSynth(...) 
+    // to pass through messages from the controller, which must not be dropped (such as Note Offs) or reordered.  
+    // Returns false if there is no output or an error occurred when sending.
+    boolean sendMIDIToSynth(MidiMessage message)
+        {
+        Midi.Tuple t = tuple;               // we may be called from the ControllerRouter's thread
+        if (t == null) return false;
+        
+        Receiver receiver = t.out;
+        if (receiver == null) return false;
+        
+        forgetSentParameters(message);
+        
+        MidiScheduler scheduler = getMIDIScheduler();
+        if (scheduler != null)
+            {
+            scheduler.schedule(this, receiver, message, noMIDIPause ? 0 : getNanoPauseBetweenMIDISends());
+            return true;
+            }
+        
+        // drop redundant NRPN messages
+        if (!t.getNRPNTracker().filter(message, getCompressesNRPN()))
+            return true;
+        
+        // compute pause
+        try { if (!noMIDIPause) midiPause(getNanoPauseBetweenMIDISends()); }
+        catch (Exception e)
+            {
+            Synth.handleException(e);
+            }
+                               
+        synchronized(midiSendLock) 
+            {
+            try
                 {
-                Synth.handleException(e);
+                receiver.send(message, -1);
                 }
-                                   
-            synchronized(midiSendLock) 
+            catch (IllegalStateException e)
                 {
-                try
-                    {
-                    receiver.send(message, -1);
-                    }
-                catch (IllegalStateException e)
+                // This happens when the device has closed itself and we're still trying to send to it.
+                // For example if the user rips the USB cord for his device out of the laptop.  In this
+                // case we'll also disconnect
+                t.getNRPNTracker().reset();
+                SwingUtilities.invokeLater(new Runnable()
                     {
-                    // This happens when the device has closed itself and we're still trying to send to it.
-                    // For example if the user rips the USB cord for his device out of the laptop.  In this
-                    // case we'll also disconnect
-                    SwingUtilities.invokeLater(new Runnable()
-                        {
-                        public void run() { doDisconnectMIDI(); }
-                        });
-                    return false;
-                    }
-                }      
-            lastMIDISend = System.nanoTime();
-            return true;
-            }
-        else
-            return false;
+                    public void run() { doDisconnectMIDI(); }
+                    });
+                return false;
+                }
+            }      
+        lastMIDISend = System.nanoTime();
+        return true;
         }
            
     /** If you are sending a sysex message as fragments with pauses in-between them,
@@ -1792,6 +1907,24 @@ public abstract class Synth extends JComponent implements Updatable
             Receiver receiver = tuple.out;
             if (receiver == null) return false;
 
+            forgetSentParameters(null);
+            MidiScheduler scheduler = getMIDIScheduler();
+            if (scheduler != null)
+                {
+                try
+                    {
+                    SysexMessage message = new SysexMessage(data, data.length);
+                    int fragmentSize = getSysexFragmentSize();
+                    if (fragmentSize <= NO_SYSEX_FRAGMENT_SIZE || message.getLength() <= fragmentSize)
+                        scheduler.schedule(this, receiver, message, getNanoPauseBetweenMIDISends());
+                    else
+                        scheduler.schedule(this, receiver, Midi.DividedSysex.divide(message, fragmentSize), 
+                            getNanoPauseBetweenMIDISends(), getPauseBetweenSysexFragments());
+                    return true;
+                    }
+                catch (InvalidMidiDataException e) { Synth.handleException(e); return false; }
+                }
+
             // compute pause
             midiPause(getNanoPauseBetweenMIDISends());
                                         
@@ -2079,8 +2212,16 @@ public abstract class Synth extends JComponent implements Updatable
 
             undo.setWillPush(false);
             Model backup = (Model)(model.clone());
-            model.recombine(random, mergeSynth.getModel(), getMutationKeys(), probability);
-            revise();  // just in case
+            beginBatch();
+            try
+                {
+                model.recombine(random, mergeSynth.getModel(), getMutationKeys(), probability);
+                revise();  // just in case
+                }
+            finally
+                {
+                endBatch();
+                }
             mergeSynth = null;        
                                 
             undo.setWillPush(true);
@@ -2150,6 +2291,9 @@ public abstract class Synth extends JComponent implements Updatable
             }
         else
             {
+            // Start the NRPN state afresh in case the synth has been reset or power-cycled
+            Midi.Tuple t = tuple;
+            if (t != null) t.getNRPNTracker().reset();
             sendDifferentParameters(null);
             }
         return true;
@@ -2193,7 +2337,7 @@ public abstract class Synth extends JComponent implements Updatable
                 
                 if (getModel().isInteger(keys[i]))              // integers
                     {
-                    if (getModel().get(keys[i], 0) != model.get(keys[i], 0))
+                    if (getModel().get(keys[i], 0) != other.get(keys[i], 0))
                         {
                         if (sent = tryToSendMIDI(emitAll(keys[i], STATUS_SENDING_ALL_PARAMETERS)) || sent)
                             simplePause(getPauseAfterSendOneParameter());
@@ -2201,7 +2345,7 @@ public abstract class Synth extends JComponent implements Updatable
                     }
                 else            // strings
                     {
-                    if (!(getModel().get(keys[i], "").equals(model.get(keys[i], ""))))
+                    if (!(getModel().get(keys[i], "").equals(other.get(keys[i], ""))))
                         {
                         if (sent = tryToSendMIDI(emitAll(keys[i], STATUS_SENDING_ALL_PARAMETERS)) || sent)
                             simplePause(getPauseAfterSendOneParameter());
@@ -2215,58 +2359,160 @@ public abstract class Synth extends JComponent implements Updatable
         }
 
 
+    // A copy of the model which we last sent to the synth via sendChangedParameters(), and the tuple we sent
+    // it to.  It's set to null whenever anything else which might change the synth's parameters is sent or received.
+    Model lastSentModel = null;
+    Midi.Tuple lastSentTuple = null;
+    boolean sendingChangedParameters = false;
 
-
-
-
-
-
-
-    ////////// RECOGNITION
-
-
-
-    /** Returns the recognizer for a given class name */
-    public static Class getRecognizer(String synthClassName)
+    /** Sends the current model to the synth, as sendAllParameters() does, when auditioning patches in the 
+        Hill-Climber and Morpher.  If we know what was last sent to the synth by this method, and 
+        getSendsOnlyChangedParametersWhenAuditioning() is TRUE, then only the parameters which have 
+        changed since then are sent, one by one, so the time to audition a patch is proportional to the number of 
+        parameters which changed.  But if the synth sends all its parameters as a dump and sending the changes would take 
+        longer than the dump, the dump is sent instead.  Sending or receiving anything else which might change the 
+        synth's parameters (other than notes and the like) makes us forget what was last sent, so the next call
+        sends all the parameters. */
+    public final void sendChangedParameters()
         {
+        if (getSendsParametersOnlyOnSendCurrentPatch() || !getSendMIDI())
+            return;
+        
+        Model current = getModel();
+        sendingChangedParameters = true;
         try
             {
-            return Class.forName(synthClassName + "Rec");
-            }
-        catch (ClassNotFoundException ex)
-            {
-            Synth.handleException(ex);
-            return null;
-            }
-        }
-                
-                
-    // Recognize
-
-    /** Returns whether the given sysex patch dump data is of the type for a synth of the given
-        class.  This is done by ultimately calling the CLASS method 
-        <tt>public static boolean recognize(data)</tt> that each synthesizer subclass is asked to implement. */
-    public static boolean recognize(String synthClassName, byte[] data)
-        {
-        Class recognizer = getRecognizer(synthClassName);
-        if (recognizer == null) 
-            { 
-            System.err.println("Synth.recognize() WARNING: No recognizer for " + synthClassName); 
-            return false;
+            if (lastSentModel == null || lastSentTuple != tuple || !lastSentModel.sharesSchemaWith(current) ||
+                !getSendsOnlyChangedParametersWhenAuditioning())
+                {
+                sendAllParametersInternal();
+                }
+            else
+                {
+                String[] keys = current.getDifferentKeys(lastSentModel);
+                if (keys.length == 0) return;
+                                
+                Object[][] changes = new Object[keys.length][];
+                double changeTime = 0;
+                boolean canSendChanges = true;
+                for(int i = 0; i < keys.length; i++)
+                    {
+                    changes[i] = emitAll(keys[i], STATUS_SENDING_ALL_PARAMETERS);
+                    if (changes[i] == null || changes[i].length == 0) 
+                        canSendChanges = false;         // if we're sending a dump, this parameter can only be sent as part of it
+                    else 
+                        changeTime += estimateSendTime(changes[i]) + getPauseAfterSendOneParameter();
+                    }
+                                        
+                if (getSendsAllParametersAsDump())
+                    {
+                    Object[] dump = emitAll(current, true, false);
+                    if (!canSendChanges || changeTime >= estimateSendTime(dump) + getPauseAfterSendAllParameters())
+                        {
+                        if (tryToSendMIDI(dump))
+                            simplePause(getPauseAfterSendAllParameters());
+                        changes = null;
+                        }
+                    }
+                                        
+                if (changes != null)
+                    {
+                    boolean sent = false;
+                    for(int i = 0; i < changes.length; i++)
+                        {
+                        if (sent = tryToSendMIDI(changes[i]) || sent)
+                            simplePause(getPauseAfterSendOneParameter());
+                        }
+                    if (sent)
+                        simplePause(getPauseAfterSendAllParameters());
+                    }
+                }
+            lastSentModel = current.copy();
+            lastSentTuple = tuple;
+            }
+        finally
+            {
+            sendingChangedParameters = false;
+            }
+        }
+        
+    /** Estimates the time, in milliseconds, to send the given MIDI data, at MIDI's rate of 3125 bytes per second. */
+    double estimateSendTime(Object[] data)
+        {
+        if (data == null) return 0;
+        double time = 0;
+        double pause = getPauseBetweenMIDISends();
+        for(int i = 0; i < data.length; i++)
+            {
+            if (data[i] instanceof Integer)
+                time += ((Integer)data[i]).intValue();
+            else if (data[i] instanceof byte[])
+                time += ((byte[])data[i]).length / 3.125 + pause;
+            else if (data[i] instanceof MidiMessage)
+                time += ((MidiMessage)data[i]).getLength() / 3.125 + pause;
+            }
+        return time;
+        }
+        
+    /** Called whenever a MIDI message is sent or received which might change the synth's parameters.  
+        Unless we're presently sending changed parameters, we forget what we last sent in sendChangedParameters(). */
+    void forgetSentParameters(MidiMessage message)
+        {
+        if (sendingChangedParameters || lastSentModel == null) return;
+        if (message instanceof ShortMessage)
+            {
+            ShortMessage sm = (ShortMessage) message;
+            int command = sm.getCommand();
+            if (command == ShortMessage.NOTE_ON || command == ShortMessage.NOTE_OFF || 
+                command == ShortMessage.POLY_PRESSURE || command == ShortMessage.CHANNEL_PRESSURE || 
+                command == ShortMessage.PITCH_BEND || 
+                (command == ShortMessage.CONTROL_CHANGE && sm.getData1() >= 120) ||            // channel mode messages, such as All Sounds Off
+                sm.getStatus() >= 0xF8)                                                         // real-time messages
+                return;
             }
+        lastSentModel = null;
+        }
+
+
+
+
+
+
+
+    ////////// RECOGNITION
+
 
+
+    /** Returns the recognizer for a given class name */
+    public static Class getRecognizer(String synthClassName)
+        {
         try
             {
-            Method method = recognizer.getMethod("recognize", new Class[] { byte[].class });
-            Object obj = method.invoke(null, data);
-            return ((Boolean)obj).booleanValue();
+            return Class.forName(synthClassName + "Rec");
             }
-        catch (Exception e)
+        catch (ClassNotFoundException ex)
             {
-            System.err.println("Synth.recognize(Class, byte[]) ERROR.  Could not obtain or invoke method for " + synthClassName); 
-            Synth.handleException(e);
+            Synth.handleException(ex);
+            return null;
+            }
+        }
+                
+                
+    // Recognize
+
+    /** Returns whether the given sysex patch dump data is of the type for a synth of the given
+        class.  This is done by ultimately calling the CLASS method 
+        <tt>public static boolean recognize(data)</tt> that each synthesizer subclass is asked to implement. */
+    public static boolean recognize(String synthClassName, byte[] data)
+        {
+        RecognizerRegistry.Recognizer recognizer = RecognizerRegistry.get(synthClassName);
+        if (recognizer == null) 
+            { 
+            System.err.println("Synth.recognize() WARNING: No recognizer for " + synthClassName); 
             return false;
             }
+
+        return recognizer.recognize(data);
         }
     
     /** Returns whether the given sysex patch dump data is of the type for this particular synth.
@@ -2290,23 +2536,14 @@ public abstract class Synth extends JComponent implements Updatable
         <tt>public static boolean recognizeBank(data)</tt> that each synthesizer subclass is asked to implement. */
     public static boolean recognizeBank(String synthClassName, byte[] data)
         {
-        Class recognizer = getRecognizer(synthClassName);
+        RecognizerRegistry.Recognizer recognizer = RecognizerRegistry.get(synthClassName);
         if (recognizer == null) 
             { 
             System.err.println("Synth.recognizeBank() WARNING: No recognizer for " + synthClassName); 
             return false;
             }
 
-        try
-            {
-            Method method = recognizer.getMethod("recognizeBank", new Class[] { byte[].class });
-            Object obj = method.invoke(null, data);
-            return ((Boolean)obj).booleanValue();
-            }
-        catch (Exception e)
-            {
-            return false;
-            }
+        return recognizer.recognizeBank(data);
         }
 
     /** Returns whether the given sysex patch dump data is a bulk (multi-patch) dump of the type for this particular synth.
@@ -2326,24 +2563,15 @@ public abstract class Synth extends JComponent implements Updatable
         which represents a single patch for the synthesizer of the given class.  */
     public static int getNextSysexPatchGroup(String synthClassName, byte[][] sysex, int start)
         {
-        Class recognizer = getRecognizer(synthClassName);
+        RecognizerRegistry.Recognizer recognizer = RecognizerRegistry.get(synthClassName);
         if (recognizer == null) 
             { 
             System.err.println("Synth.getNextSysexPatchGroup() WARNING: No recognizer for " + synthClassName); 
             return start;
             }
 
-        try
-            {
-            Method method = recognizer.getMethod("getNextSysexPatchGroup", new Class[] { byte[][].class, Integer.TYPE });
-            Object obj = method.invoke(null, sysex, start);
-            return ((Integer)obj).intValue();
-            }
-        catch (Exception e)
-            {
-            // There is no getNextSysexPatchGroup(...) method for this recognizer, so we assume that it's a single patch
-            return start + 1;
-            }
+        // If there is no getNextSysexPatchGroup(...) method for this recognizer, we assume that it's a single patch
+        return recognizer.getNextSysexPatchGroup(sysex, start);
         }
 
     public final int getNextSysexPatchGroupLocal(byte[][] sysex, int start)
@@ -2358,23 +2586,14 @@ public abstract class Synth extends JComponent implements Updatable
     /** Returns the name of the bank for a given synth.  This is pretty rare -- it only exists in the FB-01. */
     public static String getBankName(String synthClassName, byte[] data)
         {
-        Class recognizer = getRecognizer(synthClassName);
+        RecognizerRegistry.Recognizer recognizer = RecognizerRegistry.get(synthClassName);
         if (recognizer == null) 
             { 
             System.err.println("Synth.getBankName() WARNING: No recognizer for " + synthClassName); 
             return "--Error--";
             }
 
-        try
-            {
-            Method method = recognizer.getMethod("getBankName", new Class[] { byte[].class });
-            Object obj = method.invoke(null, data);
-            return (String)obj;
-            }
-        catch (Exception e)
-            {
-            return "";
-            }
+        return recognizer.getBankName(data);
         }
     
     /** Returns the name of the bank for a given synth.  This is pretty rare -- it only exists in the FB-01. */
@@ -2402,15 +2621,11 @@ public abstract class Synth extends JComponent implements Updatable
         return false;
         }
 
-    /** Returns the synthesizer which recognizes this sysex message, or -1 if none. */
+    /** Returns the synthesizer which recognizes this sysex message, or -1 if none.  Only those
+        synthesizers whose recognizers might handle the message's manufacturer ID are tested. */
     int recognizeSynthForSysex(byte[] data)
         {
-        for(int i = 0; i < numSynths(); i++)
-            {
-            if (recognize(synthClassNames[i], data))
-                return i;
-            }
-        return -1;
+        return Codec.recognizeSynth(data);
         }
 
     /** Returns all the synthesizers which recognize any message in this data. */
@@ -2421,19 +2636,24 @@ public abstract class Synth extends JComponent implements Updatable
         int lastSynth = 0;
         for(int i = 0; i < data.length; i++)
             {
-            // a little caching
-            if (recognize(synthClassNames[lastSynth], data[i]))
+            long header = Midi.classifySysex(data[i]);
+            
+            // a little caching.  The header lets the last synth's recognizer turn down other manufacturers' 
+            // messages without being called.
+            RecognizerRegistry.Recognizer last = RecognizerRegistry.get(lastSynth);
+            if (last != null && last.canRecognize() && last.recognize(data[i], header))
                 {
                 recognized[lastSynth] = true;
                 continue;
                 }
                                 
-            for(int j = 0; j < numSynths(); j++)
+            int[] candidates = RecognizerRegistry.getCandidates(header);
+            for(int j = 0; j < candidates.length; j++)
                 {
-                if (recognize(synthClassNames[j], data[i]))
+                if (recognize(synthClassNames[candidates[j]], data[i]))
                     {
-                    recognized[j] = true;
-                    lastSynth = j;
+                    recognized[candidates[j]] = true;
+                    lastSynth = candidates[j];
                     break;
                     }
                 }
@@ -2524,6 +2744,98 @@ public abstract class Synth extends JComponent implements Updatable
         return pane;
         }
 
+    // The prototypical keys, values, and lazy tab sizes of a Synth class.  See addTab(String, TabBuilder).
+    static class Prototype
+        {
+        Model model;
+        HashMap<String, Dimension> sizes;
+        }
+    static HashMap<Class, Prototype> prototypes = new HashMap<Class, Prototype>();
+    
+    // Lazy tabs which have not been built yet, keyed by their scroll panes
+    HashMap<Component, TabBuilder> lazyTabs = new HashMap<Component, TabBuilder>();
+    // The preferred sizes of lazy tabs which we built right away, by title, or null if there were none
+    HashMap<String, Dimension> lazyTabSizes = null;
+    boolean addedPrototypeKeys = false;
+    
+    /** Adds a tab whose contents are only built by the given builder when the tab is first selected.
+        This makes opening a window faster, and spares throwaway Synths from building the tab at all.
+        However the tab's widgets add their keys to the model, so we can only skip building them if we
+        already know what those keys are.  Thus the first Synth of a given class builds all of its lazy tabs 
+        right away, and its model is then kept as the prototype for the class: later Synths of that class instead
+        add the prototype's missing keys to their models.  For this reason the builder must always build the
+        same widgets, with the same keys, regardless of any preferences or other state.  Returns the tab's 
+        scroll pane.  */
+    public JComponent addTab(String title, TabBuilder builder)
+        {
+        Prototype prototype = null;
+        synchronized(prototypes) { prototype = prototypes.get(getClass()); }
+        if (prototype == null)
+            {
+            JComponent component = builder.build();
+            if (lazyTabSizes == null) 
+                lazyTabSizes = new HashMap<String, Dimension>();
+            lazyTabSizes.put(title, component.getPreferredSize());
+            return addTab(title, component);
+            }
+        
+        if (!addedPrototypeKeys)
+            {
+            model.addMissingKeys(prototype.model);
+            addedPrototypeKeys = true;
+            }
+        JPanel placeholder = new JPanel();
+        placeholder.setBackground(Style.BACKGROUND_COLOR());
+        Dimension size = prototype.sizes.get(title);
+        if (size != null) placeholder.setPreferredSize(size);
+        JComponent pane = addTab(title, placeholder);
+        lazyTabs.put(pane, builder);
+        return pane;
+        }
+    
+    // If we built lazy tabs right away, and there's no prototype for our class yet, we become it.
+    // Called after construction, before the model is modified.
+    void recordPrototype()
+        {
+        if (lazyTabSizes == null) return;
+        Prototype prototype = new Prototype();
+        prototype.model = new Model();                  // just the keys and values, not our Model subclass
+        prototype.model.addMissingKeys(model);
+        prototype.sizes = lazyTabSizes;
+        lazyTabSizes = null;
+        synchronized(prototypes)
+            {
+            if (!prototypes.containsKey(getClass()))
+                prototypes.put(getClass(), prototype);
+            }
+        }
+    
+    /** Builds the given tab if it is a lazy tab which has not been built yet. */
+    public void buildLazyTab(Component tab)
+        {
+        TabBuilder builder = lazyTabs.remove(tab);
+        if (builder == null) return;
+        
+        // The new widgets will reset their keys as they're built, so we put the values back afterwards
+        boolean sendMIDI = getSendMIDI();
+        boolean willPush = undo.getWillPush();
+        String lastKey = model.lastKey;
+        Model values = model.copy();
+        setSendMIDI(false);
+        undo.setWillPush(false);
+        try
+            {
+            ((JScrollPane)tab).setViewportView(builder.build());
+            values.copyValuesTo(model);
+            }
+        finally
+            {
+            model.lastKey = lastKey;
+            undo.setWillPush(willPush);
+            setSendMIDI(sendMIDI);
+            }
+        }
+
     public void removeTab(String title)
         {
         int idx = tabs.indexOfTab(title);
@@ -2739,6 +3051,26 @@ public abstract class Synth extends JComponent implements Updatable
         catch (IOException ex) { Synth.handleException(ex); }
         return current;
         }
+
+    /** Reads the entire input into an array of exactly the right size, however long it is. */
+    public byte[] readFully(InputStream input)
+        {
+        byte[] array = new byte[64 * 1024];
+        int current = 0;
+        try
+            {
+            while(true)
+                {
+                if (current == array.length)
+                    array = Arrays.copyOf(array, array.length * 2);
+                int total = input.read(array, current, array.length - current);
+                if (total < 0) break;
+                current += total;
+                }
+            }
+        catch (IOException ex) { Synth.handleException(ex); }
+        return (current == array.length ? array : Arrays.copyOf(array, current));
+        }
         
         
         
@@ -2766,12 +3098,7 @@ public abstract class Synth extends JComponent implements Updatable
                 // repaint manager is refusing to coallesce their repaint requests.  So I do it here.
                 repaint();
 
-                byte[] buffer = new byte[MAX_FILE_LENGTH];   // better not be longer than this
-                int size = readFully(buffer, stream);
-
-                // now shorten
-                byte[] data = new byte[size];
-                System.arraycopy(buffer, 0, data, 0, size);
+                byte[] data = readFully(stream);
 
                 // parse                        
                 setSendMIDI(false);
@@ -3093,6 +3420,7 @@ public abstract class Synth extends JComponent implements Updatable
         setLearningCC(false);
         
         Component tab = tabs.getSelectedComponent();
+        buildLazyTab(tab);
         if (tab == hillClimbPane)
             {
             morph.shutdown();
@@ -3136,6 +3464,68 @@ public abstract class Synth extends JComponent implements Updatable
         }
 
 
+    // The Task which CodecExecutor.runAndWait(...) is presently waiting on for us, if any
+    CodecExecutor.Task runningTask = null;
+    // Incoming MIDI handlers which have been put off until runningTask is done, see deferUntilTaskFinished(...)
+    ArrayList<Runnable> deferredUntilTaskFinished = new ArrayList<Runnable>();
+    boolean runningDeferred = false;
+    // Something to do once runningTask is done, such as closing the window
+    Runnable afterTask = null;
+    
+    /** Returns true if CodecExecutor.runAndWait(...) is waiting on a Task, such as loading or saving a 
+        file, for this editor.  While it is, file operations are refused, incoming MIDI is held until the 
+        Task is done, and closing the window or quitting cancels the Task and waits for it to finish first. */
+    public boolean isRunningTask() { return runningTask != null; }
+    
+    // Called by CodecExecutor.runAndWait(...) when it starts waiting on TASK
+    void taskStarted(CodecExecutor.Task task)
+        {
+        runningTask = task;
+        }
+    
+    // Called by CodecExecutor.runAndWait(...) when it is done waiting.  Incoming MIDI which was held
+    // is handled, in order, and then whatever was waiting for the Task is done.
+    void taskFinished()
+        {
+        runningTask = null;
+        if (!deferredUntilTaskFinished.isEmpty())
+            {
+            SwingUtilities.invokeLater(new Runnable()
+                {
+                public void run() { runDeferred(); }
+                });
+            }
+        if (afterTask != null)
+            {
+            SwingUtilities.invokeLater(afterTask);
+            afterTask = null;
+            }
+        }
+    
+    // Returns true if RUNNABLE, which handles incoming MIDI on the Swing Event Thread, has been held until
+    // the running Task is done.  Once we have held one, we hold the rest behind it so they stay in order.
+    boolean deferUntilTaskFinished(Runnable runnable)
+        {
+        if (runningTask == null && (runningDeferred || deferredUntilTaskFinished.isEmpty())) return false;
+        deferredUntilTaskFinished.add(runnable);
+        return true;
+        }
+    
+    // Handles the incoming MIDI held by deferUntilTaskFinished(...), unless another Task has started
+    void runDeferred()
+        {
+        runningDeferred = true;
+        try
+            {
+            while(runningTask == null && !deferredUntilTaskFinished.isEmpty())
+                deferredUntilTaskFinished.remove(0).run();
+            }
+        finally
+            {
+            runningDeferred = false;
+            }
+        }
+
     ArrayList<JMenuItem> disabledMenus = null;
     int disableCount;
     /** Disables the menu bar.  disableMenuBar() and enableMenuBar() work in tandem to work around
@@ -3213,6 +3603,7 @@ public abstract class Synth extends JComponent implements Updatable
                 tabChanged();
                 }
             });
+        buildLazyTab(tabs.getSelectedComponent());     // the initial tab doesn't trigger tabChanged()
         hillClimb = new HillClimb(this);
         morph = new Morph(this);
 
@@ -4213,6 +4604,26 @@ public abstract class Synth extends JComponent implements Updatable
                 }
             });
 
+        JMenuItem reportControllerLatency = new JMenuItem("Report Controller Latency");
+        menu.add(reportControllerLatency);
+        reportControllerLatency.addActionListener(new ActionListener()
+            {
+            public void actionPerformed( ActionEvent e)
+                {
+                doReportControllerLatency();
+                }
+            });
+
+        JMenuItem reportOutgoingMIDI = new JMenuItem("Report Outgoing MIDI");
+        menu.add(reportOutgoingMIDI);
+        reportOutgoingMIDI.addActionListener(new ActionListener()
+            {
+            public void actionPerformed( ActionEvent e)
+                {
+                doReportOutgoingMIDI();
+                }
+            });
+
         menu.addSeparator();
 
         JMenuItem allSoundsOff = new JMenuItem("Send All Sounds Off");
@@ -4254,6 +4665,11 @@ public abstract class Synth extends JComponent implements Updatable
             {
             public void actionPerformed(ActionEvent e)
                 {
+                // If the previous round of MIDI hasn't been sent yet, skip this round rather than piling up more
+                MidiScheduler scheduler = getMIDIScheduler();
+                if (scheduler != null && !scheduler.isIdle() && (repeatingCurrentPatch || sendingTestNotes))
+                    return;
+
                 if (repeatingCurrentPatch)
                     {
                     if (!hillClimbing)
@@ -4882,6 +5298,18 @@ public abstract class Synth extends JComponent implements Updatable
                 }
             });
 
+        coalesceParametersMenu = new JCheckBoxMenuItem("Drop Superseded Parameter Updates");
+        menu.add(coalesceParametersMenu);
+        coalesceParametersMenu.setSelected(coalesceParameters);
+        coalesceParametersMenu.addActionListener(new ActionListener()
+            {
+            public void actionPerformed( ActionEvent e)
+                {
+                coalesceParameters = coalesceParametersMenu.isSelected();
+                setLastX("" + coalesceParameters, "CoalesceParameters", null);
+                }
+            });
+
         menu.addSeparator();
 
         JMenuItem colorMenu = new JMenuItem("Change Color Scheme...");
@@ -5108,6 +5536,7 @@ public abstract class Synth extends JComponent implements Updatable
         {
         launchMenu.setSelected(getLastXAsBoolean("ShowSynth", null, true, false));
         clearNotesMenu.setSelected(clearNotes);
+        coalesceParametersMenu.setSelected(coalesceParameters);
         }
             
     void doPerChannelCCs(boolean val)
@@ -5628,13 +6057,10 @@ public abstract class Synth extends JComponent implements Updatable
     void doUndo(boolean send)
         {
         setSendMIDI(false);
-        if (model.equals(undo.top()))
-            model = undo.undo(null);  // don't push into the redo stack
-        else 
-            model = undo.undo(model);
+        // The model is undone in place, and only the listeners for changed keys are updated
         boolean currentPush = undo.getWillPush();
         undo.setWillPush(false);
-        model.updateAllListeners();
+        undo.undo(model);
         undo.setWillPush(currentPush);
         setSendMIDI(true);
         if (send) sendAllParameters();
@@ -5643,10 +6069,10 @@ public abstract class Synth extends JComponent implements Updatable
     void doRedo()
         {
         setSendMIDI(false);
-        model = (Model)(undo.redo(getModel()));
+        // The model is redone in place, and only the listeners for changed keys are updated
         boolean currentPush = undo.getWillPush();
         undo.setWillPush(false);
-        model.updateAllListeners();
+        undo.redo(model);
         undo.setWillPush(currentPush);
         setSendMIDI(true);
         sendAllParameters();
@@ -5654,11 +6080,25 @@ public abstract class Synth extends JComponent implements Updatable
         
     void doQuit()
         {
+        if (isRunningTask())
+            {
+            // Stop the load or save first, and quit once it has finished
+            runningTask.cancel();
+            afterTask = new Runnable()
+                {
+                public void run() { doQuit(); }
+                };
+            return;
+            }
         if (clearNotes && sendAllSoundsOffWhenWindowChanges())
             {
             sendAllSoundsOff(); // not doSendAllSoundsOff(false) because we don't want to turn off the test notes
             }
-        simplePause(50);        // maybe enough time to flush out the all sounds off notes?  dunno
+        MidiScheduler scheduler = getMIDIScheduler();
+        if (scheduler != null)
+            scheduler.waitUntilIdle(1000);      // let any outstanding MIDI get out the door
+        try { Thread.currentThread().sleep(50); }        // maybe enough time to flush out the all sounds off notes?  dunno
+        catch (Exception ex) { Synth.handleException(ex); }
         System.exit(0);
         }
     
@@ -5709,19 +6149,27 @@ public abstract class Synth extends JComponent implements Updatable
         
         setSendMIDI(false);
         undo.push(model);
-        if (towards < 4)
+        beginBatch();
+        try
             {
-            if (nudgeRecombinationWeight > 0.0) model.recombine(random, nudge[towards], getMutationKeys(),  //useMapForRecombination ? getMutationKeys() : model.getKeys(), 
-                nudgeRecombinationWeight);
-            if (nudgeMutationWeight > 0.0) model.mutate(random, getMutationKeys(), nudgeMutationWeight);
+            if (towards < 4)
+                {
+                if (nudgeRecombinationWeight > 0.0) model.recombine(random, nudge[towards], getMutationKeys(),  //useMapForRecombination ? getMutationKeys() : model.getKeys(), 
+                    nudgeRecombinationWeight);
+                if (nudgeMutationWeight > 0.0) model.mutate(random, getMutationKeys(), nudgeMutationWeight);
+                }
+            else
+                {
+                if (nudgeRecombinationWeight > 0.0) model.opposite(random, nudge[towards - 4], getMutationKeys(), //useMapForRecombination ? getMutationKeys() : model.getKeys(), 
+                    nudgeRecombinationWeight, true);
+                if (nudgeMutationWeight > 0.0) model.mutate(random, getMutationKeys(), nudgeMutationWeight);
+                }
+            revise();  // just in case
             }
-        else
+        finally
             {
-            if (nudgeRecombinationWeight > 0.0) model.opposite(random, nudge[towards - 4], getMutationKeys(), //useMapForRecombination ? getMutationKeys() : model.getKeys(), 
-                nudgeRecombinationWeight, true);
-            if (nudgeMutationWeight > 0.0) model.mutate(random, getMutationKeys(), nudgeMutationWeight);
+            endBatch();
             }
-        revise();  // just in case
 
         setSendMIDI(true);
         sendAllParameters();
@@ -5749,8 +6197,16 @@ public abstract class Synth extends JComponent implements Updatable
         undo.setWillPush(false);
         Model backup = (Model)(model.clone());
                 
-        model.mutate(random, getMutationKeys(), probability);
-        revise();  // just in case
+        beginBatch();
+        try
+            {
+            model.mutate(random, getMutationKeys(), probability);
+            revise();  // just in case
+            }
+        finally
+            {
+            endBatch();
+            }
                 
         undo.setWillPush(true);
         if (!backup.keyEquals(getModel()))  // it's changed, do an undo push
@@ -5761,6 +6217,38 @@ public abstract class Synth extends JComponent implements Updatable
         lastMutate = probability;
         }
 
+    void doReportControllerLatency()
+        {
+        if (showSimpleConfirm("Controller Latency", 
+                "Time from the arrival of a message from the Controller\nto when it was sent to the Synth:\n\n" + controllerLatency, 
+                "Reset"))
+            controllerLatency.reset();
+        }
+
+    void doReportOutgoingMIDI()
+        {
+        Midi.Tuple t = tuple;
+        if (t == null || t.out == null)
+            {
+            showSimpleMessage("Outgoing MIDI", "There is no MIDI output.");
+            return;
+            }
+        
+        String report = "";
+        MidiScheduler scheduler = getMIDIScheduler();
+        if (scheduler != null)
+            {
+            report += "Messages sent: " + scheduler.getMessagesSent() + 
+                "\nMessages superseded and dropped: " + scheduler.getMessagesDropped() +
+                "\nQueue depth: " + scheduler.getQueueDepth() + " (max " + scheduler.getMaxQueueDepth() + ")" +
+                "\nLatency: mean " + String.format("%.3f", scheduler.getAverageLatency()) + " ms, max " + String.format("%.3f", scheduler.getMaxLatency()) + " ms\n";
+            }
+        NRPNTracker tracker = t.getNRPNTracker();
+        report += "Redundant NRPN messages dropped: " + tracker.getMessagesSaved() + " (" + tracker.getBytesSaved() + " bytes)" +
+            (getCompressesNRPN() ? "" : "\nThis synth does not drop redundant NRPN messages.");
+        showSimpleMessage("Outgoing MIDI", report);
+        }
+
     void doPassThroughCC(boolean val)
         {
         setPassThroughCC(val);
@@ -5782,6 +6270,27 @@ public abstract class Synth extends JComponent implements Updatable
         the editor. */
     void doSaveAs(String filename)
         {
+        doSaveAs(filename, null);
+        }
+        
+    /** Goes through the process of saving to a new sysex file.  If OTHER is null, the editor's Model
+        is saved and the file is associated with the editor.  Otherwise OTHER is saved instead, and the
+        file isn't associated with the editor: Morph and HillClimb use this to save their models.  OTHER is 
+        emitted before the file dialog is displayed, so our own Model is only swapped out for a moment, 
+        and never while Swing events are being handled. */
+    void doSaveAs(String filename, Model other)
+        {
+        if (isRunningTask()) return;              // we're in the middle of loading or saving already
+        
+        byte[] data = null;
+        if (other != null)
+            {
+            Model backup = model;
+            model = other;
+            try { data = flatten(emitAll((Model)null, false, true)); }
+            finally { model = backup; }
+            }
+            
         FileDialog fd = new FileDialog((Frame)(SwingUtilities.getRoot(this)), "Save Patch to Sysex File...", FileDialog.SAVE);
                 
         if (filename != null)
@@ -5817,10 +6326,13 @@ public abstract class Synth extends JComponent implements Updatable
                 {
                 f = new File(fd.getDirectory(), StringUtility.ensureFileEndsWith(fd.getFile(), ".syx"));
                 os = new FileOutputStream(f);
-                os.write(flatten(emitAll((Model)null, false, true)));
+                os.write(data != null ? data : flatten(emitAll((Model)null, false, true)));
                 os.close();
-                file = f;
-                auxFile = null;
+                if (other == null)
+                    {
+                    file = f;
+                    auxFile = null;
+                    }
                 setLastDirectory(fd.getDirectory());
                 } 
             catch (IOException e) // fail
@@ -5843,6 +6355,7 @@ public abstract class Synth extends JComponent implements Updatable
         the editor, else it calls doSaveAs(). */
     void doSave()
         {
+        if (isRunningTask()) return;              // we're in the middle of loading or saving already
         if (file == null)
             {
             doSaveAs();
@@ -5878,6 +6391,16 @@ public abstract class Synth extends JComponent implements Updatable
         JFrame frame = (JFrame)(SwingUtilities.getRoot(this));
         if (frame == null || !frame.isDisplayable()) return;  // we clicked multiple times on the close button
         
+        else if (isRunningTask())
+            {
+            // Stop the load or save first, and try again once it has finished
+            runningTask.cancel();
+            afterTask = new Runnable()
+                {
+                public void run() { doCloseWindow(); }
+                };
+            }
+
         else if (requestCloseWindow())
             {
             if (clearNotes && sendAllSoundsOffWhenWindowChanges())
@@ -5926,6 +6449,7 @@ public abstract class Synth extends JComponent implements Updatable
     /** Writes out all parameters to a text file. */
     void doSaveText()
         {
+        if (isRunningTask()) return;              // we're in the middle of loading or saving already
         FileDialog fd = new FileDialog((Frame)(SwingUtilities.getRoot(this)), "Write Patch to Text File...", FileDialog.SAVE);
                 
         if (getPatchName(getModel()) != null)
@@ -6136,90 +6660,24 @@ public abstract class Synth extends JComponent implements Updatable
     
     /** Collects the sysex messages stored in data into
         Patches, discarding those which do not seem to match anything Edisyn knows about.
+        The Patches are named as well.
     */
     public Patch[] gatherPatchSysex(byte[][] sysex)
         {
-        int pos = 0;
-        ArrayList patches = new ArrayList();
-                
-        while(pos < sysex.length)
-            {
-            // First, do we have a synth for this thing?
-            int rec = recognizeSynthForSysex(sysex[pos]);
-            if (rec >= 0)
-                {
-                // How many sysex messages per patch?
-                int next = getNextSysexPatchGroup(getClassNames()[rec], sysex, pos);
-                if (next > pos)
-                    {
-                    byte[][] groups = new byte[next - pos][];
-                    for(int i = 0; i < groups.length; i++)
-                        {
-                        groups[i] = sysex[i + pos];
-                        }
-                    patches.add(new Patch(rec, groups, recognizeBank(getClassNames()[rec], sysex[pos])));
-                    pos = next;
-                    }
-                else
-                    {
-                    pos++;          // I *think* this should work?
-                    }
-                }
-            else
-                {
-                pos++;  // skip this sysex message
-                }
-            }
-
-        Patch[] p = (Patch[])(patches.toArray(new Patch[0]));
-
-        // build names and locations for each patch
-        Synth temp = null;
-        HashMap map = new HashMap();
-        for(int i = 0; i < p.length; i++)
-            {
-            if (p[i].bank)
-                {
-                String classname = getClassNames()[p[i].synth];
-                String bankname = getBankName(classname, flatten(p[i].sysex));
-                if (map.containsKey(classname))
-                    {
-                    int in = ((Integer)(map.get(classname))).intValue();
-                    p[i].name = "Bank Sysex (" + in + ") " + bankname;
-                    map.put(classname, Integer.valueOf(in + 1));
-                    }
-                else
-                    {
-                    p[i].name = "Bank Sysex " + bankname;
-                    map.put(classname, Integer.valueOf(2));
-                    }
-                }
-            else
-                {
-                // This is easily the slowest part.  We have to 
-                // build the synth to parse, then parse it and extract the name
-                try
-                    {
-                    if (temp == null || temp.getClass() != getSynth(p[i].synth))
-                        temp = (Synth)(instantiate(getClassNames()[p[i].synth], true, false, null));
-                    temp.printRevised = false;
-                    temp.setSendMIDI(false);
-                    temp.undo.setWillPush(false);
-                    temp.getModel().clearListeners();         // otherwise we GC horribly.....
-                    temp.performParse(flatten(p[i].sysex), true);
-                    p[i].name = temp.getPatchName(temp.model);
-                    p[i].location = temp.getPatchLocationName(temp.model);
-                    }
-                catch (Exception ex)
-                    {
-                    Synth.handleException(ex);
-                    }
-                }
-            }
-                
+        Patch[] p = collectPatchSysex(sysex);
+        new PatchNamer(this, p).waitUntilDone();
         return p;
         }
 
+    /** Collects the sysex messages stored in data into
+        Patches, discarding those which do not seem to match anything Edisyn knows about.
+        The Patches are not named: use a PatchNamer to do this.
+    */
+    Patch[] collectPatchSysex(byte[][] sysex)
+        {
+        return Codec.collectPatches(sysex);
+        }
+
 
     /** Reduces a group of patches to just those whose synthesizer matches THIS synthesizer.  */
     Patch[] reducePatchesToLocal(Patch[] patches)
@@ -6341,6 +6799,13 @@ public abstract class Synth extends JComponent implements Updatable
         Indices were generated by extractPatchIndices().
     */
     String[][] extractPatchNames(Patch[] patches, int[][] indices)
+        {
+        return extractPatchNames(patches, indices, null);
+        }
+        
+    /** Extracts patch names as extractPatchNames(patches, indices), except that patches
+        which the given namer has not named yet are called "Reading..." */
+    String[][] extractPatchNames(Patch[] patches, int[][] indices, PatchNamer namer)
         {
         String[][] names = new String[indices.length][];
         for(int i = 0; i < indices.length; i++)
@@ -6348,6 +6813,11 @@ public abstract class Synth extends JComponent implements Updatable
             names[i] = new String[indices[i].length];
             for(int j = 0; j < indices[i].length; j++)
                 {
+                if (namer != null && !namer.isNamed(indices[i][j]))
+                    {
+                    names[i][j] = "Reading...";
+                    continue;
+                    }
                 String location = patches[indices[i][j]].location;
                 String name = patches[indices[i][j]].name;
                 if (location != null)
@@ -6539,7 +7009,16 @@ public abstract class Synth extends JComponent implements Updatable
     public int[] displayLoadBulkDialog(Patch[] patches, int[][] patchIndices, String title, String localLoad, 
         String newLoad, String writeAll, String breakOut, String individual, String cancel, boolean reduced )
         {
-        String[][] patchnames = extractPatchNames(patches, patchIndices);
+        return displayLoadBulkDialog(patches, patchIndices, null, title, localLoad, newLoad, writeAll, breakOut, individual, cancel, reduced);
+        }
+
+    /** Displays a bulk dialog panel for patches as displayLoadBulkDialog(...) above, while the patches are 
+        still being named by the given PatchNamer.  Patch names are filled in as they become available. */
+    public int[] displayLoadBulkDialog(final Patch[] patches, final int[][] patchIndices, final PatchNamer namer, String title, String localLoad, 
+        String newLoad, String writeAll, String breakOut, String individual, String cancel, boolean reduced )
+        {
+        String[][] patchnames = extractPatchNames(patches, patchIndices, namer);
+        final UString[][] ustrings = makeUniqueStrings(patchnames);
         String[] classnames = extractSynthClassNames(patches, patchIndices);
         String[] synthnames = extractSynthNames(patches, patchIndices);
                 
@@ -6547,7 +7026,7 @@ public abstract class Synth extends JComponent implements Updatable
         final JButton localButton = new JButton(localLoad);
         localButton.setEnabled(Synth.this.getClass().getName().equals(classnames[0]));
 
-        TwoLevelMenu menu = new TwoLevelMenu(synthnames, makeUniqueStrings(patchnames), "Synth", "Patch", 0, 0)
+        final TwoLevelMenu menu = new TwoLevelMenu(synthnames, ustrings, "Synth", "Patch", 0, 0)
             {
             public void selection(int primary, int secondary)
                 {
@@ -6598,10 +7077,38 @@ public abstract class Synth extends JComponent implements Updatable
                 }
             });
                                                                         
-        JDialog dialog = pane.createDialog(this, title);
+        final JDialog dialog = pane.createDialog(this, title);
+        
+        // fill in the patch names as they are read
+        javax.swing.Timer nameTimer = null;
+        if (namer != null && !namer.isDone())
+            {
+            nameTimer = new javax.swing.Timer(250, new ActionListener()
+                {
+                public void actionPerformed(ActionEvent e)
+                    {
+                    boolean done = namer.isDone();
+                    String[][] names = null;
+                    synchronized(namer) { names = extractPatchNames(patches, patchIndices, namer); }
+                    for(int i = 0; i < names.length; i++)
+                        for(int j = 0; j < names[i].length; j++)
+                            ustrings[i][j].string = names[i][j];
+                    if (done)
+                        {
+                        ((javax.swing.Timer)(e.getSource())).stop();
+                        menu.refresh();
+                        dialog.pack();
+                        }
+                    else menu.repaint();
+                    }
+                });
+            nameTimer.start();
+            }
+            
         disableMenuBar();
         dialog.show();
         enableMenuBar();
+        if (nameTimer != null) nameTimer.stop();
         Object result = pane.getValue();
         if (result == null) return new int[] { BULK_DIALOG_RESULT_CANCEL, menu.getPrimary(), menu.getSecondary() };
         else if (result.equals(localButton)) return new int[] { BULK_DIALOG_RESULT_LOCAL, menu.getPrimary(), menu.getSecondary() };
@@ -6623,8 +7130,75 @@ public abstract class Synth extends JComponent implements Updatable
         }
                 
 
+    // Reads all the sysex messages in the given sysex or MIDI file, or returns null if the task was cancelled
+    // or the MIDI file couldn't be read.  Called from a CodecExecutor.Task.
+    byte[][] readSysexFile(File f, CodecExecutor.Task task) throws IOException
+        {
+        String filename = f.getName();
+        if (filename.endsWith(".mid") || filename.endsWith(".MID") || filename.endsWith(".midi") || filename.endsWith(".MIDI"))
+            {
+            return extractSysexFromMidFile(f);
+            }
+        else        // sysex file
+            {
+            return SysexReader.readSysex(f, task);
+            }
+        }
+    
+    // Waits in the background for the namer to finish naming its patches, returning false if the user cancelled.
+    boolean waitForNamer(final PatchNamer namer)
+        {
+        if (namer.isDone()) return true;
+        CodecExecutor.runAndWait(this, "Load", "Naming patches...", new CodecExecutor.Task()
+            {
+            public Object run() { namer.waitUntilDone(); return null; }
+            public void cancel() { super.cancel(); namer.cancel(); }
+            });
+        return !namer.isCancelled();
+        }
+
+    // The Model into which doOpenDetached(...) is loading, if any
+    Model detachedTarget = null;
+    // Whether doOpenDetached(...) loaded a patch into detachedTarget
+    boolean detachedLoaded = false;
+    // The file from which doOpenDetached(...) last loaded a patch, if any
+    File detachedFile = null;
+    
+    /** Lets the user choose a patch from a file, as doOpen(false) does but showing limited options
+        for bank files, and loads it into TARGET rather than into the editor's own Model, which is left
+        alone.  Morph and HillClimb use this to load their models.  The patch is parsed in the background
+        by a Codec rather than by swapping TARGET in as the editor's Model, so whatever the user does
+        while it is loading goes to the editor's Model as it should.  Returns true if the patch was loaded
+        into TARGET, in which case getDetachedFile() returns the file it was loaded from, if known. 
+        Patches for other synthesizers may still be loaded in new editors, but this returns false. */
+    boolean doOpenDetached(Model target)
+        {
+        if (isRunningTask()) return false;              // we're in the middle of loading or saving already
+        
+        boolean limited = isShowingLimitedBankSysex();
+        setShowingLimitedBankSysex(true);
+        detachedTarget = target;
+        detachedLoaded = false;
+        detachedFile = null;
+        try
+            {
+            doOpen(false);
+            return detachedLoaded;
+            }
+        finally
+            {
+            detachedTarget = null;
+            setShowingLimitedBankSysex(limited);
+            }
+        }
+    
+    /** Returns the file from which doOpenDetached(...) last loaded a patch, or null if unknown. */
+    File getDetachedFile() { return detachedFile; }
+
     boolean doOpen(boolean merge)
         {
+        if (isRunningTask()) return false;              // we're in the middle of loading or saving already
+
         parsingForMerge = merge;
         mergeSynth = null;
 
@@ -6660,7 +7234,6 @@ public abstract class Synth extends JComponent implements Updatable
         fd.setVisible(true);
         enableMenuBar();
         File f = null; // make compiler happy
-        FileInputStream is = null;
         if (fd.getFile() != null)
             {
             try
@@ -6669,7 +7242,6 @@ public abstract class Synth extends JComponent implements Updatable
                 
                 //// SECOND if the file is really big we check to see if that's okay
 
-                is = new FileInputStream(f);
                 boolean okay = true;
                 if (f.length() > MAX_FILE_LENGTH)
                     {
@@ -6678,34 +7250,43 @@ public abstract class Synth extends JComponent implements Updatable
                 
                 if (okay)
                     {
-                    //// THIRD we extract all sysex from the file
+                    //// THIRD we extract all sysex from the file, and FOURTH we break the sysex into patches 
+                    //// we can work with.  This is done in the background, as big bank files take a while.
 
-                    byte[][] data;
-                    String filename = f.getName();
-                    if (filename.endsWith(".mid") || filename.endsWith(".MID") || filename.endsWith(".midi") || filename.endsWith(".MIDI"))
-                        {
-                        data = extractSysexFromMidFile(f);
-                        is.close();
-                        }
-                    else        // sysex file
+                    final File loadFile = f;
+                    Object[] loaded = (Object[])(CodecExecutor.runAndWait(this, "Load", "Reading " + f.getName() + "...", new CodecExecutor.Task()
+                            {
+                            public Object run() throws Exception
+                                {
+                                byte[][] data = readSysexFile(loadFile, this);
+                                if (data == null || data.length == 0 || isCancelled()) 
+                                    return new Object[] { data, null };
+                                setProgress("Gathering patches...");
+                                return new Object[] { data, collectPatchSysex(data) };
+                                }
+                            
+                            public void failed(Throwable ex)
+                                {
+                                showErrorWithStackTrace(ex, "File Error", "An error occurred while loading from the file.");
+                                Synth.handleException(ex);
+                                }
+                            }));
+                    byte[][] data = (loaded == null ? null : (byte[][])(loaded[0]));
+                        
+                    if (loaded == null)         // cancelled or failed
                         {
-                        byte[] d = new byte[(int)f.length()];
-                        readFully(d, is);
-                        is.close();
-                        data = cutUpSysex(d);
+                        succeeded = false;
                         }
-                        
-                    if (data == null || data.length == 0) // wasn't sysex, or we couldn't cut it up right.  Maybe someone still recognizes it.
+                    else if (data == null || data.length == 0) // wasn't sysex, or we couldn't cut it up right.  Maybe someone still recognizes it.
                         {
                         showSimpleError("File Error", "File does not appear to contain sysex data.");
                         succeeded = false;
                         }
                     else 
                         {
-                        //// FOURTH we break the sysex into patches we can work with
-
-                        Patch[] patches = gatherPatchSysex(data);
+                        Patch[] patches = (Patch[])(loaded[1]);
                         if (merge) patches = reducePatchesToLocal(patches);                     // this will reduce us to just our own kind of patches
+                        PatchNamer namer = new PatchNamer(this, patches);                       // names the patches in the background
                                                 
                         //// FIFTH if we can't find any usable patches, inform the user
 
@@ -6727,6 +7308,7 @@ public abstract class Synth extends JComponent implements Updatable
 
                         else if (patches.length == 1)   // just a single patch, so we load it
                             {
+                            namer.cancel();                 // we don't need its name
                             succeeded = loadOne(flatten(patches[0].sysex), patches[0].synth, recognizeAnyForLocal(data), merge, f, fd, false);
                             }
 
@@ -6741,6 +7323,7 @@ public abstract class Synth extends JComponent implements Updatable
                             int[] results = displayLoadBulkDialog(
                                 patches, 
                                 patchIndices,
+                                namer,
                                 "Choose Patch from File",
                                 merge ? "Merge" : (isShowingLimitedBankSysex() ? "Load" : "Load In This Editor"), 
                                 "Load in New Editor", 
@@ -6752,6 +7335,8 @@ public abstract class Synth extends JComponent implements Updatable
                             int result = results[0];
                             int primary = results[1];
                             int secondary = results[2];
+                            if (result == BULK_DIALOG_RESULT_CANCEL) namer.cancel();
+                            else if (!waitForNamer(namer)) result = BULK_DIALOG_RESULT_CANCEL;             // the remaining actions may need the names
                                                         
                             if (result == BULK_DIALOG_RESULT_CANCEL)
                                 {
@@ -6892,12 +7477,6 @@ public abstract class Synth extends JComponent implements Updatable
                 showErrorWithStackTrace(e, "File Error", "An error occurred while loading from the file.");
                 Synth.handleException(e);
                 }
-            finally
-                {
-                if (is != null)
-                    try { is.close(); }
-                    catch (IOException e) { }
-                }
             }
                 
         updateTitle();
@@ -6964,8 +7543,9 @@ public abstract class Synth extends JComponent implements Updatable
     // made for each synth type.  Normally patchType is -1, meaning all patch types;
     // otherwise it indicates saving only a specific type.
         
-    boolean saveAllPatches(Patch[][] patches, int patchType, boolean groupByType)
+    boolean saveAllPatches(final Patch[][] patches, final int patchType, final boolean groupByType)
         {
+        if (isRunningTask()) return false;              // we're in the middle of loading or saving already
         File dir = selectDirectory(groupByType ? "Select Directory to Save Patch Groups" : "Select Directory to Save Patches",
             file != null ? new File(file.getParentFile().getPath()) : (getLastDirectory() == null ? new File(getLastDirectory()) : null), 
             true);
@@ -7004,98 +7584,109 @@ public abstract class Synth extends JComponent implements Updatable
             }
         else
             {
-            //File dir = chooser.getSelectedFile();          
-            if (groupByType)
+            // Writing out big banks can take a while, so we do it in the background
+            final File directory = dir;
+            final File[] current = new File[1];
+            Object result = CodecExecutor.runAndWait(this, "Save", "Saving patches...", new CodecExecutor.Task()
                 {
-                int start = 0;
-                int end = patches.length;
-                if (patchType != -1)
+                public Object run() throws IOException
+                    {
+                    String error = writeAllPatches(directory, patches, patchType, groupByType, current, this);
+                    return (error == null ? Boolean.TRUE : error);
+                    }
+                
+                public void failed(Throwable e)
                     {
-                    start = patchType;
-                    end = patchType + 1;
+                    showErrorWithStackTrace(e, "Patch Save Error.", "An error occurred while saving to the file " + (current[0] == null ? " " : current[0].getName()));
+                    Synth.handleException(e);
                     }
+                });
+            if (result instanceof String)
+                {
+                showSimpleError("Patch Save Error", (String)result);
+                return false;
+                }
+            return (result != null);
+            }
+        }
+        
+    // Writes out the patches for saveAllPatches(...), noting in CURRENT[0] the file being written.  Returns an
+    // error message if a subdirectory could not be made, else null.  Called from a CodecExecutor.Task.
+    String writeAllPatches(File dir, Patch[][] patches, int patchType, boolean groupByType, File[] current, CodecExecutor.Task task) throws IOException
+        {
+        if (groupByType)
+            {
+            int start = 0;
+            int end = patches.length;
+            if (patchType != -1)
+                {
+                start = patchType;
+                end = patchType + 1;
+                }
                                         
-                for(int i = start; i < end; i++)
+            for(int i = start; i < end; i++)
+                {
+                if (task.isCancelled()) return null;
+                String name = getSynthNames()[patches[i][0].synth];
+                File f = current[0] = new File(dir, name + ".syx");
+                task.setProgress("Saving " + f.getName() + "...");
+                FileOutputStream os = new FileOutputStream(f);
+                try
                     {
-                    FileOutputStream os = null;
-                    String name = getSynthNames()[patches[i][0].synth];
-                    File f = new File(dir, name + ".syx");
-                    try
-                        {
-                        os = new FileOutputStream(f);
-                        for(int j = 0; j < patches[i].length; j++)
-                            {
-                            os.write(flatten(patches[i][j].sysex));
-                            }
-                        os.close();
-                        }
-                    catch (IOException e) // fail
-                        {
-                        showErrorWithStackTrace(e, "Patch Save Error.", "An error occurred while saving to the file " + (f == null ? " " : f.getName()));
-                        Synth.handleException(e);
-                        return false;
-                        }
-                    finally
+                    for(int j = 0; j < patches[i].length; j++)
                         {
-                        if (os != null)
-                            try { os.close(); }
-                            catch (IOException e) { }
+                        os.write(flatten(patches[i][j].sysex));
                         }
                     }
-                }
-            else
-                {
-                int start = 0;
-                int end = patches.length;
-                if (patchType != -1)
+                finally
                     {
-                    start = patchType;
-                    end = patchType + 1;
+                    os.close();
                     }
+                }
+            }
+        else
+            {
+            int start = 0;
+            int end = patches.length;
+            if (patchType != -1)
+                {
+                start = patchType;
+                end = patchType + 1;
+                }
 
-                File subdir = dir;
-                for(int i = start; i < end; i++)
+            File subdir = dir;
+            for(int i = start; i < end; i++)
+                {
+                int count = 1;
+                if (end - start > 1)            // more than one being saved out
                     {
-                    int count = 1;
-                    if (end - start > 1)            // more than one being saved out
+                    String name = getSynthNames()[patches[i][0].synth];
+                    subdir = new File(dir, name);
+                    if (!subdir.mkdir())
                         {
-                        String name = getSynthNames()[patches[i][0].synth];
-                        subdir = new File(dir, name);
-                        if (!subdir.mkdir())
-                            {
-                            showSimpleError("Patch Save Error", "Could not create the subdirectory" + subdir + "\nIs there possibly a file by that name already?");
-                            return false;
-                            }
+                        return "Could not create the subdirectory" + subdir + "\nIs there possibly a file by that name already?";
                         }
+                    }
                                                 
-                    FileOutputStream os = null;
-                    for(int j = 0; j < patches[i].length; j++)
+                for(int j = 0; j < patches[i].length; j++)
+                    {
+                    if (task.isCancelled()) return null;
+                    String name = ("" + (count++) + (patches[i][j].name == null ? "" : "." + patches[i][j].name));
+                    File f = current[0] = new File(subdir, name + ".syx");
+                    task.setProgress("Saving " + f.getName() + "...");
+                    FileOutputStream os = new FileOutputStream(f);
+                    try
                         {
-                        String name = ("" + (count++) + (patches[i][j].name == null ? "" : "." + patches[i][j].name));
-                        File f = new File(subdir, name + ".syx");
-                        try
-                            {
-                            os = new FileOutputStream(f);
-                            os.write(flatten(patches[i][j].sysex));
-                            os.close();
-                            }
-                        catch (IOException e) // fail
-                            {
-                            showErrorWithStackTrace(e, "Patch Save Error.", "An error occurred while saving to the file " + (f == null ? " " : f.getName()));
-                            Synth.handleException(e);
-                            return false;
-                            }
-                        finally
-                            {
-                            if (os != null)
-                                try { os.close(); }
-                                catch (IOException e) { }
-                            }
-                        }                                               
-                    }
+                        os.write(flatten(patches[i][j].sysex));
+                        }
+                    finally
+                        {
+                        os.close();
+                        }
+                    }                                               
                 }
             }
-        return true;
+        return null;
         }
         
 
@@ -7156,7 +7747,12 @@ public abstract class Synth extends JComponent implements Updatable
                                         
                     long time2 = System.currentTimeMillis();
                     if (time2 > time && time2 - time < 1000)
-                        simplePause((int)(1000L - (time2 - time)));             // this is a decorative pause to give the user time to spot the window in case it appears and disappears rapidly
+                        {
+                        // this is a decorative pause to give the user time to spot the window in case it appears and disappears rapidly.
+                        // It's not a MIDI pause, so we sleep directly rather than calling simplePause()
+                        try { Thread.currentThread().sleep((int)(1000L - (time2 - time))); }
+                        catch (Exception ex) { Synth.handleException(ex); }
+                        }
                                         
                     if (invalid[0])
                         showSimpleError("Write Error", "Some patches could not be written.");
@@ -7183,7 +7779,7 @@ public abstract class Synth extends JComponent implements Updatable
     // the provided sysex data.
     boolean unknownSysexFileError(byte[][] data)
         {
-        String val = Midi.getManufacturerForSysex(data[0]);
+        String val = Midi.getManufacturerForSysex(Midi.classifySysex(data[0]));
                
         String message = "File might contain sysex data but has an invalid manufacturer ID.";  
                                                                                                        
@@ -7234,6 +7830,9 @@ public abstract class Synth extends JComponent implements Updatable
     // Private function used by doOpen(...) to load locally
     boolean loadOneLocal(byte[] data, boolean merge, File f, FileDialog fd)
         {
+        if (detachedTarget != null && !merge) 
+            return loadOneDetached(data, f, fd);
+            
         boolean succeeded;
         
         // this last statement fixes a mystery.  When I call Randomize or Reset on
@@ -7319,6 +7918,91 @@ public abstract class Synth extends JComponent implements Updatable
         return succeeded;       
         }
     
+    // Private function used by doOpen(...) to load into detachedTarget rather than into our own Model.
+    // The patch is parsed by a Codec, starting from detachedTarget's values as loadOneLocal(...) would 
+    // start from ours, and is copied into detachedTarget only if it succeeded.
+    boolean loadOneDetached(final byte[] data, File f, FileDialog fd)
+        {
+        final Model target = detachedTarget;
+        final Model start = target.copy();
+        final String className = getClass().getName();
+        final int[] result = new int[] { PARSE_ERROR };
+
+        if (recognizeBank(className, data))
+            {
+            // Parsing a bank asks the user which patch to load, so it has to be done here on the
+            // Swing Event Thread.  But it's the Codec's throwaway Synth which asks, not us.
+            Codec codec = Codec.get(className);
+            Synth other = codec.getSynth();
+            other.setShowingLimitedBankSysex(true);
+            try
+                {
+                Model model = codec.parse(new byte[][] { data }, start);
+                result[0] = codec.getLastResult();
+                if (result[0] == PARSE_SUCCEEDED || result[0] == PARSE_SUCCEEDED_UNTITLED)
+                    model.copyValuesTo(target);
+                }
+            catch (Exception ex)
+                {
+                Synth.handleException(ex);
+                result[0] = PARSE_ERROR;
+                }
+            finally
+                {
+                other.setShowingLimitedBankSysex(false);
+                }
+            }
+        else
+            {
+            CodecExecutor.runAndWait(this, "Load", "Reading patch...", new CodecExecutor.Task()
+                {
+                public Object run()
+                    {
+                    Codec codec = Codec.get(className);
+                    Model model = codec.parse(new byte[][] { data }, start);
+                    result[0] = codec.getLastResult();
+                    return model;
+                    }
+                
+                public void done(Object model)
+                    {
+                    if (result[0] == PARSE_SUCCEEDED || result[0] == PARSE_SUCCEEDED_UNTITLED)
+                        ((Model)model).copyValuesTo(target);
+                    }
+                
+                public void failed(Throwable ex)
+                    {
+                    Synth.handleException(ex);
+                    result[0] = PARSE_ERROR;
+                    }
+
+                public void cancelled()
+                    {
+                    result[0] = PARSE_CANCELLED;
+                    }
+                });
+            }
+            
+        if (result[0] == PARSE_FAILED || result[0] == PARSE_INCOMPLETE)
+            {
+            showSimpleError("File Error", "Could not read the patch.");
+            return false;
+            }
+        else if (result[0] == PARSE_ERROR)
+            {
+            showSimpleError("File Error", "An error occurred on reading the patch.");
+            return false;
+            }
+        else if (result[0] == PARSE_SUCCEEDED || result[0] == PARSE_SUCCEEDED_UNTITLED)
+            {
+            detachedLoaded = true;
+            detachedFile = f;
+            setLastDirectory(fd.getDirectory());
+            return true;
+            }
+        else return false;              // cancelled
+        }
+    
     // Private function used by doOpen(...) to load externally
     boolean loadOneExternal(byte[] data, Class synthClass, File f, FileDialog fd)
         {
@@ -7557,10 +8241,40 @@ public abstract class Synth extends JComponent implements Updatable
     FileOutputStream batchPatches = null;
     javax.swing.Timer patchTimer = null;
         
+    // Batch download requests which have been sent but not yet answered, oldest first
+    ArrayList<Model> batchRequests = new ArrayList<Model>();
+    ArrayList<Long> batchRequestTimes = new ArrayList<Long>();
+    Model nextBatchPatch = null;                // the next location to request, or null if we've requested them all
+    int batchPatchesReceived;
+    long batchTotalRoundTrip;
+    long batchMaxRoundTrip;
+        
+    /** Returns the number of milliseconds to wait for a patch to arrive during a batch download before
+        deciding that it isn't coming.  If your synth answers requests slowly, you may need to increase this. */
     public int getBatchDownloadWaitTime() { return 500; }
     
+    /** Returns whether, during a batch download, the next patch should be requested as soon as the 
+        previous patch has been received, rather than only once getBatchDownloadWaitTime() has expired.
+        The default is to do so if the synth sends patches as dumps, which is nearly always the case.  If your synth 
+        needs a pause between sending a dump and receiving its next request, override this to return false. */
+    public boolean getBatchDownloadsOnArrival() { return getReceivesPatchesAsDumps(); }
+
+    /** Returns the number of patch requests which may be outstanding at one time during a batch download.
+        The default is 1: each patch is requested only after the previous one has arrived.  If your synth
+        can queue up several requests and answer them in turn, you may override this to return a larger number,
+        which speeds up batch downloads over slow connections. */
+    public int getBatchDownloadOutstandingRequests() { return 1; }
+    
     public boolean isBatchDownloading() { return patchTimer != null; }
     
+    /** Returns the average round trip time, in milliseconds, between requesting a patch and receiving it,
+        for the current or most recent batch download. */
+    public double getBatchDownloadAverageRoundTrip() { return batchPatchesReceived == 0 ? 0.0 : batchTotalRoundTrip / (double)batchPatchesReceived / 1000000.0; }
+
+    /** Returns the maximum round trip time, in milliseconds, between requesting a patch and receiving it,
+        for the current or most recent batch download. */
+    public double getBatchDownloadMaxRoundTrip() { return batchMaxRoundTrip / 1000000.0; }
+    
     void saveBatchPatches()
         {
         if (batchPatches != null)
@@ -7609,6 +8323,7 @@ public abstract class Synth extends JComponent implements Updatable
     
     void doGetAllPatches()
         {
+        if (isRunningTask()) return;              // we're in the middle of loading or saving already
         if (patchTimer != null)
             {
             patchTimer.stop();
@@ -7728,13 +8443,17 @@ public abstract class Synth extends JComponent implements Updatable
             // request patch
 
             getAll.setText("Stop Downloading Batch");
-            resetBlend();
-            setMergeProbability(0.0);
-            performRequestDump(currentPatch, true);
+            batchRequests.clear();
+            batchRequestTimes.clear();
+            batchPatchesReceived = 0;
+            batchTotalRoundTrip = 0;
+            batchMaxRoundTrip = 0;
+            nextBatchPatch = currentPatch;
             incomingPatch = false;
+            requestBatchPatches();
             
             batchDownloadFailureCountdown = getBatchDownloadFailureCountdown();
-            // set timer to request further patches         
+            // set timer to handle patches which don't arrive, or which arrive as CC or NRPN rather than dumps
             patchTimer = new javax.swing.Timer(getBatchDownloadWaitTime(),
                 new ActionListener()
                     {
@@ -7742,30 +8461,26 @@ public abstract class Synth extends JComponent implements Updatable
                         {
                         if (incomingPatch)
                             {
-                            if (patchLocationEquals(getModel(), currentPatch))
-                                {
-                                batchDownloadFailureCountdown = getBatchDownloadFailureCountdown();
-                                processCurrentPatch();
-                                requestNextPatch();
-                                }
-                            else
+                            if (!receiveBatchPatch())
                                 {
                                 System.err.println("Warning (Synth): Download of " + getPatchLocationName(currentPatch) + " failed.  Received unexpected patch " + getPatchLocationName(getModel()));
                                 }
                             }
                         else 
                             {
+                            Model waiting = batchRequests.get(0);
                             if ((batchDownloadFailureCountdown--) == 0)
                                 {
                                 batchDownloadFailureCountdown = getBatchDownloadFailureCountdown();
-                                System.err.println("Warning (Synth): Download of " + getPatchLocationName(currentPatch) + " failed.  Requesting again.");
+                                System.err.println("Warning (Synth): Download of " + getPatchLocationName(waiting) + " failed.  Requesting again.");
                                 resetBlend();
                                 setMergeProbability(0.0);
-                                performRequestDump(currentPatch, true);
+                                batchRequestTimes.set(0, Long.valueOf(System.nanoTime()));
+                                performRequestDump(waiting, true);
                                 }
                             else
                                 {
-                                System.err.println("Warning (Synth): Download of " + getPatchLocationName(currentPatch) + " failed.  Waiting: " + (batchDownloadFailureCountdown + 1));
+                                System.err.println("Warning (Synth): Download of " + getPatchLocationName(waiting) + " failed.  Waiting: " + (batchDownloadFailureCountdown + 1));
                                 }
                             }
                         }
@@ -7777,25 +8492,65 @@ public abstract class Synth extends JComponent implements Updatable
     public int getBatchDownloadFailureCountdown() { return 0; }
     int batchDownloadFailureCountdown;
 
-    void requestNextPatch()
+    /** Requests further patches until getBatchDownloadOutstandingRequests() are outstanding or there are none left to request. */
+    void requestBatchPatches()
+        {
+        while(nextBatchPatch != null && batchRequests.size() < Math.max(1, getBatchDownloadOutstandingRequests()))
+            {
+            currentPatch = nextBatchPatch;
+            if (patchLocationEquals(currentPatch, finalPatch))
+                nextBatchPatch = null;
+            else
+                nextBatchPatch = getNextPatchLocation(currentPatch);
+            batchRequests.add(currentPatch);
+            batchRequestTimes.add(Long.valueOf(System.nanoTime()));
+            resetBlend();
+            setMergeProbability(0.0);
+            performRequestDump(currentPatch, true);
+            incomingPatch = false;
+            }
+        }
+        
+    /** Called when a patch has arrived during a batch download.  If it's one we requested, saves it, 
+        requests further patches or finishes the download, and returns true.  Otherwise returns false. */
+    boolean receiveBatchPatch()
         {
-        if (patchLocationEquals(currentPatch, finalPatch))     // we're done
+        int index = -1;
+        for(int i = 0; i < batchRequests.size(); i++)
+            {
+            if (patchLocationEquals(getModel(), batchRequests.get(i)))
+                { index = i; break; }
+            }
+        if (index == -1) return false;
+                
+        long roundTrip = System.nanoTime() - batchRequestTimes.get(index).longValue();
+        batchRequests.remove(index);
+        batchRequestTimes.remove(index);
+        batchPatchesReceived++;
+        batchTotalRoundTrip += roundTrip;
+        if (roundTrip > batchMaxRoundTrip) batchMaxRoundTrip = roundTrip;
+        incomingPatch = false;
+        batchDownloadFailureCountdown = getBatchDownloadFailureCountdown();
+                
+        processCurrentPatch();
+        if (patchTimer == null) return true;            // processCurrentPatch() failed and stopped the download
+                        
+        if (batchRequests.isEmpty() && nextBatchPatch == null)     // we're done
             {
             patchTimer.stop();
             patchTimer = null;
             saveBatchPatches();
             patchFileOrDirectory = null;
             getAll.setText("Download Batch...");
-            showSimpleMessage("Batch Download", "Batch download finished." );
+            showSimpleMessage("Batch Download", "Batch download finished.\n" + batchPatchesReceived + " patches received in an average of " + 
+                (int)getBatchDownloadAverageRoundTrip() + " ms each (maximum " + (int)getBatchDownloadMaxRoundTrip() + " ms)." );
             }
         else
             {
-            currentPatch = getNextPatchLocation(currentPatch);
-            resetBlend();
-            setMergeProbability(0.0);
-            performRequestDump(currentPatch, true);
-            incomingPatch = false;
+            requestBatchPatches();
+            patchTimer.restart();                       // the timeout counts from now
             }
+        return true;
         }
         
     /** This tells Edisyn whether your synthesizer sends patches to Edisyn via a sysex patch dump
@@ -7833,29 +8588,33 @@ public abstract class Synth extends JComponent implements Updatable
                 // substitute separators. Might as well
                 // filename = filename.replace('/', '-').replace('\\', '-');
                         
-                FileOutputStream os = null;
-                File f = null;
-                try
+                // The file is written in the background so as not to hold up the download
+                final File f = new File(patchFileOrDirectory, filename);
+                final byte[] d = data;
+                CodecExecutor.submit(new CodecExecutor.Task()
                     {
-                    os = new FileOutputStream(f = new File(patchFileOrDirectory, filename));
-                    os.write(data);
-                    }
-                catch (IOException e) // fail
-                    {
-                    patchTimer.stop();
-                    patchTimer = null;
-                    saveBatchPatches();
-                    patchFileOrDirectory = null;
-                    getAll.setText("Download Batch...");
-                    showErrorWithStackTrace(e, "Batch Download Failed.", "An error occurred while saving to the file " + (f == null ? " " : f.getName()));
-                    Synth.handleException(e);
-                    }
-                finally
-                    {
-                    if (os != null)
-                        try { os.close(); }
-                        catch (IOException e) { }
-                    }
+                    public Object run() throws IOException
+                        {
+                        FileOutputStream os = new FileOutputStream(f);
+                        try { os.write(d); }
+                        finally { os.close(); }
+                        return null;
+                        }
+                        
+                    public void failed(Throwable e)
+                        {
+                        if (patchTimer != null)         // we haven't already stopped
+                            {
+                            patchTimer.stop();
+                            patchTimer = null;
+                            saveBatchPatches();
+                            patchFileOrDirectory = null;
+                            getAll.setText("Download Batch...");
+                            }
+                        showErrorWithStackTrace(e, "Batch Download Failed.", "An error occurred while saving to the file " + f.getName());
+                        Synth.handleException(e);
+                        }
+                    });
                 }
             }
         }
@@ -8104,13 +8863,27 @@ public abstract class Synth extends JComponent implements Updatable
         }
 
         
-    /** Sends a single parameter if the synthesizer is capable of doing this. */
+    /** Sends a single parameter if the synthesizer is capable of doing this. 
+        If MIDI is being sent asynchronously and the user has chosen to drop superseded
+        parameter updates, then any update for this same key which is still waiting to be
+        sent is replaced by this one. */
     public void sendOneParameter(String key)
         {
         if (allowsTransmitsParameters && getSendMIDI())
             {
-            if (tryToSendMIDI(emitAll(key, STATUS_UPDATING_ONE_PARAMETER)))
-                simplePause(getPauseAfterSendOneParameter());
+            MidiScheduler scheduler = (coalesceParameters ? getMIDIScheduler() : null);
+            if (scheduler != null)
+                scheduler.beginGroup(this, key);
+            try
+                {
+                if (tryToSendMIDI(emitAll(key, STATUS_UPDATING_ONE_PARAMETER)))
+                    simplePause(getPauseAfterSendOneParameter());
+                }
+            finally
+                {
+                if (scheduler != null)
+                    scheduler.endGroup();
+                }
             }
         }
 
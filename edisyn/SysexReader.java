@@ -0,0 +1,195 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/****
+     Reads sysex messages one at a time from a channel, such as a file.  The file is read
+     through a small fixed-size window, and each message is assembled in a scratch buffer
+     which only grows as large as the largest message seen so far, so there is no limit to the
+     size of the file and no need to load the whole thing into memory.  As was the case in
+     Synth.cutUpSysex(...), bytes outside of an 0xF0 ... 0xF7 pair are discarded, as is a final
+     message which has no 0xF7.
+
+     <p>Call next() to advance to the next message.  Afterwards, getOffset() and getLength() tell
+     you where the message lies in the file, and getMessage() returns a copy of it.
+
+     @author Sean Luke
+*/
+
+public class SysexReader implements Closeable
+    {
+    /** The size of the window through which we read the file. */
+    public static final int WINDOW_SIZE = 64 * 1024;
+
+    /** How many messages are read between progress updates in readSysex(..., task). */
+    public static final int PROGRESS_INTERVAL = 1000;
+
+    ReadableByteChannel channel;
+    ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    byte[] windowArray = window.array();
+    int windowPos = 0;
+    int windowLimit = 0;
+    long windowOffset = 0;                      // file offset of windowArray[0]
+    boolean eof = false;
+
+    byte[] message = new byte[1024];
+    int messageLength = 0;
+    long messageOffset = -1;
+
+    /** Reads sysex messages from the given channel. */
+    public SysexReader(ReadableByteChannel channel)
+        {
+        this.channel = channel;
+        }
+
+    /** Reads sysex messages from the given file. */
+    public SysexReader(File file) throws IOException
+        {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        }
+
+    /** Reads sysex messages from the given stream. */
+    public SysexReader(InputStream stream)
+        {
+        this(Channels.newChannel(stream));
+        }
+
+    /** Advances to the next sysex message, returning false if there are no more. */
+    public boolean next() throws IOException
+        {
+        messageLength = 0;
+        messageOffset = -1;
+        while(true)
+            {
+            if (windowPos >= windowLimit && !fill())
+                {
+                // A message without an 0xF7 is discarded
+                messageLength = 0;
+                messageOffset = -1;
+                return false;
+                }
+
+            if (messageOffset < 0)
+                {
+                // Look for the next 0xF0
+                int start = windowPos;
+                while(start < windowLimit && windowArray[start] != (byte)0xF0) start++;
+                windowPos = start;
+                if (start < windowLimit)
+                    messageOffset = windowOffset + start;
+                }
+            else
+                {
+                // Look for the next 0xF7
+                int end = windowPos;
+                while(end < windowLimit && windowArray[end] != (byte)0xF7) end++;
+                boolean found = (end < windowLimit);
+                if (found) end++;               // include the 0xF7
+                append(windowPos, end);
+                windowPos = end;
+                if (found) return true;
+                }
+            }
+        }
+
+    /** Returns the offset in the file of the current message, or -1 if there is none. */
+    public long getOffset() { return messageOffset; }
+
+    /** Returns the length of the current message, including its 0xF0 and 0xF7, or 0 if there is none. */
+    public int getLength() { return messageLength; }
+
+    /** Returns a copy of the current message. */
+    public byte[] getMessage()
+        {
+        byte[] d = new byte[messageLength];
+        System.arraycopy(message, 0, d, 0, messageLength);
+        return d;
+        }
+
+    public void close() throws IOException
+        {
+        channel.close();
+        }
+
+    void append(int from, int to)
+        {
+        int len = to - from;
+        if (messageLength + len > message.length)
+            {
+            message = Arrays.copyOf(message, Math.max(message.length * 2, messageLength + len));
+            }
+        System.arraycopy(windowArray, from, message, messageLength, len);
+        messageLength += len;
+        }
+
+    boolean fill() throws IOException
+        {
+        if (eof) return false;
+        windowOffset += windowLimit;
+        window.clear();
+        int read = 0;
+        while(read == 0)                // a blocking channel only returns 0 when the buffer is full, which it isn't
+            read = channel.read(window);
+        if (read < 0)
+            {
+            eof = true;
+            windowPos = windowLimit = 0;
+            return false;
+            }
+        windowPos = 0;
+        windowLimit = read;
+        return true;
+        }
+
+
+    /** Reads all the sysex messages in the given file. */
+    public static byte[][] readSysex(File file) throws IOException
+        {
+        SysexReader reader = new SysexReader(file);
+        try { return readSysex(reader); }
+        finally { reader.close(); }
+        }
+
+    /** Reads all the sysex messages in the given file on behalf of TASK, which is told of its progress from
+        time to time.  Returns null if TASK was cancelled.  */
+    public static byte[][] readSysex(File file, CodecExecutor.Task task) throws IOException
+        {
+        SysexReader reader = new SysexReader(file);
+        try { return readSysex(reader, task); }
+        finally { reader.close(); }
+        }
+
+    /** Reads all the sysex messages in the given stream.  Does not close the stream. */
+    public static byte[][] readSysex(InputStream stream) throws IOException
+        {
+        return readSysex(new SysexReader(stream));
+        }
+
+    static byte[][] readSysex(SysexReader reader) throws IOException
+        {
+        return readSysex(reader, null);
+        }
+
+    // Reads all the messages, checking TASK (if non-null) for cancellation and updating its progress
+    static byte[][] readSysex(SysexReader reader, CodecExecutor.Task task) throws IOException
+        {
+        ArrayList<byte[]> sysex = new ArrayList<byte[]>();
+        while(reader.next())
+            {
+            if (task != null && task.isCancelled()) return null;
+            sysex.add(reader.getMessage());
+            if (task != null && sysex.size() % PROGRESS_INTERVAL == 0)
+                task.setProgress("Read " + sysex.size() + " sysex messages...");
+            }
+        return (byte[][])sysex.toArray(new byte[sysex.size()][]);
+        }
+    }
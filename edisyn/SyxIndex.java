@@ -0,0 +1,107 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/** This little java file is a utility which lists the patches in one or more sysex
+    files, without opening any editor windows, so it can be run headless
+    (java -Djava.awt.headless=true edisyn.SyxIndex ...).  The patches are parsed in parallel.
+    If the first argument is -v, each patch is also verified by emitting it and parsing
+    it again, and checking that the result is the same.  Thereafter the columns are:
+
+    1.      File name
+    2.      Patch index in the file
+    3.      Synthesizer
+    4.      Patch location
+    5.      Patch name
+    6.      If verifying, "ok" or "FAILED"
+*/
+
+public class SyxIndex
+    {
+    public static void main(String[] args) throws Exception
+        {
+        boolean verify = false;
+        int first = 0;
+        if (args.length > 0 && args[0].equals("-v"))
+            { verify = true; first = 1; }
+
+        boolean failed = false;
+        for(int f = first; f < args.length; f++)
+            {
+            Patch[] patches = Codec.collectPatches(SysexReader.readSysex(new File(args[f])));
+            String[][] results = index(patches, verify);
+            for(int i = 0; i < patches.length; i++)
+                {
+                System.out.println(args[f] + "\t" + i + "\t" + Synth.getSynthNames()[patches[i].synth] + "\t" +
+                    (results[i][1] == null ? "" : results[i][1]) + "\t" + (results[i][0] == null ? "" : results[i][0]) +
+                    (verify ? "\t" + results[i][2] : ""));
+                if (verify && !"ok".equals(results[i][2])) failed = true;
+                }
+            }
+        System.exit(failed ? 1 : 0);
+        }
+
+    /** Returns, for each patch, its name, location, and if VERIFY is true, "ok" or "FAILED". */
+    public static String[][] index(final Patch[] patches, final boolean verify) throws InterruptedException
+        {
+        final String[][] results = new String[patches.length][];
+        final AtomicInteger next = new AtomicInteger(0);
+
+        Thread[] workers = new Thread[Math.max(1, Math.min(patches.length, Runtime.getRuntime().availableProcessors()))];
+        for(int i = 0; i < workers.length; i++)
+            {
+            workers[i] = new Thread(new Runnable()
+                {
+                public void run()
+                    {
+                    while(true)
+                        {
+                        int i = next.getAndIncrement();
+                        if (i >= patches.length) break;
+                        results[i] = index(patches[i], verify);
+                        }
+                    }
+                });
+            workers[i].start();
+            }
+        for(int i = 0; i < workers.length; i++)
+            workers[i].join();
+        return results;
+        }
+
+    static String[] index(Patch patch, boolean verify)
+        {
+        if (patch.bank)
+            return new String[] { "Bank " + Synth.getBankName(Synth.getClassNames()[patch.synth], patch.sysex[0]), null, "ok" };
+
+        try
+            {
+            Codec codec = Codec.get(Synth.getClassNames()[patch.synth]);
+            Model model = codec.parse(patch.sysex);
+            if (model == null)
+                return new String[] { null, null, "FAILED" };
+            String name = codec.getPatchName(model);
+            String location = codec.getPatchLocationName(model);
+            String ok = "ok";
+            if (verify)
+                {
+                Model again = codec.parse(Synth.cutUpSysex(codec.emit(model)));
+                if (again == null || !again.keyEquals(model))
+                    ok = "FAILED";
+                }
+            return new String[] { name, location, ok };
+            }
+        catch (Exception ex)
+            {
+            Synth.handleException(ex);
+            return new String[] { null, null, "FAILED" };
+            }
+        }
+    }
@@ -6,27 +6,341 @@
 package edisyn;
 import java.util.*;
 
+/**
+   The Undo and Redo stacks.  Rather than holding a full copy of the Model for every
+   undoable change, each stack only holds a full copy of its topmost state.  Every
+   state beneath it is stored as a <i>delta</i>: the indices of the keys (and their values)
+   in which that state differs from the state immediately above it.  When the top state is popped
+   off, the state beneath it is rebuilt by applying its delta to the old top state in place.
+   If a delta would be about as large as the model itself (for example, after a randomize
+   or a patch load), or if the two states' keys, bounds, or statuses differ (which a delta
+   doesn't record), the state is kept as a full <i>checkpoint</i> instead.
+
+   <p>The Model notes the index of every key it writes (see Model.markChanged(...)).  Each stack
+   collects these into the set of keys in which the synth's model may differ from the stack's
+   top state, so pushing, undoing, and redoing only look at those keys rather than the whole model.
+   Only when that set is not known (the first push, a push of some other model such as a backup
+   made before a load, or a checkpoint) is the whole model compared.
+
+   <p>Undoing and redoing are done in place on the current model: only the keys
+   which actually change are written, and only their listeners are updated.  This restores 
+   the values of the keys, and their bounds and statuses if these have changed since the state was
+   saved.  Keys which the current model has gained since the state was saved are left as they are,
+   as are the current model's listeners.
+
+   <p>The stacks share a memory cap (see setMaxMemory(...)).  When it is exceeded,
+   the oldest undo states (and then the oldest redo states) are discarded.  Since each
+   state is stored relative to the state above it, the oldest states can always
+   be discarded safely.
+*/
+
 public class Undo
     {
     public static final boolean debug = false;
-    
-    public ArrayDeque<Model> undo = new ArrayDeque();
-    public ArrayDeque<Model> redo = new ArrayDeque();
-    public Synth synth;        
+
+    /** The default maximum memory, in bytes, used by the undo and redo stacks together. */
+    public static final long DEFAULT_MAX_MEMORY = 16 * 1024 * 1024;
+
+    // rough estimates of memory usage
+    static final int ENTRY_BYTES = 64;
+    static final int MODEL_BYTES_PER_KEY = 4 + 8;                       // int value and String reference
+    static final int DELTA_BYTES_PER_KEY = 4 + 4 + 8;           // key index, int value, and String reference
+
+    public History undo = new History();
+    public History redo = new History();
+    public Synth synth;
     boolean willPush = true;
+    long maxMemory = DEFAULT_MAX_MEMORY;
+
+    // The synth's model, whose changes we are collecting.  See sync(...)
+    Model tracked = null;
+
+    // Scratch space for findDifferences(...): the indices of differing keys in the state and in the model
+    int[] diffFrom = new int[0];
+    int[] diffTo = new int[0];
+
+    /** One state on a History stack.  If full is non-null, then this is the state.  Otherwise
+        this is a delta against the state immediately above it on the stack, whose schema is given. */
+    static class Entry
+        {
+        Model full;
+        Model.Schema schema;
+        int[] indices;
+        int[] ints;
+        String[] strings;
+        long bytes;
+
+        public String toString()
+            {
+            if (full != null) return "[Full: " + full.size() + " keys]";
+            else return "[Delta: " + Arrays.toString(indices) + "]";
+            }
+        }
+
+    /** A stack of Model states.  The top state is always stored in full. */
+    public class History
+        {
+        ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+        long bytes = 0;
+
+        // If synced, then the top state is a snapshot of the tracked model, and they may only differ 
+        // in the keys at the touched indices
+        boolean synced = false;
+        boolean[] touched = null;
+        int[] touchedIndices = null;
+        int numTouched = 0;
+
+        public int size() { return entries.size(); }
+        public boolean isEmpty() { return entries.isEmpty(); }
+        public void clear() { entries.clear(); bytes = 0; untouchAll(); synced = false; }
+
+        /** Returns the topmost state, or null if there is none.  The state must not be modified. */
+        public Model top() { return entries.isEmpty() ? null : entries.peekFirst().full; }
+
+        // Notes that the tracked model may now differ from the top state in the key at the given index
+        void touch(int index)
+            {
+            if (!synced) return;
+            if (touched == null)
+                {
+                touched = new boolean[Math.max(index + 1, tracked.size())];
+                touchedIndices = new int[touched.length];
+                }
+            else if (index >= touched.length)
+                {
+                touched = Arrays.copyOf(touched, Math.max(touched.length * 2, index + 1));
+                touchedIndices = Arrays.copyOf(touchedIndices, touched.length);
+                }
+            if (touched[index]) return;
+            touched[index] = true;
+            touchedIndices[numTouched++] = index;
+            }
+
+        void untouchAll()
+            {
+            for(int i = 0; i < numTouched; i++)
+                touched[touchedIndices[i]] = false;
+            numTouched = 0;
+            }
+
+        // Finds the keys whose values in STATE differ in MODEL, storing their indices in diffFrom (in STATE) 
+        // and diffTo (in MODEL), and returns how many there are.  If STATE is our top state and we know 
+        // where it may differ from MODEL, only those keys are compared.
+        int findDifferences(Model state, Model model)
+            {
+            int count = 0;
+            if (synced && model == tracked && state == top() && state.sharesSchemaWith(model))
+                {
+                ensureDifferences(numTouched);
+                for(int c = 0; c < numTouched; c++)
+                    {
+                    int i = touchedIndices[c];
+                    if (!same(state, i, model, i))
+                        {
+                        diffFrom[count] = i;
+                        diffTo[count] = i;
+                        count++;
+                        }
+                    }
+                }
+            else
+                {
+                int size = state.size();
+                ensureDifferences(size);
+                for(int i = 0; i < size; i++)
+                    {
+                    int j = indexIn(state, i, model);
+                    if (j >= 0 && !same(state, i, model, j))
+                        {
+                        diffFrom[count] = i;
+                        diffTo[count] = j;
+                        count++;
+                        }
+                    }
+                }
+            return count;
+            }
+
+        /** Returns the number of keys in the top state whose values differ in the given model. */
+        public int countDifferences(Model model)
+            {
+            Model top = top();
+            return (top == null ? 0 : findDifferences(top, model));
+            }
+
+        /** Pushes a copy of the given model's state. */
+        public void push(Model model)
+            {
+            Model snapshot = null;
+            Entry top = entries.peekFirst();
+            if (top != null)
+                {
+                // Convert the old top into a delta against the new state if it's worthwhile, and recycle its model.
+                // A delta only records values, so if the schema has changed, the old top stays a checkpoint.
+                Model old = top.full;
+                int changed = (old.sharesSchemaWith(model) ? findDifferences(old, model) : old.size());
+                if (changed * 2 <= old.size())
+                    {
+                    bytes -= top.bytes;
+                    makeDelta(top, old, model, changed);
+                    bytes += top.bytes;
+
+                    // old now only differs from the model in the keys we just found
+                    snapshot = old;
+                    for(int c = 0; c < changed; c++)
+                        {
+                        int j = diffTo[c];
+                        snapshot.intValues[j] = model.intValues[j];
+                        snapshot.stringValues[j] = model.stringValues[j];
+                        }
+                    snapshot.latentVector = (model.latentVector == null ? null : (double[])(model.latentVector.clone()));
+                    }
+                }
+
+            if (snapshot == null) snapshot = model.copy();
+
+            Entry entry = new Entry();
+            entry.full = snapshot;
+            entry.bytes = ENTRY_BYTES + MODEL_BYTES_PER_KEY * (long)snapshot.size();
+            bytes += entry.bytes;
+            entries.addFirst(entry);
+            untouchAll();
+            synced = (model == tracked);
+            }
+
+        /** Pops the top state and writes it into the given model in place, updating the
+            listeners of each key which changed.  Each key which changed is touched in OTHER, 
+            the other stack, if it is non-null.  */
+        public void pop(Model model, History other)
+            {
+            Entry top = entries.peekFirst();
+            if (top == null) return;
+            restore(this, top.full, model, other);
+            discard(model);
+            }
+
+        /** Pops the top state, which is the same as the given model, and discards it. */
+        public void discard(Model model)
+            {
+            Entry top = entries.pollFirst();
+            if (top == null) return;
+            bytes -= top.bytes;
+            untouchAll();
+            synced = (model == tracked);
+            rebuildTop(top.full);
+            }
+
+        /** Pops the top state and returns it. */
+        public Model pop()
+            {
+            Entry top = entries.pollFirst();
+            if (top == null) return null;
+            bytes -= top.bytes;
+            Model model = top.full.copy();
+            untouchAll();
+            synced = false;
+            rebuildTop(top.full);
+            return model;
+            }
+
+        // Rebuilds the new top state, if it is a delta, by applying it in place to the old top state.
+        // The keys it changes are touched.
+        void rebuildTop(Model old)
+            {
+            Entry next = entries.peekFirst();
+            if (next == null) return;
+            if (next.full == null)
+                {
+                applyDelta(next, old);
+                bytes -= next.bytes;
+                next.full = old;
+                next.schema = null;
+                next.indices = null;
+                next.ints = null;
+                next.strings = null;
+                next.bytes = ENTRY_BYTES + MODEL_BYTES_PER_KEY * (long)old.size();
+                bytes += next.bytes;
+                }
+            else
+                {
+                // A checkpoint: we don't know where it differs
+                untouchAll();
+                synced = false;
+                }
+            }
+
+        // Writes the delta in ENTRY into MODEL, which has no listeners, touching each key it writes
+        void applyDelta(Entry entry, Model model)
+            {
+            boolean sameSchema = (entry.schema == model.schema);
+            for(int c = 0; c < entry.indices.length; c++)
+                {
+                int j = entry.indices[c];
+                if (!sameSchema) j = model.indexOf(entry.schema.keys[j]);
+                if (j < 0) continue;
+                model.intValues[j] = entry.ints[c];
+                model.stringValues[j] = entry.strings[c];
+                touch(j);
+                }
+            }
+
+        // Recomputes the memory used by the entries, rather than relying on the running total in bytes
+        long measureBytes()
+            {
+            long sum = 0;
+            for(Entry entry : entries)
+                sum += ENTRY_BYTES + (entry.full != null ? MODEL_BYTES_PER_KEY * (long)entry.full.size() : DELTA_BYTES_PER_KEY * (long)entry.indices.length);
+            return sum;
+            }
+
+        // Discards the oldest state.  Returns false if there was none.
+        boolean evictOldest()
+            {
+            Entry bottom = entries.pollLast();
+            if (bottom == null) return false;
+            bytes -= bottom.bytes;
+            return true;
+            }
+
+        void print()
+            {
+            Object[] o = entries.toArray();
+            for(int i = 0; i < o.length; i++)
+                {
+                System.err.println("" + i + " " + o[i]);
+                }
+            }
+        }
+
+
     public void clear()
         {
         undo.clear();
         redo.clear();
         }
-    
+
     public boolean shouldShowUndoMenu() { return !undo.isEmpty(); }
     public boolean shouldShowRedoMenu() { return !redo.isEmpty(); }
-        
+
     public Undo(Synth synth) { this.synth = synth; }
-        
+
     public void setWillPush(boolean val) { willPush = val; }
     public boolean getWillPush() { return willPush; }
+
+    /** Sets the maximum memory, in bytes, used by the undo and redo stacks together.
+        The most recent undo and redo states are always kept regardless. */
+    public void setMaxMemory(long bytes) { maxMemory = bytes; evict(); }
+
+    /** Returns the maximum memory, in bytes, used by the undo and redo stacks together. */
+    public long getMaxMemory() { return maxMemory; }
+
+    /** Returns the approximate memory, in bytes, presently used by the undo and redo stacks together. */
+    public long getMemory() { return undo.bytes + redo.bytes; }
+
+    /** Returns the memory used by the undo and redo stacks together, recomputed from every state they
+        hold.  This should always be the same as getMemory(), which is cheaper.  */
+    public long measureMemory() { return undo.measureBytes() + redo.measureBytes(); }
+
     public void push(Model obj)
         {
         if (!willPush)
@@ -34,39 +348,32 @@ public class Undo
             if (debug) System.err.println("Debug (Undo): Tried to push but didn't (!willPush)");
             return;
             }
-        undo.push((Model)(obj.clone()));
+        sync(obj);
+        undo.push(obj);
         redo.clear();
+        evict();
         synth.updateUndoMenus();
         if (debug) System.err.println("Debug (Undo): Pushed " + obj);
 
         if (debug) printStacks();
         }
-        
+
     public Model top()
         {
-        if (undo.isEmpty())
-            return null;
-        else return undo.peekFirst();
+        return undo.top();
         }
-             
+
     public void printStacks()
         {
         System.err.println("Debug (Undo):\nUNDO");
-        Object[] o = undo.toArray();
-        for(int i = 0; i < o.length; i++)
-            {
-            System.err.println("" + i + " " + o[i]);
-            }
+        undo.print();
         System.err.println("\nREDO");
-        o = redo.toArray();
-        for(int i = 0; i < o.length; i++)
-            {
-            System.err.println("" + i + " " + o[i]);
-            }
-                
+        redo.print();
         }
-    
-    /// If current is null, 
+
+    /** Undoes the current model in place (and updates its listeners), pushing its present state onto the redo stack.
+        If the current model is already identical to the top of the undo stack, then the top is
+        simply discarded.  Returns the current model.  */
     public Model undo(Model current)
         {
         if (undo.isEmpty())
@@ -75,16 +382,33 @@ public class Undo
             synth.updateUndoMenus();
             return current;
             }
-        if (current != null)
+
+        if (current == null)
+            {
+            // Don't push onto the redo stack, just hand back the top
+            current = undo.pop();
+            }
+        else 
             {
-            if (debug) System.err.println("Debug (Undo): Pushing on Redo" + current);
-            redo.push((Model)(current.clone()));
+            sync(current);
+            if (undo.countDifferences(current) == 0 && !boundsDiffer(undo.top(), current))
+                {
+                // Don't push onto the redo stack, the top is the same as the current model
+                if (debug) System.err.println("Debug (Undo): Discarding identical top " + current);
+                undo.discard(current);
+                }
+            else
+                {
+                if (debug) System.err.println("Debug (Undo): Pushing on Redo" + current);
+                redo.push(current);
+                undo.pop(current, redo);
+                evict();
+                }
             }
-        Model model = undo.pop();
         synth.updateUndoMenus();
-        
-        if (debug) System.err.println("Debug (Undo): Undo " + current + " to " + model + " Left: " + undo.size());
- 
+
+        if (debug) System.err.println("Debug (Undo): Undo " + current + " Left: " + undo.size());
+
         if (debug) printStacks();
 
         // this last statement fixes a mystery.  When I call Randomize or Reset on
@@ -94,9 +418,11 @@ public class Undo
         // into the Blofeld, and it makes no difference!  For some reason the OS X
         // repaint manager is refusing to coallesce their repaint requests.  So I do it here.
         synth.repaint();
-        return model;        
+        return current;
         }
-                
+
+    /** Redoes the current model in place (and updates its listeners), pushing its present state onto the undo stack.
+        Returns the current model.  */
     public Model redo(Model current)
         {
         if (redo.isEmpty())
@@ -105,14 +431,13 @@ public class Undo
             synth.updateUndoMenus();
             return current;
             }
-        if (current != null)
-            {
-            if (debug) System.err.println("Debug (Undo): Pushing on Undo" + current);
-            undo.push((Model)(current.clone()));
-            }
-        Model model = redo.pop();
+        if (debug) System.err.println("Debug (Undo): Pushing on Undo" + current);
+        sync(current);
+        undo.push(current);
+        redo.pop(current, undo);
+        evict();
         synth.updateUndoMenus();
-        if (debug) System.err.println("Debug (Undo): Redo " + current + " to " + model + " Left: " + redo.size());
+        if (debug) System.err.println("Debug (Undo): Redo " + current + " Left: " + redo.size());
         if (debug) printStacks();
 
         // this last statement fixes a mystery.  When I call Randomize or Reset on
@@ -122,6 +447,152 @@ public class Undo
         // into the Blofeld, and it makes no difference!  For some reason the OS X
         // repaint manager is refusing to coallesce their repaint requests.  So I do it here.
         synth.repaint();
-        return model;
+        return current;
+        }
+
+
+
+    //// DELTAS
+
+    // Discards the oldest undo states, then the oldest redo states, until we're under the memory cap
+    void evict()
+        {
+        while(getMemory() > maxMemory && undo.size() > 1 && undo.evictOldest()) { }
+        while(getMemory() > maxMemory && redo.size() > 1 && redo.evictOldest()) { }
+        }
+
+    // Returns the index in TO of the key at index I in FROM, or -1 if there is none
+    static int indexIn(Model from, int i, Model to)
+        {
+        if (to.schema == from.schema || (i < to.schema.size && to.schema.keys[i] == from.schema.keys[i]))
+            return i;
+        else return to.schema.indexOf(from.schema.keys[i]);
+        }
+
+    // Returns true if the value at index i in FROM is the same as at index j in TO
+    static boolean same(Model from, int i, Model to, int j)
+        {
+        String s = from.stringValues[i];
+        if (s == null) return (to.stringValues[j] == null && to.intValues[j] == from.intValues[i]);
+        else return s.equals(to.stringValues[j]);
+        }
+
+    // Returns true if a key in STATE has different bounds or a different status in MODEL
+    static boolean boundsDiffer(Model state, Model model)
+        {
+        if (state.sharesSchemaWith(model)) return false;
+        Model.Schema from = state.schema;
+        Model.Schema to = model.schema;
+        for(int i = 0; i < from.size; i++)
+            {
+            int j = indexIn(state, i, model);
+            if (j >= 0 && (!from.boundsEqual(i, to, j) || from.status[i] != to.status[j]))
+                return true;
+            }
+        return false;
+        }
+
+    // Makes sure the scratch space for findDifferences(...) can hold SIZE differences
+    void ensureDifferences(int size)
+        {
+        if (diffFrom.length < size)
+            {
+            diffFrom = new int[size];
+            diffTo = new int[size];
+            }
+        }
+
+    // Collects the keys which have been written in MODEL since we last looked, and touches them in both stacks.
+    // If MODEL isn't the model we've been tracking, but it is the synth's model (the one which pushes onto us),
+    // then we start tracking it instead.  Other models, such as backups, aren't tracked.
+    void sync(Model model)
+        {
+        if (model == null || model.undoListener != this) return;
+        if (model != tracked)
+            {
+            tracked = model;
+            undo.untouchAll();
+            undo.synced = false;
+            redo.untouchAll();
+            redo.synced = false;
+            }
+        else
+            {
+            for(int c = 0; c < model.numChanged; c++)
+                {
+                int i = model.changedIndices[c];
+                undo.touch(i);
+                redo.touch(i);
+                }
+            }
+        model.clearChanged();
+        }
+
+    // Turns ENTRY into a delta which restores STATE (its present full state) from ABOVE,
+    // using the CHANGED differences just found by findDifferences(STATE, ABOVE).
+    void makeDelta(Entry entry, Model state, Model above, int changed)
+        {
+        int[] indices = new int[changed];
+        int[] ints = new int[changed];
+        String[] strings = new String[changed];
+        for(int c = 0; c < changed; c++)
+            {
+            int i = diffFrom[c];
+            indices[c] = diffTo[c];
+            ints[c] = state.intValues[i];
+            strings[c] = state.stringValues[i];
+            }
+        entry.full = null;
+        entry.schema = above.schema;
+        entry.indices = indices;
+        entry.ints = ints;
+        entry.strings = strings;
+        entry.bytes = ENTRY_BYTES + DELTA_BYTES_PER_KEY * (long)changed;
+        }
+
+    // Writes each value of STATE, the top of HISTORY, which differs into MODEL, then updates the listeners 
+    // for those keys.  If their schemas differ, the bounds and statuses of STATE are restored as well.  
+    // Each key which changed is touched in OTHER, if it is non-null.
+    void restore(History history, Model state, Model model, History other)
+        {
+        int count = 0;
+        if (state.sharesSchemaWith(model))
+            {
+            count = history.findDifferences(state, model);
+            }
+        else
+            {
+            // Something changed the bounds or statuses, or added keys, so we have to look at everything
+            int size = state.size();
+            ensureDifferences(size);
+            for(int i = 0; i < size; i++)
+                {
+                int j = indexIn(state, i, model);
+                if (j < 0) continue;
+                boolean changed = model.copyBoundsAndStatusAt(j, state, i);
+                if (changed || !same(state, i, model, j))
+                    {
+                    diffFrom[count] = i;
+                    diffTo[count] = j;
+                    count++;
+                    }
+                }
+            }
+
+        // Copy the indices out in case a listener winds up back here
+        int[] changed = Arrays.copyOf(diffTo, count);
+        for(int c = 0; c < count; c++)
+            {
+            int i = diffFrom[c];
+            int j = changed[c];
+            model.intValues[j] = state.intValues[i];
+            model.stringValues[j] = state.stringValues[i];
+            if (other != null) other.touch(j);
+            }
+        model.latentVector = (state.latentVector == null ? null : (double[])(state.latentVector.clone()));
+        model.lastKey = null;
+        model.recentlySet = true;
+        for(int c = 0; c < count; c++)
+            model.updateListenersForKey(changed[c], model.keyAt(changed[c]));
         }
     }
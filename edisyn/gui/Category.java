@@ -34,18 +34,22 @@ public class Category extends JComponent implements Gatherable
     boolean sendsAllParameters = false;
     Gatherable auxillary = null;
     
-    MenuItem copy = new MenuItem("Copy Category");
-    MenuItem paste = new MenuItem("Paste Category");
-    MenuItem distribute = new MenuItem("Distribute");
-    MenuItem copyFromMutable = new MenuItem("Copy Category (Mutation Parameters Only)");
-    MenuItem pasteToMutable = new MenuItem("Paste Category (Mutation Parameters Only)");
-    MenuItem distributeToMutable = new MenuItem("Distribute (Mutation Parameters Only)");
-    MenuItem reset = new MenuItem("Reset Category");
+    boolean resettable = true;
+    
+    // The popup menu and its items are built the first time they are needed (see buildPopup()).
+    // Categories are numerous, and AWT menus are expensive to build and can't be built at all when headless.
+    MenuItem copy;
+    MenuItem paste;
+    MenuItem distribute;
+    MenuItem copyFromMutable;
+    MenuItem pasteToMutable;
+    MenuItem distributeToMutable;
+    MenuItem reset;
     
     public void makePasteable(String preamble) { pasteable = true; this.preamble = preamble; }
     public void makePasteable(String preamble, String preamble2) { pasteable = true; this.preamble = preamble; }
     public void makeDistributable(String preamble) { distributable = true; this.distributePreamble = preamble; }
-    public void makeUnresettable() { reset.setEnabled(false); }
+    public void makeUnresettable() { resettable = false; }
     public void setSendsAllParameters(boolean val) { sendsAllParameters = val; }
     public boolean getSendsAllParameters() { return sendsAllParameters; }
     
@@ -58,7 +62,7 @@ public class Category extends JComponent implements Gatherable
         we want to gather from the auxillary as well. */
     public void setAuxillary(Gatherable comp) { auxillary = comp; }
     
-    PopupMenu pop = new PopupMenu();
+    PopupMenu pop;
     int stringWidth;
       
     public boolean isPasteCompatible(String preamble)
@@ -323,12 +327,14 @@ public class Category extends JComponent implements Gatherable
                         //     ((e.getModifiers() & InputEvent.SHIFT_MASK) == InputEvent.SHIFT_MASK))
                         )
                         {
+                        if (pop == null) buildPopup();
                         copy.setEnabled(pasteable);
                         copyFromMutable.setEnabled(pasteable);
                         paste.setEnabled(pasteable && isPasteCompatible(preamble));
                         pasteToMutable.setEnabled(pasteable && isPasteCompatible(preamble));
                         distribute.setEnabled(distributable && canDistributeKey());
                         distributeToMutable.setEnabled(distributable && canDistributeKey());
+                        reset.setEnabled(resettable);
                         
                         // we add, then remove the popup because I've discovered (in the Korg Wavestation SR Sequence Editor)
                         // that if the popup is pre-added, then it takes quite a while to dynamically add or remove categories.
@@ -374,7 +380,19 @@ public class Category extends JComponent implements Gatherable
                     }
                 });
             }
-                        
+        }
+    
+    void buildPopup()
+        {
+        pop = new PopupMenu();
+        copy = new MenuItem("Copy Category");
+        paste = new MenuItem("Paste Category");
+        distribute = new MenuItem("Distribute");
+        copyFromMutable = new MenuItem("Copy Category (Mutation Parameters Only)");
+        pasteToMutable = new MenuItem("Paste Category (Mutation Parameters Only)");
+        distributeToMutable = new MenuItem("Distribute (Mutation Parameters Only)");
+        reset = new MenuItem("Reset Category");
+        
         pop.add(copy);
         copy.addActionListener(new ActionListener()
             {
@@ -475,9 +493,7 @@ public class Category extends JComponent implements Gatherable
         pasteToMutable.setEnabled(false);
         distribute.setEnabled(false);
         distributeToMutable.setEnabled(false);
-        reset.setEnabled(true);
-                
-        //Category.this.add(pop);
+        reset.setEnabled(resettable);
         }
     
     public Insets getInsets() 
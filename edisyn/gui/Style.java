@@ -214,7 +214,15 @@ public class Style
         }
 
     // From https://stackoverflow.com/questions/12431148/swing-and-bitmaps-on-retina-displays
+    static Boolean retina = null;
     public static boolean isRetinaDisplay() 
+        {
+        if (retina == null)
+            retina = Boolean.valueOf(!GraphicsEnvironment.isHeadless() && computeRetinaDisplay());
+        return retina.booleanValue();
+        }
+        
+    static boolean computeRetinaDisplay()
         {
         GraphicsDevice graphicsDevice = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
         try {
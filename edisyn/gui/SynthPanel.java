@@ -35,7 +35,6 @@ public class SynthPanel extends JPanel implements Gatherable
     public Insets getInsets() { return Style.SYNTH_PANEL_INSETS(); }
 
     String preamble = "";
-    PopupMenu pop = new PopupMenu();
 
     boolean unresettable = false;
     boolean pasteable = false;
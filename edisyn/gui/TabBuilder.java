@@ -0,0 +1,16 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.gui;
+
+import javax.swing.*;
+
+/** Builds the contents of a tab when it is first needed.  See Synth.addTab(String, TabBuilder).
+    A TabBuilder must always build the same widgets, with the same keys, every time it is called. */
+
+public interface TabBuilder
+    {
+    public JComponent build();
+    }
@@ -2,6 +2,7 @@ package edisyn.gui;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.*;
 
 /*
   import edisyn.gui.*;
@@ -15,11 +16,12 @@ import java.awt.event.*;
 
 public class TwoLevelMenu extends JPanel
     {
-    JComboBox primaryBox;
-    JComboBox[] secondaryBox;
-    JComboBox currentSecondary;
+    JComboBox<Object> primaryBox;
+    ArrayList<JComboBox<Object>> secondaryBox = new ArrayList<JComboBox<Object>>();
+    JComboBox<Object> currentSecondary;
     JPanel currentSecondaryContainer;
     WidgetList list;
+    boolean refreshing = false;
         
 
     public TwoLevelMenu(Object[] primary, Object[][] secondary, 
@@ -27,28 +29,28 @@ public class TwoLevelMenu extends JPanel
         int initialPrimary, int initialSecondary)
         {
         double maxWidth = 0;
-        primaryBox = new JComboBox(primary);
+        primaryBox = new JComboBox<Object>(primary);
         primaryBox.setMaximumRowCount(25);
-        secondaryBox = new JComboBox[secondary.length];
 
         // fix to standard widths
         for(int i = 0; i < secondary.length; i++)
             {
-            secondaryBox[i] = new JComboBox(secondary[i]);
-            secondaryBox[i].setMaximumRowCount(25);
-            double w = secondaryBox[i].getPreferredSize().getWidth();
+            JComboBox<Object> box = new JComboBox<Object>(secondary[i]);
+            box.setMaximumRowCount(25);
+            secondaryBox.add(box);
+            double w = box.getPreferredSize().getWidth();
             if (maxWidth < w) maxWidth = w;
             }
         for(int i = 0; i < secondary.length; i++)
             {
-            Dimension d = secondaryBox[i].getPreferredSize();
+            Dimension d = secondaryBox.get(i).getPreferredSize();
             d.width = (int)(maxWidth);
-            secondaryBox[i].setPreferredSize(d);
+            secondaryBox.get(i).setPreferredSize(d);
             }
                 
         setLayout(new BorderLayout());
         primaryBox.setSelectedIndex(initialPrimary);
-        currentSecondary = secondaryBox[initialPrimary];
+        currentSecondary = secondaryBox.get(initialPrimary);
         currentSecondary.setSelectedIndex(initialSecondary);
         currentSecondaryContainer = new JPanel();
         currentSecondaryContainer.setLayout(new BorderLayout());
@@ -61,11 +63,11 @@ public class TwoLevelMenu extends JPanel
                 
         for(int i = 0; i < secondary.length; i++)
             {
-            secondaryBox[i].addItemListener(new ItemListener()
+            secondaryBox.get(i).addItemListener(new ItemListener()
                 {
                 public void itemStateChanged(ItemEvent e)
                     {
-                    if (e.getStateChange() == ItemEvent.SELECTED)       // not interested in deselection events
+                    if (e.getStateChange() == ItemEvent.SELECTED && !refreshing)       // not interested in deselection events, or in refresh()
                         {
                         selection(getPrimary(), getSecondary());
                         }
@@ -86,13 +88,49 @@ public class TwoLevelMenu extends JPanel
             });
         }
                 
+    /** Call this if the items in the secondary menus have changed how they display themselves,
+        so the menus are resized to fit them. */
+    public void refresh()
+        {
+        double maxWidth = 0;
+        refreshing = true;
+        try
+            {
+            for(JComboBox<Object> box : secondaryBox)
+                {
+                // Resetting the model forces the box to remeasure its items
+                int selected = box.getSelectedIndex();
+                Object[] items = new Object[box.getItemCount()];
+                for(int j = 0; j < items.length; j++)
+                    items[j] = box.getItemAt(j);
+                box.setModel(new DefaultComboBoxModel<Object>(items));
+                box.setSelectedIndex(selected);
+                box.setPreferredSize(null);
+                double w = box.getPreferredSize().getWidth();
+                if (maxWidth < w) maxWidth = w;
+                }
+            }
+        finally
+            {
+            refreshing = false;
+            }
+        for(JComboBox<Object> box : secondaryBox)
+            {
+            Dimension d = box.getPreferredSize();
+            d.width = (int)(maxWidth);
+            box.setPreferredSize(d);
+            }
+        revalidate();
+        repaint();
+        }
+                
     /** Override this to be informed when a selection is made. */
     public void selection(int primary, int secondary) { }
         
     void updateSecondaryBox()
         {
         currentSecondaryContainer.remove(currentSecondary);
-        currentSecondary = secondaryBox[primaryBox.getSelectedIndex()];
+        currentSecondary = secondaryBox.get(primaryBox.getSelectedIndex());
         currentSecondaryContainer.add(currentSecondary, BorderLayout.SOUTH);
         currentSecondaryContainer.revalidate();
         currentSecondaryContainer.repaint();
@@ -8,4 +8,14 @@ package edisyn.nn;
 public interface Layer 
     {
     public double[] feed(double[] vec);
+
+    /** Returns the length of this layer's output vector given an input vector of the given length. */
+    public int getOutputSize(int inputSize);
+
+    /** Feeds BATCH input vectors of length INPUTSIZE, stored one after another in IN,
+        and writes the BATCH output vectors one after another into OUT.  Nothing is allocated. */
+    public void feed(double[] in, double[] out, int batch, int inputSize);
+
+    /** Single-precision version of feed(double[], double[], int, int). */
+    public void feed(float[] in, float[] out, int batch, int inputSize);
     }
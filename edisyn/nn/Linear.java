@@ -8,9 +8,14 @@ package edisyn.nn;
 
 public class Linear implements Layer 
     {
+    // The number of weight rows we multiply against the whole batch before moving on to the
+    // next rows, so that the rows stay in cache.  64 rows of 256 doubles is 128K.
+    static final int BLOCK_ROWS = 64;
 
     private double[] data;
     private double[] bias;
+    private float[] floatData = null;          // built lazily
+    private float[] floatBias = null;
     private int rows;
     private int columns;
 
@@ -31,6 +36,31 @@ public class Linear implements Layer
             }
         }
 
+    /** Builds a Linear layer from single-precision weights and biases, which are used as-is for single-precision feeding. */
+    public Linear(int rows, int columns, float[] initial_data, float[] bias)
+        {
+        this.rows = rows;
+        this.columns = columns;
+        data = new double[rows*columns];
+        for(int i = 0; i < initial_data.length; i++)
+            {
+            data[i] = initial_data[i];
+            }
+                
+        this.bias = new double[rows];
+        for(int i = 0; i < bias.length; i++)
+            {
+            this.bias[i] = bias[i];
+            }
+        floatData = initial_data;
+        floatBias = bias;
+        }
+
+    public int getRows() { return rows; }
+    public int getColumns() { return columns; }
+    double[] getWeights() { return data; }
+    double[] getBias() { return bias; }
+
     public double[] feed(double[] vec)
         {
         if(vec.length != columns)
@@ -39,15 +69,130 @@ public class Linear implements Layer
             return null;
             }
         double[] out = new double[rows];
-        for(int r = 0; r < rows; r++) 
+        feed(vec, out, 1, columns);
+        return out;
+        }
+
+    public int getOutputSize(int inputSize)
+        {
+        return rows;
+        }
+
+    public void feed(double[] in, double[] out, int batch, int inputSize)
+        {
+        if (inputSize != columns)
+            throw new IllegalArgumentException("Bad input to feed: vec.length != columns");
+
+        for(int r0 = 0; r0 < rows; r0 += BLOCK_ROWS)
             {
-            for(int c = 0; c < columns; c++) 
+            int r1 = Math.min(rows, r0 + BLOCK_ROWS);
+            int b = 0;
+            // Four vectors at a time, so each weight is loaded once for all four
+            for( ; b + 4 <= batch; b += 4)
                 {
-                out[r] += data[r*columns + c] * vec[c];
+                int in0 = b * columns;
+                int in1 = in0 + columns;
+                int in2 = in1 + columns;
+                int in3 = in2 + columns;
+                int out0 = b * rows;
+                for(int r = r0; r < r1; r++) 
+                    {
+                    int pos = r * columns;
+                    double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                    for(int c = 0; c < columns; c++) 
+                        {
+                        double w = data[pos + c];
+                        sum0 += w * in[in0 + c];
+                        sum1 += w * in[in1 + c];
+                        sum2 += w * in[in2 + c];
+                        sum3 += w * in[in3 + c];
+                        }
+                    out[out0 + r] = sum0 + bias[r];
+                    out[out0 + rows + r] = sum1 + bias[r];
+                    out[out0 + 2 * rows + r] = sum2 + bias[r];
+                    out[out0 + 3 * rows + r] = sum3 + bias[r];
+                    }
+                }
+            for( ; b < batch; b++)
+                {
+                int inPos = b * columns;
+                int outPos = b * rows;
+                for(int r = r0; r < r1; r++) 
+                    {
+                    int pos = r * columns;
+                    double sum = 0;
+                    for(int c = 0; c < columns; c++) 
+                        {
+                        sum += data[pos + c] * in[inPos + c];
+                        }
+                    out[outPos + r] = sum + bias[r];
+                    }
+                }
+            }
+        }
+
+    public void feed(float[] in, float[] out, int batch, int inputSize)
+        {
+        if (inputSize != columns)
+            throw new IllegalArgumentException("Bad input to feed: vec.length != columns");
+        if (floatData == null)
+            {
+            float[] fd = new float[data.length];
+            for(int i = 0; i < fd.length; i++)
+                fd[i] = (float)data[i];
+            float[] fb = new float[bias.length];
+            for(int i = 0; i < fb.length; i++)
+                fb[i] = (float)bias[i];
+            floatBias = fb;
+            floatData = fd;
+            }
+
+        for(int r0 = 0; r0 < rows; r0 += BLOCK_ROWS)
+            {
+            int r1 = Math.min(rows, r0 + BLOCK_ROWS);
+            int b = 0;
+            // Four vectors at a time, so each weight is loaded once for all four
+            for( ; b + 4 <= batch; b += 4)
+                {
+                int in0 = b * columns;
+                int in1 = in0 + columns;
+                int in2 = in1 + columns;
+                int in3 = in2 + columns;
+                int out0 = b * rows;
+                for(int r = r0; r < r1; r++) 
+                    {
+                    int pos = r * columns;
+                    float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                    for(int c = 0; c < columns; c++) 
+                        {
+                        float w = floatData[pos + c];
+                        sum0 += w * in[in0 + c];
+                        sum1 += w * in[in1 + c];
+                        sum2 += w * in[in2 + c];
+                        sum3 += w * in[in3 + c];
+                        }
+                    out[out0 + r] = sum0 + floatBias[r];
+                    out[out0 + rows + r] = sum1 + floatBias[r];
+                    out[out0 + 2 * rows + r] = sum2 + floatBias[r];
+                    out[out0 + 3 * rows + r] = sum3 + floatBias[r];
+                    }
+                }
+            for( ; b < batch; b++)
+                {
+                int inPos = b * columns;
+                int outPos = b * rows;
+                for(int r = r0; r < r1; r++) 
+                    {
+                    int pos = r * columns;
+                    float sum = 0;
+                    for(int c = 0; c < columns; c++) 
+                        {
+                        sum += floatData[pos + c] * in[inPos + c];
+                        }
+                    out[outPos + r] = sum + floatBias[r];
+                    }
                 }
-            out[r] += bias[r];
             }
-        return out;
         }
 
     public static Layer readFromString(String str)
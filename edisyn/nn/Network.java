@@ -5,8 +5,13 @@
 
 package edisyn.nn;
 
+import edisyn.*;
 import java.util.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.*;
 
 public class Network implements Layer 
     {
@@ -27,14 +32,135 @@ public class Network implements Layer
         layers.add(layer);
         }
         
+    // Scratch buffers for feeding batches, reused from call to call
+    private double[] scratch1 = new double[0];
+    private double[] scratch2 = new double[0];
+    private float[] floatScratch1 = new float[0];
+    private float[] floatScratch2 = new float[0];
+    private boolean singlePrecision = false;
+
+    /** Sets whether feedBatch(...) computes in single precision (float) rather than double precision.
+        This is faster, but the results will differ very slightly. */
+    public void setSinglePrecision(boolean val) { singlePrecision = val; }
+    public boolean getSinglePrecision() { return singlePrecision; }
+        
     public double[] feed(double[] vec)
         {
-        double[] out = vec;
+        return feedBatch(new double[][] { vec })[0];
+        }
+
+    public int getOutputSize(int inputSize)
+        {
         for(Layer layer: layers)
             {
-            out = layer.feed(out);
+            inputSize = layer.getOutputSize(inputSize);
             }
-        return out;
+        return inputSize;
+        }
+
+    int getMaxSize(int inputSize)
+        {
+        int max = inputSize;
+        for(Layer layer: layers)
+            {
+            inputSize = layer.getOutputSize(inputSize);
+            max = Math.max(max, inputSize);
+            }
+        return max;
+        }
+
+    /** Feeds all the given vectors, which must be the same length, through the network at once,
+        and returns the resulting output vectors.  Each layer's weights are passed over only once for 
+        the entire batch, rather than once per vector. */
+    public synchronized double[][] feedBatch(double[][] vecs)
+        {
+        int batch = vecs.length;
+        if (batch == 0) return new double[0][];
+        int inputSize = vecs[0].length;
+        int outputSize = getOutputSize(inputSize);
+        double[][] result = new double[batch][outputSize];
+
+        if (singlePrecision)
+            {
+            float[] in = floatScratch(batch * getMaxSize(inputSize));
+            for(int b = 0; b < batch; b++)
+                for(int i = 0; i < inputSize; i++)
+                    in[b * inputSize + i] = (float)vecs[b][i];
+            float[] out = feedScratch(in, batch, inputSize);
+            for(int b = 0; b < batch; b++)
+                for(int i = 0; i < outputSize; i++)
+                    result[b][i] = out[b * outputSize + i];
+            }
+        else
+            {
+            double[] in = scratch(batch * getMaxSize(inputSize));
+            for(int b = 0; b < batch; b++)
+                System.arraycopy(vecs[b], 0, in, b * inputSize, inputSize);
+            double[] out = feedScratch(in, batch, inputSize);
+            for(int b = 0; b < batch; b++)
+                System.arraycopy(out, b * outputSize, result[b], 0, outputSize);
+            }
+        return result;
+        }
+
+    public synchronized void feed(double[] in, double[] out, int batch, int inputSize)
+        {
+        double[] s = scratch(batch * getMaxSize(inputSize));
+        System.arraycopy(in, 0, s, 0, batch * inputSize);
+        System.arraycopy(feedScratch(s, batch, inputSize), 0, out, 0, batch * getOutputSize(inputSize));
+        }
+
+    public synchronized void feed(float[] in, float[] out, int batch, int inputSize)
+        {
+        float[] s = floatScratch(batch * getMaxSize(inputSize));
+        System.arraycopy(in, 0, s, 0, batch * inputSize);
+        System.arraycopy(feedScratch(s, batch, inputSize), 0, out, 0, batch * getOutputSize(inputSize));
+        }
+
+    // Returns scratch1, grown if necessary, with scratch2 grown to match
+    double[] scratch(int size)
+        {
+        if (scratch1.length < size)
+            {
+            scratch1 = new double[size];
+            scratch2 = new double[size];
+            }
+        return scratch1;
+        }
+
+    float[] floatScratch(int size)
+        {
+        if (floatScratch1.length < size)
+            {
+            floatScratch1 = new float[size];
+            floatScratch2 = new float[size];
+            }
+        return floatScratch1;
+        }
+
+    // Feeds the batch in scratch1 back and forth between scratch1 and scratch2, returning whichever holds the result
+    double[] feedScratch(double[] in, int batch, int inputSize)
+        {
+        double[] out = (in == scratch1 ? scratch2 : scratch1);
+        for(Layer layer: layers)
+            {
+            layer.feed(in, out, batch, inputSize);
+            inputSize = layer.getOutputSize(inputSize);
+            double[] temp = in; in = out; out = temp;
+            }
+        return in;
+        }
+
+    float[] feedScratch(float[] in, int batch, int inputSize)
+        {
+        float[] out = (in == floatScratch1 ? floatScratch2 : floatScratch1);
+        for(Layer layer: layers)
+            {
+            layer.feed(in, out, batch, inputSize);
+            inputSize = layer.getOutputSize(inputSize);
+            float[] temp = in; in = out; out = temp;
+            }
+        return in;
         }
         
     public static Network loadFromStream(InputStream stream) 
@@ -74,6 +200,230 @@ public class Network implements Layer
         return null;
         }
 
+
+    //// BINARY FORMAT
+    ////
+    //// Parsing the text format is slow: every weight is a separate Double.parseDouble().
+    //// The binary format is instead read in bulk.  It is, all little-endian:
+    ////
+    ////    int       BINARY_MAGIC ("ENN1")
+    ////    int       bytes per value: 4 (float) or 8 (double)
+    ////    int       number of layers
+    ////    then for each layer:
+    ////      int     LAYER_LINEAR or LAYER_SELU
+    ////      and for LAYER_LINEAR:
+    ////        int   rows
+    ////        int   columns
+    ////        rows values of bias
+    ////        rows * columns values of weights, row by row
+
+    public static final int BINARY_MAGIC = 0x314E4E45;          // "ENN1" when read little-endian
+    public static final int LAYER_LINEAR = 0;
+    public static final int LAYER_SELU = 1;
+
+    /** Loads the network named NAME stored next to the given class.  The binary version, NAME.nn,
+        is tried first.  If it doesn't exist, we fall back to the gzipped text version, NAME.txt.gz.
+        Returns null if neither could be loaded. */
+    public static Network load(Class c, String name)
+        {
+        InputStream stream = c.getResourceAsStream(name + ".nn");
+        if (stream != null)
+            {
+            try
+                {
+                return loadBinary(stream);
+                }
+            catch (IOException ex)
+                {
+                Synth.handleException(ex);
+                }
+            finally
+                {
+                try { stream.close(); } catch (IOException ex) { }
+                }
+            }
+
+        stream = c.getResourceAsStream(name + ".txt.gz");
+        if (stream != null)
+            {
+            try
+                {
+                return loadFromStream(new GZIPInputStream(stream));
+                }
+            catch (IOException ex)
+                {
+                Synth.handleException(ex);
+                }
+            finally
+                {
+                try { stream.close(); } catch (IOException ex) { }
+                }
+            }
+        return null;
+        }
+
+    /** Loads a network in the binary format from the given file, which is memory-mapped. */
+    public static Network loadBinary(File file) throws IOException
+        {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+            {
+            return loadBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        finally
+            {
+            channel.close();
+            }
+        }
+        
+    /** Loads a network in the binary format from the given stream, which is not closed. */
+    public static Network loadBinary(InputStream stream) throws IOException
+        {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[65536];
+        int len;
+        while((len = stream.read(buf)) > 0)
+            out.write(buf, 0, len);
+        return loadBinary(ByteBuffer.wrap(out.toByteArray()));
+        }
+        
+    /** Loads a network in the binary format from the given buffer. */
+    public static Network loadBinary(ByteBuffer buffer) throws IOException
+        {
+        try
+            {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != BINARY_MAGIC)
+                throw new IOException("Not a binary network file");
+            int size = buffer.getInt();
+            if (size != 4 && size != 8)
+                throw new IOException("Bad value size " + size);
+            int numLayers = buffer.getInt();
+            Network network = new Network();
+            for(int i = 0; i < numLayers; i++)
+                {
+                int type = buffer.getInt();
+                if (type == LAYER_SELU)
+                    {
+                    network.addLayer(new SELU());
+                    }
+                else if (type == LAYER_LINEAR)
+                    {
+                    int rows = buffer.getInt();
+                    int columns = buffer.getInt();
+                    if (size == 4)
+                        {
+                        float[] bias = new float[rows];
+                        float[] weights = new float[rows * columns];
+                        FloatBuffer floats = buffer.asFloatBuffer();
+                        floats.get(bias);
+                        floats.get(weights);
+                        buffer.position(buffer.position() + (rows + rows * columns) * 4);
+                        network.addLayer(new Linear(rows, columns, weights, bias));
+                        }
+                    else
+                        {
+                        double[] bias = new double[rows];
+                        double[] weights = new double[rows * columns];
+                        DoubleBuffer doubles = buffer.asDoubleBuffer();
+                        doubles.get(bias);
+                        doubles.get(weights);
+                        buffer.position(buffer.position() + (rows + rows * columns) * 8);
+                        network.addLayer(new Linear(rows, columns, weights, bias));
+                        }
+                    }
+                else throw new IOException("Unknown layer type " + type);
+                }
+            return network;
+            }
+        catch (BufferUnderflowException | IllegalArgumentException ex)
+            {
+            throw new IOException("Truncated binary network file", ex);
+            }
+        }
+
+    /** Writes the network in the binary format.  If every weight and bias can be represented exactly as
+        a float, as is the case for networks trained in single precision, they are written as floats,
+        else as doubles.  Only Linear and SELU layers may be written. */
+    public void saveBinary(OutputStream stream) throws IOException
+        {
+        boolean single = true;
+        int count = 0;
+        for(Layer layer : layers)
+            {
+            if (layer instanceof Linear)
+                {
+                Linear linear = (Linear)layer;
+                single = single && isSingle(linear.getBias()) && isSingle(linear.getWeights());
+                count += linear.getBias().length + linear.getWeights().length;
+                }
+            else if (!(layer instanceof SELU))
+                throw new IOException("Cannot save layer " + layer);
+            }
+        int size = (single ? 4 : 8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + layers.size() * 12 + count * size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(BINARY_MAGIC);
+        buffer.putInt(size);
+        buffer.putInt(layers.size());
+        for(Layer layer : layers)
+            {
+            if (layer instanceof Linear)
+                {
+                Linear linear = (Linear)layer;
+                buffer.putInt(LAYER_LINEAR);
+                buffer.putInt(linear.getRows());
+                buffer.putInt(linear.getColumns());
+                put(buffer, linear.getBias(), single);
+                put(buffer, linear.getWeights(), single);
+                }
+            else
+                {
+                buffer.putInt(LAYER_SELU);
+                }
+            }
+        stream.write(buffer.array(), 0, buffer.position());
+        stream.flush();
+        }
+        
+    static boolean isSingle(double[] vals)
+        {
+        for(int i = 0; i < vals.length; i++)
+            if ((double)(float)vals[i] != vals[i]) return false;
+        return true;
+        }
+        
+    static void put(ByteBuffer buffer, double[] vals, boolean single)
+        {
+        for(int i = 0; i < vals.length; i++)
+            {
+            if (single) buffer.putFloat((float)vals[i]);
+            else buffer.putDouble(vals[i]);
+            }
+        }
+
+    /** Converts a network from the text format (gzipped if it ends in .gz) to the binary format.
+        Usage: java edisyn.nn.Network input.txt.gz output.nn */
+    public static void main(String[] args) throws IOException
+        {
+        if (args.length != 2)
+            {
+            System.err.println("Usage: java edisyn.nn.Network input.txt[.gz] output.nn");
+            System.exit(1);
+            }
+        InputStream in = new FileInputStream(args[0]);
+        if (args[0].endsWith(".gz")) in = new GZIPInputStream(in);
+        Network network = loadFromStream(in);
+        in.close();
+        if (network == null)
+            {
+            System.err.println("Could not read " + args[0]);
+            System.exit(1);
+            }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+        network.saveBinary(out);
+        out.close();
+        }
+
         
     public static int encodeScaled(double[] vector, int index, int value, int min, int max)
         {
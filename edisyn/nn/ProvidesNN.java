@@ -11,6 +11,8 @@ import edisyn.*;
 public interface ProvidesNN
     {
     public Model decode(double [] vector);
+    /** Decodes several latent vectors at once, which is much faster than decoding them one at a time. */
+    public Model[] decode(double[][] vectors);
     public double[] encode(Model model);
     public void randomizeNNModel(double weight);
     }
@@ -27,6 +27,29 @@ public class SELU implements Layer
             }
         return out;
         }
+    public int getOutputSize(int inputSize)
+        {
+        return inputSize;
+        }
+
+    public void feed(double[] in, double[] out, int batch, int inputSize)
+        {
+        int len = batch * inputSize;
+        for(int i = 0; i < len; i++)
+            {
+            out[i] = selu(in[i]);
+            }
+        }
+
+    public void feed(float[] in, float[] out, int batch, int inputSize)
+        {
+        int len = batch * inputSize;
+        for(int i = 0; i < len; i++)
+            {
+            out[i] = (float)selu(in[i]);
+            }
+        }
+
     public static Layer readFromString(String str)
         {
         return new SELU();
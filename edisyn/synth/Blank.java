@@ -795,7 +795,9 @@ public class Blank extends Synth
         // the controller to the synthesizer along some other channel.  For example, the KawaiK4
         // needs to route drum notes to a special channel different from the standard K4
         // input channel.  If you need to customize the channel that the Controller routes
-        // to, override this to return some other channel.
+        // to, override this to return some other channel.  Note that this is called on the 
+        // Controller Router's thread, not the Swing Event Thread, so it may read the model
+        // but shouldn't change anything.
         return synthChannel;
         }
         
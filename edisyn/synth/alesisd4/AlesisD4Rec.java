@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class AlesisD4Rec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x00, 0x0E }; }
+
     public static boolean recognize(byte[] data)
         {
         return data.length == 343 && 
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class CasioCZRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x44 }; }
+
     public static boolean recognize(byte[] data)
         {
         // We need to recognize four formats
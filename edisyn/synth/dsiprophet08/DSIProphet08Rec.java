@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class DSIProphet08Rec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x01 }; }
+
     public static final byte PROPHET_08_ID = 0x23;
     public static final byte MOPHO_ID = 0x25;
     public static final byte TETRA_ID = 0x26;
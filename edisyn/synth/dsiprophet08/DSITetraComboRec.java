@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class DSITetraComboRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x01 }; }
+
     public static final byte TETRA_ID = 0x26;
 
     public static boolean recognize(byte[] data)
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class EmuMorpheusHyperRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x18 }; }
+
     public static final int NUM_PARAMETERS = 237;
         
     public static boolean recognize(byte[] data)
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class EmuMorpheusMapRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x18 }; }
+
     public static final int NUM_PARAMETERS = 360;
         
     public static boolean recognize(byte[] data)
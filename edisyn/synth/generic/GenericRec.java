@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class GenericRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x7D }; }
+
     public static final int HEADER = 12;
     public static boolean recognize(byte[] data)
         {
@@ -1047,6 +1047,9 @@ public class KawaiK1 extends Synth
         return 70;
         }
         
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         boolean val = super.sendAllParametersInternal();
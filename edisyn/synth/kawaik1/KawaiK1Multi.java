@@ -597,6 +597,9 @@ public class KawaiK1Multi extends Synth
     // ALWAYS sent in bulk via patch iD-8
     boolean sendKawaiParametersInBulk = true;
 
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         boolean val = super.sendAllParametersInternal();
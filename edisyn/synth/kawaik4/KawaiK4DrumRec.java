@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KawaiK4DrumRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x40 }; }
+
     public static final int EXPECTED_SYSEX_LENGTH = 682 + 9;
     
     public static boolean recognize(byte[] data)
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KawaiK4Rec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x40 }; }
+
     public static boolean recognize(byte[] data)
         {
         return (((data.length == EXPECTED_SYSEX_LENGTH) &&
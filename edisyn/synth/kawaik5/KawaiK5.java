@@ -2216,6 +2216,9 @@ public class KawaiK5 extends Synth
         }
                 
         
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         boolean val = super.sendAllParametersInternal();        
@@ -439,6 +439,9 @@ public class KawaiK5Multi extends Synth
         }
     
         
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         boolean val = super.sendAllParametersInternal();        
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KorgMicroKorgVocoderRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x42 }; }
+
     // converts all but last byte (F7)
     static byte[] convertTo8Bit(byte[] data, int offset)
         {
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KorgMicrosamplerRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x7D }; }
+
     public static boolean recognize(byte[] data)
         {
         boolean val = (data.length == 780 &&
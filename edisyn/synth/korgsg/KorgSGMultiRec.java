@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KorgSGMultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x42 }; }
+
     public static final int EXPECTED_SYSEX_LENGTH = 285;
     public static boolean recognize(byte[] data)
         {
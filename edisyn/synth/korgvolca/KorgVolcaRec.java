@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class KorgVolcaRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x7D }; }
+
     // These are the number of parameters in each of the Volcas  
     public static final int[] LENGTHS = { 429, 12, 58, 166, 28, 18, 16, 10, 11, 200, 110, 56 };
         
@@ -9,6 +9,7 @@ import edisyn.*;
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import java.util.*;
 
 public abstract class KorgWavestationAbstract extends Synth
     {
@@ -804,16 +805,36 @@ public abstract class KorgWavestationAbstract extends Synth
         }
         
         
+    /// NYBBLE CODEC
+    ///
+    /// Wavestation sysex splits each byte into two nybbles, low nybble first.  A bank is 
+    /// one big nybblized message holding all of its patches (or performances) one after
+    /// the other, and we often only need a little bit out of it: the names to show the user,
+    /// then the one patch the user chose.  So rather than denybblizing whole patches into
+    /// fresh arrays, the methods below read individual bytes and names straight out of the
+    /// nybbles, and denybblize into a scratch buffer which is reused from parse to parse.
+
+    // Reused by denybblizeToScratch(...).  Only valid until the next call.
+    byte[] scratch = new byte[0];
+
     // nybblizes all the data
     public byte[] nybblize(byte[] data)
         {
         byte[] nybbles = new byte[data.length * 2];
-        for(int i = 0; i < data.length; i++)
+        nybblize(data, 0, data.length, nybbles, 0);
+        return nybbles;
+        }
+                
+    // nybblizes LENGTH bytes of DATA starting at OFFSET, writing them into NYBBLES starting at POS.
+    // Returns the position just after the last nybble written.
+    public static int nybblize(byte[] data, int offset, int length, byte[] nybbles, int pos)
+        {
+        for(int i = offset; i < offset + length; i++)
             {
-            nybbles[i * 2] = (byte)(data[i] & 15);
-            nybbles[i * 2 + 1] = (byte)((data[i] >>> 4) & 15);
+            nybbles[pos++] = (byte)(data[i] & 15);
+            nybbles[pos++] = (byte)((data[i] >>> 4) & 15);
             }
-        return nybbles;
+        return pos;
         }
                 
     // denybblizes all the data starting at OFFSET and going up to, but not including, the final two bytes (checksum and F7)
@@ -826,11 +847,47 @@ public abstract class KorgWavestationAbstract extends Synth
     public byte[] denybblize(byte[] nybbles, int offset, int length)
         {
         byte[] data = new byte[length / 2];
-        for(int i = 0; i < data.length; i++)
+        denybblize(nybbles, offset, length, data, 0);
+        return data;
+        }
+
+    // denybblizes LENGTH nybbles starting at OFFSET, writing them into DATA starting at POS.
+    // Returns the position just after the last byte written.
+    public static int denybblize(byte[] nybbles, int offset, int length, byte[] data, int pos)
+        {
+        int end = offset + (length / 2) * 2;
+        for(int i = offset; i < end; i += 2)
             {
-            data[i] = (byte)(nybbles[i * 2 + offset] | (nybbles[i * 2 + offset + 1] << 4));
+            data[pos++] = (byte)(nybbles[i] | (nybbles[i + 1] << 4));
             }
-        return data;
+        return pos;
+        }
+
+    // denybblizes LENGTH nybbles starting at OFFSET into the scratch buffer, and returns it.
+    // The buffer may be longer than LENGTH / 2, and is only valid until the next call.
+    public byte[] denybblizeToScratch(byte[] nybbles, int offset, int length)
+        {
+        if (scratch.length < length / 2)
+            scratch = new byte[length / 2];
+        int end = denybblize(nybbles, offset, length, scratch, 0);
+        Arrays.fill(scratch, end, scratch.length, (byte)0);    // don't leave junk from last time
+        return scratch;
+        }
+
+    // returns byte number INDEX of the nybblized data starting at OFFSET, without denybblizing anything else
+    public static byte denybblizeByte(byte[] nybbles, int offset, int index)
+        {
+        return (byte)(nybbles[offset + index * 2] | (nybbles[offset + index * 2 + 1] << 4));
+        }
+
+    // returns the 16-character name at byte number INDEX of the nybblized data starting at OFFSET,
+    // without denybblizing anything else
+    public static String denybblizeName(byte[] nybbles, int offset, int index)
+        {
+        char[] name = new char[16];
+        for(int i = 0; i < 16; i++)
+            name[i] = (char)denybblizeByte(nybbles, offset, index + i);
+        return new String(name);
         }
 
     boolean sendWavestationParametersInBulk = true;
@@ -2069,13 +2069,8 @@ public class KorgWavestationPatch extends KorgWavestationAbstract
             String[] n = new String[35];
             for(int i = 0; i < 35; i++)
                 {
-                // yuck, denybblize and extract the patch just to get the name...
-                byte[] d = denybblize(data, i * 852 + 6, 852);
-        
-                Patch patch = new Patch();
-                patch.read(d, 0);
-        
-                n[i] = new String(patch.name);
+                // the name is the first thing in the patch
+                n[i] = denybblizeName(data, i * NYBBLIZED_LENGTH * 2 + 6, 0);
                 } 
                 
             // Now that we have an array of names, one per patch, we present the user with options;
@@ -2090,14 +2085,15 @@ public class KorgWavestationPatch extends KorgWavestationAbstract
             model.set("number", patchNum);
 
             // okay, we're loading and editing patch number patchNum.  Here we go.
-            return subparse(data, patchNum * 852 + 6);      
+            return subparse(data, patchNum * NYBBLIZED_LENGTH * 2 + 6);      
             }
         }
                 
                 
     public int subparse(byte[] data, int pos)
         {
-        data = denybblize(data, pos);
+        // denybblize just this patch, even if it's in the middle of a bank
+        data = denybblizeToScratch(data, pos, Math.min(NYBBLIZED_LENGTH * 2, data.length - pos - 2));
         
         Patch patch = new Patch();
         patch.read(data, 0);
@@ -2496,11 +2492,10 @@ public class KorgWavestationPatch extends KorgWavestationAbstract
 
         byte[] data = new byte[NYBBLIZED_LENGTH];
         patch.write(data, 0);
-        data = nybblize(data);
-        System.arraycopy(data, 0, d, 7, data.length);
+        int end = nybblize(data, 0, data.length, d, 7);
         int checksum = 0;
-        for(int i = 0; i < data.length; i++)
-            checksum += data[i];
+        for(int i = 7; i < end; i++)
+            checksum += d[i];
         checksum = (checksum & 127);
         d[d.length - 2] = (byte)checksum;
         d[d.length - 1] = (byte)0xF7;
@@ -2203,28 +2203,47 @@ public class KorgWavestationPerformance extends KorgWavestationAbstract
         soundPanel.add(vbox, BorderLayout.CENTER);
         addTab("FX", soundPanel);
         
-        soundPanel = new SynthPanel(this);
-        vbox = new VBox();
-        vbox.add(addPart(1, Style.COLOR_A()));
-        vbox.add(addPart(2, Style.COLOR_B()));
-        vbox.add(addPart(3, Style.COLOR_A()));
-        soundPanel.add(vbox, BorderLayout.CENTER);
-        addTab("Parts 1-3", soundPanel);
+        // The part tabs are built when they're first selected
+        addTab("Parts 1-3", new TabBuilder()
+            {
+            public JComponent build()
+                {
+                JComponent soundPanel = new SynthPanel(KorgWavestationPerformance.this);
+                VBox vbox = new VBox();
+                vbox.add(addPart(1, Style.COLOR_A()));
+                vbox.add(addPart(2, Style.COLOR_B()));
+                vbox.add(addPart(3, Style.COLOR_A()));
+                soundPanel.add(vbox, BorderLayout.CENTER);
+                return soundPanel;
+                }
+            });
 
-        soundPanel = new SynthPanel(this);
-        vbox = new VBox();
-        vbox.add(addPart(4, Style.COLOR_B()));
-        vbox.add(addPart(5, Style.COLOR_A()));
-        vbox.add(addPart(6, Style.COLOR_B()));
-        soundPanel.add(vbox, BorderLayout.CENTER);
-        addTab("Parts 4-6", soundPanel);
+        addTab("Parts 4-6", new TabBuilder()
+            {
+            public JComponent build()
+                {
+                JComponent soundPanel = new SynthPanel(KorgWavestationPerformance.this);
+                VBox vbox = new VBox();
+                vbox.add(addPart(4, Style.COLOR_B()));
+                vbox.add(addPart(5, Style.COLOR_A()));
+                vbox.add(addPart(6, Style.COLOR_B()));
+                soundPanel.add(vbox, BorderLayout.CENTER);
+                return soundPanel;
+                }
+            });
 
-        soundPanel = new SynthPanel(this);
-        vbox = new VBox();
-        vbox.add(addPart(7, Style.COLOR_A()));
-        vbox.add(addPart(8, Style.COLOR_B()));
-        soundPanel.add(vbox, BorderLayout.CENTER);
-        addTab("Parts 7-8", soundPanel);
+        addTab("Parts 7-8", new TabBuilder()
+            {
+            public JComponent build()
+                {
+                JComponent soundPanel = new SynthPanel(KorgWavestationPerformance.this);
+                VBox vbox = new VBox();
+                vbox.add(addPart(7, Style.COLOR_A()));
+                vbox.add(addPart(8, Style.COLOR_B()));
+                soundPanel.add(vbox, BorderLayout.CENTER);
+                return soundPanel;
+                }
+            });
 
         model.set("name", "Init");
         
@@ -4541,13 +4560,8 @@ public class KorgWavestationPerformance extends KorgWavestationAbstract
             String[] n = new String[50];
             for(int i = 0; i < 50; i++)
                 {
-                // yuck, denybblize and extract the patch just to get the name...
-                byte[] d = denybblize(data, i * NYBBLIZED_LENGTH * 2 + 6, NYBBLIZED_LENGTH * 2);
-        
-                Performance performance = new Performance();
-                performance.read(d, 0);
-        
-                n[i] = new String(performance.name);
+                // the name is the first thing in the performance
+                n[i] = denybblizeName(data, i * NYBBLIZED_LENGTH * 2 + 6, 0);
                 } 
                 
             // Now that we have an array of names, one per patch, we present the user with options;
@@ -4569,7 +4583,8 @@ public class KorgWavestationPerformance extends KorgWavestationAbstract
 
     public int subparse(byte[] data, int pos)
         {
-        data = denybblize(data, pos);
+        // denybblize just this performance, even if it's in the middle of a bank
+        data = denybblizeToScratch(data, pos, Math.min(NYBBLIZED_LENGTH * 2, data.length - pos - 2));
 
         // The Wavestation effects documentation is woefully incomplete.  It is missing
         // critical information how the serial/parallel routing is embedded, and also
@@ -4943,11 +4958,10 @@ public class KorgWavestationPerformance extends KorgWavestationAbstract
 
         byte[] data = new byte[NYBBLIZED_LENGTH];
         performance.write(data, 0);
-        data = nybblize(data);
-        System.arraycopy(data, 0, d, 7, data.length);
+        int end = nybblize(data, 0, data.length, d, 7);
         int checksum = 0;
-        for(int i = 0; i < data.length; i++)
-            checksum += data[i];
+        for(int i = 7; i < end; i++)
+            checksum += d[i];
         checksum = (checksum & 127);
         d[d.length - 2] = (byte)checksum;
         d[d.length - 1] = (byte)0xF7;
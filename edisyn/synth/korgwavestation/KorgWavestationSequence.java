@@ -844,7 +844,7 @@ public class KorgWavestationSequence extends KorgWavestationAbstract
             if (!requestingPatch && !isParsingForMerge() )
                 {
                 block = new Block();
-                pos = block.read(denybblize(data, 6), 0);
+                pos = block.read(denybblizeToScratch(data, 6, data.length - 8), 0);
 
                 String[] n = new String[32];
                 for(int i = 0; i < 32; i++)
@@ -869,7 +869,7 @@ public class KorgWavestationSequence extends KorgWavestationAbstract
             if (block == null)
                 {
                 block = new Block();
-                pos = block.read(denybblize(data, 6), 0);
+                pos = block.read(denybblizeToScratch(data, 6, data.length - 8), 0);
                 mySeq = model.get("number", 0);
                 }
                 
@@ -1230,6 +1230,9 @@ public class KorgWavestationSequence extends KorgWavestationAbstract
     int currentParameter = 0;
     boolean sendingAllParameters = false;
     
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         if (!getSendMIDI())
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class MAudioVenomArpRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x01, 0x05 }; }
+
     public static int getNextSysexPatchGroup(byte[][] sysex, int start)
         {
         if (start >= sysex.length) return start;
@@ -1921,6 +1921,9 @@ public class MAudioVenomMulti extends Synth
         }
 
     /// This switches the screen when we send to a curent dump but don't change the patch
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         boolean val = super.sendAllParametersInternal();
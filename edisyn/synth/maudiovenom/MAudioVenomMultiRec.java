@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class MAudioVenomMultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x01, 0x05 }; }
+
     public static boolean recognize(byte[] data)
         {
         return 
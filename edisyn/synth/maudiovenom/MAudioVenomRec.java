@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class MAudioVenomRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x01, 0x05 }; }
+
     public static boolean recognize(byte[] data)
         {
         // There is a major bug in single edit (non-current) dumps, which inserts an extra spurious byte
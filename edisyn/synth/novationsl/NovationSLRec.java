@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class NovationSLRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x20, 0x29 }; }
+
     public static boolean recognize(byte[] data)
         {
         return (data.length == 4112 &&
@@ -1463,6 +1463,9 @@ public class OberheimMatrix1000 extends Synth
         }
     
 
+    // sendAllParametersInternal() does more than just send the parameters, so we always send all of them
+    public boolean getSendsOnlyChangedParametersWhenAuditioning() { return false; }
+
     public boolean sendAllParametersInternal()
         {
         if (m1000)
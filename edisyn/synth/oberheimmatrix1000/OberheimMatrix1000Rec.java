@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class OberheimMatrix1000Rec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x10 }; }
+
     public static final int EXPECTED_SYSEX_LENGTH = 275;        
         
     public static boolean recognize(byte[] data)
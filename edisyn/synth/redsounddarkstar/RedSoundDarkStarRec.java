@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class RedSoundDarkStarRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x00, 0x20, 0x3B }; }
+
     public static boolean recognize(byte[] data)
         {
         // DarkStar data comes in the following forms
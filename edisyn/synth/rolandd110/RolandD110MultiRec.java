@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class RolandD110MultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x41 }; }
+
     public static boolean recognize(byte[] data)
         {
         return ((data[0] == (byte)0xF0) &&
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class RolandD110ToneRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x41 }; }
+
     // Sysex dumps from the emitLocation are TEMP_TONE_LENGTH long
     public static final int TEMP_TONE_LENGTH = 256;  // 10 bytes + 246 data bytes
     // Sysex dumps from a RAM slot are MEMORY_TONE_LENGTH long
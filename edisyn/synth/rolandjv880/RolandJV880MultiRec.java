@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class RolandJV880MultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x41 }; }
+
     public static int getNextSysexPatchGroup(byte[][] sysex, int start)
         {
         // we presume we need COMMON and then FOUR TONES
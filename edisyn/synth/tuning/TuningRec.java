@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class TuningRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x7E }; }
+
     public static boolean recognize(byte[] data) 
         {
         return (data[0] == (byte) 0xF0 && data[1] == 0x7E && data[3] == 0x08 && data[4] == 0x01
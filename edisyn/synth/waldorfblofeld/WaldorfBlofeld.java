@@ -1589,6 +1589,92 @@ public class WaldorfBlofeld extends Synth
     /** Map of parameter -> index in the allParameters array. */
     HashMap allParametersToIndex = new HashMap();
 
+    /// emitAll(key) is called every time a parameter changes, which can be thousands of times
+    /// a second while sweeping a dial or auditioning.  So rather than working out each key's
+    /// index and packing from its name every time, we work them all out once here, from
+    /// allParameters, and look them up in the emitters table.
+    
+    static final int EMITTER_PLAIN = 0;
+    static final int EMITTER_OCTAVE = 1;
+    static final int EMITTER_PACKED = 2;
+    static final int EMITTER_NAME = 3;
+    
+    static class Emitter
+        {
+        int type;
+        int index;                  // in allParameters
+        String key;                 // for EMITTER_PLAIN and EMITTER_OCTAVE
+        String[] keys;              // for EMITTER_PACKED, the keys packed into one byte
+        int[] shifts;               // for EMITTER_PACKED, how far each is shifted
+        
+        Emitter(int type, int index, String key) { this.type = type; this.index = index; this.key = key; }
+
+        Emitter(int index, String[] keys, int[] shifts) { this(EMITTER_PACKED, index, null); this.keys = keys; this.shifts = shifts; }
+        
+        byte getValue(Model model)
+            {
+            switch(type)
+                {
+                case EMITTER_OCTAVE:
+                    return (byte)(16 + model.get(key) * 12);
+                case EMITTER_PACKED:
+                    {
+                    int val = 0;
+                    for(int i = 0; i < keys.length; i++)
+                        val |= (model.get(keys[i]) << shifts[i]);
+                    return (byte)val;
+                    }
+                default:
+                    return (byte)(model.get(key));
+                }
+            }
+        }
+    
+    static HashMap buildEmitters()
+        {
+        HashMap emitters = new HashMap();
+        for(int i = 0; i < allParameters.length; i++)
+            {
+            String key = allParameters[i];
+            if (key.equals("-") || emitters.containsKey(key))  // name appears 16 times
+                {
+                continue;
+                }
+            else if (key.equals("name"))
+                {
+                emitters.put(key, new Emitter(EMITTER_NAME, i, key));
+                }
+            else if (key.equals("osc1octave") || key.equals("osc2octave") || key.equals("osc3octave"))
+                {
+                emitters.put(key, new Emitter(EMITTER_OCTAVE, i, key));
+                }
+            else if (key.indexOf(", ") >= 0)
+                {
+                // The packed parameters are "oscallocation, unisono", "envelope1mode, envelope1trigger", 
+                // "arp01step, arp01glide, arp01accent", and "arp01timing, arp01length".  See also emit(...)
+                String[] keys = key.split(", ");
+                int[] shifts = new int[keys.length];
+                for(int j = 0; j < keys.length; j++)
+                    {
+                    if (keys[j].equals("unisono") || keys[j].endsWith("step") || keys[j].endsWith("length"))
+                        shifts[j] = 4;
+                    else if (keys[j].endsWith("trigger"))
+                        shifts[j] = 5;
+                    else if (keys[j].endsWith("glide"))
+                        shifts[j] = 3;
+                    }
+                Emitter emitter = new Emitter(i, keys, shifts);
+                for(int j = 0; j < keys.length; j++)
+                    emitters.put(keys[j], emitter);
+                }
+            else
+                {
+                emitters.put(key, new Emitter(EMITTER_PLAIN, i, key));
+                }
+            }
+        return emitters;
+        }
+
 
     /** List of all Waldorf parameters in order.  "-" is a reserved (unused and thus unnamed) parameter. */
 
@@ -1986,6 +2072,9 @@ public class WaldorfBlofeld extends Synth
     "-"
     };
 
+    /** Map of parameter -> Emitter for that parameter.  This must come after allParameters. */
+    static final HashMap emitters = buildEmitters();
+
 
 
 
@@ -2001,98 +2090,42 @@ public class WaldorfBlofeld extends Synth
     public Object[] emitAll(String key)
         {
         if (!getSendMIDI()) return new Object[0];  // MIDI turned off, don't bother
-        if (key.equals("bank")) return new Object[0];  // this is not emittable
-        if (key.equals("number")) return new Object[0];  // this is not emittable
+        Emitter emitter = (Emitter)(emitters.get(key));
+        if (emitter == null) return new Object[0];  // "bank", "number", and so on are not emittable
         byte DEV = (byte)(getID());
-        if (key.equals("osc1octave") || key.equals("osc2octave") || key.equals("osc3octave"))
-            {
-            int index = ((Integer)(allParametersToIndex.get(key))).intValue();
-            byte HH = (byte)((index >>> 7) & 127);
-            byte PP = (byte)(index & 127);
-            byte XX = (byte)(16 + model.get(key) * 12);
-            byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-            return new Object[] { data };
-            }
-        else if (key.equals("oscallocation") || key.equals("unisono"))
-            {
-            int index = 58;
-            byte HH = (byte)((index >>> 7) & 127);
-            byte PP = (byte)(index & 127);
-            byte XX = (byte)((model.get("unisono") << 4) | (model.get("oscallocation")));
-            byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-            return new Object[] { data };
-            }
-        else if (key.equals("envelope1mode") || key.equals("envelope1trigger") ||
-            key.equals("envelope2mode") || key.equals("envelope2trigger") ||
-            key.equals("envelope3mode") || key.equals("envelope3trigger") ||
-            key.equals("envelope4mode") || key.equals("envelope4trigger"))
-            {
-            int i;
-            try { i = Integer.parseInt(key.substring(8, 9)); }
-            catch (Exception e) { Synth.handleException(e); return new Object[0]; }
-            int index = 196 + (i - 1) * 12;
-            byte HH = (byte)((index >>> 7) & 127);
-            byte PP = (byte)(index & 127);
-            byte XX = (byte)((model.get("envelope" + i + "trigger") << 5) | (model.get("envelope" + i + "mode")));
-            byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-            return new Object[] { data };
-            }
-        else if (key.startsWith("arp") && !key.startsWith("arpegg"))
-            {
-            int i;
-            try { i = Integer.parseInt(key.substring(3, 5)); }
-            catch (Exception e) { Synth.handleException(e); return new Object[0]; }
-            if (key.endsWith("length") || key.endsWith("timing"))
-                {
-                int index = i + 342;
-                byte HH = (byte)((index >>> 7) & 127);
-                byte PP = (byte)(index & 127);
-                byte XX = (byte)((model.get("arp" + (i < 10 ? "0" : "") + i + "length") << 4) | 
-                    (model.get("arp" + (i < 10 ? "0" : "") + i + "timing")));
-                byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-                return new Object[] { data };
-                }
-            else
-                {
-                int index = i + 326;
-                byte HH = (byte)((index >>> 7) & 127);
-                byte PP = (byte)(index & 127);
-                byte XX = (byte)((model.get("arp" + (i < 10 ? "0" : "") + i + "step") << 4) |
-                    (model.get("arp" + (i < 10 ? "0" : "") + i + "glide") << 3) |
-                    (model.get("arp" + (i < 10 ? "0" : "") + i + "accent")));
-                byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-                return new Object[] { data };
-                }
-            }
-        else if (key.equals("name"))
+        if (emitter.type == EMITTER_NAME)
             {
             Object[] data = new Object[16];
             String name = model.get(key, "Init") + "                "; 
             for(int i = 0; i < 16; i++)
                 {
-                int index = i + 363;
-                byte HH = (byte)((index >>> 7) & 127);
-                byte PP = (byte)(index & 127);
-                byte XX = (byte)(name.charAt(i));
-                byte[] b = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-                data[i] = b;
+                data[i] = buildParameterChange(DEV, emitter.index + i, (byte)(name.charAt(i)));
                 }
             return data;
             }
         else
             {
-            int index = ((Integer)(allParametersToIndex.get(key))).intValue();
-            byte HH = (byte)((index >>> 7) & 127);
-            byte PP = (byte)(index & 127);
-            byte XX = (byte)model.get(key);
-            byte[] data = new byte[] { (byte)0xF0, 0x3E, 0x13, DEV, 0x20, 0x00, HH, PP, XX, (byte)0xF7 };
-            return new Object[] { data };
+            return new Object[] { buildParameterChange(DEV, emitter.index, emitter.getValue(model)) };
             }
         }
     
-
+    // The single parameter change message.  HH and PP are the parameter index, and XX is its value.
+    static final byte[] PARAMETER_CHANGE = new byte[] { (byte)0xF0, 0x3E, 0x13, 0x00 /* DEV */, 0x20, 0x00, 0x00 /* HH */, 0x00 /* PP */, 0x00 /* XX */, (byte)0xF7 };
+    
+    byte[] buildParameterChange(byte DEV, int index, byte XX)
+        {
+        // We build a fresh array each time because the caller may hang onto it (for example
+        // sendDifferentParameters(...) gathers them all up before sending)
+        byte[] data = (byte[])(PARAMETER_CHANGE.clone());
+        data[3] = DEV;
+        data[6] = (byte)((index >>> 7) & 127);
+        data[7] = (byte)(index & 127);
+        data[8] = XX;
+        return data;
+        }
     
     
+
     public byte[] emit(Model tempModel, boolean toWorkingMemory, boolean toFile)
         {
         if (tempModel == null)
@@ -2456,12 +2489,13 @@ public class WaldorfBlofeld extends Synth
     
     public byte getID() 
         { 
+        Midi.Tuple t = tuple;
+        if (t == null) return 0;            // happens when tuple's not built yet
         try 
             { 
-            byte b = (byte)(Byte.parseByte(tuple.id));
+            byte b = (byte)(Byte.parseByte(t.id));
             if (b >= 0) return b;
             }
-        catch (NullPointerException e) { } // expected.  Happens when tuple's not built yet
         catch (NumberFormatException e) { Synth.handleException(e); }
         return 0;
         }
@@ -131,17 +131,7 @@ public class WaldorfBlofeldWavetable
             }
         else
             {
-            long len = file.length();
-            if (len > Integer.MAX_VALUE)  // uh oh
-                {
-                synth.showSimpleError("This file is too large", "Too large");
-                return;
-                }
-                                                                
-            byte[] data = new byte[(int)len];
-            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
-            input.readFully(data);
-            sysex = synth.cutUpSysex(data);
+            sysex = SysexReader.readSysex(file);
             }
                         
         // At this point we have the sysex. Let's group them, throwing out specious sysex files.
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class WaldorfKyraRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x3E }; }
+
     public static boolean recognize(byte[] data)
         {
         return (data.length == 224 + 10 &&
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class WaldorfMicrowaveXTMultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x3E }; }
+
     public static boolean recognize(byte[] data)
         {
         // In Section 2.22 of sysex document, MULD is declared to be 0x21, but then in the
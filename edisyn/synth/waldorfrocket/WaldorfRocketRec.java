@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class WaldorfRocketRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x7D }; }
+
     public static final int HEADER = 16;
         
     public static boolean recognize(byte[] data)
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class Yamaha4OpMultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x43 }; }
+
     public static boolean recognize(byte[] data)
         {
         // PCED
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class Yamaha4OpRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x43 }; }
+
     public static int getNextSysexPatchGroup(byte[][] sysex, int start)
         {
         if (recognizeBank(sysex[start]))
@@ -15,7 +15,6 @@ import javax.swing.*;
 import java.awt.event.*;
 import java.util.*;
 import java.io.*;
-import java.util.zip.*;
 import javax.sound.midi.*;
 
 
@@ -90,12 +89,8 @@ public class YamahaDX7 extends Synth implements ProvidesNN
         {
         if (encoder == null)
             {
-            try
-                {
-                InputStream stream = new GZIPInputStream(YamahaDX7.class.getResourceAsStream("encoder.txt.gz"));
-                encoder = Network.loadFromStream(stream);
-                }
-            catch (IOException ex) { throw new RuntimeException(ex); }
+            encoder = Network.load(YamahaDX7.class, "encoder");
+            if (encoder == null) throw new RuntimeException("Could not load the encoder network");
             }
         return encoder;
         }
@@ -104,12 +99,8 @@ public class YamahaDX7 extends Synth implements ProvidesNN
         {
         if (decoder == null)
             {
-            try
-                {
-                InputStream stream = new GZIPInputStream(YamahaDX7.class.getResourceAsStream("decoder.txt"));
-                decoder = Network.loadFromStream(stream);
-                }
-            catch (IOException ex) { throw new RuntimeException(ex); }
+            decoder = Network.load(YamahaDX7.class, "decoder");
+            if (decoder == null) throw new RuntimeException("Could not load the decoder network");
             }
         return decoder;
         }
@@ -1274,10 +1265,25 @@ public class YamahaDX7 extends Synth implements ProvidesNN
             
             
     public Model decode(double[] vector)
+        {
+        return decode(vector, getDecoder().feed(vector));
+        }
+
+    public Model[] decode(double[][] vectors)
+        {
+        double[][] decoded = getDecoder().feedBatch(vectors);
+        Model[] models = new Model[vectors.length];
+        for(int i = 0; i < vectors.length; i++)
+            {
+            models[i] = decode(vectors[i], decoded[i]);
+            }
+        return models;
+        }
+
+    Model decode(double[] latentVector, double[] vector)
         {
         Model newModel = model.copy();
-        newModel.latentVector = vector;
-        vector = getDecoder().feed(vector);
+        newModel.latentVector = latentVector;
         int index = 0;
         // Ignore the name parameters, so -10
         for(int i = 0; i < allParameters.length-10; i++)
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class YamahaFB01Rec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x43 }; }
+
     public static String getBankName(byte[] data)
         {
         int pos = (data[2] == 0x75 ? 9 : 6);
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class YamahaFS1RFseqRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x43 }; }
+
     public static boolean recognize(byte[] data)
         {
         return ((
@@ -279,27 +279,35 @@ public class YamahaFS1RMulti extends Synth
         soundPanel.add(vbox, BorderLayout.CENTER);
         addTab("Common", soundPanel);
 
+        // The part tabs are built when they're first selected
         for(int i = 1; i <= 4; i++)
             {
-            soundPanel = new SynthPanel(this);
-            vbox = new VBox();
+            final int part = i;
+            addTab("Part " + i, new TabBuilder()
+                {
+                public JComponent build()
+                    {
+                    JComponent soundPanel = new SynthPanel(YamahaFS1RMulti.this);
+                    VBox vbox = new VBox();
 
-            hbox = new HBox();
-            hbox.add(addVoice(i, Style.COLOR_A()));
-            hbox.addLast(addOutput(i, Style.COLOR_B()));
-            vbox.add(hbox);
-            vbox.add(addTone(i, Style.COLOR_C()));
+                    HBox hbox = new HBox();
+                    hbox.add(addVoice(part, Style.COLOR_A()));
+                    hbox.addLast(addOutput(part, Style.COLOR_B()));
+                    vbox.add(hbox);
+                    vbox.add(addTone(part, Style.COLOR_C()));
 
-            hbox = new HBox();
-            hbox.add(addPitch(i, Style.COLOR_A()));
-            hbox.addLast(addEnvelopes(i, Style.COLOR_B()));
-            vbox.add(hbox);
+                    hbox = new HBox();
+                    hbox.add(addPitch(part, Style.COLOR_A()));
+                    hbox.addLast(addEnvelopes(part, Style.COLOR_B()));
+                    vbox.add(hbox);
 
-            vbox.addLast(addPlay(i, Style.COLOR_C()));
+                    vbox.addLast(addPlay(part, Style.COLOR_C()));
                 
-            soundPanel.add(vbox, BorderLayout.CENTER);
-            addTab("Part " + i, soundPanel);
-            ((SynthPanel)soundPanel).makePasteable("part");
+                    soundPanel.add(vbox, BorderLayout.CENTER);
+                    ((SynthPanel)soundPanel).makePasteable("part");
+                    return soundPanel;
+                    }
+                });
             }
 
         soundPanel = new SynthPanel(this);
@@ -8,6 +8,8 @@ import edisyn.*;
 
 public class YamahaFS1RMultiRec extends Recognize
     {
+    public static byte[] getManufacturerID() { return new byte[] { 0x43 }; }
+
     public static boolean recognize(byte[] data)
         {
         final int BYTE_COUNT = 400;
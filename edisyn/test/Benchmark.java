@@ -0,0 +1,486 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.test;
+import edisyn.*;
+import edisyn.nn.*;
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+   A small benchmark harness for Edisyn's hot paths: Model access and copying, mutation,
+   recombination, crossover and morphing, emitting and parsing patches for a few representative
+   synthesizers, and feeding the DX7's neural network.  Each benchmark is warmed up for several
+   iterations, then measured for several more, and its throughput (operations per second) is reported
+   along with a 99.9% confidence interval, in the same CSV or JSON formats that JMH produces,
+   so that results from different runs can be compared by the same tools.
+*/
+
+public class Benchmark
+    {
+    /** The synthesizers whose morphing, emitting, and parsing is benchmarked. */
+    public static final String[] SYNTHS = new String[]
+        {
+        "edisyn.synth.yamahadx7.YamahaDX7",
+        "edisyn.synth.waldorfblofeld.WaldorfBlofeld",
+        "edisyn.synth.korgwavestation.KorgWavestationPerformance",
+        "edisyn.synth.yamahafs1r.YamahaFS1R",
+        "edisyn.synth.emumorpheus.EmuMorpheus",
+        };
+
+    /** The synthesizer whose model is used for the Model and mutation benchmarks. */
+    public static final String MODEL_SYNTH = "edisyn.synth.yamahadx7.YamahaDX7";
+
+    /** A single benchmark.  setup() is called once before the benchmark is run, and run() is called over
+        and over again.  Whatever run() returns is consumed so that the work can't be optimized away. */
+    public static abstract class Case
+        {
+        String name;
+        public Case(String name) { this.name = name; }
+        public String getName() { return name; }
+        public void setup() throws Exception { }
+        public abstract Object run() throws Exception;
+        }
+
+    /** The results of a single benchmark: the operations per second of each measurement iteration. */
+    public static class Result
+        {
+        public String name;
+        public double[] scores;
+
+        public double getScore()
+            {
+            double sum = 0;
+            for(int i = 0; i < scores.length; i++)
+                sum += scores[i];
+            return sum / scores.length;
+            }
+
+        /** Returns the half-width of the 99.9% confidence interval of the score, or NaN if there is only one iteration. */
+        public double getError()
+            {
+            int n = scores.length;
+            if (n < 2) return Double.NaN;
+            double mean = getScore();
+            double var = 0;
+            for(int i = 0; i < n; i++)
+                var += (scores[i] - mean) * (scores[i] - mean);
+            var /= (n - 1);
+            return studentT999(n - 1) * Math.sqrt(var / n);
+            }
+        }
+
+    // two-tailed 99.9% critical values of Student's t distribution, by degrees of freedom
+    static final double[] T999 = new double[] { Double.NaN, 636.62, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781,
+                                                4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850 };
+    static double studentT999(int df)
+        {
+        if (df < T999.length) return T999[df];
+        else return 3.291;              // close enough to the normal distribution
+        }
+
+    // Results of run() are folded into this so that they're not dead code
+    static volatile int sink;
+
+    static void consume(Object obj)
+        {
+        if (obj == null) return;
+        else if (obj instanceof Integer) sink += ((Integer)obj).intValue();
+        else if (obj instanceof Object[]) sink += ((Object[])obj).length;
+        else if (obj instanceof double[]) sink += (int)((double[])obj)[0];
+        else sink += System.identityHashCode(obj);
+        }
+
+    /** Runs the benchmark, returning its Result. */
+    public static Result run(Case c, int warmups, int iterations, int millis) throws Exception
+        {
+        c.setup();
+        for(int i = 0; i < warmups; i++)
+            iterate(c, millis);
+        Result result = new Result();
+        result.name = c.getName();
+        result.scores = new double[iterations];
+        for(int i = 0; i < iterations; i++)
+            result.scores[i] = iterate(c, millis);
+        return result;
+        }
+
+    // Returns operations per second
+    static double iterate(Case c, int millis) throws Exception
+        {
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1000000L;
+        long now = start;
+        while(now < end)
+            {
+            consume(c.run());
+            ops++;
+            now = System.nanoTime();
+            }
+        return ops / ((now - start) / 1000000000.0);
+        }
+
+
+
+    ///// THE BENCHMARKS
+
+    // Built the first time they're needed.  No MIDI is sent, so there's no need for them to pause
+    // as they emit (see Synth.simplePause(...)), which would make the emit benchmarks mostly measure sleeping.
+    static HashMap<String, Synth> synths = new HashMap<String, Synth>();
+
+    static Synth getSynth(String classname)
+        {
+        Synth synth = synths.get(classname);
+        if (synth == null)
+            {
+            synth = Synth.instantiate(classname, true, false, null);
+            synth.setSendMIDI(false);
+            synth.setPausesEnabled(false);
+            synth.getUndo().setWillPush(false);
+            synth.getModel().clearListeners();
+            synths.put(classname, synth);
+            }
+        return synth;
+        }
+
+    static Model getModel(long seed)
+        {
+        return getModel(MODEL_SYNTH, seed);
+        }
+
+    static Model getModel(String classname, long seed)
+        {
+        Synth synth = getSynth(classname);
+        Model model = synth.getModel().copy();
+        model.setUndoListener(null);
+        model.mutate(new Random(seed), synth.getMutationKeys(), 1.0);
+        return model;
+        }
+
+    // The length of the DX7's latent vectors, which is the length of the encoder's output
+    static int getLatentLength()
+        {
+        Network encoder = Network.load(edisyn.synth.yamahadx7.YamahaDX7.class, "encoder");
+        return encoder.getOutputSize(edisyn.synth.yamahadx7.YamahaDX7.ENCODED_LENGTH);
+        }
+
+    static String shortName(String classname)
+        {
+        return classname.substring(classname.lastIndexOf('.') + 1);
+        }
+
+    /** Morphs among four random patches of the given synthesizer, moving a simulated joystick around 
+        in a circle once every 1000 ticks, either with a precompiled Model.MorphPlan or without one. */
+    static class MorphCase extends Case
+        {
+        String classname;
+        boolean planned;
+        Model model;
+        Model[] models;
+        String[] keys;
+        Model.MorphPlan plan;
+        Random random = new Random(0);
+        double[] weights = new double[4];
+        double[] previousWeights = new double[] { 1.0, 0.0, 0.0, 0.0 };
+        int tick = 0;
+
+        public MorphCase(String name, String classname, boolean planned) { super(name); this.classname = classname; this.planned = planned; }
+
+        public void setup()
+            {
+            model = getModel(classname, 0);
+            models = new Model[] { getModel(classname, 1), getModel(classname, 2), getModel(classname, 3), getModel(classname, 4) };
+            keys = getSynth(classname).getMutationKeys();
+            plan = model.compileMorph(models, getSynth(classname).getModel(), keys);
+            }
+
+        public Object run()
+            {
+            double theta = (tick++ % 1000) * Math.PI * 2 / 1000.0;
+            double x = (Math.cos(theta) + 1) * 0.5;
+            double y = (Math.sin(theta) + 1) * 0.5;
+            weights[0] = Math.min(1 - x, 1 - y);
+            weights[1] = Math.min(x, 1 - y);
+            weights[2] = Math.min(1 - x, y);
+            weights[3] = Math.min(x, y);
+            if (planned)
+                return model.morph(random, plan, weights, previousWeights, Model.CATEGORICAL_STRATEGY_MORPH);
+            else
+                return model.morph(random, models, getSynth(classname).getModel(), keys, weights, previousWeights, Model.CATEGORICAL_STRATEGY_MORPH);
+            }
+        }
+
+    /** Returns all the benchmarks. */
+    public static ArrayList<Case> getCases()
+        {
+        ArrayList<Case> cases = new ArrayList<Case>();
+
+        /// MODEL
+
+        cases.add(new Case("model.get")
+            {
+            Model model;
+            String[] keys;
+            public void setup() { model = getModel(0); keys = model.getKeys(); }
+            public Object run()
+                {
+                int sum = 0;
+                for(int i = 0; i < keys.length; i++)
+                    sum += model.get(keys[i], 0);
+                return Integer.valueOf(sum);
+                }
+            });
+
+        cases.add(new Case("model.set")
+            {
+            Model model;
+            String[] keys;
+            public void setup() { model = getModel(0); keys = model.getKeys(); }
+            public Object run()
+                {
+                for(int i = 0; i < keys.length; i++)
+                    if (!model.isString(keys[i]))
+                        model.set(keys[i], model.get(keys[i], 0));
+                return model;
+                }
+            });
+
+        cases.add(new Case("model.copy")
+            {
+            Model model;
+            public void setup() { model = getModel(0); }
+            public Object run() { return model.copy(); }
+            });
+
+        cases.add(new Case("model.clone")
+            {
+            Model model;
+            public void setup() { model = getModel(0); }
+            public Object run() { return model.clone(); }
+            });
+
+        cases.add(new Case("model.getKeys")
+            {
+            Model model;
+            public void setup() { model = getModel(0); }
+            public Object run() { return model.getKeys(); }
+            });
+
+        cases.add(new Case("model.getDifferentKeys")
+            {
+            Model model;
+            Model other;
+            public void setup() { model = getModel(0); other = getModel(1); }
+            public Object run() { return model.getDifferentKeys(other); }
+            });
+
+        /// MUTATION
+
+        cases.add(new Case("model.mutate")
+            {
+            Model model;
+            String[] keys;
+            Random random = new Random(0);
+            public void setup() { model = getModel(0); keys = getSynth(MODEL_SYNTH).getMutationKeys(); }
+            public Object run() { return model.mutate(random, keys, 0.1); }
+            });
+
+        cases.add(new Case("model.recombine")
+            {
+            Model model;
+            Model other;
+            String[] keys;
+            Random random = new Random(0);
+            public void setup() { model = getModel(0); other = getModel(1); keys = getSynth(MODEL_SYNTH).getMutationKeys(); }
+            public Object run() { return model.recombine(random, other, keys, 0.5); }
+            });
+
+        cases.add(new Case("model.crossover")
+            {
+            Model model;
+            Model other;
+            String[] keys;
+            Random random = new Random(0);
+            public void setup() { model = getModel(0); other = getModel(1); keys = getSynth(MODEL_SYNTH).getMutationKeys(); }
+            public Object run() { return model.crossover(random, other, keys, 0.5); }
+            });
+
+        /// MORPHING
+        
+        // The Morph panel compiles a MorphPlan once and then morphs with it on every tick.  Morphing
+        // without one examines every key on every tick, and shows what the plan buys us.
+        for(int i = 0; i < SYNTHS.length; i++)
+            {
+            cases.add(new MorphCase("model.morph." + shortName(SYNTHS[i]), SYNTHS[i], true));
+            cases.add(new MorphCase("model.morphUnplanned." + shortName(SYNTHS[i]), SYNTHS[i], false));
+            }
+
+        /// EMITTING AND PARSING
+
+        for(int i = 0; i < SYNTHS.length; i++)
+            {
+            final String classname = SYNTHS[i];
+            cases.add(new Case("emit." + shortName(classname))
+                {
+                Synth synth;
+                public void setup()
+                    {
+                    synth = getSynth(classname);
+                    synth.getModel().mutate(new Random(0), synth.getMutationKeys(), 1.0);
+                    }
+                public Object run() { return synth.emitAll((Model)null, false, true); }
+                });
+
+            cases.add(new Case("parse." + shortName(classname))
+                {
+                Synth synth;
+                byte[] data;
+                public void setup()
+                    {
+                    synth = getSynth(classname);
+                    synth.getModel().mutate(new Random(0), synth.getMutationKeys(), 1.0);
+                    data = synth.flatten(synth.emitAll((Model)null, false, true));
+                    }
+                public Object run() { return Integer.valueOf(synth.performParse(data, true)); }
+                });
+            }
+
+        /// NEURAL NETWORKS
+
+        cases.add(new Case("nn.feed")
+            {
+            Network decoder;
+            double[] vector;
+            public void setup()
+                {
+                decoder = Network.load(edisyn.synth.yamahadx7.YamahaDX7.class, "decoder");
+                vector = Network.shiftVectorUniform(new double[getLatentLength()], new Random(0), 1.0);
+                }
+            public Object run() { return decoder.feed(vector); }
+            });
+
+        cases.add(new Case("nn.feedBatch")
+            {
+            Network decoder;
+            double[][] vectors = new double[16][];
+            public void setup()
+                {
+                decoder = Network.load(edisyn.synth.yamahadx7.YamahaDX7.class, "decoder");
+                Random random = new Random(0);
+                for(int i = 0; i < vectors.length; i++)
+                    vectors[i] = Network.shiftVectorUniform(new double[getLatentLength()], random, 1.0);
+                }
+            public Object run() { return decoder.feedBatch(vectors); }
+            });
+
+        return cases;
+        }
+
+
+
+    ///// OUTPUT
+
+    static void writeCSV(ArrayList<Result> results, PrintStream out)
+        {
+        out.println("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\"");
+        for(int i = 0; i < results.size(); i++)
+            {
+            Result r = results.get(i);
+            out.println("\"" + r.name + "\",\"thrpt\",1," + r.scores.length + "," + r.getScore() + "," + r.getError() + ",\"ops/s\"");
+            }
+        }
+
+    static void writeJSON(ArrayList<Result> results, PrintStream out)
+        {
+        out.println("[");
+        for(int i = 0; i < results.size(); i++)
+            {
+            Result r = results.get(i);
+            double error = r.getError();
+            out.println("    {");
+            out.println("        \"benchmark\" : \"" + r.name + "\",");
+            out.println("        \"mode\" : \"thrpt\",");
+            out.println("        \"threads\" : 1,");
+            out.println("        \"measurementIterations\" : " + r.scores.length + ",");
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + r.getScore() + ",");
+            out.println("            \"scoreError\" : " + (Double.isNaN(error) ? "\"NaN\"" : "" + error) + ",");
+            out.println("            \"scoreUnit\" : \"ops/s\",");
+            String raw = "";
+            for(int j = 0; j < r.scores.length; j++)
+                raw += (j == 0 ? "" : ", ") + r.scores[j];
+            out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+            out.println("        }");
+            out.println("    }" + (i < results.size() - 1 ? "," : ""));
+            }
+        out.println("]");
+        }
+
+
+
+    public static void main(String[] args) throws Exception
+        {
+        Main main = new Main("java edisyn.test.Benchmark",
+            args,
+            null,
+            new String[] { "-b", "-w", "-i", "-t", "-f", "-o", "-l" },
+            new String[] { Main.STRING, Main.INT, Main.INT, Main.INT, Main.STRING, Main.STRING, Main.FLAG },
+            new String[] { "Benchmarks to Run (Regular Expression)", "Warmup Iterations", "Measurement Iterations",
+                           "Milliseconds per Iteration", "Result Format (csv or json)", "Result File", "List Benchmarks" },
+            "Benchmark measures the throughput of Edisyn's hot paths: Model access and copying,\n" +
+            "mutation, recombination and crossover, morphing, emitting and parsing patches for\n" +
+            "several representative synthesizers, and feeding the DX7 neural network.  Progress is\n" +
+            "printed to stderr, and results are printed as CSV or JSON to stdout or the result file,\n" +
+            "in the same format as JMH, so that results from different versions may be compared.\n" +
+            "Morphing is measured both with a precompiled MorphPlan, as the Morph panel does, and\n" +
+            "without one.  Synthesizers don't pause while emitting, as no MIDI is sent.",
+            true);
+
+        ArrayList<Case> cases = getCases();
+        if (main.hasFlag("-l"))
+            {
+            for(int i = 0; i < cases.size(); i++)
+                System.out.println(cases.get(i).getName());
+            return;
+            }
+
+        Pattern pattern = (main.getString("-b") == null ? null : Pattern.compile(main.getString("-b")));
+        int warmups = main.getInt("-w", 5);
+        int iterations = main.getInt("-i", 5);
+        int millis = main.getInt("-t", 1000);
+        String format = (main.getString("-f") == null ? "csv" : main.getString("-f").trim().toLowerCase());
+        if (warmups < 0 || iterations < 1 || millis < 1)
+            {
+            System.err.println("-w must be >= 0, and -i and -t must be >= 1");
+            System.exit(1);
+            }
+        if (!format.equals("csv") && !format.equals("json"))
+            {
+            System.err.println("-f must be csv or json");
+            System.exit(1);
+            }
+
+        ArrayList<Result> results = new ArrayList<Result>();
+        for(int i = 0; i < cases.size(); i++)
+            {
+            Case c = cases.get(i);
+            if (pattern != null && !pattern.matcher(c.getName()).find()) continue;
+            System.err.print(c.getName() + "... ");
+            Result r = run(c, warmups, iterations, millis);
+            System.err.println(String.format("%.1f", r.getScore()) + " ops/s");
+            results.add(r);
+            }
+
+        PrintStream out = System.out;
+        if (main.getString("-o") != null)
+            out = new PrintStream(new FileOutputStream(main.getString("-o")));
+        if (format.equals("csv")) writeCSV(results, out);
+        else writeJSON(results, out);
+        out.flush();
+        if (out != System.out) out.close();
+        }
+    }
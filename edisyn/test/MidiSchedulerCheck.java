@@ -0,0 +1,169 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.test;
+import edisyn.*;
+import java.util.*;
+import javax.sound.midi.*;
+
+/**
+   Checks that MidiScheduler drops superseded parameter groups without reordering them.
+   Each check holds the queue up behind a pause, schedules a sequence of groups and plain
+   messages into it, then waits for the queue to drain and compares what was actually sent
+   against what should have been.  A group which is superseded while it is still at the end
+   of the queue should be replaced in place; but a group which is superseded after something
+   else (such as a program change) was scheduled behind it must not be sent ahead of that
+   something.  Also checks that urgent messages (those passed through from a controller) are
+   sent in order ahead of the queue, even in the middle of a pause, but not in the middle of
+   a divided message, and that their latency is recorded when they are sent.
+*/
+
+public class MidiSchedulerCheck
+    {
+    static int failures = 0;
+
+    static void check(boolean test, String description)
+        {
+        if (!test)
+            {
+            failures++;
+            System.err.println("FAILED: " + description);
+            }
+        else System.err.println("ok: " + description);
+        }
+
+    // Records what was sent, as strings like "CC 7 3" or "PC 5"
+    static class Recorder implements Receiver
+        {
+        ArrayList<String> sent = new ArrayList<String>();
+        public synchronized void send(MidiMessage message, long timeStamp)
+            {
+            ShortMessage sm = (ShortMessage)message;
+            if (sm.getCommand() == ShortMessage.PROGRAM_CHANGE) sent.add("PC " + sm.getData1());
+            else if (sm.getCommand() == ShortMessage.NOTE_ON) sent.add("ON " + sm.getData1());
+            else if (sm.getCommand() == ShortMessage.NOTE_OFF) sent.add("OFF " + sm.getData1());
+            else sent.add("CC " + sm.getData1() + " " + sm.getData2());
+            }
+        public synchronized ArrayList<String> getSent() { return new ArrayList<String>(sent); }
+        public void close() { }
+        }
+
+    static MidiScheduler scheduler;
+    static Recorder recorder;
+
+    static void begin()
+        {
+        if (scheduler != null) scheduler.stop();
+        scheduler = new MidiScheduler();
+        recorder = new Recorder();
+        scheduler.schedulePause(200);          // hold everything else up in the queue
+        }
+
+    static void parameter(int param, int value) throws InvalidMidiDataException
+        {
+        scheduler.beginGroup(null, "param" + param);
+        scheduler.schedule(null, recorder, new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, param, value), 0);
+        scheduler.endGroup();
+        }
+
+    static void programChange(int program) throws InvalidMidiDataException
+        {
+        scheduler.schedule(null, recorder, new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, program, 0), 0);
+        }
+
+    static void note(boolean on, int note, LatencyHistogram histogram) throws InvalidMidiDataException
+        {
+        scheduler.scheduleUrgent(null, recorder, new ShortMessage(on ? ShortMessage.NOTE_ON : ShortMessage.NOTE_OFF, 0, note, 64), 
+            0, System.nanoTime(), histogram);
+        }
+
+    static void end(String[] expected, long dropped, String description)
+        {
+        if (!scheduler.waitUntilIdle(5000))
+            {
+            check(false, description + " (timed out)");
+            return;
+            }
+        ArrayList<String> sent = recorder.getSent();
+        boolean ok = sent.equals(Arrays.asList(expected)) && scheduler.getMessagesDropped() == dropped;
+        if (!ok) System.err.println("\tsent " + sent + ", " + scheduler.getMessagesDropped() + " dropped, but expected " + 
+            Arrays.asList(expected) + ", " + dropped + " dropped");
+        check(ok, description);
+        }
+
+    public static void main(String[] args) throws Exception
+        {
+        Main main = new Main("java edisyn.test.MidiSchedulerCheck",
+            args,
+            null,
+            new String[] { },
+            new String[] { },
+            new String[] { },
+            "MidiSchedulerCheck checks that MidiScheduler drops superseded parameter groups without\n" +
+            "reordering them relative to other messages.  Exits with status 1 if any check failed.",
+            true);
+
+        begin();
+        parameter(7, 1);
+        parameter(7, 2);
+        parameter(7, 3);
+        end(new String[] { "CC 7 3" }, 2, "a group at the end of the queue is replaced in place");
+
+        begin();
+        parameter(7, 1);
+        programChange(5);
+        parameter(7, 2);
+        end(new String[] { "PC 5", "CC 7 2" }, 1, "a group superseded after a program change is sent after the program change");
+
+        begin();
+        parameter(7, 1);
+        parameter(8, 1);
+        parameter(7, 2);
+        parameter(8, 2);
+        end(new String[] { "CC 7 2", "CC 8 2" }, 2, "interleaved groups for different parameters keep their relative order");
+
+        begin();
+        parameter(7, 1);
+        programChange(5);
+        parameter(7, 2);
+        parameter(7, 3);
+        programChange(6);
+        parameter(7, 4);
+        end(new String[] { "PC 5", "PC 6", "CC 7 4" }, 3, "a superseded group is dropped, and its replacement coalesces at the end");
+
+        begin();
+        parameter(7, 1);
+        programChange(5);
+        parameter(8, 1);
+        parameter(7, 2);
+        end(new String[] { "PC 5", "CC 8 1", "CC 7 2" }, 1, "a superseded group goes behind other parameters scheduled after it");
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        begin();
+        parameter(7, 1);
+        programChange(5);
+        note(true, 60, histogram);
+        note(false, 60, histogram);
+        note(true, 62, histogram);
+        end(new String[] { "ON 60", "OFF 60", "ON 62", "CC 7 1", "PC 5" }, 0, "urgent messages are sent in order ahead of the queue");
+        check(histogram.getCount() == 3, "the latency of each urgent message is recorded");
+        check(histogram.getMax() < 100, "urgent messages don't wait for a pause to finish (max latency " + histogram.getMax() + " ms)");
+
+        begin();
+        scheduler.schedule(null, recorder, new MidiMessage[] 
+            {
+            new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 1, 0),
+            new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 1, 1),
+            new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 1, 2),
+            }, 0, 100);
+        Thread.sleep(250);          // the initial pause is done, and we're in the middle of the divided message
+        note(true, 60, null);
+        end(new String[] { "CC 1 0", "CC 1 1", "CC 1 2", "ON 60" }, 0, "urgent messages aren't sent in the middle of a divided message");
+
+        scheduler.stop();
+        System.err.println(failures == 0 ? "All checks passed" : (failures + " checks FAILED"));
+        System.exit(failures == 0 ? 0 : 1);
+        }
+    }
@@ -6,177 +6,405 @@
 package edisyn.test;
 import edisyn.*;
 import edisyn.util.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
 
 public class SanityCheck
     {
     static boolean quiet = false;
     static boolean dump  = false;
-        
+
+    /** A synthesizer class, plus a particular configuration of it (such as the CZ-1 version of the CZ). */
+    static class Variant
+        {
+        String classname;
+        int setting;
+        String suffix;
+
+        Variant(String classname, int setting, String suffix)
+            {
+            this.classname = classname;
+            this.setting = setting;
+            this.suffix = suffix;
+            }
+
+        String getName() { return classname + suffix; }
+
+        Synth instantiate()
+            {
+            Synth synth = Synth.instantiate(classname, true, false, null);
+            if (synth instanceof edisyn.synth.casiocz.CasioCZ)
+                ((edisyn.synth.casiocz.CasioCZ)synth).setCZ1(setting == 1);
+            else if (synth instanceof edisyn.synth.alesisd4.AlesisD4)
+                ((edisyn.synth.alesisd4.AlesisD4)synth).setDM5(setting == 1, false);
+            else if (synth instanceof edisyn.synth.dsiprophet08.DSIProphet08)
+                ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(setting, false);
+            else if (synth instanceof edisyn.synth.yamahatg33.YamahaTG33)
+                ((edisyn.synth.yamahatg33.YamahaTG33)synth).setSynthType(setting, false);
+            else if (synth instanceof edisyn.synth.yamaha4op.Yamaha4Op)
+                ((edisyn.synth.yamaha4op.Yamaha4Op)synth).setSynthType(setting, false);
+            return synth;
+            }
+        }
+
+    /** Returns the configurations of the given synthesizer class which are tested. */
+    static ArrayList<Variant> getVariants(String classname) throws ClassNotFoundException
+        {
+        Class c = Class.forName(classname);
+        ArrayList<Variant> variants = new ArrayList<Variant>();
+        if (edisyn.synth.casiocz.CasioCZ.class.isAssignableFrom(c))
+            {
+            variants.add(new Variant(classname, 0, ""));
+            variants.add(new Variant(classname, 1, " (CZ1)"));
+            }
+        else if (edisyn.synth.alesisd4.AlesisD4.class.isAssignableFrom(c))
+            {
+            variants.add(new Variant(classname, 0, ""));
+            variants.add(new Variant(classname, 1, " (DM5)"));
+            }
+        else if (edisyn.synth.dsiprophet08.DSIProphet08.class.isAssignableFrom(c))
+            {
+            variants.add(new Variant(classname, edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_PROPHET_08, ""));
+            variants.add(new Variant(classname, edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_TETRA, " (Tetra)"));
+            variants.add(new Variant(classname, edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO, " (Mopho)"));
+            variants.add(new Variant(classname, edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_KEYBOARD, " (Mopho Keyboard and SE)"));
+            variants.add(new Variant(classname, edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_X4, " (Mopho x4)"));
+            }
+        else if (edisyn.synth.yamahatg33.YamahaTG33.class.isAssignableFrom(c))
+            {
+            variants.add(new Variant(classname, edisyn.synth.yamahatg33.YamahaTG33.TYPE_TG33, ""));
+            variants.add(new Variant(classname, edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY22, " (SY22)"));
+            variants.add(new Variant(classname, edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY35, " (SY35)"));
+            }
+        else if (edisyn.synth.yamaha4op.Yamaha4Op.class.isAssignableFrom(c))
+            {
+            variants.add(new Variant(classname, edisyn.synth.yamaha4op.Yamaha4Op.TYPE_TQ5_YS100_YS200_B200, ""));
+            variants.add(new Variant(classname, edisyn.synth.yamaha4op.Yamaha4Op.TYPE_V50, " (V50)"));
+            }
+        else
+            {
+            variants.add(new Variant(classname, 0, ""));
+            }
+        return variants;
+        }
+
     public static void main(String[] args) throws ClassNotFoundException
         {
-        Main main = new Main("java edisyn.synth.SanityCheck", 
-            args, 
-            null, 
-            new String[] { "-v", "-c", "-n", "-d" }, 
-            new String[] { Main.FLAG, Main.STRING, Main.INT, Main.FLAG }, 
-            new String[] { "Verbose", "Specific Class", "Number of Times", "Dump Test Sysex on Failure" },
+        Main main = new Main("java edisyn.synth.SanityCheck",
+            args,
+            null,
+            new String[] { "-v", "-c", "-n", "-d", "-p", "-s", "-t" },
+            new String[] { Main.FLAG, Main.STRING, Main.INT, Main.FLAG, Main.INT, Main.STRING, Main.INT },
+            new String[] { "Verbose", "Specific Class", "Number of Times", "Dump Test Sysex on Failure",
+                           "Number of Worker Threads", "Random Seed (with -p)", "Time Budget in Seconds (with -p)" },
             "SanityCheck is essentially a fuzzing tester.\n\n" +
             "SanityCheck goes through all of the synthesizers, or a specific one, and one by one it\n" +
             "does a simple sanity check on them.  First, it creates a synthesizer, randomizes\n" +
             "its parameters, and emits them to a data stream.  Then it creates a second copy of the\n" +
-            "synthesizer, reads the parameters in from that data stream, and compares the two.\n" + 
+            "synthesizer, reads the parameters in from that data stream, and compares the two.\n" +
             "They should be identical.  Any parameters that are not identical are referred to the\n" +
             "method Synth.testVerify(...) to determine if being non-identical is acceptable.  If not, the\n" +
             "parameter is noted as [FAIL] or [NULL] (indicating that one of the parameter values is\n" +
-            "null but not the other one).",
+            "null but not the other one).\n\n" +
+            "With -p, the synthesizers and rounds are instead spread over a pool of worker threads, each\n" +
+            "of which reuses its own pairs of the last few synthesizers it tested, resetting them before\n" +
+            "each round.  Each round\n" +
+            "is randomized with its own seed derived from -s, so runs with the same seed are repeatable\n" +
+            "regardless of the number of threads.  Failing rounds are printed as they finish, followed by\n" +
+            "a summary of the failures and the throughput of each synthesizer.  If -t is provided, rounds\n" +
+            "continue until the time budget runs out rather than for -n rounds.  Exits with status 1\n" +
+            "if any round failed or was not completed.",
             true);
-                
+
         quiet = !main.hasFlag("-v");
         dump = main.hasFlag("-d");
-        
+
         System.err.println("For help, try:  java edisyn.synth.SanityCheck -h");
-          
-        String[] c = Synth.getClassNames();          
+
+        String[] c = Synth.getClassNames();
         if (main.getString("-c") != null)
             c = new String[] { main.getString("-c").trim() };
-        
+
         int num = main.getInt("-n", 1);
         if (num < 0)
             {
             System.err.println("-n:  number must be >= 1");
             System.exit(1);
             }
-                
-        for(int n = 0; n < num; n++)
+
+        ArrayList<Variant> variants = new ArrayList<Variant>();
+        for(int j = 0; j < c.length; j++)
+            variants.addAll(getVariants(c[j]));
+
+        // The arpeggiator normally truncates and sorts its notes when emitting, so they'd not parse the same
+        edisyn.synth.maudiovenom.MAudioVenomArp.truncateAndSortOnEmit = false;
+
+        int threads = main.getInt("-p", 0);
+        if (threads < 0)
             {
-            if (num > 1) System.err.println("Round " + (n + 1) + "\n");
-                
-            for(int j = 0; j < c.length; j++)
+            System.err.println("-p:  number must be >= 1");
+            System.exit(1);
+            }
+        
+        if (threads > 0)
+            {
+            int seconds = main.getInt("-t", 0);
+            if (seconds < 0)
+                {
+                System.err.println("-t:  number must be >= 1");
+                System.exit(1);
+                }
+            long seed = System.currentTimeMillis();
+            if (main.getString("-s") != null)
                 {
-                Synth synth = Synth.instantiate(c[j], true, false, null);
-                Synth synth2 = Synth.instantiate(c[j], true, false, null);
-                if (synth instanceof edisyn.synth.casiocz.CasioCZ)
+                try { seed = Long.parseLong(main.getString("-s").trim()); }
+                catch (NumberFormatException ex)
                     {
-                    ((edisyn.synth.casiocz.CasioCZ)synth).setCZ1(false);
-                    ((edisyn.synth.casiocz.CasioCZ)synth2).setCZ1(false);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.casiocz.CasioCZ)synth).setCZ1(true);
-                    ((edisyn.synth.casiocz.CasioCZ)synth2).setCZ1(true);
-                    System.err.println(c[j] + " (CZ1)");
-                    test(synth, synth2);
+                    System.err.println("-s:  seed must be an integer");
+                    System.exit(1);
                     }
-                else if (synth instanceof edisyn.synth.korgwavestation.KorgWavestationSequence)
+                }
+            boolean failed = new Pool(variants, threads, num, seconds, seed).run();
+            System.exit(failed ? 1 : 0);
+            }
+        else
+            {
+            for(int n = 0; n < num; n++)
+                {
+                if (num > 1) System.err.println("Round " + (n + 1) + "\n");
+
+                for(int j = 0; j < variants.size(); j++)
                     {
-                    ((edisyn.synth.korgwavestation.KorgWavestationSequence)synth).setBlockSending(true);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    System.err.println(c[j]);
+                    Variant variant = variants.get(j);
+                    Synth synth = variant.instantiate();
+                    Synth synth2 = variant.instantiate();
+                    System.err.println(variant.getName());
                     test(synth, synth2);
                     }
-                else if (synth instanceof edisyn.synth.alesisd4.AlesisD4)
+                }
+            }
+
+        edisyn.synth.maudiovenom.MAudioVenomArp.truncateAndSortOnEmit = true;
+        }
+
+
+    /** Runs rounds of variants on a pool of worker threads, and tallies the results. */
+    static class Pool
+        {
+        /** The number of variants each worker keeps a pair of synthesizers for.  Keeping a pair of
+            every variant would take memory proportional to threads x variants. */
+        public static final int MAX_PAIRS = 1;
+        
+        /** A pair of synthesizers for a variant, and their initial models. */
+        static class Pair
+            {
+            Synth[] synths;
+            Model[] initial;
+            }
+        
+        ArrayList<Variant> variants;
+        int threads;
+        int rounds;
+        long deadline;                          // in System.nanoTime(), or 0 if we're doing a fixed number of rounds
+        long seed;
+        AtomicLong next = new AtomicLong(0);
+
+        // Per variant, guarded by this
+        int[] completed;
+        int[] failures;
+        long[] nanos;
+        ArrayList<HashMap<String, Integer>> problems = new ArrayList<HashMap<String, Integer>>();
+
+        Pool(ArrayList<Variant> variants, int threads, int rounds, int seconds, long seed)
+            {
+            this.variants = variants;
+            this.threads = threads;
+            this.rounds = rounds;
+            this.deadline = (seconds > 0 ? System.nanoTime() + seconds * 1000000000L : 0);
+            this.seed = seed;
+            completed = new int[variants.size()];
+            failures = new int[variants.size()];
+            nanos = new long[variants.size()];
+            for(int i = 0; i < variants.size(); i++)
+                problems.add(new HashMap<String, Integer>());
+            }
+
+        /** Returns the seed for the given round of the given variant. */
+        long getSeed(Variant variant, long round)
+            {
+            return seed * 1000003L + round * 31L + variant.getName().hashCode();
+            }
+
+        /** Runs all the rounds, prints the results, and returns true if any round failed. */
+        boolean run()
+            {
+            System.err.println("Seed " + seed + ", " + threads + " threads, " +
+                (deadline == 0 ? rounds + " rounds" : "until the time budget runs out"));
+            long start = System.nanoTime();
+            Thread[] workers = new Thread[threads];
+            for(int i = 0; i < workers.length; i++)
+                {
+                workers[i] = new Thread(new Runnable()
                     {
-                    ((edisyn.synth.alesisd4.AlesisD4)synth).setDM5(false, false);
-                    ((edisyn.synth.alesisd4.AlesisD4)synth2).setDM5(false, false);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.alesisd4.AlesisD4)synth).setDM5(true, false);
-                    ((edisyn.synth.alesisd4.AlesisD4)synth2).setDM5(true, false);
-                    System.err.println(c[j] + " (DM5)");
-                    test(synth, synth2);
+                    public void run() { work(); }
+                    });
+                workers[i].setName("SanityCheck Worker " + i);
+                workers[i].start();
+                }
+            for(int i = 0; i < workers.length; i++)
+                {
+                try { workers[i].join(); }
+                catch (InterruptedException ex) { }
+                }
+            return report((System.nanoTime() - start) / 1000000000.0);
+            }
+
+        void work()
+            {
+            // Each worker builds its own pair of each synthesizer the first time it needs them, and
+            // resets them to their initial models before each round.  Only the most recently used
+            // MAX_PAIRS pairs are kept.
+            LinkedHashMap<Integer, Pair> pairs = new LinkedHashMap<Integer, Pair>(16, 0.75f, true);
+            while(true)
+                {
+                if (deadline != 0 && System.nanoTime() >= deadline) break;
+                long job = next.getAndIncrement();
+                int v;
+                long round;
+                if (deadline == 0)
+                    {
+                    // Do all the rounds of one variant before moving on to the next, so the workers
+                    // are all working on the same one or two variants at a time
+                    if (job >= (long)rounds * variants.size()) break;
+                    v = (int)(job / rounds);
+                    round = job % rounds;
                     }
-                else if (synth instanceof edisyn.synth.dsiprophet08.DSIProphet08)
+                else
                     {
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_PROPHET_08, false);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth2).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_PROPHET_08, false);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_TETRA, false);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth2).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_TETRA, false);
-                    System.err.println(c[j] + " (Tetra)");
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO, false);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth2).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO, false);
-                    System.err.println(c[j] + " (Mopho)");
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_KEYBOARD, false);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth2).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_KEYBOARD, false);
-                    System.err.println(c[j] + " (Mopho Keyboard and SE)");
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_X4, false);
-                    ((edisyn.synth.dsiprophet08.DSIProphet08)synth2).setType(edisyn.synth.dsiprophet08.DSIProphet08.SYNTH_TYPE_MOPHO_X4, false);
-                    System.err.println(c[j] + " (Mopho x4)");
-                    test(synth, synth2);
+                    v = (int)(job % variants.size());
+                    round = job / variants.size();
                     }
-                else if (synth instanceof edisyn.synth.yamahatg33.YamahaTG33)
+                Variant variant = variants.get(v);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(bytes);
+                HashMap<String, Integer> found = new HashMap<String, Integer>();
+                boolean failed = false;
+                long time = 0;
+                try
                     {
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_TG33, false);
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth2).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_TG33, false);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY22, false);
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth2).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY22, false);
-                    System.err.println(c[j] + " (SY22)");
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY35, false);
-                    ((edisyn.synth.yamahatg33.YamahaTG33)synth2).setSynthType(edisyn.synth.yamahatg33.YamahaTG33.TYPE_SY35, false);
-                    System.err.println(c[j] + " (SY35)");
-                    test(synth, synth2);
+                    Pair pair = pairs.get(v);
+                    if (pair == null)
+                        {
+                        // Let go of the least recently used pair before building the new one
+                        if (pairs.size() >= MAX_PAIRS)
+                            {
+                            Iterator<Integer> eldest = pairs.keySet().iterator();
+                            eldest.next();
+                            eldest.remove();
+                            }
+                        pair = new Pair();
+                        synchronized(Pool.class)                // building Swing widgets in parallel is asking for trouble
+                            {
+                            pair.synths = new Synth[] { variant.instantiate(), variant.instantiate() };
+                            }
+                        pair.initial = new Model[] { pair.synths[0].getModel().copy(), pair.synths[1].getModel().copy() };
+                        pairs.put(v, pair);
+                        }
+                    pair.initial[0].copyValuesTo(pair.synths[0].getModel());
+                    pair.initial[1].copyValuesTo(pair.synths[1].getModel());
+                    pair.synths[0].getRandom().setSeed(getSeed(variant, round));
+
+                    long t = System.nanoTime();
+                    failed = test(pair.synths[0], pair.synths[1], out, found);
+                    time = System.nanoTime() - t;
                     }
-                else if (synth instanceof edisyn.synth.yamaha4op.Yamaha4Op)
+                catch (Throwable ex)            // including OutOfMemoryError and the like, which would otherwise kill the worker
                     {
-                    ((edisyn.synth.yamaha4op.Yamaha4Op)synth).setSynthType(edisyn.synth.yamaha4op.Yamaha4Op.TYPE_TQ5_YS100_YS200_B200, false);
-                    ((edisyn.synth.yamaha4op.Yamaha4Op)synth2).setSynthType(edisyn.synth.yamaha4op.Yamaha4Op.TYPE_TQ5_YS100_YS200_B200, false);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    ((edisyn.synth.yamaha4op.Yamaha4Op)synth).setSynthType(edisyn.synth.yamaha4op.Yamaha4Op.TYPE_V50, false);
-                    ((edisyn.synth.yamaha4op.Yamaha4Op)synth2).setSynthType(edisyn.synth.yamaha4op.Yamaha4Op.TYPE_V50, false);
-                    System.err.println(c[j] + " (V50)");
-                    test(synth, synth2);
+                    pairs.clear();              // in case they're broken, or to free up memory
+                    ex.printStackTrace(out);
+                    found.put("Exception " + ex.getClass().getName(), 1);
+                    failed = true;
                     }
-                else if (synth instanceof edisyn.synth.maudiovenom.MAudioVenomArp)
+                out.flush();
+
+                synchronized(this)
                     {
-                    edisyn.synth.maudiovenom.MAudioVenomArp.truncateAndSortOnEmit = false;
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
-                    edisyn.synth.maudiovenom.MAudioVenomArp.truncateAndSortOnEmit = true;
+                    completed[v]++;
+                    nanos[v] += time;
+                    if (failed)
+                        {
+                        failures[v]++;
+                        HashMap<String, Integer> p = problems.get(v);
+                        for(String key : found.keySet())
+                            {
+                            Integer count = p.get(key);
+                            p.put(key, (count == null ? 1 : count.intValue() + 1));
+                            }
+                        }
+                    if (failed || !quiet)
+                        {
+                        System.err.println(variant.getName() + " round " + (round + 1) + (failed ? " FAILED" : ""));
+                        System.err.print(bytes.toString());
+                        }
                     }
-                else
+                }
+            }
+
+        synchronized boolean report(double seconds)
+            {
+            int totalRounds = 0;
+            int totalFailures = 0;
+            System.err.println();
+            System.err.println("Synth\tRounds\tFailed\tRound Trips/Sec");
+            for(int v = 0; v < variants.size(); v++)
+                {
+                totalRounds += completed[v];
+                totalFailures += failures[v];
+                System.err.println(variants.get(v).getName() + "\t" + completed[v] + "\t" + failures[v] + "\t" +
+                    (nanos[v] == 0 ? "-" : String.format("%.1f", completed[v] / (nanos[v] / 1000000000.0))));
+                }
+
+            if (totalFailures > 0)
+                {
+                System.err.println();
+                System.err.println("Failures");
+                for(int v = 0; v < variants.size(); v++)
                     {
-                    synth = Synth.instantiate(c[j], true, false, null);
-                    synth2 = Synth.instantiate(c[j], true, false, null);
-                    System.err.println(c[j]);
-                    test(synth, synth2);
+                    if (failures[v] == 0) continue;
+                    System.err.println(variants.get(v).getName() + ":  " + failures[v] + " of " + completed[v] + " rounds");
+                    TreeMap<String, Integer> sorted = new TreeMap<String, Integer>(problems.get(v));
+                    for(String key : sorted.keySet())
+                        System.err.println("\t" + key + " in " + sorted.get(key) + " rounds");
                     }
                 }
+
+            // If we were doing a fixed number of rounds, did they all get done?
+            int missing = (deadline == 0 ? rounds * variants.size() - totalRounds : 0);
+
+            System.err.println();
+            System.err.println(totalRounds + " round trips, " + totalFailures + " failed, in " + String.format("%.1f", seconds) +
+                " seconds (" + String.format("%.1f", totalRounds / seconds) + " round trips/sec), seed " + seed);
+            if (missing > 0)
+                System.err.println(missing + " round trips were not completed");
+            return totalFailures > 0 || missing > 0;
             }
         }
-        
+
+
     public static void test(Synth synth, Synth synth2)
+        {
+        test(synth, synth2, System.err, null);
+        }
+
+    /** Tests a round trip from SYNTH to SYNTH2, printing problems to OUT.  If PROBLEMS is non-null, each kind
+        of problem found is added to it.  Returns true if the test failed. */
+    public static boolean test(Synth synth, Synth synth2, PrintStream out, HashMap<String, Integer> problems)
         {
         boolean failed = false;
         byte[] data = new byte[0];
-        
+
         try
             {
             // prepare so raw parsing doesn't try to push a million things on the undo stack and write stuff
@@ -184,15 +412,16 @@ public class SanityCheck
             synth.getUndo().setWillPush(false);
             synth2.setSendMIDI(false);
             synth2.getUndo().setWillPush(false);
-                
+
             synth.doMutate(1.0);
             data = synth.flatten(synth.emitAll((Model)null, false, true));
             if (!synth2.recognizeLocal(data))
                 {
-                System.err.println("\t [FAIL] Not Recognized");
+                out.println("\t [FAIL] Not Recognized");
+                if (problems != null) problems.put("[FAIL] Not Recognized", 1);
                 for(int i = 0; i < data.length; i++)
                     {
-                    System.err.println("" + i + " " + StringUtility.toHex(data[i]));
+                    out.println("" + i + " " + StringUtility.toHex(data[i]));
                     }
                 failed = true;
                 }
@@ -205,33 +434,38 @@ public class SanityCheck
                 if (obj1 == null || obj2 == null)
                     {
                     boolean res = synth.testVerify(synth2, keys[i], obj1, obj2);
-                    if (!quiet || !res ) System.err.println((res ? "\t[OKAY] " : "\t[NULL] ") + keys[i] + " is " + obj1 + " vs " + obj2);
+                    if (!quiet || !res ) out.println((res ? "\t[OKAY] " : "\t[NULL] ") + keys[i] + " is " + obj1 + " vs " + obj2);
+                    if (!res && problems != null) problems.put("[NULL] " + keys[i], 1);
                     failed = failed || !res;
                     }
                 else if (!(obj1.equals(obj2)))
                     {
                     boolean res = synth.testVerify(synth2, keys[i], obj1, obj2);
-                    if (!quiet || !res ) System.err.println((res ? "\t[OKAY] " : "\t[FAIL] ") + keys[i] + " is [" + obj1 + "] vs [" + obj2 + "]");
+                    if (!quiet || !res ) out.println((res ? "\t[OKAY] " : "\t[FAIL] ") + keys[i] + " is [" + obj1 + "] vs [" + obj2 + "]");
+                    if (!res && problems != null) problems.put("[FAIL] " + keys[i], 1);
                     failed = failed || !res;
                     }
                 }
             }
         catch (Exception ex)
             {
-            ex.printStackTrace();
+            ex.printStackTrace(out);
+            if (problems != null) problems.put("Exception " + ex.getClass().getName(), 1);
             failed = true;
             }
-        
+
         if (failed && dump)
             {
-            System.err.println("DUMP");
-            System.err.println("Length: " +  data.length);
+            out.println("DUMP");
+            out.println("Length: " +  data.length);
             for(int i = 0; i < data.length; i++)
                 {
-                System.err.println("" + i + " " + StringUtility.toHex(data[i]) + " " + data[i] + " " + ((data[i] & 0xFF) < 32 ? "" : (char)(data[i] & 0xFF)));
+                out.println("" + i + " " + StringUtility.toHex(data[i]) + " " + data[i] + " " + ((data[i] & 0xFF) < 32 ? "" : (char)(data[i] & 0xFF)));
                 }
-            System.err.println("---------");
-            System.err.println();
+            out.println("---------");
+            out.println();
             }
+
+        return failed;
         }
     }
@@ -0,0 +1,140 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.test;
+import edisyn.*;
+import java.util.*;
+import javax.sound.midi.*;
+
+/**
+   Checks that Midi reassembles incoming sysex messages which arrive in fragments, on each
+   of the In, Key, and Key 2 ports.  A message is split into an 0xF0 fragment followed by 
+   0xF7 continuation fragments, as some MIDI drivers deliver long messages, and each fragment 
+   is fed to the port in turn: only the last should return the message, and it should be 
+   identical to the original.  Also checks that a stray continuation is ignored, that a new
+   0xF0 abandons an unfinished message, and that messages beyond the maximum size are discarded.
+*/
+
+public class SysexCheck
+    {
+    static int failures = 0;
+
+    static void check(boolean test, String description)
+        {
+        if (!test)
+            {
+            failures++;
+            System.err.println("FAILED: " + description);
+            }
+        else System.err.println("ok: " + description);
+        }
+
+    // Builds a message of the given length, F0 ... F7
+    static byte[] buildMessage(Random random, int length)
+        {
+        byte[] data = new byte[length];
+        data[0] = (byte)0xF0;
+        for(int i = 1; i < length - 1; i++)
+            data[i] = (byte)random.nextInt(128);
+        data[length - 1] = (byte)0xF7;
+        return data;
+        }
+
+    // Splits a message into an F0 fragment and F7 continuation fragments of at most SIZE bytes of data each
+    static SysexMessage[] split(byte[] data, int size) throws InvalidMidiDataException
+        {
+        ArrayList<SysexMessage> fragments = new ArrayList<SysexMessage>();
+        int first = Math.min(size, data.length);
+        fragments.add(new SysexMessage(Arrays.copyOfRange(data, 0, first), first));
+        for(int pos = first; pos < data.length; pos += size)
+            {
+            int len = Math.min(size, data.length - pos);
+            byte[] d = new byte[len];
+            System.arraycopy(data, pos, d, 0, len);
+            fragments.add(new SysexMessage(0xF7, d, len));
+            }
+        return fragments.toArray(new SysexMessage[0]);
+        }
+
+    // Which port to feed
+    static final String[] PORTS = new String[] { "In", "Key", "Key 2" };
+
+    static byte[] gather(Midi midi, int port, SysexMessage message)
+        {
+        if (port == 0) return midi.gatherInSysexData(message);
+        else if (port == 1) return midi.gatherKeySysexData(message);
+        else return midi.gatherKey2SysexData(message);
+        }
+
+    // Feeds the fragments to the port, returning what the last one returned, or null if any earlier one returned something
+    static byte[] feed(Midi midi, int port, SysexMessage[] fragments)
+        {
+        for(int i = 0; i < fragments.length - 1; i++)
+            if (gather(midi, port, fragments[i]) != null) return null;
+        return gather(midi, port, fragments[fragments.length - 1]);
+        }
+
+    public static void main(String[] args) throws Exception
+        {
+        Main main = new Main("java edisyn.test.SysexCheck",
+            args,
+            null,
+            new String[] { },
+            new String[] { },
+            new String[] { },
+            "SysexCheck checks that sysex messages which arrive in fragments are reassembled correctly\n" +
+            "on the In, Key, and Key 2 ports.  Exits with status 1 if any check failed.",
+            true);
+
+        Random random = new Random(0);
+        Midi midi = new Midi();
+        for(int port = 0; port < PORTS.length; port++)
+            {
+            String name = PORTS[port] + ": ";
+
+            byte[] whole = buildMessage(random, 100);
+            byte[] result = gather(midi, port, new SysexMessage(whole, whole.length));
+            check(Arrays.equals(whole, result), name + "an unsplit message is returned as is");
+
+            byte[] data = buildMessage(random, 5000);
+            result = feed(midi, port, split(data, 256));
+            check(Arrays.equals(data, result), name + "a message split into 256-byte fragments is reassembled");
+
+            data = buildMessage(random, 3000);
+            result = feed(midi, port, split(data, 1));
+            check(Arrays.equals(data, result), name + "a message split into 1-byte fragments is reassembled");
+
+            byte[] stray = new byte[] { 0x01, 0x02, (byte)0xF7 };
+            check(gather(midi, port, new SysexMessage(0xF7, stray, stray.length)) == null, name + "a stray continuation is ignored");
+
+            SysexMessage[] abandoned = split(buildMessage(random, 1000), 300);
+            for(int i = 0; i < abandoned.length - 1; i++)
+                gather(midi, port, abandoned[i]);
+            data = buildMessage(random, 700);
+            result = feed(midi, port, split(data, 300));
+            check(Arrays.equals(data, result), name + "a new message abandons an unfinished one");
+            }
+
+        Midi.SysexAssembler assembler = new Midi.SysexAssembler();
+        assembler.setMaxSize(1000);
+        SysexMessage[] fragments = split(buildMessage(random, 2000), 256);
+        byte[] result = null;
+        for(int i = 0; i < fragments.length; i++)
+            {
+            SysexMessage m = fragments[i];
+            result = assembler.add(m.getMessage(), m.getLength());
+            if (result != null) break;
+            }
+        check(result == null && assembler.getMessagesDiscarded() == 1, "a message beyond the maximum size is discarded");
+        byte[] data = buildMessage(random, 900);
+        fragments = split(data, 256);
+        for(int i = 0; i < fragments.length; i++)
+            result = assembler.add(fragments[i].getMessage(), fragments[i].getLength());
+        check(Arrays.equals(data, result), "a message within the maximum size is reassembled afterwards");
+
+        System.err.println(failures == 0 ? "All checks passed" : (failures + " checks FAILED"));
+        System.exit(failures == 0 ? 0 : 1);
+        }
+    }
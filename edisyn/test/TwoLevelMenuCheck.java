@@ -0,0 +1,137 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.test;
+import edisyn.gui.*;
+import java.util.*;
+import javax.swing.*;
+
+/**
+   Checks that TwoLevelMenu.refresh() rebuilds its secondary menus correctly after their items
+   change how they display themselves, as the bulk dialog's patch names do when they arrive in
+   the background: the items and the selection stay the same, the menus grow to fit the new
+   names and keep the same width as one another, and no spurious selection is reported.
+*/
+
+public class TwoLevelMenuCheck
+    {
+    static int failures = 0;
+
+    static void check(boolean test, String description)
+        {
+        if (!test)
+            {
+            failures++;
+            System.err.println("FAILED: " + description);
+            }
+        else System.err.println("ok: " + description);
+        }
+
+    // An item whose name can change, like a patch which hasn't been named yet
+    static class Item
+        {
+        String name;
+        public Item(String name) { this.name = name; }
+        public String toString() { return name; }
+        }
+
+    static int selections = 0;
+
+    public static void main(String[] args) throws Exception
+        {
+        Main main = new Main("java edisyn.test.TwoLevelMenuCheck",
+            args,
+            null,
+            new String[] { },
+            new String[] { },
+            new String[] { },
+            "TwoLevelMenuCheck checks that TwoLevelMenu.refresh() rebuilds its menus correctly when\n" +
+            "their items are renamed.  Exits with status 1 if any check failed.",
+            true);
+
+        SwingUtilities.invokeAndWait(new Runnable()
+            {
+            public void run()
+                {
+                Item[][] items = new Item[3][];
+                for(int i = 0; i < items.length; i++)
+                    {
+                    items[i] = new Item[10 + i];
+                    for(int j = 0; j < items[i].length; j++)
+                        items[i][j] = new Item("Reading...");
+                    }
+                TwoLevelMenu menu = new TwoLevelMenu(new String[] { "A", "B", "C" }, items, "Bank", "Patch", 1, 4)
+                    {
+                    public void selection(int primary, int secondary) { selections++; }
+                    };
+                
+                int before = menu.getComponent(0).getPreferredSize().width;
+                for(int i = 0; i < items.length; i++)
+                    for(int j = 0; j < items[i].length; j++)
+                        items[i][j].name = "A Much Longer Patch Name " + i + "." + j;
+                menu.refresh();
+                int after = menu.getComponent(0).getPreferredSize().width;
+
+                check(menu.getPrimary() == 1 && menu.getSecondary() == 4, "the selection is kept");
+                check(selections == 0, "refresh() doesn't report a selection");
+                check(after > before, "the menu grows to fit the new names");
+
+                JComboBox<?>[] boxes = findSecondaryBoxes(menu, items);
+                boolean same = true;
+                for(int i = 0; i < boxes.length; i++)
+                    {
+                    if (boxes[i].getItemCount() != items[i].length) same = false;
+                    else for(int j = 0; j < items[i].length; j++)
+                        if (boxes[i].getItemAt(j) != items[i][j]) same = false;
+                    }
+                check(same, "each menu holds the same items as before");
+                
+                boolean widths = true;
+                for(int i = 1; i < boxes.length; i++)
+                    if (boxes[i].getPreferredSize().width != boxes[0].getPreferredSize().width) widths = false;
+                check(widths, "the menus all have the same width");
+                
+                menu.refresh();
+                check(menu.getPrimary() == 1 && menu.getSecondary() == 4 && selections == 0, "refreshing again changes nothing");
+                }
+            });
+
+        System.err.println(failures == 0 ? "All checks passed" : (failures + " checks FAILED"));
+        System.exit(failures == 0 ? 0 : 1);
+        }
+
+    // Switches the menu to each primary in turn to find its secondary menus, then switches it back.
+    static JComboBox<?>[] findSecondaryBoxes(TwoLevelMenu menu, Item[][] items)
+        {
+        JComboBox<?>[] boxes = new JComboBox<?>[items.length];
+        JComboBox<?> primary = findBox(menu, null);
+        int p = primary.getSelectedIndex();
+        int before = selections;
+        for(int i = 0; i < items.length; i++)
+            {
+            primary.setSelectedIndex(i);
+            boxes[i] = findBox(menu, primary);
+            }
+        primary.setSelectedIndex(p);
+        selections = before;
+        return boxes;
+        }
+
+    // Returns the first JComboBox in the component tree other than NOT
+    static JComboBox<?> findBox(java.awt.Container container, JComboBox<?> not)
+        {
+        for(int i = 0; i < container.getComponentCount(); i++)
+            {
+            java.awt.Component c = container.getComponent(i);
+            if (c instanceof JComboBox && c != not) return (JComboBox<?>)c;
+            if (c instanceof java.awt.Container && !(c instanceof JComboBox))
+                {
+                JComboBox<?> box = findBox((java.awt.Container)c, not);
+                if (box != null) return box;
+                }
+            }
+        return null;
+        }
+    }
@@ -0,0 +1,295 @@
+/***
+    Copyright 2017 by Sean Luke
+    Licensed under the Apache License version 2.0
+*/
+
+package edisyn.test;
+import edisyn.*;
+import java.util.*;
+
+/**
+   Checks Undo against a simple reference: a pair of stacks holding a full copy of every state.
+   Random edits are pushed, undone, and redone on a model made up for the purpose, and after every
+   step the model is compared against the state the reference says it should be in, and the sizes
+   of the stacks are compared.  The edits include changing a few keys (which are stored as deltas),
+   changing most of the keys (which are stored as checkpoints), adding keys, and changing bounds and
+   statuses (which give the model a new schema).  The memory cap is changed from time to time, so that
+   the oldest states are evicted, and the memory which Undo reports is compared against the memory
+   recomputed from its entries.
+*/
+
+public class UndoCheck
+    {
+    static final int NUM_KEYS = 200;
+    static final int NUM_STRING_KEYS = 4;
+
+    static int failures = 0;
+
+    static void check(boolean test, String description)
+        {
+        if (!test)
+            {
+            failures++;
+            System.err.println("FAILED: " + description);
+            }
+        else System.err.println("ok: " + description);
+        }
+
+    static Undo undo;
+    static Model model;
+    static Random random;
+
+    // The reference stacks: the top is the last element
+    static ArrayList<Model> undoStates = new ArrayList<Model>();
+    static ArrayList<Model> redoStates = new ArrayList<Model>();
+
+    // The last key set(...) in the model, which doesn't push if set again, see Model.setAt(...)
+    static String lastKey = null;
+    static int numAddedKeys = 0;
+
+    // counts of what was exercised
+    static int pushes = 0;
+    static int undos = 0;
+    static int redos = 0;
+    static int discards = 0;
+    static int evictions = 0;
+    static int schemaChanges = 0;
+
+    // the first mismatches found
+    static ArrayList<String> problems = new ArrayList<String>();
+
+    static void problem(String description)
+        {
+        if (problems.size() < 10) problems.add(description);
+        }
+
+    static Model buildModel()
+        {
+        Model model = new Model();
+        for(int i = 0; i < NUM_KEYS; i++)
+            {
+            model.set("key" + i, random.nextInt(128));
+            model.setMinMax("key" + i, 0, 127);
+            model.setStatus("key" + i, Model.STATUS_FREE);
+            }
+        for(int i = 0; i < NUM_STRING_KEYS; i++)
+            {
+            model.set("name" + i, "Name " + i);
+            model.setStatus("name" + i, Model.STATUS_IMMUTABLE);
+            }
+        return model;
+        }
+
+    static String intKey() { return "key" + random.nextInt(NUM_KEYS); }
+
+    // Sets a key, tracking lastKey
+    static void set(String key, int value) { model.set(key, value); lastKey = key; }
+    static void set(String key, String value) { model.set(key, value); lastKey = key; }
+
+    // Returns the first key in which MODEL differs from STATE in value, bounds, or status, or null if there
+    // is none.  Keys which MODEL has gained since STATE was saved are ignored.
+    static String difference(Model state, Model model)
+        {
+        String[] keys = state.getKeys();
+        for(int i = 0; i < keys.length; i++)
+            {
+            String key = keys[i];
+            if (!model.exists(key)) return key + " (missing)";
+            if (state.isString(key))
+                {
+                if (!model.isString(key) || !state.get(key, "").equals(model.get(key, ""))) return key + " (value)";
+                }
+            else
+                {
+                if (model.isString(key) || state.get(key) != model.get(key)) return key + " (value)";
+                }
+            if (state.minExists(key) != model.minExists(key) || (state.minExists(key) && state.getMin(key) != model.getMin(key))) return key + " (min)";
+            if (state.maxExists(key) != model.maxExists(key) || (state.maxExists(key) && state.getMax(key) != model.getMax(key))) return key + " (max)";
+            if (state.getStatus(key) != model.getStatus(key)) return key + " (status)";
+            }
+        return null;
+        }
+
+    // Pushes, then makes a random edit without pushing again
+    static void edit()
+        {
+        undo.push(model);
+        undoStates.add(model.copy());
+        redoStates.clear();
+        pushes++;
+
+        undo.setWillPush(false);
+        int kind = random.nextInt(8);
+        if (kind < 4)                   // a few keys: a delta
+            {
+            int n = random.nextInt(5) + 1;
+            for(int i = 0; i < n; i++)
+                set(intKey(), random.nextInt(128));
+            }
+        else if (kind == 4)             // a string
+            {
+            set("name" + random.nextInt(NUM_STRING_KEYS), "Name " + random.nextInt(1000));
+            }
+        else if (kind == 5)             // most of the keys: a checkpoint
+            {
+            for(int i = 0; i < NUM_KEYS; i++)
+                if (random.nextInt(4) != 0)
+                    set("key" + i, random.nextInt(128));
+            }
+        else if (kind == 6)             // new bounds or status, and perhaps a value too
+            {
+            String key = intKey();
+            if (random.nextBoolean()) model.setMax(key, 64 + random.nextInt(64));
+            else model.setStatus(key, random.nextBoolean() ? Model.STATUS_FREE : Model.STATUS_IMMUTABLE);
+            if (random.nextBoolean()) set(key, random.nextInt(64));
+            schemaChanges++;
+            }
+        else                            // a new key
+            {
+            set("added" + (numAddedKeys++), random.nextInt(128));
+            schemaChanges++;
+            }
+        undo.setWillPush(true);
+        }
+
+    // Sets a single key with pushing turned on, as a widget would
+    static void setOne()
+        {
+        String key = intKey();
+        int value = random.nextInt(128);
+        if (!key.equals(lastKey) && model.get(key) != value)
+            {
+            undoStates.add(model.copy());
+            redoStates.clear();
+            pushes++;
+            }
+        set(key, value);
+        }
+
+    static void doUndo(int step)
+        {
+        Model expected = model;
+        if (!undoStates.isEmpty())
+            {
+            Model top = undoStates.remove(undoStates.size() - 1);
+            if (difference(top, model) == null)
+                {
+                // Undo discards the top rather than pushing an identical state on the redo stack
+                discards++;
+                }
+            else
+                {
+                redoStates.add(model.copy());
+                lastKey = null;
+                }
+            expected = top;
+            undos++;
+            }
+        if (undo.undo(model) != model) problem("Step " + step + ": undo didn't return the current model");
+        String diff = difference(expected, model);
+        if (diff != null) problem("Step " + step + ": undo restored the wrong state, starting with " + diff);
+        }
+
+    static void doRedo(int step)
+        {
+        Model expected = model;
+        if (!redoStates.isEmpty())
+            {
+            undoStates.add(model.copy());
+            expected = redoStates.remove(redoStates.size() - 1);
+            lastKey = null;
+            redos++;
+            }
+        if (undo.redo(model) != model) problem("Step " + step + ": redo didn't return the current model");
+        String diff = difference(expected, model);
+        if (diff != null) problem("Step " + step + ": redo restored the wrong state, starting with " + diff);
+        }
+
+    // Compares the stacks' sizes and memory against the reference, accounting for eviction
+    static void compare(int step)
+        {
+        if (undo.undo.size() > undoStates.size() || undo.redo.size() > redoStates.size())
+            problem("Step " + step + ": stacks hold " + undo.undo.size() + "/" + undo.redo.size() +
+                " states but should hold at most " + undoStates.size() + "/" + redoStates.size());
+
+        // Undo discards the oldest states to stay under its cap, so we do too
+        while(undoStates.size() > undo.undo.size()) { undoStates.remove(0); evictions++; }
+        while(redoStates.size() > undo.redo.size()) { redoStates.remove(0); evictions++; }
+
+        if (undo.getMemory() != undo.measureMemory())
+            problem("Step " + step + ": getMemory() is " + undo.getMemory() + " but the entries hold " + undo.measureMemory());
+        if (undo.getMemory() > undo.getMaxMemory() && (undo.undo.size() > 1 || undo.redo.size() > 1))
+            problem("Step " + step + ": " + undo.getMemory() + " bytes held, over the cap of " + undo.getMaxMemory());
+        if ((undo.undo.size() == 0) != undoStates.isEmpty() || (undo.redo.size() == 0) != redoStates.isEmpty())
+            problem("Step " + step + ": one stack is empty and the other isn't");
+        }
+
+    // Undoes all the way down, then redoes all the way up, checking each state as we go
+    static void unwind(int step)
+        {
+        while(!undoStates.isEmpty()) { doUndo(step); compare(step); }
+        doUndo(step);           // undoing an empty stack does nothing
+        compare(step);
+        while(!redoStates.isEmpty()) { doRedo(step); compare(step); }
+        doRedo(step);           // redoing an empty stack does nothing
+        compare(step);
+        }
+
+    static void run(int steps)
+        {
+        for(int step = 0; step < steps; step++)
+            {
+            int action = random.nextInt(20);
+            if (action < 7) edit();
+            else if (action < 10) setOne();
+            else if (action < 15) doUndo(step);
+            else if (action < 19) doRedo(step);
+            else
+                {
+                // Sometimes no cap to speak of, sometimes room for only a handful of full states
+                long cap = (random.nextInt(3) == 0 ? Undo.DEFAULT_MAX_MEMORY : 10000 + random.nextInt(30000));
+                undo.setMaxMemory(cap);
+                }
+            compare(step);
+            }
+        unwind(steps);
+        }
+
+    public static void main(String[] args) throws Exception
+        {
+        Main main = new Main("java edisyn.test.UndoCheck",
+            args,
+            null,
+            new String[] { "-n", "-s" },
+            new String[] { Main.INT, Main.INT },
+            new String[] { "Number of Random Steps", "Random Number Seed" },
+            "UndoCheck pushes, undoes, and redoes random edits, and compares the results against\n" +
+            "full copies of every state.  The edits include deltas, checkpoints, and changes in\n" +
+            "bounds, statuses, and keys, and the memory cap is changed now and then so that old\n" +
+            "states are evicted.  Exits with status 1 if any check failed.",
+            true);
+
+        int steps = main.getInt("-n", 5000);
+        random = new Random(main.getInt("-s", 0));
+
+        // Undo only needs a synth to update its menus, and a throwaway one has none
+        Synth synth = Synth.instantiate("edisyn.synth.yamahadx7.YamahaDX7", true, false, null);
+        undo = new Undo(synth);
+        model = buildModel();
+        model.setUndoListener(undo);
+
+        run(steps);
+
+        System.err.println(pushes + " pushes, " + undos + " undos (" + discards + " discarded), " + redos + " redos, " +
+            evictions + " evictions, " + schemaChanges + " schema changes");
+        for(int i = 0; i < problems.size(); i++)
+            System.err.println("\t" + problems.get(i));
+        check(problems.isEmpty(), "undo and redo restore every state, and the memory is accounted for");
+        check(evictions > 0 && discards > 0 && schemaChanges > 0, "eviction, discarding, and schema changes were all exercised");
+
+        undo.clear();
+        check(undo.getMemory() == 0 && undo.measureMemory() == 0, "clearing frees all the memory");
+
+        System.exit(failures == 0 ? 0 : 1);
+        }
+    }